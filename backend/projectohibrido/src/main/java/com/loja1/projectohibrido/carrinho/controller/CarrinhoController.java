@@ -3,6 +3,7 @@ package com.loja1.projectohibrido.carrinho.controller;
 import com.loja1.projectohibrido.carrinho.dto.AdicionarItemRequest;
 import com.loja1.projectohibrido.carrinho.dto.AtualizarQuantidadeRequest;
 import com.loja1.projectohibrido.carrinho.dto.CarrinhoDTO;
+import com.loja1.projectohibrido.carrinho.dto.LoteItensRequest;
 import com.loja1.projectohibrido.carrinho.dto.MesclarCarrinhoRequest;
 import com.loja1.projectohibrido.carrinho.service.CarrinhoService;
 import com.loja1.projectohibrido.pedido.dto.PedidoRequestDTO;
@@ -73,14 +74,29 @@ public ResponseEntity<CarrinhoDTO> buscarActivo(
     if (dto == null) return ResponseEntity.notFound().build();
     return ResponseEntity.ok(dto);
 }
+    // Modo delta: com o header X-Cart-Version (versão do CarrinhoDTO que o
+    // cliente tem), as alterações devolvem um CarrinhoDeltaDTO só com as linhas
+    // alteradas — ou 409 se o carrinho já mudou noutro separador/dispositivo.
+    // Sem o header a resposta é o CarrinhoDTO completo, como antes. Enquanto
+    // db/versao_carrinho.sql não correr o header é ignorado (CarrinhoDTO.versao
+    // vem a null).
+
+    private boolean modoDelta(Long versao) {
+        return versao != null && carrinhoService.versoesActivas();
+    }
+
     /**
      * Adiciona um novo item ou soma quantidade a item já existente no carrinho.
      */
     @PostMapping("/{idCarrinho}/itens")
-    public ResponseEntity<CarrinhoDTO> adicionarItem(
+    public ResponseEntity<?> adicionarItem(
             @PathVariable Integer idCarrinho,
+            @RequestHeader(name = "X-Cart-Version", required = false) Long versao,
             @Valid @RequestBody AdicionarItemRequest req) {
 
+        if (modoDelta(versao)) {
+            return ResponseEntity.ok(carrinhoService.adicionarOuAtualizarItem(idCarrinho, req, versao));
+        }
         return ResponseEntity.ok(carrinhoService.adicionarOuAtualizarItem(idCarrinho, req));
     }
 
@@ -88,27 +104,56 @@ public ResponseEntity<CarrinhoDTO> buscarActivo(
      * Define uma quantidade exata para um item já existente (substitui, não soma).
      */
     @PutMapping("/{idCarrinho}/itens/{idProduto}")
-    public ResponseEntity<CarrinhoDTO> atualizarQuantidade(
+    public ResponseEntity<?> atualizarQuantidade(
             @PathVariable Integer idCarrinho,
             @PathVariable Integer idProduto,
+            @RequestHeader(name = "X-Cart-Version", required = false) Long versao,
             @Valid @RequestBody AtualizarQuantidadeRequest req) {
 
+        if (modoDelta(versao)) {
+            return ResponseEntity.ok(carrinhoService.atualizarQuantidade(idCarrinho, idProduto, req, versao));
+        }
         return ResponseEntity.ok(carrinhoService.atualizarQuantidade(idCarrinho, idProduto, req));
     }
 
     /**
      * Remove um item específico do carrinho.
      * Se for o último item, o carrinho é eliminado automaticamente (Regra 4).
+     * Em modo delta responde 200 com o delta em vez de 204.
      */
     @DeleteMapping("/{idCarrinho}/itens/{idProduto}")
-    public ResponseEntity<Void> removerItem(
+    public ResponseEntity<?> removerItem(
             @PathVariable Integer idCarrinho,
-            @PathVariable Integer idProduto) {
+            @PathVariable Integer idProduto,
+            @RequestHeader(name = "X-Cart-Version", required = false) Long versao) {
 
+        if (modoDelta(versao)) {
+            return ResponseEntity.ok(carrinhoService.removerItem(idCarrinho, idProduto, versao));
+        }
         carrinhoService.removerItem(idCarrinho, idProduto);
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Aplica várias operações (adicionar / atualizar / remover) numa só
+     * transacção: ou todas são gravadas, ou nenhuma. Aceita X-Cart-Version
+     * como os restantes. Sem o header, 204 se o carrinho ficou vazio e foi
+     * eliminado (Regra 4).
+     */
+    @PostMapping("/{idCarrinho}/itens/lote")
+    public ResponseEntity<?> aplicarLote(
+            @PathVariable Integer idCarrinho,
+            @RequestHeader(name = "X-Cart-Version", required = false) Long versao,
+            @Valid @RequestBody LoteItensRequest req) {
+
+        if (modoDelta(versao)) {
+            return ResponseEntity.ok(carrinhoService.aplicarLote(idCarrinho, req, versao));
+        }
+        CarrinhoDTO dto = carrinhoService.aplicarLote(idCarrinho, req);
+        if (dto == null) return ResponseEntity.noContent().build();
+        return ResponseEntity.ok(dto);
+    }
+
     /**
      * Remove o carrinho inteiro.
      */
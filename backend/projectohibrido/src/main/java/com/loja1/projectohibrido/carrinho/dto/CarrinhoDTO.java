@@ -13,6 +13,7 @@ public class CarrinhoDTO {
     private LocalDateTime dataCriacao;
     private List<ItemCarrinhoDTO> itens;
     private BigDecimal totalCarrinho;
+    private Long versao;               // enviar em X-Cart-Version nas alterações em modo delta
 
     // ── Constructors ──────────────────────────────────────────────────────────
 
@@ -20,7 +21,8 @@ public class CarrinhoDTO {
 
     public CarrinhoDTO(Integer idCarrinho, Integer idUsuario, String sessionId,
                        String status, LocalDateTime dataCriacao,
-                       List<ItemCarrinhoDTO> itens, BigDecimal totalCarrinho) {
+                       List<ItemCarrinhoDTO> itens, BigDecimal totalCarrinho,
+                       Long versao) {
         this.idCarrinho    = idCarrinho;
         this.idUsuario     = idUsuario;
         this.sessionId     = sessionId;
@@ -28,6 +30,7 @@ public class CarrinhoDTO {
         this.dataCriacao   = dataCriacao;
         this.itens         = itens;
         this.totalCarrinho = totalCarrinho;
+        this.versao        = versao;
     }
 
     // ── Getters & Setters ─────────────────────────────────────────────────────
@@ -52,4 +55,7 @@ public class CarrinhoDTO {
 
     public BigDecimal getTotalCarrinho()                        { return totalCarrinho; }
     public void setTotalCarrinho(BigDecimal totalCarrinho)      { this.totalCarrinho = totalCarrinho; }
+
+    public Long getVersao()                                     { return versao; }
+    public void setVersao(Long versao)                          { this.versao = versao; }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.loja1.projectohibrido.carrinho.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Resposta das alterações em modo delta (header X-Cart-Version): só as
+ * linhas adicionadas/alteradas e os produtos removidos, com os totais e a
+ * nova versão. Aplicado sobre a versão enviada, reproduz o CarrinhoDTO.
+ */
+public class CarrinhoDeltaDTO {
+
+    private Integer idCarrinho;
+    private Long versao;                         // null se o carrinho foi eliminado
+    private List<ItemCarrinhoDTO> itensAlterados;
+    private List<Integer> produtosRemovidos;
+    private Integer quantidadeItens;             // linhas no carrinho após a alteração
+    private BigDecimal totalCarrinho;
+    private boolean carrinhoEliminado;           // último item removido (Regra 4)
+
+    // ── Constructors ──────────────────────────────────────────────────────────
+
+    public CarrinhoDeltaDTO() {}
+
+    public CarrinhoDeltaDTO(Integer idCarrinho, Long versao,
+                            List<ItemCarrinhoDTO> itensAlterados, List<Integer> produtosRemovidos,
+                            Integer quantidadeItens, BigDecimal totalCarrinho,
+                            boolean carrinhoEliminado) {
+        this.idCarrinho        = idCarrinho;
+        this.versao            = versao;
+        this.itensAlterados    = itensAlterados;
+        this.produtosRemovidos = produtosRemovidos;
+        this.quantidadeItens   = quantidadeItens;
+        this.totalCarrinho     = totalCarrinho;
+        this.carrinhoEliminado = carrinhoEliminado;
+    }
+
+    // ── Getters & Setters ─────────────────────────────────────────────────────
+
+    public Integer getIdCarrinho()                                  { return idCarrinho; }
+    public void setIdCarrinho(Integer idCarrinho)                   { this.idCarrinho = idCarrinho; }
+
+    public Long getVersao()                                         { return versao; }
+    public void setVersao(Long versao)                              { this.versao = versao; }
+
+    public List<ItemCarrinhoDTO> getItensAlterados()                { return itensAlterados; }
+    public void setItensAlterados(List<ItemCarrinhoDTO> itens)      { this.itensAlterados = itens; }
+
+    public List<Integer> getProdutosRemovidos()                     { return produtosRemovidos; }
+    public void setProdutosRemovidos(List<Integer> ids)             { this.produtosRemovidos = ids; }
+
+    public Integer getQuantidadeItens()                             { return quantidadeItens; }
+    public void setQuantidadeItens(Integer quantidadeItens)         { this.quantidadeItens = quantidadeItens; }
+
+    public BigDecimal getTotalCarrinho()                            { return totalCarrinho; }
+    public void setTotalCarrinho(BigDecimal totalCarrinho)          { this.totalCarrinho = totalCarrinho; }
+
+    public boolean isCarrinhoEliminado()                            { return carrinhoEliminado; }
+    public void setCarrinhoEliminado(boolean carrinhoEliminado)     { this.carrinhoEliminado = carrinhoEliminado; }
+}
@@ -0,0 +1,33 @@
+package com.loja1.projectohibrido.carrinho.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Várias operações sobre os itens do carrinho, aplicadas por ordem numa só
+ * transacção (reencomenda, conjunto de produtos, leitor de código de barras).
+ */
+public class LoteItensRequest {
+
+    public static final int MAX_OPERACOES = 500;
+
+    @NotEmpty(message = "Indique pelo menos uma operação")
+    @Size(max = MAX_OPERACOES, message = "No máximo " + MAX_OPERACOES + " operações por lote")
+    private List<@Valid OperacaoItemRequest> operacoes;
+
+    // ── Constructors ──────────────────────────────────────────────────────────
+
+    public LoteItensRequest() {}
+
+    public LoteItensRequest(List<OperacaoItemRequest> operacoes) {
+        this.operacoes = operacoes;
+    }
+
+    // ── Getters & Setters ─────────────────────────────────────────────────────
+
+    public List<OperacaoItemRequest> getOperacoes()                 { return operacoes; }
+    public void setOperacoes(List<OperacaoItemRequest> operacoes)   { this.operacoes = operacoes; }
+}
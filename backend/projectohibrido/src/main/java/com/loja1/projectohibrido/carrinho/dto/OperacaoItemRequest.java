@@ -0,0 +1,45 @@
+package com.loja1.projectohibrido.carrinho.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+
+/**
+ * Uma operação de POST /api/carrinhos/{id}/itens/lote:
+ * "adicionar" soma a quantidade (como POST /itens), "atualizar" define-a
+ * (como PUT /itens/{idProduto}) e "remover" retira a linha (quantidade ignorada).
+ */
+public class OperacaoItemRequest {
+
+    @NotNull(message = "O tipo da operação é obrigatório")
+    @Pattern(regexp = "adicionar|atualizar|remover",
+             message = "O tipo deve ser adicionar, atualizar ou remover")
+    private String tipo;
+
+    @NotNull(message = "O id do produto é obrigatório")
+    private Integer idProduto;
+
+    @Min(value = 1, message = "A quantidade mínima é 1")
+    private Integer quantidade;   // obrigatória em adicionar/atualizar
+
+    // ── Constructors ──────────────────────────────────────────────────────────
+
+    public OperacaoItemRequest() {}
+
+    public OperacaoItemRequest(String tipo, Integer idProduto, Integer quantidade) {
+        this.tipo       = tipo;
+        this.idProduto  = idProduto;
+        this.quantidade = quantidade;
+    }
+
+    // ── Getters & Setters ─────────────────────────────────────────────────────
+
+    public String getTipo()                             { return tipo; }
+    public void setTipo(String tipo)                    { this.tipo = tipo; }
+
+    public Integer getIdProduto()                       { return idProduto; }
+    public void setIdProduto(Integer idProduto)         { this.idProduto = idProduto; }
+
+    public Integer getQuantidade()                      { return quantidade; }
+    public void setQuantidade(Integer quantidade)       { this.quantidade = quantidade; }
+}
@@ -76,6 +76,15 @@ public class CarrinhoGlobalExceptionHandler {
                              .body(buildBody(HttpStatus.CONFLICT, ex.getMessage()));
     }
 
+    @ExceptionHandler(CarrinhoVersaoConflitoException.class)
+    public ResponseEntity<Map<String, Object>> handleVersaoConflito(CarrinhoVersaoConflitoException ex) {
+        Map<String, Object> body = buildBody(HttpStatus.CONFLICT, ex.getMessage());
+        body.put("idCarrinho",    ex.getIdCarrinho());
+        body.put("versaoEnviada", ex.getVersaoEnviada());
+        body.put("versaoActual",  ex.getVersaoActual());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
     // ── Handlers genéricos (remover se já existirem no GlobalExceptionHandler) ─
 
     @ExceptionHandler(EntityNotFoundException.class)
@@ -0,0 +1,33 @@
+package com.loja1.projectohibrido.carrinho.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Lançada quando o cliente altera o carrinho a partir de uma versão que já
+ * não é a actual (outro separador ou dispositivo alterou-o entretanto).
+ * O cliente deve recarregar o carrinho (GET /activo) e repetir a operação.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)   // 409
+public class CarrinhoVersaoConflitoException extends RuntimeException {
+
+    private final Integer idCarrinho;
+    private final Long    versaoEnviada;
+    private final Long    versaoActual;
+
+    public CarrinhoVersaoConflitoException(Integer idCarrinho, Long versaoEnviada, Long versaoActual) {
+        super(String.format(
+            "O carrinho (id=%d) foi alterado entretanto. Versão enviada: %d | Versão actual: %d",
+            idCarrinho, versaoEnviada, versaoActual
+        ));
+        this.idCarrinho    = idCarrinho;
+        this.versaoEnviada = versaoEnviada;
+        this.versaoActual  = versaoActual;
+    }
+
+    // ── Getters ───────────────────────────────────────────────────────────────
+
+    public Integer getIdCarrinho()      { return idCarrinho; }
+    public Long    getVersaoEnviada()   { return versaoEnviada; }
+    public Long    getVersaoActual()    { return versaoActual; }
+}
@@ -1,6 +1,7 @@
 package com.loja1.projectohibrido.carrinho.repository;
 
 import com.loja1.projectohibrido.carrinho.entity.Carrinho;
+import com.loja1.projectohibrido.produto.entity.Produto;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
@@ -8,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -66,6 +68,21 @@ public interface CarrinhoRepository extends JpaRepository<Carrinho, Integer> {
     @Query("SELECT c FROM Carrinho c WHERE c.idCarrinho = :idCarrinho")
     Optional<Carrinho> findByIdWithLock(@Param("idCarrinho") Integer idCarrinho);
 
+    /**
+     * Carrega e bloqueia (SELECT ... FOR UPDATE) todos os produtos do carrinho
+     * num só statement. A ordem por ID é a mesma em todas as conversões, o que
+     * evita deadlocks entre carrinhos com produtos em comum.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            SELECT p FROM Produto p
+            WHERE p.idProduto IN (
+                SELECT i.produto.idProduto FROM ItemCarrinho i
+                WHERE i.carrinho.idCarrinho = :idCarrinho)
+            ORDER BY p.idProduto
+            """)
+    List<Produto> bloquearProdutosDoCarrinho(@Param("idCarrinho") Integer idCarrinho);
+
     // ── Verificações de existência ────────────────────────────────────────────
 
     boolean existsByIdUsuarioAndStatus(Integer idUsuario, String status);
@@ -0,0 +1,67 @@
+package com.loja1.projectohibrido.carrinho.repository;
+
+import com.loja1.projectohibrido.config.EsquemaBaseDados;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Versão do carrinho (coluna carrinho.versao, ver db/versao_carrinho.sql).
+ * A coluna não está mapeada na entidade Carrinho.
+ *
+ * O UPDATE condicional é a verificação optimista: dois separadores que
+ * alteram o mesmo carrinho a partir da mesma versão — só o primeiro avança,
+ * o segundo não encontra a linha e recebe 409.
+ *
+ * Enquanto o script não correr não há versões: {@link #activa()} é false,
+ * {@link #avancar} e {@link #ler} devolvem null e o carrinho funciona sem
+ * modo delta.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CarrinhoVersaoRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EsquemaBaseDados esquema;
+
+    /** A coluna carrinho.versao existe (db/versao_carrinho.sql já correu). */
+    public boolean activa() {
+        return esquema.temColuna("carrinho", "versao");
+    }
+
+    /** Avança a versão; devolve a nova, ou null se o carrinho não existir ou não houver versões. */
+    public Long avancar(Integer idCarrinho) {
+        if (!activa()) return null;
+        return primeira(jdbcTemplate.queryForList("""
+                UPDATE carrinho SET versao = versao + 1
+                 WHERE id_carrinho = ?
+                RETURNING versao
+                """, Long.class, idCarrinho));
+    }
+
+    /**
+     * Avança a versão só se ainda for {@code esperada}; devolve a nova, ou
+     * null se entretanto mudou (ou o carrinho não existe — ver {@link #ler}).
+     */
+    public Long avancarSe(Integer idCarrinho, long esperada) {
+        return primeira(jdbcTemplate.queryForList("""
+                UPDATE carrinho SET versao = versao + 1
+                 WHERE id_carrinho = ?
+                   AND versao = ?
+                RETURNING versao
+                """, Long.class, idCarrinho, esperada));
+    }
+
+    /** Versão actual, ou null se o carrinho não existir ou não houver versões. */
+    public Long ler(Integer idCarrinho) {
+        if (!activa()) return null;
+        return primeira(jdbcTemplate.queryForList(
+                "SELECT versao FROM carrinho WHERE id_carrinho = ?", Long.class, idCarrinho));
+    }
+
+    private static Long primeira(List<Long> linhas) {
+        return linhas.isEmpty() ? null : linhas.get(0);
+    }
+}
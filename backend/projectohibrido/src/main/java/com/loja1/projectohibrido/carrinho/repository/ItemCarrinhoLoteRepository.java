@@ -0,0 +1,108 @@
+package com.loja1.projectohibrido.carrinho.repository;
+
+import com.loja1.projectohibrido.carrinho.entity.ItemCarrinho;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escritas dos itens do carrinho em lote via JDBC: um statement por tipo de
+ * alteração (inserir, actualizar, remover) em vez de um por item. Usado pelo
+ * POST /api/carrinhos/{id}/itens/lote.
+ *
+ * Os itens NÃO passam pelo contexto de persistência: o carrinho tem de estar
+ * desligado dele (detach), senão o flush voltaria a gravar as alterações.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ItemCarrinhoLoteRepository {
+
+    // O driver do PostgreSQL aceita no máximo 32767 parâmetros por statement
+    private static final int MAX_PARAMETROS = 30000;
+    private static final int COLUNAS_ITEM = 4;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insere os itens e preenche o ID gerado em cada um.
+     *
+     * Os IDs são associados pelo id_produto devolvido no RETURNING (o
+     * PostgreSQL não garante que o RETURNING siga a ordem do VALUES); para
+     * isso cada statement leva no máximo um item por produto.
+     */
+    public void inserir(Integer idCarrinho, List<ItemCarrinho> itens) {
+        int porStatement = MAX_PARAMETROS / COLUNAS_ITEM;
+        Map<Integer, ItemCarrinho> bloco = new LinkedHashMap<>();
+        for (ItemCarrinho item : itens) {
+            Integer idProduto = item.getProduto().getIdProduto();
+            if (bloco.size() == porStatement || bloco.containsKey(idProduto)) {
+                inserirBloco(idCarrinho, bloco);
+                bloco = new LinkedHashMap<>();
+            }
+            bloco.put(idProduto, item);
+        }
+        if (!bloco.isEmpty()) inserirBloco(idCarrinho, bloco);
+    }
+
+    /** @param bloco id_produto → item (um item por produto) */
+    private void inserirBloco(Integer idCarrinho, Map<Integer, ItemCarrinho> bloco) {
+        StringBuilder sql = new StringBuilder("""
+                INSERT INTO item_carrinho (id_carrinho, id_produto, quantidade, subtotal)
+                VALUES\s""");
+        for (int i = 0; i < bloco.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?)");
+        }
+        sql.append(" RETURNING id_item_carrinho, id_produto");
+
+        jdbcTemplate.query(sql.toString(), ps -> {
+            int p = 1;
+            for (ItemCarrinho item : bloco.values()) {
+                ps.setInt(p++, idCarrinho);
+                ps.setInt(p++, item.getProduto().getIdProduto());
+                ps.setInt(p++, item.getQuantidade());
+                ps.setBigDecimal(p++, item.getSubtotal());
+            }
+        }, rs -> {
+            bloco.get(rs.getInt(2)).setIdItemCarrinho(rs.getInt(1));
+        });
+    }
+
+    /** Quantidade e subtotal de itens já existentes, num só UPDATE. */
+    public void atualizar(List<ItemCarrinho> itens) {
+        if (itens.isEmpty()) return;
+        Integer[] ids = new Integer[itens.size()];
+        Integer[] quantidades = new Integer[itens.size()];
+        BigDecimal[] subtotais = new BigDecimal[itens.size()];
+        for (int i = 0; i < itens.size(); i++) {
+            ids[i] = itens.get(i).getIdItemCarrinho();
+            quantidades[i] = itens.get(i).getQuantidade();
+            subtotais[i] = itens.get(i).getSubtotal();
+        }
+        jdbcTemplate.update("""
+                UPDATE item_carrinho i
+                   SET quantidade = v.quantidade,
+                       subtotal   = v.subtotal
+                  FROM unnest(?::int[], ?::int[], ?::numeric[]) AS v(id, quantidade, subtotal)
+                 WHERE i.id_item_carrinho = v.id
+                """, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("integer", ids));
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", quantidades));
+            ps.setArray(3, ps.getConnection().createArrayOf("numeric", subtotais));
+        });
+    }
+
+    /** Remove as linhas dos produtos indicados; devolve quantas foram removidas. */
+    public int remover(Integer idCarrinho, Collection<Integer> idsProdutos) {
+        if (idsProdutos.isEmpty()) return 0;
+        return jdbcTemplate.update("DELETE FROM item_carrinho WHERE id_carrinho = ? AND id_produto = ANY(?)", ps -> {
+            ps.setInt(1, idCarrinho);
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", idsProdutos.toArray()));
+        });
+    }
+}
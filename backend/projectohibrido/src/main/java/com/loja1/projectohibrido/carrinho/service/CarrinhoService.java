@@ -3,22 +3,32 @@ package com.loja1.projectohibrido.carrinho.service;
 import com.loja1.projectohibrido.carrinho.dto.AdicionarItemRequest;
 import com.loja1.projectohibrido.carrinho.dto.AtualizarQuantidadeRequest;
 import com.loja1.projectohibrido.carrinho.dto.CarrinhoDTO;
+import com.loja1.projectohibrido.carrinho.dto.CarrinhoDeltaDTO;
 import com.loja1.projectohibrido.carrinho.dto.ItemCarrinhoDTO;
+import com.loja1.projectohibrido.carrinho.dto.LoteItensRequest;
+import com.loja1.projectohibrido.carrinho.dto.OperacaoItemRequest;
 import com.loja1.projectohibrido.carrinho.entity.Carrinho;
 import com.loja1.projectohibrido.carrinho.entity.ItemCarrinho;
 import com.loja1.projectohibrido.carrinho.exception.CarrinhoJaConvertidoException;
 import com.loja1.projectohibrido.carrinho.exception.CarrinhoNotFoundException;
 import com.loja1.projectohibrido.carrinho.exception.CarrinhoVazioException;
+import com.loja1.projectohibrido.carrinho.exception.CarrinhoVersaoConflitoException;
 import com.loja1.projectohibrido.carrinho.exception.EstoqueInsuficienteException;
 import com.loja1.projectohibrido.carrinho.exception.ItemCarrinhoNotFoundException;
 import com.loja1.projectohibrido.carrinho.repository.CarrinhoRepository;
+import com.loja1.projectohibrido.carrinho.repository.CarrinhoVersaoRepository;
+import com.loja1.projectohibrido.carrinho.repository.ItemCarrinhoLoteRepository;
 import com.loja1.projectohibrido.carrinho.repository.ItemCarrinhoRepository;
 import com.loja1.projectohibrido.pedido.dto.PedidoRequestDTO;
 import com.loja1.projectohibrido.pedido.dto.PedidoResponseDTO;
 import com.loja1.projectohibrido.pedido.service.PedidoService;
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
 import com.loja1.projectohibrido.produto.entity.Produto;
+import com.loja1.projectohibrido.produto.entity.ProdutoImagem;
 import com.loja1.projectohibrido.produto.repository.ProdutoImagemRepository;
 import com.loja1.projectohibrido.produto.repository.ProdutoRepository;
+import com.loja1.projectohibrido.produto.service.EstoqueService;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -28,8 +38,13 @@ import lombok.extern.slf4j.Slf4j;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -40,10 +55,20 @@ import java.util.stream.Collectors;
 public class CarrinhoService {
 
     private final CarrinhoRepository     carrinhoRepo;
+    private final CarrinhoVersaoRepository versaoRepo;
     private final ItemCarrinhoRepository  itemRepo;
+    private final ItemCarrinhoLoteRepository itemLoteRepo;
     private final ProdutoRepository       produtoRepo;
     private final ProdutoImagemRepository produtoImagemRepo; // ← resolve imagem sem alterar Produto.java
+    private final CatalogoCache           catalogoCache;
     private final PedidoService           pedidoService;
+    private final EstoqueService          estoqueService;
+    private final EntityManager           entityManager;
+
+    /** Modo delta disponível: sem db/versao_carrinho.sql o X-Cart-Version é ignorado. */
+    public boolean versoesActivas() {
+        return versaoRepo.activa();
+    }
 
     // ─────────────────────────────────────────────────────────────────────────
     // Criação
@@ -59,9 +84,9 @@ public class CarrinhoService {
 
         // Utilizador autenticado: devolve carrinho activo existente ou cria um novo
         if (idUsuario != null) {
-            return carrinhoRepo.findByIdUsuarioAndStatus(idUsuario, "activo")
+            return carrinhoRepo.findByIdUsuarioAndStatusWithItens(idUsuario, "activo")
                     .map(this::toDTO)
-                    .orElseGet(() -> toDTO(carrinhoRepo.save(novoCarrinhoAutenticado(idUsuario))));
+                    .orElseGet(() -> toDTO(carrinhoRepo.save(novoCarrinhoAutenticado(idUsuario)), 0L));
         }
 
         // Guest: devolve carrinho activo existente pelo sessionId ou cria com novo sessionId
@@ -69,21 +94,21 @@ public class CarrinhoService {
                 ? sessionId
                 : UUID.randomUUID().toString();
 
-        return carrinhoRepo.findBySessionIdAndStatus(sid, "activo")
+        return carrinhoRepo.findBySessionIdAndStatusWithItens(sid, "activo")
                 .map(this::toDTO)
-                .orElseGet(() -> toDTO(carrinhoRepo.save(novoCarrinhoGuest(sid))));
+                .orElseGet(() -> toDTO(carrinhoRepo.save(novoCarrinhoGuest(sid)), 0L));
     }
 
 
 @Transactional(readOnly = true)
 public CarrinhoDTO buscarCarrinhoActivo(Integer idUsuario, String cartSessionId) {
     if (idUsuario != null) {
-        return carrinhoRepo.findByIdUsuarioAndStatus(idUsuario, "activo")
+        return carrinhoRepo.findByIdUsuarioAndStatusWithItens(idUsuario, "activo")
                 .map(this::toDTOPublic)
                 .orElse(null);
     }
     if (cartSessionId != null && !cartSessionId.isBlank()) {
-        return carrinhoRepo.findBySessionIdAndStatus(cartSessionId, "activo")
+        return carrinhoRepo.findBySessionIdAndStatusWithItens(cartSessionId, "activo")
                 .map(this::toDTOPublic)
                 .orElse(null);
     }
@@ -114,6 +139,20 @@ public CarrinhoDTO buscarCarrinhoActivo(Integer idUsuario, String cartSessionId)
 
     @Transactional
     public CarrinhoDTO adicionarOuAtualizarItem(Integer idCarrinho, AdicionarItemRequest req) {
+        Alteracao alteracao = adicionar(idCarrinho, req, null);
+        return toDTO(alteracao.carrinho(), alteracao.versao());
+    }
+
+    /** Modo delta: só aplica se o carrinho ainda estiver na versão enviada. */
+    @Transactional
+    public CarrinhoDeltaDTO adicionarOuAtualizarItem(Integer idCarrinho, AdicionarItemRequest req,
+                                                     long versaoCliente) {
+        return toDeltaDTO(adicionar(idCarrinho, req, versaoCliente));
+    }
+
+    private Alteracao adicionar(Integer idCarrinho, AdicionarItemRequest req, Long versaoCliente) {
+
+        Long versao = avancarVersao(idCarrinho, versaoCliente);
 
         Carrinho carrinho = carrinhoRepo.findByIdWithItens(idCarrinho)
                 .orElseThrow(() -> new CarrinhoNotFoundException(idCarrinho));
@@ -151,7 +190,7 @@ public CarrinhoDTO buscarCarrinhoActivo(Integer idUsuario, String cartSessionId)
             carrinho.getItens().add(novoItem);
         }
 
-        return toDTO(carrinhoRepo.save(carrinho));
+        return new Alteracao(carrinhoRepo.save(carrinho), versao, Set.of(req.getIdProduto()), List.of(), false);
     }
 
     /**
@@ -160,6 +199,20 @@ public CarrinhoDTO buscarCarrinhoActivo(Integer idUsuario, String cartSessionId)
     @Transactional
     public CarrinhoDTO atualizarQuantidade(Integer idCarrinho, Integer idProduto,
                                            AtualizarQuantidadeRequest req) {
+        Alteracao alteracao = atualizar(idCarrinho, idProduto, req, null);
+        return toDTO(alteracao.carrinho(), alteracao.versao());
+    }
+
+    @Transactional
+    public CarrinhoDeltaDTO atualizarQuantidade(Integer idCarrinho, Integer idProduto,
+                                                AtualizarQuantidadeRequest req, long versaoCliente) {
+        return toDeltaDTO(atualizar(idCarrinho, idProduto, req, versaoCliente));
+    }
+
+    private Alteracao atualizar(Integer idCarrinho, Integer idProduto,
+                                AtualizarQuantidadeRequest req, Long versaoCliente) {
+
+        Long versao = avancarVersao(idCarrinho, versaoCliente);
 
         Carrinho carrinho = carrinhoRepo.findByIdWithItens(idCarrinho)
                 .orElseThrow(() -> new CarrinhoNotFoundException(idCarrinho));
@@ -180,7 +233,7 @@ public CarrinhoDTO buscarCarrinhoActivo(Integer idUsuario, String cartSessionId)
         item.setQuantidade(req.getQuantidade());
         item.setSubtotal(preco.multiply(BigDecimal.valueOf(req.getQuantidade())));
 
-        return toDTO(carrinhoRepo.save(carrinho));
+        return new Alteracao(carrinhoRepo.save(carrinho), versao, Set.of(idProduto), List.of(), false);
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -189,6 +242,17 @@ public CarrinhoDTO buscarCarrinhoActivo(Integer idUsuario, String cartSessionId)
 
     @Transactional
     public void removerItem(Integer idCarrinho, Integer idProduto) {
+        remover(idCarrinho, idProduto, null);
+    }
+
+    @Transactional
+    public CarrinhoDeltaDTO removerItem(Integer idCarrinho, Integer idProduto, long versaoCliente) {
+        return toDeltaDTO(remover(idCarrinho, idProduto, versaoCliente));
+    }
+
+    private Alteracao remover(Integer idCarrinho, Integer idProduto, Long versaoCliente) {
+
+        Long versao = avancarVersao(idCarrinho, versaoCliente);
 
         Carrinho carrinho = carrinhoRepo.findByIdWithItens(idCarrinho)
                 .orElseThrow(() -> new CarrinhoNotFoundException(idCarrinho));
@@ -200,11 +264,148 @@ public CarrinhoDTO buscarCarrinhoActivo(Integer idUsuario, String cartSessionId)
             throw new ItemCarrinhoNotFoundException(idCarrinho, idProduto);
         }
 
+        // Os itens já estão em memória (JOIN FETCH): os restantes saem daí, sem COUNT
+        carrinho.getItens().removeIf(i -> i.getProduto().getIdProduto().equals(idProduto));
+
         // Regra 4: se era o último item, elimina o carrinho
-        long restantes = itemRepo.countByCarrinhoIdCarrinho(idCarrinho);
-        if (restantes == 0) {
+        boolean eliminado = carrinho.getItens().isEmpty();
+        if (eliminado) {
             carrinhoRepo.delete(carrinho);
         }
+        return new Alteracao(carrinho, eliminado ? null : versao, Set.of(), List.of(idProduto), eliminado);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Operações em lote
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Aplica as operações por ordem numa só transacção. Devolve null se o
+     * carrinho ficou vazio e foi eliminado (Regra 4).
+     */
+    @Transactional
+    public CarrinhoDTO aplicarLote(Integer idCarrinho, LoteItensRequest req) {
+        Alteracao alteracao = aplicarOperacoes(idCarrinho, req.getOperacoes(), null);
+        return alteracao.carrinhoEliminado() ? null : toDTO(alteracao.carrinho(), alteracao.versao());
+    }
+
+    @Transactional
+    public CarrinhoDeltaDTO aplicarLote(Integer idCarrinho, LoteItensRequest req, long versaoCliente) {
+        return toDeltaDTO(aplicarOperacoes(idCarrinho, req.getOperacoes(), versaoCliente));
+    }
+
+    /**
+     * O custo não depende do número de operações: um SELECT do carrinho com
+     * itens, um SELECT ... IN dos produtos, as operações aplicadas em memória,
+     * o estoque validado sobre as quantidades finais e no máximo três
+     * escritas (DELETE, UPDATE e INSERT multi-linha via ItemCarrinhoLoteRepository).
+     * Se uma operação falhar nada é gravado.
+     */
+    private Alteracao aplicarOperacoes(Integer idCarrinho, List<OperacaoItemRequest> operacoes,
+                                       Long versaoCliente) {
+
+        Long versao = avancarVersao(idCarrinho, versaoCliente);
+
+        Carrinho carrinho = carrinhoRepo.findByIdWithItens(idCarrinho)
+                .orElseThrow(() -> new CarrinhoNotFoundException(idCarrinho));
+
+        validarCarrinhoActivo(carrinho);
+
+        // As escritas vão por JDBC: sem o detach, o flush do Hibernate voltaria a
+        // gravar os itens alterados em memória (detach propaga-se aos itens)
+        entityManager.detach(carrinho);
+
+        Set<Integer> idsComQuantidade = new LinkedHashSet<>();
+        for (OperacaoItemRequest op : operacoes) {
+            if (!"remover".equals(op.getTipo())) {
+                if (op.getQuantidade() == null) {
+                    throw new IllegalStateException(
+                            "A quantidade é obrigatória em '" + op.getTipo() + "' (produto " + op.getIdProduto() + ")");
+                }
+                idsComQuantidade.add(op.getIdProduto());
+            }
+        }
+        Map<Integer, Produto> produtos = produtoRepo.findAllById(idsComQuantidade).stream()
+                .collect(Collectors.toMap(Produto::getIdProduto, p -> p));
+
+        Map<Integer, ItemCarrinho> linhas = new LinkedHashMap<>();
+        carrinho.getItens().forEach(i -> linhas.put(i.getProduto().getIdProduto(), i));
+        Map<Integer, ItemCarrinho> originais = new HashMap<>(linhas);
+
+        Set<Integer> alterados = new LinkedHashSet<>();
+        Set<Integer> removidos = new LinkedHashSet<>();
+
+        for (OperacaoItemRequest op : operacoes) {
+            Integer idProduto = op.getIdProduto();
+            switch (op.getTipo()) {
+                case "adicionar" -> {
+                    Produto produto = produtos.get(idProduto);
+                    if (produto == null) {
+                        throw new EntityNotFoundException("Produto não encontrado: " + idProduto);
+                    }
+                    ItemCarrinho item = linhas.computeIfAbsent(idProduto, id -> {
+                        // Removida antes neste lote: reaproveita a linha (e o seu ID)
+                        ItemCarrinho removido = originais.get(id);
+                        if (removido != null) {
+                            removido.setQuantidade(0);
+                            return removido;
+                        }
+                        ItemCarrinho novoItem = new ItemCarrinho();
+                        novoItem.setCarrinho(carrinho);
+                        novoItem.setProduto(produto);
+                        novoItem.setQuantidade(0);
+                        return novoItem;
+                    });
+                    item.setQuantidade(item.getQuantidade() + op.getQuantidade());
+                    alterados.add(idProduto);
+                    removidos.remove(idProduto);
+                }
+                case "atualizar" -> {
+                    ItemCarrinho item = linhas.get(idProduto);
+                    if (item == null) throw new ItemCarrinhoNotFoundException(idCarrinho, idProduto);
+                    item.setQuantidade(op.getQuantidade());
+                    alterados.add(idProduto);
+                }
+                default -> {
+                    if (linhas.remove(idProduto) == null) {
+                        throw new ItemCarrinhoNotFoundException(idCarrinho, idProduto);
+                    }
+                    alterados.remove(idProduto);
+                    if (originais.containsKey(idProduto)) removidos.add(idProduto);
+                }
+            }
+        }
+
+        // Estoque e preço de todas as linhas alteradas, sobre as quantidades finais
+        List<ItemCarrinho> novos = new ArrayList<>();
+        List<ItemCarrinho> actualizados = new ArrayList<>();
+        for (Integer idProduto : alterados) {
+            ItemCarrinho item = linhas.get(idProduto);
+            Produto produto = produtos.get(idProduto);
+            if (produto == null) {
+                throw new EntityNotFoundException("Produto não encontrado: " + idProduto);
+            }
+            validarEstoque(produto, item.getQuantidade());
+            item.setSubtotal(resolverPreco(produto).multiply(BigDecimal.valueOf(item.getQuantidade())));
+            (item.getIdItemCarrinho() == null ? novos : actualizados).add(item);
+        }
+
+        itemLoteRepo.remover(idCarrinho, removidos);
+        itemLoteRepo.atualizar(actualizados);
+        itemLoteRepo.inserir(idCarrinho, novos);
+
+        carrinho.getItens().clear();
+        carrinho.getItens().addAll(linhas.values());
+
+        log.info("🛒 [LOTE] Carrinho {} | {} operações | {} inseridos | {} actualizados | {} removidos",
+                idCarrinho, operacoes.size(), novos.size(), actualizados.size(), removidos.size());
+
+        // Regra 4: se ficou sem itens, elimina o carrinho
+        boolean eliminado = linhas.isEmpty();
+        if (eliminado) {
+            carrinhoRepo.deleteById(idCarrinho);
+        }
+        return new Alteracao(carrinho, eliminado ? null : versao, alterados, List.copyOf(removidos), eliminado);
     }
 
     @Transactional
@@ -244,9 +445,21 @@ public PedidoResponseDTO converterEmPedido(Integer idCarrinho, PedidoRequestDTO
         carrinho.getSessionId());
 
     validarCarrinhoActivo(carrinho);
+    versaoRepo.avancar(idCarrinho);
     log.info("✅ [CONVERTER] Carrinho activo confirmado");
 
-    // Recarrega os itens via JOIN FETCH (findByIdWithLock não os traz)
+    // Bloqueia os produtos do carrinho por ordem de ID num só SELECT ... FOR UPDATE,
+    // antes de os ler: preços e estoque ficam estáveis até ao commit, e a reserva
+    // abaixo já não os volta a bloquear.
+    // Com o livro de estoque activo não há lock de linha (é esse o objectivo do livro).
+    boolean produtosBloqueados = !estoqueService.livroActivo();
+    if (produtosBloqueados) {
+        List<Produto> bloqueados = carrinhoRepo.bloquearProdutosDoCarrinho(idCarrinho);
+        log.info("🔒 [CONVERTER] {} produtos bloqueados", bloqueados.size());
+    }
+
+    // Recarrega os itens via JOIN FETCH (findByIdWithLock não os traz);
+    // os produtos já estão no contexto de persistência
     carrinho = carrinhoRepo.findByIdWithItens(idCarrinho)
             .orElseThrow(() -> {
                 log.error("❌ [CONVERTER] Carrinho {} não encontrado (JOIN FETCH)", idCarrinho);
@@ -260,46 +473,45 @@ public PedidoResponseDTO converterEmPedido(Integer idCarrinho, PedidoRequestDTO
         throw new CarrinhoVazioException(idCarrinho);
     }
 
-    // Valida estoque e desconta usando o método existente no ProdutoRepository
+    // Desconta o estoque de todos os itens num só UPDATE condicional:
+    // ou há estoque para tudo, ou nada é descontado
+    Map<Integer, Integer> quantidades = new LinkedHashMap<>();
+    Map<Integer, Produto> produtos = new LinkedHashMap<>();
     for (ItemCarrinho itemCarrinho : carrinho.getItens()) {
-        Integer idProduto = itemCarrinho.getProduto().getIdProduto();
+        Produto produto = itemCarrinho.getProduto();
+        quantidades.merge(produto.getIdProduto(), itemCarrinho.getQuantidade(), Integer::sum);
+        produtos.putIfAbsent(produto.getIdProduto(), produto);
+    }
 
-        Produto produto = produtoRepo.findById(idProduto).orElseThrow(() -> {
-            log.error("❌ [CONVERTER] Produto {} não encontrado", idProduto);
-            return new EntityNotFoundException("Produto não encontrado: " + idProduto);
-        });
+    EstoqueService.ResultadoReserva reserva = estoqueService.reservar(quantidades,
+            EstoqueService.Origem.doCarrinho(idCarrinho, pedidoReq.getIdUsuario()), produtosBloqueados);
 
-        log.info("🔍 [CONVERTER] Produto={} | nomeProduto={} | estoqueDisponivel={} | quantidadeSolicitada={}",
+    if (!reserva.sucesso()) {
+        Map.Entry<Integer, Integer> falha = reserva.insuficientes().entrySet().iterator().next();
+        Integer idProduto = falha.getKey();
+        log.warn("⚠️ [CONVERTER] Estoque insuficiente | produto={} | disponivel={} | solicitado={}",
             idProduto,
-            produto.getNomeProduto(),
-            produto.getQuantidadeEstoque(),
-            itemCarrinho.getQuantidade());
-
-        if (produto.getQuantidadeEstoque() < itemCarrinho.getQuantidade()) {
-            log.warn("⚠️ [CONVERTER] Estoque insuficiente | produto={} | disponivel={} | solicitado={}",
+            falha.getValue(),
+            quantidades.get(idProduto));
+        throw new EstoqueInsuficienteException(
                 idProduto,
-                produto.getQuantidadeEstoque(),
-                itemCarrinho.getQuantidade());
-            throw new EstoqueInsuficienteException(
-                    idProduto,
-                    produto.getNomeProduto(),
-                    produto.getQuantidadeEstoque(),
-                    itemCarrinho.getQuantidade()
-            );
-        }
-
-        // Usa o método existente no ProdutoRepository para descontar o estoque
-        produtoRepo.ajustarEstoque(idProduto, -itemCarrinho.getQuantidade());
-        log.info("📉 [CONVERTER] Estoque ajustado | produto={} | delta={} | novoEstoque={}",
-            idProduto,
-            -itemCarrinho.getQuantidade(),
-            produto.getQuantidadeEstoque() - itemCarrinho.getQuantidade());
+                produtos.get(idProduto).getNomeProduto(),
+                falha.getValue(),
+                quantidades.get(idProduto)
+        );
     }
 
+    reserva.estoqueFinal().forEach((id, qtd) -> estoqueService.actualizarEmMemoria(produtos.get(id), qtd));
+    log.info("📉 [CONVERTER] Estoque descontado | {} produtos | novoEstoque={}",
+        quantidades.size(),
+        reserva.estoqueFinal());
+
     log.info("🚀 [CONVERTER] Delegando criação do pedido ao PedidoService...");
 
     // Delega criação do pedido ao PedidoService (que conhece as suas próprias regras)
     PedidoResponseDTO pedidoDTO = pedidoService.criarPedidoAPartirDoCarrinho(pedidoReq, carrinho);
+    // Os movimentos do desconto acima ficam ligados ao pedido antes do commit
+    estoqueService.associarAoPedido(pedidoDTO.getIdPedido());
 
     log.info("✅ [CONVERTER] Pedido criado | idPedido={} | reference={}",
         pedidoDTO.getIdPedido(),
@@ -325,7 +537,7 @@ public PedidoResponseDTO converterEmPedido(Integer idCarrinho, PedidoRequestDTO
 
         // Sem carrinho guest: devolve ou cria o carrinho do utilizador
         if (guestOpt.isEmpty()) {
-            return carrinhoRepo.findByIdUsuarioAndStatus(idUsuario, "activo")
+            return carrinhoRepo.findByIdUsuarioAndStatusWithItens(idUsuario, "activo")
                     .map(this::toDTO)
                     .orElseGet(() -> criarCarrinho(idUsuario, null));
         }
@@ -338,10 +550,12 @@ public PedidoResponseDTO converterEmPedido(Integer idCarrinho, PedidoRequestDTO
         if (userCartOpt.isEmpty()) {
             guest.setIdUsuario(idUsuario);
             guest.setSessionId(null);
-            return toDTO(carrinhoRepo.save(guest));
+            Long versao = versaoRepo.avancar(guest.getIdCarrinho());
+            return toDTO(carrinhoRepo.save(guest), versao);
         }
 
         Carrinho userCart = userCartOpt.get();
+        Long versao = versaoRepo.avancar(userCart.getIdCarrinho());
 
         // Ambos existem: mescla itens
         for (ItemCarrinho guestItem : guest.getItens()) {
@@ -379,13 +593,42 @@ public PedidoResponseDTO converterEmPedido(Integer idCarrinho, PedidoRequestDTO
         }
 
         carrinhoRepo.delete(guest);
-        return toDTO(carrinhoRepo.save(userCart));
+        return toDTO(carrinhoRepo.save(userCart), versao);
     }
 
     // ─────────────────────────────────────────────────────────────────────────
     // Helpers privados
     // ─────────────────────────────────────────────────────────────────────────
 
+    /**
+     * Resultado de uma alteração: o carrinho (itens em memória), a nova versão
+     * e o que mudou, para a resposta completa ou em delta.
+     */
+    private record Alteracao(Carrinho carrinho, Long versao, Set<Integer> produtosAlterados,
+                             List<Integer> produtosRemovidos, boolean carrinhoEliminado) {}
+
+    /**
+     * Avança a versão antes de ler os itens: com versaoCliente, só se o
+     * carrinho ainda estiver nela (senão 409); sem ela (pedidos sem
+     * X-Cart-Version), incondicionalmente — para que os clientes em modo
+     * delta detectem a alteração. O UPDATE bloqueia a linha do carrinho até
+     * ao commit, por isso os itens lidos a seguir são os desta versão.
+     * Sem a coluna carrinho.versao não há versão (null).
+     */
+    private Long avancarVersao(Integer idCarrinho, Long versaoCliente) {
+        if (!versaoRepo.activa()) return null;
+        Long versao = versaoCliente == null
+                ? versaoRepo.avancar(idCarrinho)
+                : versaoRepo.avancarSe(idCarrinho, versaoCliente);
+        if (versao != null) return versao;
+
+        Long actual = versaoRepo.ler(idCarrinho);
+        if (actual == null) throw new CarrinhoNotFoundException(idCarrinho);
+        log.info("🔁 [CARRINHO] Versão desactualizada | idCarrinho={} | enviada={} | actual={}",
+                idCarrinho, versaoCliente, actual);
+        throw new CarrinhoVersaoConflitoException(idCarrinho, versaoCliente, actual);
+    }
+
     private void validarCarrinhoActivo(Carrinho carrinho) {
         if ("convertido".equalsIgnoreCase(carrinho.getStatus())) {
             throw new CarrinhoJaConvertidoException(carrinho.getIdCarrinho());
@@ -413,12 +656,23 @@ public PedidoResponseDTO converterEmPedido(Integer idCarrinho, PedidoRequestDTO
     // Mapeamento Entidade → DTO
     // ─────────────────────────────────────────────────────────────────────────
 
+  /**
+   * As imagens principais de todas as linhas são resolvidas de uma vez
+   * (cache do catálogo + um só IN para as que faltam): o custo não cresce
+   * com o número de itens. Os itens e produtos devem vir já carregados
+   * (findBy...WithItens), senão cada linha dispara o seu lazy load.
+   */
   public CarrinhoDTO toDTOPublic(Carrinho carrinho) {
-    List<ItemCarrinhoDTO> itensDTO = carrinho.getItens() == null
-            ? new ArrayList<>()
-            : carrinho.getItens().stream()
-                      .map(this::toItemDTO)
-                      .collect(Collectors.toList());
+    return toDTO(carrinho, versaoRepo.ler(carrinho.getIdCarrinho()));
+}
+
+private CarrinhoDTO toDTO(Carrinho carrinho, Long versao) {
+    List<ItemCarrinho> itens = carrinho.getItens() == null ? List.of() : carrinho.getItens();
+    Map<Integer, String> imagens = imagensPrincipais(itens);
+
+    List<ItemCarrinhoDTO> itensDTO = itens.stream()
+            .map(item -> toItemDTO(item, imagens.get(item.getProduto().getIdProduto())))
+            .collect(Collectors.toList());
 
     BigDecimal total = itensDTO.stream()
             .map(ItemCarrinhoDTO::getSubtotal)
@@ -431,7 +685,8 @@ public PedidoResponseDTO converterEmPedido(Integer idCarrinho, PedidoRequestDTO
             carrinho.getStatus(),
             carrinho.getDataCriacao(),
             itensDTO,
-            total
+            total,
+            versao
     );
 }
 
@@ -439,15 +694,54 @@ public PedidoResponseDTO converterEmPedido(Integer idCarrinho, PedidoRequestDTO
 private CarrinhoDTO toDTO(Carrinho carrinho) {
     return toDTOPublic(carrinho);
 }
-    private ItemCarrinhoDTO toItemDTO(ItemCarrinho item) {
-        Produto p = item.getProduto();
+/**
+ * Só as linhas alteradas são mapeadas (e só as suas imagens resolvidas);
+ * o total soma os subtotais já em memória.
+ */
+private CarrinhoDeltaDTO toDeltaDTO(Alteracao alteracao) {
+    Carrinho carrinho = alteracao.carrinho();
+    List<ItemCarrinho> itens = alteracao.carrinhoEliminado() || carrinho.getItens() == null
+            ? List.of()
+            : carrinho.getItens();
+
+    List<ItemCarrinho> alterados = itens.stream()
+            .filter(i -> alteracao.produtosAlterados().contains(i.getProduto().getIdProduto()))
+            .toList();
+    Map<Integer, String> imagens = imagensPrincipais(alterados);
+
+    BigDecimal total = itens.stream()
+            .map(ItemCarrinho::getSubtotal)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-        // Busca a imagem principal directamente via repository —
-        // usa o método já existente no ProdutoImagemRepository.
-        String imagemPrincipal = produtoImagemRepo
-                .findByIdProdutoAndImagemPrincipal(p.getIdProduto(), (short) 1)
-                .map(img -> img.getCaminhoImagem())
-                .orElse(null);
+    return new CarrinhoDeltaDTO(
+            carrinho.getIdCarrinho(),
+            alteracao.versao(),
+            alterados.stream()
+                     .map(item -> toItemDTO(item, imagens.get(item.getProduto().getIdProduto())))
+                     .collect(Collectors.toList()),
+            alteracao.produtosRemovidos(),
+            itens.size(),
+            total,
+            alteracao.carrinhoEliminado()
+    );
+}
+
+    private Map<Integer, String> imagensPrincipais(List<ItemCarrinho> itens) {
+        if (itens.isEmpty()) return Map.of();
+        Set<Integer> ids = new LinkedHashSet<>();
+        itens.forEach(i -> ids.add(i.getProduto().getIdProduto()));
+
+        return catalogoCache.obterImagensPrincipais(ids, emFalta -> {
+            Map<Integer, String> lidas = new HashMap<>();
+            for (ProdutoImagem img : produtoImagemRepo.findByIdProdutoInAndImagemPrincipal(emFalta, (short) 1)) {
+                lidas.putIfAbsent(img.getIdProduto(), img.getCaminhoImagem());
+            }
+            return lidas;
+        });
+    }
+
+    private ItemCarrinhoDTO toItemDTO(ItemCarrinho item, String imagemPrincipal) {
+        Produto p = item.getProduto();
 
         return new ItemCarrinhoDTO(
                 item.getIdItemCarrinho(),
@@ -469,11 +763,12 @@ public CarrinhoDTO associarCarrinhoAoUsuario(String sessionId, Integer idUsuario
     }
 
     // Caso contrário, associa directamente o carrinho guest ao utilizador
-    return carrinhoRepo.findBySessionIdAndStatus(sessionId, "activo")
+    return carrinhoRepo.findBySessionIdAndStatusWithItens(sessionId, "activo")
             .map(c -> {
                 c.setIdUsuario(idUsuario);
                 c.setSessionId(null);
-                return toDTOPublic(carrinhoRepo.save(c));
+                Long versao = versaoRepo.avancar(c.getIdCarrinho());
+                return toDTO(carrinhoRepo.save(c), versao);
             })
             .orElse(null);
 }
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,6 +18,9 @@ public interface ProdutoCategoriaRepository extends JpaRepository<ProdutoCategor
     
     List<ProdutoCategoria> findByIdProduto(Integer idProduto);
     
+    // Carga em lote das associações de vários produtos (uma única query com IN)
+    List<ProdutoCategoria> findByIdProdutoIn(Collection<Integer> idsProduto);
+    
     @Modifying
     @Query("DELETE FROM ProdutoCategoria pc WHERE pc.idCategoria = :idCategoria AND pc.idProduto = :idProduto")
     void deleteByIdCategoriaAndIdProduto(@Param("idCategoria") Integer idCategoria, @Param("idProduto") Integer idProduto);
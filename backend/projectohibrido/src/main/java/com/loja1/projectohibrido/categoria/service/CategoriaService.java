@@ -8,6 +8,9 @@ import com.loja1.projectohibrido.categoria.entity.ProdutoCategoria;
 import com.loja1.projectohibrido.categoria.repository.CategoriaMarcaRepository;
 import com.loja1.projectohibrido.categoria.repository.CategoriaRepository;
 import com.loja1.projectohibrido.categoria.repository.ProdutoCategoriaRepository;
+import com.loja1.projectohibrido.dashboard.cache.DashboardCache;
+import com.loja1.projectohibrido.produto.busca.IndiceBuscaProduto;
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -24,6 +27,9 @@ public class CategoriaService {
     private final CategoriaRepository categoriaRepository;
     private final ProdutoCategoriaRepository produtoCategoriaRepository;
     private final CategoriaMarcaRepository categoriaMarcaRepository;
+    private final CatalogoCache catalogoCache;
+    private final IndiceBuscaProduto indiceBuscaProduto;
+    private final DashboardCache dashboardCache;
     
     // ===== CRUD BÁSICO =====
     
@@ -52,6 +58,9 @@ public class CategoriaService {
         categoria.setDescricao(dto.getDescricao());
         
         Categoria categoriaAtualizada = categoriaRepository.save(categoria);
+        catalogoCache.invalidarMarcas(); // nome da categoria aparece em marcas com categorias
+        dashboardCache.invalidarCategoria(id);
+        indiceBuscaProduto.actualizarCategoriaAposCommit(id);
         log.info("Categoria atualizada: {}", categoriaAtualizada.getIdCategoria());
         
         return mapToResponseDTO(categoriaAtualizada);
@@ -66,6 +75,11 @@ public class CategoriaService {
         }
         
         categoriaRepository.deleteById(id);
+        // As associações com produtos e marcas caem com a categoria
+        catalogoCache.invalidarProdutos();
+        catalogoCache.invalidarMarcas();
+        dashboardCache.invalidarCategoria(id);
+        indiceBuscaProduto.actualizarCategoriaAposCommit(id);
         log.info("Categoria deletada com sucesso: {}", id);
     }
     
@@ -106,6 +120,9 @@ public class CategoriaService {
         pc.setIdCategoria(idCategoria);
         pc.setIdProduto(idProduto);
         produtoCategoriaRepository.save(pc);
+        catalogoCache.invalidarProduto(idProduto);
+        dashboardCache.invalidarProdutos(List.of(idProduto));
+        indiceBuscaProduto.reindexarAposCommit(idProduto);
         
         log.info("Produto {} associado à categoria {} com sucesso", idProduto, idCategoria);
     }
@@ -114,6 +131,9 @@ public class CategoriaService {
     public void desassociarProduto(Integer idCategoria, Integer idProduto) {
         log.info("Desassociando produto {} da categoria {}", idProduto, idCategoria);
         produtoCategoriaRepository.deleteByIdCategoriaAndIdProduto(idCategoria, idProduto);
+        catalogoCache.invalidarProduto(idProduto);
+        dashboardCache.invalidarProdutos(List.of(idProduto));
+        indiceBuscaProduto.reindexarAposCommit(idProduto);
         log.info("Produto {} desassociado da categoria {} com sucesso", idProduto, idCategoria);
     }
     
@@ -156,6 +176,7 @@ public class CategoriaService {
         cm.setIdCategoria(idCategoria);
         cm.setIdMarca(idMarca);
         categoriaMarcaRepository.save(cm);
+        catalogoCache.invalidarMarcas();
         
         log.info("Marca {} associada à categoria {} com sucesso", idMarca, idCategoria);
     }
@@ -164,6 +185,7 @@ public class CategoriaService {
     public void desassociarMarca(Integer idCategoria, Integer idMarca) {
         log.info("Desassociando marca {} da categoria {}", idMarca, idCategoria);
         categoriaMarcaRepository.deleteByIdCategoriaAndIdMarca(idCategoria, idMarca);
+        catalogoCache.invalidarMarcas();
         log.info("Marca {} desassociada da categoria {} com sucesso", idMarca, idCategoria);
     }
     
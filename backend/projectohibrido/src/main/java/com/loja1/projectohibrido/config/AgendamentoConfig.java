@@ -0,0 +1,12 @@
+package com.loja1.projectohibrido.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Activa as tarefas @Scheduled (ex.: gravação periódica do livro de estoque).
+ */
+@Configuration
+@EnableScheduling
+public class AgendamentoConfig {
+}
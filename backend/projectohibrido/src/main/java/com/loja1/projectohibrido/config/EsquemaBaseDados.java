@@ -0,0 +1,33 @@
+package com.loja1.projectohibrido.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consulta ao schema para as funcionalidades que dependem dos scripts manuais
+ * de src/main/resources/db (ddl-auto=validate não os verifica, porque as
+ * colunas novas só são usadas por JDBC). Quem depende de uma coluna ainda não
+ * criada mantém o comportamento anterior em vez de falhar com erro 500.
+ *
+ * A resposta fica em memória: depois de correr o script é preciso reiniciar.
+ */
+@Component
+@RequiredArgsConstructor
+public class EsquemaBaseDados {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Boolean> colunas = new ConcurrentHashMap<>();
+
+    /** true se {@code tabela.coluna} existe no schema corrente. */
+    public boolean temColuna(String tabela, String coluna) {
+        return colunas.computeIfAbsent(tabela + "." + coluna, chave -> Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM information_schema.columns
+                                WHERE table_schema = current_schema()
+                                  AND table_name = ? AND column_name = ?)
+                """, Boolean.class, tabela, coluna)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.loja1.projectohibrido.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Ligação SSE com envio próprio: os eventos entram numa fila limitada e são
+ * enviados por ordem numa virtual thread só desta ligação, criada quando há
+ * o que enviar. Quem publica nunca espera pelo cliente, e um cliente lento só
+ * se atrasa a si próprio; se deixar encher a fila é desligado.
+ *
+ * Os eventos podem ser construídos só no momento do envio (Supplier), para
+ * enviar o estado mais recente em vez do que havia quando foram publicados.
+ */
+@Slf4j
+public class LigacaoSse {
+
+    private final SseEmitter emitter;
+    private final BlockingQueue<Supplier<SseEmitter.SseEventBuilder>> fila;
+    private final Runnable aposEnvio;
+    private final Runnable aoFechar;
+
+    private final AtomicBoolean aEnviar = new AtomicBoolean();
+    private final AtomicBoolean fechada = new AtomicBoolean();
+
+    /**
+     * @param aposEnvio chamado a cada evento entregue (estatísticas)
+     * @param aoFechar  chamado uma vez quando a ligação termina, por qualquer
+     *                  motivo (cliente saiu, timeout, erro ou fila cheia)
+     */
+    public LigacaoSse(SseEmitter emitter, int capacidadeFila, Runnable aposEnvio, Runnable aoFechar) {
+        this.emitter = emitter;
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.aposEnvio = aposEnvio;
+        this.aoFechar = aoFechar;
+        emitter.onCompletion(this::terminada);
+        emitter.onTimeout(this::terminada);
+        emitter.onError(e -> terminada());
+    }
+
+    public SseEmitter emitter() {
+        return emitter;
+    }
+
+    public boolean aberta() {
+        return !fechada.get();
+    }
+
+    /**
+     * Põe o evento na fila da ligação; false se ela já está fechada ou ficou
+     * cheia. O Supplier deve criar um builder novo a cada chamada (o builder
+     * do SseEmitter não pode ser partilhado entre ligações).
+     */
+    public boolean enviar(Supplier<SseEmitter.SseEventBuilder> evento) {
+        if (fechada.get()) return false;
+        if (!fila.offer(evento)) {
+            falhar(new IOException("Cliente SSE lento: " + fila.size() + " evento(s) por enviar"));
+            return false;
+        }
+        if (aEnviar.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("sse").start(this::drenar);
+        }
+        return true;
+    }
+
+    /** Fecha a ligação do lado do servidor (ex.: paragem, excesso de ligações). */
+    public void fechar() {
+        if (terminada()) {
+            emitter.complete();
+        }
+    }
+
+    private void drenar() {
+        do {
+            Supplier<SseEmitter.SseEventBuilder> evento;
+            while (!fechada.get() && (evento = fila.poll()) != null) {
+                try {
+                    emitter.send(evento.get());
+                    aposEnvio.run();
+                } catch (IOException | IllegalStateException e) {
+                    falhar(e);
+                } catch (RuntimeException e) {
+                    // Falha a construir o evento (ex.: consulta): os seguintes continuam
+                    log.warn("Evento SSE não enviado: {}", e.getMessage());
+                }
+            }
+            aEnviar.set(false);
+            // Um evento pode ter entrado entre o último poll e o set(false)
+        } while (!fechada.get() && !fila.isEmpty() && aEnviar.compareAndSet(false, true));
+    }
+
+    private void falhar(Exception e) {
+        if (terminada()) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /** Marca a ligação como fechada; true só na primeira vez. */
+    private boolean terminada() {
+        if (!fechada.compareAndSet(false, true)) return false;
+        fila.clear();
+        aoFechar.run();
+        return true;
+    }
+}
@@ -0,0 +1,169 @@
+package com.loja1.projectohibrido.dashboard.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Cache do dashboard partido por dia.
+ *
+ * Só guarda dias já fechados (anteriores a hoje), sem TTL: um dia fechado só
+ * muda se um pedido desse dia for cancelado, editado ou finalizado, e nesse
+ * caso o PedidoService invalida o dia. O dia de hoje é sempre lido dos resumos.
+ *
+ * Cada dia guarda também nomes e associações do catálogo à data do
+ * carregamento; renomear ou apagar uma categoria/marca e renomear ou
+ * reassociar um produto invalida os dias em que aparecem.
+ *
+ * Guarda no máximo os últimos dashboard.cache.dias-maximo dias: dias mais
+ * antigos são servidos sem entrar na cache.
+ */
+@Component
+@Slf4j
+public class DashboardCache {
+
+    private final ConcurrentSkipListMap<LocalDate, ResumoDia> dias = new ConcurrentSkipListMap<>();
+    private final int diasMaximo;
+    // Incrementada a cada invalidação: um carregamento que a atravesse não é guardado
+    private long geracao = 0;
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final LongAdder invalidacoes = new LongAdder();
+
+    public DashboardCache(@Value("${dashboard.cache.dias-maximo:1100}") int diasMaximo) {
+        this.diasMaximo = diasMaximo;
+        log.info("Cache do dashboard: até {} dias fechados", diasMaximo);
+    }
+
+    // ===== LEITURA =====
+
+    /**
+     * Dias de {@code de} a {@code ate} (inclusive), por ordem. Os que faltam
+     * são carregados de uma vez pelo intervalo do primeiro ao último em falta.
+     *
+     * @param carregador (de, ate) → resumos dos dias com vendas nesse intervalo
+     */
+    public List<ResumoDia> obterDiasFechados(LocalDate de, LocalDate ate,
+                                             BiFunction<LocalDate, LocalDate, Map<LocalDate, ResumoDia>> carregador) {
+        if (de.isAfter(ate)) return List.of();
+
+        long geracaoLida;
+        synchronized (this) {
+            geracaoLida = geracao;
+        }
+        List<LocalDate> periodo = de.datesUntil(ate.plusDays(1)).toList();
+        List<LocalDate> emFalta = periodo.stream().filter(d -> !dias.containsKey(d)).toList();
+        acertos.add(periodo.size() - emFalta.size());
+        falhas.add(emFalta.size());
+
+        Map<LocalDate, ResumoDia> carregados = emFalta.isEmpty()
+                ? Map.of()
+                : carregador.apply(emFalta.get(0), emFalta.get(emFalta.size() - 1));
+
+        List<ResumoDia> resultado = new ArrayList<>(periodo.size());
+        synchronized (this) {
+            // Dias fechados guardáveis: [hoje - diasMaximo, ontem]; os que
+            // saíram da janela com a mudança de dia são descartados
+            LocalDate primeiroGuardado = LocalDate.now().minusDays(diasMaximo);
+            dias.headMap(primeiroGuardado).clear();
+            for (LocalDate dia : periodo) {
+                ResumoDia resumo = dias.get(dia);
+                if (resumo == null) {
+                    resumo = carregados.getOrDefault(dia, ResumoDia.vazio(dia));
+                    if (geracaoLida == geracao && !dia.isBefore(primeiroGuardado)) dias.put(dia, resumo);
+                }
+                resultado.add(resumo);
+            }
+        }
+        return resultado;
+    }
+
+    // ===== INVALIDAÇÃO =====
+
+    /** Pedido do dia alterado; repetido após o commit (ver CatalogoCache). */
+    public void invalidarDia(LocalDate dia) {
+        executarAgoraEAposCommit(() -> {
+            synchronized (this) {
+                geracao++;
+                if (dias.remove(dia) != null) invalidacoes.increment();
+            }
+        });
+    }
+
+    /** Produtos renomeados ou reassociados: os dias em que foram vendidos. */
+    public void invalidarProdutos(Collection<Integer> idsProdutos) {
+        invalidarDiasCom(d -> idsProdutos.stream().anyMatch(d.produtos()::containsKey));
+    }
+
+    /** Categoria renomeada ou apagada. */
+    public void invalidarCategoria(Integer idCategoria) {
+        invalidarDiasCom(d -> d.categorias().containsKey(idCategoria));
+    }
+
+    /** Marca renomeada ou apagada. */
+    public void invalidarMarca(Integer idMarca) {
+        invalidarDiasCom(d -> d.marcas().containsKey(idMarca));
+    }
+
+    private void invalidarDiasCom(Predicate<ResumoDia> condicao) {
+        executarAgoraEAposCommit(() -> {
+            synchronized (this) {
+                geracao++;
+                dias.values().removeIf(d -> {
+                    boolean sai = condicao.test(d);
+                    if (sai) invalidacoes.increment();
+                    return sai;
+                });
+            }
+        });
+    }
+
+    public void invalidarTudo() {
+        executarAgoraEAposCommit(() -> {
+            synchronized (this) {
+                geracao++;
+                invalidacoes.add(dias.size());
+                dias.clear();
+            }
+        });
+    }
+
+    private void executarAgoraEAposCommit(Runnable invalidacao) {
+        invalidacao.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidacao.run();
+                }
+            });
+        }
+    }
+
+    // ===== ESTATÍSTICAS =====
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dias", dias.size());
+        stats.put("diasMaximo", diasMaximo);
+        stats.put("primeiroDia", dias.isEmpty() ? null : dias.firstKey());
+        stats.put("acertos", acertos.sum());
+        stats.put("falhas", falhas.sum());
+        stats.put("invalidacoes", invalidacoes.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,37 @@
+package com.loja1.projectohibrido.dashboard.cache;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Vendas de um dia, já agregadas por produto, categoria, marca e utilizador
+ * (com os nomes à data do carregamento). Somando dias obtém-se qualquer
+ * período do dashboard.
+ */
+public record ResumoDia(
+        LocalDate dia,
+        Map<Integer, VendaProduto> produtos,
+        Map<Integer, VendaGrupo> categorias,
+        Map<Integer, VendaGrupo> marcas,
+        Map<Integer, VendaUsuario> usuarios) {
+
+    public record VendaProduto(String nome, long quantidade, BigDecimal receita, long pedidos) {}
+
+    public record VendaGrupo(String nome, BigDecimal receita, long pedidos) {}
+
+    /** @param nomeCompleto null se o utilizador já não existir */
+    public record VendaUsuario(String nomeCompleto, long pedidos, BigDecimal receita) {}
+
+    public static ResumoDia vazio(LocalDate dia) {
+        return new ResumoDia(dia, Map.of(), Map.of(), Map.of(), Map.of());
+    }
+
+    public long pedidos() {
+        return usuarios.values().stream().mapToLong(VendaUsuario::pedidos).sum();
+    }
+
+    public BigDecimal receita() {
+        return usuarios.values().stream().map(VendaUsuario::receita).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -2,14 +2,20 @@ package com.loja1.projectohibrido.dashboard.controller;
 
 import com.loja1.projectohibrido.dashboard.dto.*;
 import com.loja1.projectohibrido.dashboard.service.DashboardService;
+import com.loja1.projectohibrido.dashboard.service.ExportacaoVendasService;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/dashboard")
@@ -17,11 +23,19 @@ import java.util.List;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final ExportacaoVendasService exportacaoVendasService;
 
     private LocalDateTime parseData(String dataInicio) {
         return LocalDateTime.parse(dataInicio, DateTimeFormatter.ISO_DATE_TIME);
     }
 
+    /** Todas as secções do dashboard numa só chamada. */
+    @GetMapping("/resumo")
+    public ResponseEntity<DashboardResumoDTO> resumo(
+            @RequestParam String dataInicio) {
+        return ResponseEntity.ok(dashboardService.getResumo(parseData(dataInicio)));
+    }
+
     @GetMapping("/evolucao-vendas")
     public ResponseEntity<List<EvolucaoVendasDTO>> evolucaoVendas(
             @RequestParam String dataInicio) {
@@ -46,6 +60,25 @@ public class DashboardController {
         return ResponseEntity.ok(dashboardService.getTop5Produtos(parseData(dataInicio)));
     }
 
+    /**
+     * Ranking de produtos. metrica: quantidade (padrão), receita ou pedidos;
+     * limite: 10 por omissão, no máximo 100.
+     */
+    @GetMapping("/ranking-produtos")
+    public ResponseEntity<List<ProdutoRankingDTO>> rankingProdutos(
+            @RequestParam String dataInicio,
+            @RequestParam(required = false) String dataFim,
+            @RequestParam(required = false) String metrica,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) Integer idCategoria,
+            @RequestParam(required = false) Integer idMarca,
+            @RequestParam(required = false) Integer idOrigem) {
+        return ResponseEntity.ok(dashboardService.getRankingProdutos(
+                parseData(dataInicio),
+                dataFim != null ? parseData(dataFim) : null,
+                metrica, limite, idCategoria, idMarca, idOrigem));
+    }
+
     @GetMapping("/produtos-nao-vendidos")
     public ResponseEntity<List<ProdutoNaoVendidoDTO>> produtosNaoVendidos(
             @RequestParam String dataInicio) {
@@ -57,4 +90,38 @@ public class DashboardController {
             @RequestParam String dataInicio) {
         return ResponseEntity.ok(dashboardService.getDesempenhoUsuarios(parseData(dataInicio)));
     }
+
+    /**
+     * Pedidos e itens do período em CSV ou XLSX (uma linha por item),
+     * escritos em streaming à medida que são lidos.
+     */
+    @GetMapping("/exportacao/vendas")
+    public ResponseEntity<StreamingResponseBody> exportarVendas(
+            @RequestParam String dataInicio,
+            @RequestParam(required = false) String dataFim,
+            @RequestParam(required = false) String formato,
+            @RequestParam(required = false) String status) {
+        ExportacaoVendasService.Exportacao exportacao = exportacaoVendasService.exportarVendas(
+                parseData(dataInicio),
+                dataFim != null ? parseData(dataFim) : null,
+                formato, status);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(exportacao.nomeFicheiro()).build().toString())
+                .contentType(MediaType.parseMediaType(exportacao.tipoConteudo()))
+                .body(exportacao.corpo());
+    }
+
+    /** Recalcula os resumos diários de vendas a partir dos pedidos. */
+    @PostMapping("/resumos/reconstruir")
+    public ResponseEntity<Void> reconstruirResumos() {
+        dashboardService.reconstruirResumos();
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/cache/estatisticas")
+    public ResponseEntity<Map<String, Object>> estatisticasCache() {
+        return ResponseEntity.ok(dashboardService.estatisticasCache());
+    }
 }
\ No newline at end of file
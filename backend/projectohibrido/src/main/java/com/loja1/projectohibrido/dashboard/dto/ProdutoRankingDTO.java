@@ -0,0 +1,15 @@
+package com.loja1.projectohibrido.dashboard.dto;
+
+import java.math.BigDecimal;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+
+/** Linha do ranking de produtos. */
+public record ProdutoRankingDTO(
+    @JsonProperty("posicao")            Integer posicao,
+    @JsonProperty("id_produto")         Integer idProduto,
+    @JsonProperty("nome_produto")       String nomeProduto,
+    @JsonProperty("quantidade_vendida") Long quantidadeVendida,
+    @JsonProperty("receita_total")      BigDecimal receitaTotal,
+    @JsonProperty("num_pedidos")        Long numPedidos
+) {}
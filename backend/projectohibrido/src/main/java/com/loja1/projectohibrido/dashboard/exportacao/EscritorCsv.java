@@ -0,0 +1,77 @@
+package com.loja1.projectohibrido.dashboard.exportacao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * CSV em UTF-8 com BOM e separador ';' (o Excel em português abre-o
+ * directamente). Decimais com ponto, datas em yyyy-MM-dd HH:mm:ss.
+ *
+ * Texto começado por =, +, -, @, tab ou CR leva um apóstrofo à frente; senão
+ * o Excel trata-o como fórmula (nomes e moradas vêm dos clientes).
+ */
+public class EscritorCsv implements EscritorTabela {
+
+    private static final char SEPARADOR = ';';
+    private static final DateTimeFormatter DATA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Writer saida;
+
+    public EscritorCsv(OutputStream destino, List<String> cabecalho) throws IOException {
+        this.saida = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8), 64 * 1024);
+        saida.write("\uFEFF");   // BOM
+        escreverLinha(cabecalho.toArray());
+    }
+
+    @Override
+    public void linha(Object... valores) throws IOException {
+        escreverLinha(valores);
+    }
+
+    private void escreverLinha(Object[] valores) throws IOException {
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) saida.write(SEPARADOR);
+            escreverCampo(valores[i]);
+        }
+        saida.write("\r\n");
+    }
+
+    private void escreverCampo(Object valor) throws IOException {
+        if (valor == null) return;
+        String texto = switch (valor) {
+            case BigDecimal decimal -> decimal.toPlainString();
+            case Number numero -> numero.toString();
+            case LocalDateTime data -> data.format(DATA);
+            default -> semFormula(valor.toString());
+        };
+        if (texto.indexOf(SEPARADOR) < 0 && texto.indexOf('"') < 0
+                && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            saida.write(texto);
+            return;
+        }
+        saida.write('"');
+        saida.write(texto.replace("\"", "\"\""));
+        saida.write('"');
+    }
+
+    private static String semFormula(String texto) {
+        if (texto.isEmpty()) return texto;
+        return switch (texto.charAt(0)) {
+            case '=', '+', '-', '@', '\t', '\r' -> "'" + texto;
+            default -> texto;
+        };
+    }
+
+    @Override
+    public void terminar() throws IOException {
+        saida.flush();
+    }
+}
@@ -0,0 +1,21 @@
+package com.loja1.projectohibrido.dashboard.exportacao;
+
+import java.io.IOException;
+
+/**
+ * Escreve uma tabela linha a linha directamente para o destino, sem guardar
+ * linhas em memória.
+ *
+ * terminar() completa o ficheiro mas não fecha o stream de saída (é da
+ * resposta HTTP). Se a leitura falhar a meio não se chama terminar(): o
+ * ficheiro fica incompleto (XLSX sem directório do ZIP, CSV cortado) em vez
+ * de parecer uma exportação válida com menos linhas.
+ *
+ * Valores aceites: String, Number, LocalDateTime e null (célula vazia).
+ */
+public interface EscritorTabela {
+
+    void linha(Object... valores) throws IOException;
+
+    void terminar() throws IOException;
+}
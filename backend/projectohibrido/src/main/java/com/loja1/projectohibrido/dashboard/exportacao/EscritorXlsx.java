@@ -0,0 +1,165 @@
+package com.loja1.projectohibrido.dashboard.exportacao;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * XLSX escrito em streaming, sem dependências: o ficheiro é um ZIP com
+ * SpreadsheetML e cada linha vai directamente para a entrada da folha
+ * (texto em inlineStr, sem tabela de strings partilhadas).
+ *
+ * Uma folha tem no máximo 1 048 576 linhas; acima disso abre-se a folha
+ * seguinte, com o mesmo cabeçalho. O workbook, que lista as folhas, é
+ * escrito no fim.
+ *
+ * Texto vai sempre como inlineStr, que o Excel nunca avalia como fórmula.
+ */
+public class EscritorXlsx implements EscritorTabela {
+
+    private static final int LINHAS_POR_FOLHA = 1_048_576;
+    private static final DateTimeFormatter DATA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private final ZipOutputStream zip;
+    private final Writer saida;
+    private final List<String> cabecalho;
+    private final int linhasPorFolha;
+    private int folhas = 0;
+    private int linhasNaFolha = 0;
+
+    public EscritorXlsx(OutputStream destino, List<String> cabecalho) throws IOException {
+        this(destino, cabecalho, LINHAS_POR_FOLHA);
+    }
+
+    EscritorXlsx(OutputStream destino, List<String> cabecalho, int linhasPorFolha) throws IOException {
+        this.zip = new ZipOutputStream(new BufferedOutputStream(destino, 64 * 1024), StandardCharsets.UTF_8);
+        this.saida = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        this.cabecalho = cabecalho;
+        this.linhasPorFolha = linhasPorFolha;
+        abrirFolha();
+    }
+
+    @Override
+    public void linha(Object... valores) throws IOException {
+        if (linhasNaFolha == linhasPorFolha) {
+            fecharFolha();
+            abrirFolha();
+        }
+        escreverLinha(valores);
+    }
+
+    private void abrirFolha() throws IOException {
+        folhas++;
+        linhasNaFolha = 0;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + folhas + ".xml"));
+        saida.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        saida.write("<worksheet xmlns=\"" + NS + "\"><sheetData>");
+        escreverLinha(cabecalho.toArray());
+    }
+
+    private void fecharFolha() throws IOException {
+        saida.write("</sheetData></worksheet>");
+        saida.flush();
+        zip.closeEntry();
+    }
+
+    private void escreverLinha(Object[] valores) throws IOException {
+        linhasNaFolha++;
+        saida.write("<row>");
+        for (Object valor : valores) {
+            switch (valor) {
+                case null -> saida.write("<c/>");
+                case BigDecimal decimal -> escreverNumero(decimal.toPlainString());
+                case Number numero -> escreverNumero(numero.toString());
+                case LocalDateTime data -> escreverTexto(data.format(DATA));
+                default -> escreverTexto(valor.toString());
+            }
+        }
+        saida.write("</row>");
+    }
+
+    private void escreverNumero(String numero) throws IOException {
+        saida.write("<c><v>");
+        saida.write(numero);
+        saida.write("</v></c>");
+    }
+
+    private void escreverTexto(String texto) throws IOException {
+        saida.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '&' -> saida.write("&amp;");
+                case '<' -> saida.write("&lt;");
+                case '>' -> saida.write("&gt;");
+                case '"' -> saida.write("&quot;");
+                default -> {
+                    // Caracteres de controlo não são válidos em XML 1.0
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') saida.write(c);
+                }
+            }
+        }
+        saida.write("</t></is></c>");
+    }
+
+    @Override
+    public void terminar() throws IOException {
+        fecharFolha();
+
+        StringBuilder tipos = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+                <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+                <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+                <Default Extension="xml" ContentType="application/xml"/>\
+                <Override PartName="/xl/workbook.xml" \
+                ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>""");
+        StringBuilder listaFolhas = new StringBuilder();
+        StringBuilder relacoes = new StringBuilder();
+        for (int i = 1; i <= folhas; i++) {
+            tipos.append("<Override PartName=\"/xl/worksheets/sheet").append(i).append(".xml\" ")
+                 .append("ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+            listaFolhas.append("<sheet name=\"Vendas").append(i == 1 ? "" : " " + i)
+                       .append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+            relacoes.append("<Relationship Id=\"rId").append(i).append("\" ")
+                    .append("Type=\"").append(NS_REL).append("/worksheet\" ")
+                    .append("Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+        }
+        tipos.append("</Types>");
+
+        escreverEntrada("[Content_Types].xml", tipos.toString());
+        escreverEntrada("_rels/.rels", """
+                <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+                <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+                <Relationship Id="rId1" Type="%s/officeDocument" Target="xl/workbook.xml"/>\
+                </Relationships>""".formatted(NS_REL));
+        escreverEntrada("xl/workbook.xml", """
+                <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+                <workbook xmlns="%s" xmlns:r="%s"><sheets>%s</sheets></workbook>"""
+                .formatted(NS, NS_REL, listaFolhas));
+        escreverEntrada("xl/_rels/workbook.xml.rels", """
+                <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+                <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">%s</Relationships>"""
+                .formatted(relacoes));
+
+        zip.finish();
+        zip.flush();
+    }
+
+    private void escreverEntrada(String nome, String conteudo) throws IOException {
+        zip.putNextEntry(new ZipEntry(nome));
+        saida.write(conteudo);
+        saida.flush();
+        zip.closeEntry();
+    }
+}
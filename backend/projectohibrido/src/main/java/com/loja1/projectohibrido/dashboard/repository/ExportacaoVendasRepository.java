@@ -0,0 +1,107 @@
+package com.loja1.projectohibrido.dashboard.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Leitura dos pedidos e itens de um período para exportação, linha a linha.
+ *
+ * O driver do PostgreSQL só usa cursor (fetch size) com autocommit
+ * desligado: chamar dentro de uma transacção, senão o resultado inteiro
+ * é carregado para memória.
+ */
+@Repository
+public class ExportacaoVendasRepository {
+
+    /** Cabeçalho, pela ordem dos valores passados a {@link Linha#aceitar}. */
+    public static final List<String> COLUNAS = List.of(
+            "id_pedido", "reference", "data_pedido", "status_pedido",
+            "id_usuario", "cliente", "tipo_pagamento", "tipo_entrega", "total_pedido",
+            "id_item_pedido", "id_produto", "nome_produto", "quantidade", "preco_unitario", "subtotal");
+
+    @FunctionalInterface
+    public interface Linha {
+        void aceitar(Object[] valores) throws IOException;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public ExportacaoVendasRepository(JdbcTemplate jdbcTemplate,
+                                      @Value("${dashboard.exportacao.fetch-size:2000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Percorre uma linha por item (pedidos sem itens saem numa linha com as
+     * colunas do item vazias), por data_pedido e id_pedido.
+     *
+     * @param status null = todos
+     * @return nº de linhas
+     */
+    public long percorrer(LocalDate de, LocalDate ate, String status, Linha linha) {
+        String sql = """
+                SELECT pe.id_pedido, pe.reference, pe.data_pedido, pe.status_pedido,
+                       pe.id_usuario, u.nome, u.apelido, tp.tipo_pagamento, te.nome_tipo_entrega, pe.total,
+                       ip.id_item_pedido, ip.id_produto, pr.nome_produto,
+                       ip.quantidade, ip.preco_unitario, ip.subtotal
+                  FROM pedido pe
+                  LEFT JOIN usuario u         ON u.id_usuario = pe.id_usuario
+                  LEFT JOIN tipo_pagamento tp ON tp.idtipo_pagamento = pe.idtipo_pagamento
+                  LEFT JOIN tipo_entrega te   ON te.idtipo_entrega = pe.idtipo_entrega
+                  LEFT JOIN item_pedido ip    ON ip.id_pedido = pe.id_pedido
+                  LEFT JOIN produto pr        ON pr.id_produto = ip.id_produto
+                 WHERE pe.data_pedido >= ? AND pe.data_pedido < ?
+                   AND (CAST(? AS VARCHAR) IS NULL OR pe.status_pedido = ?)
+                 ORDER BY pe.data_pedido, pe.id_pedido, ip.id_item_pedido
+                """;
+
+        long[] total = {0};
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setObject(1, de.atStartOfDay());
+            ps.setObject(2, ate.plusDays(1).atStartOfDay());
+            ps.setString(3, status);
+            ps.setString(4, status);
+            return ps;
+        }, rs -> {
+            String nome = rs.getString(6);
+            Object[] valores = {
+                    rs.getInt(1),
+                    rs.getString(2),
+                    rs.getObject(3, LocalDateTime.class),
+                    rs.getString(4),
+                    rs.getInt(5),
+                    nome != null ? nome + " " + rs.getString(7) : null,   // nome + apelido
+                    rs.getString(8),
+                    rs.getString(9),
+                    rs.getBigDecimal(10),
+                    rs.getObject(11, Integer.class),
+                    rs.getObject(12, Integer.class),
+                    rs.getString(13),
+                    rs.getObject(14, Integer.class),
+                    rs.getBigDecimal(15),
+                    rs.getBigDecimal(16)
+            };
+            try {
+                linha.aceitar(valores);
+            } catch (IOException e) {
+                // Normalmente o cliente fechou a ligação; fecha o cursor e termina
+                throw new UncheckedIOException(e);
+            }
+            total[0]++;
+        });
+        return total[0];
+    }
+}
@@ -0,0 +1,292 @@
+package com.loja1.projectohibrido.dashboard.repository;
+
+import com.loja1.projectohibrido.dashboard.cache.ResumoDia;
+import com.loja1.projectohibrido.dashboard.dto.ProdutoNaoVendidoDTO;
+import com.loja1.projectohibrido.dashboard.dto.ProdutoRankingDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resumos diários de vendas (tabelas venda_diaria_produto e
+ * venda_diaria_usuario, ver db/resumos_vendas.sql).
+ *
+ * Contam os pedidos com status fora de ('cancelado', 'por finalizar'), pelo
+ * dia de data_pedido — o mesmo critério das consultas antigas sobre pedido e
+ * item_pedido. São mantidos por {@link #aplicarPedido}: o contributo do pedido
+ * é retirado antes de uma alteração e somado de novo depois, pelo que as
+ * leituras percorrem dias × produtos (ou utilizadores), e não pedidos.
+ *
+ * A leitura é feita por dia ({@link #carregarDias}); o DashboardService
+ * guarda os dias fechados em cache e soma-os. Categorias e marcas são
+ * obtidas juntando venda_diaria_produto às associações do produto.
+ */
+@Repository
+@RequiredArgsConstructor
+public class VendaDiariaRepository {
+
+    private static final String PEDIDO_CONTABILIZADO =
+            "pe.status_pedido NOT IN ('cancelado', 'por finalizar')";
+
+    // Chave do advisory lock dos resumos: partilhado por aplicarPedido,
+    // exclusivo em reconstruir
+    private static final long TRAVA_RESUMOS = 0x5645_4e44_4144_4941L;   // "VENDADIA"
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // ===== MANUTENÇÃO =====
+
+    /**
+     * Soma (sinal = 1) ou retira (sinal = -1) o contributo actual do pedido.
+     * Não faz nada se o pedido não contar para as vendas.
+     */
+    public void aplicarPedido(Integer idPedido, int sinal) {
+        bloquear("pg_advisory_xact_lock_shared");
+        jdbcTemplate.update("""
+                INSERT INTO venda_diaria_produto AS v (dia, id_produto, quantidade, receita, pedidos)
+                SELECT pe.data_pedido::date, ip.id_produto, ? * SUM(ip.quantidade), ? * SUM(ip.subtotal), ?
+                  FROM pedido pe
+                  JOIN item_pedido ip ON ip.id_pedido = pe.id_pedido
+                 WHERE pe.id_pedido = ?
+                   AND %s
+                 GROUP BY pe.data_pedido::date, ip.id_produto
+                ON CONFLICT (dia, id_produto) DO UPDATE
+                   SET quantidade = v.quantidade + EXCLUDED.quantidade,
+                       receita    = v.receita    + EXCLUDED.receita,
+                       pedidos    = v.pedidos    + EXCLUDED.pedidos
+                """.formatted(PEDIDO_CONTABILIZADO), sinal, sinal, sinal, idPedido);
+
+        jdbcTemplate.update("""
+                INSERT INTO venda_diaria_usuario AS v (dia, id_usuario, pedidos, receita)
+                SELECT pe.data_pedido::date, pe.id_usuario, ?, ? * pe.total
+                  FROM pedido pe
+                 WHERE pe.id_pedido = ?
+                   AND %s
+                ON CONFLICT (dia, id_usuario) DO UPDATE
+                   SET pedidos = v.pedidos + EXCLUDED.pedidos,
+                       receita = v.receita + EXCLUDED.receita
+                """.formatted(PEDIDO_CONTABILIZADO), sinal, sinal, idPedido);
+    }
+
+    /**
+     * Recalcula os resumos de raiz a partir de pedido e item_pedido.
+     *
+     * Espera pelas transacções que já aplicaram um pedido sem o confirmar e
+     * faz esperar as seguintes até ao commit; sem isso, um pedido alterado
+     * durante a reconstrução podia ficar contado duas vezes ou nenhuma.
+     */
+    public void reconstruir() {
+        bloquear("pg_advisory_xact_lock");
+        jdbcTemplate.update("DELETE FROM venda_diaria_produto");
+        jdbcTemplate.update("DELETE FROM venda_diaria_usuario");
+        jdbcTemplate.update("""
+                INSERT INTO venda_diaria_produto (dia, id_produto, quantidade, receita, pedidos)
+                SELECT pe.data_pedido::date, ip.id_produto,
+                       SUM(ip.quantidade), SUM(ip.subtotal), COUNT(DISTINCT pe.id_pedido)
+                  FROM pedido pe
+                  JOIN item_pedido ip ON ip.id_pedido = pe.id_pedido
+                 WHERE %s
+                 GROUP BY pe.data_pedido::date, ip.id_produto
+                """.formatted(PEDIDO_CONTABILIZADO));
+        jdbcTemplate.update("""
+                INSERT INTO venda_diaria_usuario (dia, id_usuario, pedidos, receita)
+                SELECT pe.data_pedido::date, pe.id_usuario, COUNT(*), SUM(pe.total)
+                  FROM pedido pe
+                 WHERE %s
+                 GROUP BY pe.data_pedido::date, pe.id_usuario
+                """.formatted(PEDIDO_CONTABILIZADO));
+    }
+
+    /** Advisory lock dos resumos, libertado no fim da transacção. */
+    private void bloquear(String funcao) {
+        jdbcTemplate.query("SELECT " + funcao + "(?)", rs -> {
+        }, TRAVA_RESUMOS);
+    }
+
+    // ===== LEITURA (POR DIA) =====
+
+    /**
+     * Resumos dos dias de {@code de} a {@code ate} com vendas, em três
+     * leituras (produtos, categorias+marcas, utilizadores).
+     */
+    public Map<LocalDate, ResumoDia> carregarDias(LocalDate de, LocalDate ate) {
+        Map<LocalDate, DiaEmConstrucao> porDia = new TreeMap<>();
+
+        jdbcTemplate.query("""
+                SELECT v.dia, v.id_produto, pr.nome_produto, v.quantidade, v.receita, v.pedidos
+                  FROM venda_diaria_produto v
+                  JOIN produto pr ON pr.id_produto = v.id_produto
+                 WHERE v.dia BETWEEN ? AND ?
+                   AND v.pedidos > 0
+                """, rs -> {
+            porDia.computeIfAbsent(rs.getDate(1).toLocalDate(), d -> new DiaEmConstrucao())
+                    .produtos.put(rs.getInt(2), new ResumoDia.VendaProduto(
+                            rs.getString(3), rs.getLong(4), rs.getBigDecimal(5), rs.getLong(6)));
+        }, de, ate);
+
+        jdbcTemplate.query("""
+                SELECT 'categoria' AS grupo, v.dia, c.id_categoria, c.nome_categoria,
+                       SUM(v.receita), SUM(v.pedidos)
+                  FROM venda_diaria_produto v
+                  JOIN produto_categoria pc ON pc.id_produto = v.id_produto
+                  JOIN categoria c ON c.id_categoria = pc.id_categoria
+                 WHERE v.dia BETWEEN ? AND ?
+                   AND v.pedidos > 0
+                 GROUP BY v.dia, c.id_categoria, c.nome_categoria
+                UNION ALL
+                SELECT 'marca', v.dia, m.id_marca, m.nome_marca,
+                       SUM(v.receita), SUM(v.pedidos)
+                  FROM venda_diaria_produto v
+                  JOIN produto_marca pm ON pm.id_produto = v.id_produto
+                  JOIN marca m ON m.id_marca = pm.id_marca
+                 WHERE v.dia BETWEEN ? AND ?
+                   AND v.pedidos > 0
+                 GROUP BY v.dia, m.id_marca, m.nome_marca
+                """, rs -> {
+            DiaEmConstrucao dia = porDia.computeIfAbsent(rs.getDate(2).toLocalDate(), d -> new DiaEmConstrucao());
+            Map<Integer, ResumoDia.VendaGrupo> destino =
+                    "categoria".equals(rs.getString(1)) ? dia.categorias : dia.marcas;
+            destino.put(rs.getInt(3), new ResumoDia.VendaGrupo(rs.getString(4), rs.getBigDecimal(5), rs.getLong(6)));
+        }, de, ate, de, ate);
+
+        jdbcTemplate.query("""
+                SELECT v.dia, v.id_usuario, u.nome, u.apelido, v.pedidos, v.receita
+                  FROM venda_diaria_usuario v
+                  LEFT JOIN usuario u ON u.id_usuario = v.id_usuario
+                 WHERE v.dia BETWEEN ? AND ?
+                   AND v.pedidos > 0
+                """, rs -> {
+            String nome = rs.getString(3);
+            porDia.computeIfAbsent(rs.getDate(1).toLocalDate(), d -> new DiaEmConstrucao())
+                    .usuarios.put(rs.getInt(2), new ResumoDia.VendaUsuario(
+                            nome != null ? nome + " " + rs.getString(4) : null,   // nome + apelido
+                            rs.getLong(5), rs.getBigDecimal(6)));
+        }, de, ate);
+
+        Map<LocalDate, ResumoDia> resultado = new LinkedHashMap<>();
+        porDia.forEach((dia, d) -> resultado.put(dia, new ResumoDia(dia,
+                Map.copyOf(d.produtos), Map.copyOf(d.categorias), Map.copyOf(d.marcas), Map.copyOf(d.usuarios))));
+        return resultado;
+    }
+
+    private static final class DiaEmConstrucao {
+        final Map<Integer, ResumoDia.VendaProduto> produtos = new HashMap<>();
+        final Map<Integer, ResumoDia.VendaGrupo> categorias = new HashMap<>();
+        final Map<Integer, ResumoDia.VendaGrupo> marcas = new HashMap<>();
+        final Map<Integer, ResumoDia.VendaUsuario> usuarios = new HashMap<>();
+    }
+
+    // ===== RANKING =====
+
+    /**
+     * Critérios do ranking de produtos. Filtros a null não se aplicam;
+     * o período vai do dia {@code de} ao dia {@code ate}, inclusive.
+     *
+     * @param metrica quantidade | receita | pedidos
+     */
+    public record FiltroRanking(LocalDate de, LocalDate ate, String metrica, int limite,
+                                Integer idCategoria, Integer idMarca, Integer idOrigem) {}
+
+    /**
+     * Os {@code limite} primeiros produtos pela métrica pedida.
+     *
+     * A agregação e a ordenação ficam no PostgreSQL: com ORDER BY ... LIMIT
+     * ele usa um top-N heapsort que só guarda {@code limite} linhas, e a
+     * aplicação recebe apenas essas. Sem filtro de origem lê os resumos
+     * diários (dias × produtos); com origem lê pedido/item_pedido do período,
+     * já que os resumos não a guardam (ver idx_pedido_origem_data).
+     */
+    public List<ProdutoRankingDTO> rankingProdutos(FiltroRanking filtro) {
+        List<Object> params = new ArrayList<>();
+        String vendas;
+        if (filtro.idOrigem() == null) {
+            vendas = """
+                    SELECT id_produto, SUM(quantidade) AS quantidade,
+                           SUM(receita) AS receita, SUM(pedidos) AS pedidos
+                      FROM venda_diaria_produto
+                     WHERE dia BETWEEN ? AND ?
+                     GROUP BY id_produto
+                    """;
+            params.add(filtro.de());
+            params.add(filtro.ate());
+        } else {
+            vendas = """
+                    SELECT ip.id_produto, SUM(ip.quantidade) AS quantidade,
+                           SUM(ip.subtotal) AS receita, COUNT(DISTINCT pe.id_pedido) AS pedidos
+                      FROM pedido pe
+                      JOIN item_pedido ip ON ip.id_pedido = pe.id_pedido
+                     WHERE pe.idtipo_origem_pedido = ?
+                       AND pe.data_pedido >= ? AND pe.data_pedido < ?
+                       AND %s
+                     GROUP BY ip.id_produto
+                    """.formatted(PEDIDO_CONTABILIZADO);
+            params.add(filtro.idOrigem());
+            params.add(filtro.de().atStartOfDay());
+            params.add(filtro.ate().plusDays(1).atStartOfDay());
+        }
+
+        StringBuilder sql = new StringBuilder("""
+                WITH vendas AS (%s)
+                SELECT pr.id_produto, pr.nome_produto, v.quantidade, v.receita, v.pedidos
+                  FROM vendas v
+                  JOIN produto pr ON pr.id_produto = v.id_produto
+                 WHERE v.pedidos > 0
+                """.formatted(vendas));
+        if (filtro.idCategoria() != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM produto_categoria pc")
+               .append(" WHERE pc.id_produto = pr.id_produto AND pc.id_categoria = ?)");
+            params.add(filtro.idCategoria());
+        }
+        if (filtro.idMarca() != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM produto_marca pm")
+               .append(" WHERE pm.id_produto = pr.id_produto AND pm.id_marca = ?)");
+            params.add(filtro.idMarca());
+        }
+        sql.append(" ORDER BY ").append(colunaMetrica(filtro.metrica())).append(" DESC, pr.id_produto")
+           .append(" LIMIT ?");
+        params.add(filtro.limite());
+
+        List<ProdutoRankingDTO> ranking = new ArrayList<>(filtro.limite());
+        jdbcTemplate.query(sql.toString(), rs -> {
+            ranking.add(new ProdutoRankingDTO(
+                    ranking.size() + 1,
+                    rs.getInt(1),
+                    rs.getString(2),
+                    rs.getLong(3),
+                    rs.getBigDecimal(4),
+                    rs.getLong(5)));
+        }, params.toArray());
+        return ranking;
+    }
+
+    // Só valores fixos entram no SQL; a métrica já foi validada no serviço
+    private static String colunaMetrica(String metrica) {
+        return switch (metrica) {
+            case "receita" -> "v.receita";
+            case "pedidos" -> "v.pedidos";
+            default        -> "v.quantidade";
+        };
+    }
+
+    /** Produtos activos (id → nome, estoque e preço actuais), para "produtos não vendidos". */
+    public Map<Integer, ProdutoNaoVendidoDTO> produtosActivos() {
+        Map<Integer, ProdutoNaoVendidoDTO> activos = new LinkedHashMap<>();
+        jdbcTemplate.query("""
+                SELECT id_produto, nome_produto, quantidade_estoque, preco
+                  FROM produto
+                 WHERE ativo = 1
+                 ORDER BY id_produto
+                """, rs -> {
+            activos.put(rs.getInt(1), new ProdutoNaoVendidoDTO(rs.getString(2), rs.getInt(3), rs.getBigDecimal(4)));
+        });
+        return activos;
+    }
+}
@@ -1,77 +1,254 @@
 package com.loja1.projectohibrido.dashboard.service;
+import com.loja1.projectohibrido.dashboard.cache.DashboardCache;
+import com.loja1.projectohibrido.dashboard.cache.ResumoDia;
 import com.loja1.projectohibrido.dashboard.dto.*;   // todos os DTOs de uma vez
-import com.loja1.projectohibrido.pedido.repository.PedidoRepository;
-import com.loja1.projectohibrido.pedido.repository.ItemPedidoRepository;
-import com.loja1.projectohibrido.produto.repository.ProdutoRepository;
+import com.loja1.projectohibrido.dashboard.repository.VendaDiariaRepository;
+import com.loja1.projectohibrido.usuario.exception.BusinessException;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 
+/**
+ * Indicadores do dashboard, lidos dos resumos diários de vendas
+ * (venda_diaria_*). O período começa no dia de dataInicio e vai até hoje.
+ *
+ * Os dias fechados vêm do DashboardCache (carregados uma vez e invalidados
+ * pelo PedidoService quando um pedido desse dia muda); só o dia de hoje é
+ * lido a cada pedido. As secções são somadas aqui, dia a dia.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DashboardService {
 
-    private final PedidoRepository pedidoRepository;
-    private final ItemPedidoRepository itemPedidoRepository;
-    private final ProdutoRepository produtoRepository;
+    private final VendaDiariaRepository vendaDiariaRepository;
+    private final DashboardCache dashboardCache;
+
+    private static final List<String> METRICAS_RANKING = List.of("quantidade", "receita", "pedidos");
+    private static final int LIMITE_RANKING_PADRAO = 10;
+    private static final int LIMITE_RANKING_MAXIMO = 100;
 
     public List<EvolucaoVendasDTO> getEvolucaoVendas(LocalDateTime dataInicio) {
-        return pedidoRepository.evolucaoVendasPorDia(dataInicio).stream()
-            .map(row -> new EvolucaoVendasDTO(
-                row[0].toString(),
-                (BigDecimal) row[1]
-            )).toList();
+        return evolucao(dias(dataInicio));
     }
 
     public List<CategoriaResumoDTO> getVendasPorCategoria(LocalDateTime dataInicio) {
-        return itemPedidoRepository.vendasPorCategoria(dataInicio).stream()
-            .map(row -> new CategoriaResumoDTO(
-                (String) row[0],
-                (BigDecimal) row[1]
-            )).toList();
+        return vendasPorGrupo(dias(dataInicio), ResumoDia::categorias, CategoriaResumoDTO::new);
     }
 
     public List<MarcaResumoDTO> getVendasPorMarca(LocalDateTime dataInicio) {
-        return itemPedidoRepository.vendasPorMarca(dataInicio).stream()
-            .map(row -> new MarcaResumoDTO(
-                (String) row[0],
-                (BigDecimal) row[1]
-            )).toList();
+        return vendasPorGrupo(dias(dataInicio), ResumoDia::marcas, MarcaResumoDTO::new);
     }
 
     public List<ProdutoTopDTO> getTop5Produtos(LocalDateTime dataInicio) {
-        return itemPedidoRepository.top5Produtos(dataInicio).stream()
-            .map(row -> new ProdutoTopDTO(
-                (String) row[0],
-                ((Number) row[1]).longValue(),
-                (BigDecimal) row[2],
-                ((Number) row[3]).longValue()
-            )).toList();
+        return topProdutos(dias(dataInicio), 5);
+    }
+
+    /**
+     * Ranking configurável: os N primeiros produtos por quantidade, receita
+     * ou nº de pedidos, num intervalo de datas e com filtros
+     * opcionais de categoria, marca e origem do pedido.
+     *
+     * @param dataFim último dia do período (null = hoje)
+     */
+    public List<ProdutoRankingDTO> getRankingProdutos(LocalDateTime dataInicio, LocalDateTime dataFim,
+                                                      String metrica, Integer limite,
+                                                      Integer idCategoria, Integer idMarca, Integer idOrigem) {
+        String criterio = metrica == null ? "quantidade" : metrica.trim().toLowerCase(Locale.ROOT);
+        if (!METRICAS_RANKING.contains(criterio)) {
+            throw new BusinessException("Métrica de ranking inválida: " + metrica
+                    + " (use " + String.join(", ", METRICAS_RANKING) + ")");
+        }
+        LocalDate de = dataInicio.toLocalDate();
+        LocalDate ate = dataFim != null ? dataFim.toLocalDate() : LocalDate.now();
+        if (ate.isBefore(de)) {
+            throw new BusinessException("dataFim não pode ser anterior a dataInicio");
+        }
+        int n = (limite == null || limite <= 0)
+                ? LIMITE_RANKING_PADRAO
+                : Math.min(limite, LIMITE_RANKING_MAXIMO);
+
+        return vendaDiariaRepository.rankingProdutos(new VendaDiariaRepository.FiltroRanking(
+                de, ate, criterio, n, idCategoria, idMarca, idOrigem));
     }
 
     public List<ProdutoNaoVendidoDTO> getProdutosNaoVendidos(LocalDateTime dataInicio) {
-        return produtoRepository.produtosSemVendas(dataInicio).stream()
-            .map(row -> new ProdutoNaoVendidoDTO(
-                (String) row[1],
-                (Integer) row[2],
-                (BigDecimal) row[3]
-            )).toList();
+        return naoVendidos(dias(dataInicio), vendaDiariaRepository.produtosActivos());
     }
 
     public List<DesempenhoUsuarioDTO> getDesempenhoUsuarios(LocalDateTime dataInicio) {
-    return pedidoRepository.desempenhoUsuarios(dataInicio).stream()
-        .map(row -> new DesempenhoUsuarioDTO(
-            row[0] + " " + row[1],   // nome + apelido
-            "Funcionário",            // cargo fixo por ora
-            ((Number) row[2]).longValue(),
-            (BigDecimal) row[3],
-            ((Number) row[4]).longValue()
-        )).toList();
-}
-}
+        return desempenhoUsuarios(dias(dataInicio));
+    }
+
+    /**
+     * Todas as secções do dashboard num só pedido HTTP.
+     *
+     * Os dias fechados (cache), o dia de hoje e os produtos activos são lidos
+     * em paralelo, em virtual threads; as seis secções saem da mesma lista de
+     * dias. Com a cache quente só há duas consultas pequenas.
+     */
+    public DashboardResumoDTO getResumo(LocalDateTime dataInicio) {
+        LocalDate desde = dataInicio.toLocalDate();
+        LocalDate hoje = LocalDate.now();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<List<ResumoDia>> fechados = executor.submit(() -> diasFechados(desde, hoje));
+            Future<List<ResumoDia>> deHoje = executor.submit(() -> diaDeHoje(desde, hoje));
+            Future<Map<Integer, ProdutoNaoVendidoDTO>> activos =
+                    executor.submit(vendaDiariaRepository::produtosActivos);
+
+            List<ResumoDia> dias = new ArrayList<>(aguardar(fechados));
+            dias.addAll(aguardar(deHoje));
 
+            return new DashboardResumoDTO(
+                    evolucao(dias),
+                    vendasPorGrupo(dias, ResumoDia::categorias, CategoriaResumoDTO::new),
+                    vendasPorGrupo(dias, ResumoDia::marcas, MarcaResumoDTO::new),
+                    topProdutos(dias, 5),
+                    naoVendidos(dias, aguardar(activos)),
+                    desempenhoUsuarios(dias));
+        }
+    }
+
+    private static <T> T aguardar(Future<T> tarefa) {
+        try {
+            return tarefa.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Carregamento do dashboard interrompido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException erro) throw erro;
+            throw new IllegalStateException("Erro ao carregar o dashboard", e.getCause());
+        }
+    }
+
+    /**
+     * Recalcula os resumos de raiz a partir de pedido e item_pedido
+     * (após importar pedidos ou corrigir dados directamente na base de dados).
+     */
+    @Transactional
+    public void reconstruirResumos() {
+        long inicio = System.currentTimeMillis();
+        vendaDiariaRepository.reconstruir();
+        dashboardCache.invalidarTudo();
+        log.info("Resumos diários de vendas reconstruídos em {} ms", System.currentTimeMillis() - inicio);
+    }
+
+    public Map<String, Object> estatisticasCache() {
+        return dashboardCache.estatisticas();
+    }
+
+    // ===== DIAS DO PERÍODO =====
+
+    private List<ResumoDia> dias(LocalDateTime dataInicio) {
+        LocalDate desde = dataInicio.toLocalDate();
+        LocalDate hoje = LocalDate.now();
+        List<ResumoDia> dias = new ArrayList<>(diasFechados(desde, hoje));
+        dias.addAll(diaDeHoje(desde, hoje));
+        return dias;
+    }
+
+    private List<ResumoDia> diasFechados(LocalDate desde, LocalDate hoje) {
+        return dashboardCache.obterDiasFechados(desde, hoje.minusDays(1), vendaDiariaRepository::carregarDias);
+    }
+
+    private List<ResumoDia> diaDeHoje(LocalDate desde, LocalDate hoje) {
+        if (desde.isAfter(hoje)) return List.of();
+        return List.of(vendaDiariaRepository.carregarDias(hoje, hoje)
+                .getOrDefault(hoje, ResumoDia.vazio(hoje)));
+    }
+
+    // ===== SECÇÕES =====
+
+    private List<EvolucaoVendasDTO> evolucao(List<ResumoDia> dias) {
+        return dias.stream()
+                .filter(d -> d.pedidos() > 0)
+                .map(d -> new EvolucaoVendasDTO(d.dia().toString(), d.receita()))
+                .toList();
+    }
+
+    /** Soma por categoria (ou marca) e ordena por receita decrescente. */
+    private <T> List<T> vendasPorGrupo(List<ResumoDia> dias,
+                                       Function<ResumoDia, Map<Integer, ResumoDia.VendaGrupo>> grupos,
+                                       BiFunction<String, BigDecimal, T> dto) {
+        Map<Integer, ResumoDia.VendaGrupo> total = new HashMap<>();
+        for (ResumoDia dia : dias) {
+            grupos.apply(dia).forEach((id, g) -> total.merge(id, g, (a, b) ->
+                    new ResumoDia.VendaGrupo(b.nome(), a.receita().add(b.receita()), a.pedidos() + b.pedidos())));
+        }
+        return total.values().stream()
+                .sorted(Comparator.comparing(ResumoDia.VendaGrupo::receita).reversed())
+                .map(g -> dto.apply(g.nome(), g.receita()))
+                .toList();
+    }
+
+    private Map<Integer, ResumoDia.VendaProduto> somarProdutos(List<ResumoDia> dias) {
+        Map<Integer, ResumoDia.VendaProduto> total = new HashMap<>();
+        for (ResumoDia dia : dias) {
+            dia.produtos().forEach((id, p) -> total.merge(id, p, (a, b) -> new ResumoDia.VendaProduto(
+                    b.nome(), a.quantidade() + b.quantidade(), a.receita().add(b.receita()), a.pedidos() + b.pedidos())));
+        }
+        return total;
+    }
+
+    private List<ProdutoTopDTO> topProdutos(List<ResumoDia> dias, int limite) {
+        return somarProdutos(dias).values().stream()
+                .sorted(Comparator.comparingLong(ResumoDia.VendaProduto::quantidade).reversed())
+                .limit(limite)
+                .map(p -> new ProdutoTopDTO(p.nome(), p.quantidade(), p.receita(), p.pedidos()))
+                .toList();
+    }
+
+    private List<ProdutoNaoVendidoDTO> naoVendidos(List<ResumoDia> dias, Map<Integer, ProdutoNaoVendidoDTO> activos) {
+        Set<Integer> vendidos = new HashSet<>();
+        dias.forEach(d -> vendidos.addAll(d.produtos().keySet()));
+        return activos.entrySet().stream()
+                .filter(e -> !vendidos.contains(e.getKey()))
+                .map(Map.Entry::getValue)
+                .toList();
+    }
+
+    private List<DesempenhoUsuarioDTO> desempenhoUsuarios(List<ResumoDia> dias) {
+        record Acumulado(String nome, long pedidos, BigDecimal receita, long diasActivos) {}
+
+        Map<Integer, Acumulado> total = new HashMap<>();
+        for (ResumoDia dia : dias) {
+            dia.usuarios().forEach((id, u) -> {
+                if (u.nomeCompleto() == null) return;   // só utilizadores existentes, como no JOIN antigo
+                total.merge(id, new Acumulado(u.nomeCompleto(), u.pedidos(), u.receita(), 1),
+                        (a, b) -> new Acumulado(b.nome(), a.pedidos() + b.pedidos(),
+                                a.receita().add(b.receita()), a.diasActivos() + b.diasActivos()));
+            });
+        }
+        return total.values().stream()
+                .sorted(Comparator.comparing(Acumulado::receita).reversed())
+                .map(a -> new DesempenhoUsuarioDTO(
+                        a.nome(),
+                        "Funcionário",   // cargo fixo por ora
+                        a.pedidos(),
+                        a.receita(),
+                        a.diasActivos()))
+                .toList();
+    }
+}
@@ -0,0 +1,96 @@
+package com.loja1.projectohibrido.dashboard.service;
+
+import com.loja1.projectohibrido.dashboard.exportacao.EscritorCsv;
+import com.loja1.projectohibrido.dashboard.exportacao.EscritorTabela;
+import com.loja1.projectohibrido.dashboard.exportacao.EscritorXlsx;
+import com.loja1.projectohibrido.dashboard.repository.ExportacaoVendasRepository;
+import com.loja1.projectohibrido.usuario.exception.BusinessException;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Exportação de pedidos e itens de um período (CSV ou XLSX) para a
+ * contabilidade.
+ *
+ * As linhas vão do cursor JDBC directamente para a resposta HTTP: a memória
+ * usada é a do fetch size e dos buffers, seja qual for o nº de linhas.
+ */
+@Slf4j
+@Service
+public class ExportacaoVendasService {
+
+    /** Ficheiro a enviar; o corpo só é gerado quando o Spring o escrever. */
+    public record Exportacao(String nomeFicheiro, String tipoConteudo, StreamingResponseBody corpo) {}
+
+    private final ExportacaoVendasRepository exportacaoRepository;
+    private final TransactionTemplate transacaoLeitura;
+
+    public ExportacaoVendasService(ExportacaoVendasRepository exportacaoRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.exportacaoRepository = exportacaoRepository;
+        this.transacaoLeitura = new TransactionTemplate(transactionManager);
+        this.transacaoLeitura.setReadOnly(true);
+    }
+
+    /**
+     * @param formato csv (padrão) ou xlsx
+     * @param dataFim último dia do período (null = hoje)
+     * @param status  só pedidos com este status (null = todos)
+     */
+    public Exportacao exportarVendas(LocalDateTime dataInicio, LocalDateTime dataFim,
+                                     String formato, String status) {
+        LocalDate de = dataInicio.toLocalDate();
+        LocalDate ate = dataFim != null ? dataFim.toLocalDate() : LocalDate.now();
+        if (ate.isBefore(de)) {
+            throw new BusinessException("dataFim não pode ser anterior a dataInicio");
+        }
+
+        boolean xlsx = switch (formato == null ? "csv" : formato.trim().toLowerCase(Locale.ROOT)) {
+            case "csv" -> false;
+            case "xlsx" -> true;
+            default -> throw new BusinessException("Formato de exportação inválido: " + formato + " (use csv ou xlsx)");
+        };
+
+        String nome = "vendas_" + de + "_" + ate + (xlsx ? ".xlsx" : ".csv");
+        String tipo = xlsx
+                ? "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"
+                : "text/csv;charset=UTF-8";
+
+        return new Exportacao(nome, tipo, saida -> escrever(saida, xlsx, de, ate, status));
+    }
+
+    /**
+     * Corre na thread assíncrona do Spring MVC, fora do pedido original.
+     * Um erro a meio propaga-se sem terminar o ficheiro: a resposta é
+     * abortada e o cliente não recebe um ficheiro válido com linhas a menos.
+     */
+    private void escrever(OutputStream saida, boolean xlsx, LocalDate de, LocalDate ate, String status)
+            throws IOException {
+        long inicio = System.currentTimeMillis();
+        EscritorTabela escritor = xlsx
+                ? new EscritorXlsx(saida, ExportacaoVendasRepository.COLUNAS)
+                : new EscritorCsv(saida, ExportacaoVendasRepository.COLUNAS);
+        try {
+            Long linhas = transacaoLeitura.execute(tx ->
+                    exportacaoRepository.percorrer(de, ate, status, escritor::linha));
+            escritor.terminar();
+
+            log.info("📤 Exportação de vendas {} a {} ({}): {} linha(s) em {} ms",
+                    de, ate, xlsx ? "XLSX" : "CSV", linhas, System.currentTimeMillis() - inicio);
+        } catch (IOException | RuntimeException e) {
+            log.error("Exportação de vendas {} a {} interrompida após {} ms; ficheiro não terminado",
+                    de, ate, System.currentTimeMillis() - inicio, e);
+            throw e;
+        }
+    }
+}
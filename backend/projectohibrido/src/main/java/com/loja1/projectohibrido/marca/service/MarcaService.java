@@ -3,12 +3,15 @@ package com.loja1.projectohibrido.marca.service;
 import com.loja1.projectohibrido.categoria.entity.CategoriaMarca;
 import com.loja1.projectohibrido.categoria.repository.CategoriaMarcaRepository;
 import com.loja1.projectohibrido.categoria.repository.CategoriaRepository;
+import com.loja1.projectohibrido.dashboard.cache.DashboardCache;
 import com.loja1.projectohibrido.marca.dto.CategoriaSimplificadaDTO;
 import com.loja1.projectohibrido.marca.dto.MarcaComCategoriasDTO;
 import com.loja1.projectohibrido.marca.dto.MarcaRequestDTO;
 import com.loja1.projectohibrido.marca.dto.MarcaResponseDTO;
 import com.loja1.projectohibrido.marca.entity.Marca;
 import com.loja1.projectohibrido.marca.repository.MarcaRepository;
+import com.loja1.projectohibrido.produto.busca.IndiceBuscaProduto;
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -25,6 +28,9 @@ public class MarcaService {
     private final MarcaRepository marcaRepository;
     private final CategoriaMarcaRepository categoriaMarcaRepository;
     private final CategoriaRepository categoriaRepository;
+    private final CatalogoCache catalogoCache;
+    private final IndiceBuscaProduto indiceBuscaProduto;
+    private final DashboardCache dashboardCache;
     
     // ===== CRUD BÁSICO =====
     
@@ -36,6 +42,8 @@ public class MarcaService {
         marca.setNomeMarca(dto.getNomeMarca());
         
         Marca marcaSalva = marcaRepository.save(marca);
+        catalogoCache.invalidarMarcas();
+        indiceBuscaProduto.actualizarMarcaAposCommit(marcaSalva.getIdMarca());
         log.info("Marca criada com ID: {}", marcaSalva.getIdMarca());
         
         return mapToResponseDTO(marcaSalva);
@@ -51,6 +59,9 @@ public class MarcaService {
         marca.setNomeMarca(dto.getNomeMarca());
         
         Marca marcaAtualizada = marcaRepository.save(marca);
+        catalogoCache.invalidarMarcas();
+        dashboardCache.invalidarMarca(id);
+        indiceBuscaProduto.actualizarMarcaAposCommit(id);
         log.info("Marca atualizada: {}", marcaAtualizada.getIdMarca());
         
         return mapToResponseDTO(marcaAtualizada);
@@ -65,6 +76,11 @@ public class MarcaService {
         }
         
         marcaRepository.deleteById(id);
+        // As associações com produtos caem com a marca
+        catalogoCache.invalidarProdutos();
+        catalogoCache.invalidarMarcas();
+        dashboardCache.invalidarMarca(id);
+        indiceBuscaProduto.actualizarMarcaAposCommit(id);
         log.info("Marca deletada com sucesso: {}", id);
     }
     
@@ -86,10 +102,13 @@ public class MarcaService {
     
     // ===== NOVO MÉTODO - LISTAR MARCAS COM CATEGORIAS =====
     
-    @Transactional(readOnly = true)
+    // Sem @Transactional: um acerto no cache não chega a abrir transacção nem conexão
     public List<MarcaComCategoriasDTO> listarComCategorias() {
         log.info("Listando todas as marcas com categorias");
-        
+        return catalogoCache.obterMarcasComCategorias(this::carregarMarcasComCategorias);
+    }
+    
+    private List<MarcaComCategoriasDTO> carregarMarcasComCategorias() {
         List<Marca> marcas = marcaRepository.findAll();
         
         return marcas.stream().map(marca -> {
@@ -1,7 +1,13 @@
 package com.loja1.projectohibrido.movimentoestoque.controller;
 
+import com.loja1.projectohibrido.movimentoestoque.diario.DiarioEstoque;
+import com.loja1.projectohibrido.movimentoestoque.dto.EstoqueEmDataDTO;
+import com.loja1.projectohibrido.movimentoestoque.dto.MovimentoEstoquePaginaDTO;
 import com.loja1.projectohibrido.movimentoestoque.dto.MovimentoEstoqueRequestDTO;
 import com.loja1.projectohibrido.movimentoestoque.dto.MovimentoEstoqueResponseDTO;
+import com.loja1.projectohibrido.movimentoestoque.dto.PontoHistoricoEstoqueDTO;
+import com.loja1.projectohibrido.movimentoestoque.dto.ValorizacaoEstoqueDTO;
+import com.loja1.projectohibrido.movimentoestoque.service.InventarioService;
 import com.loja1.projectohibrido.movimentoestoque.service.MovimentoEstoqueService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,6 +17,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/movimentos_estoque")
@@ -19,6 +26,8 @@ import java.util.List;
 public class MovimentoEstoqueController {
 
     private final MovimentoEstoqueService service;
+    private final DiarioEstoque diarioEstoque;
+    private final InventarioService inventarioService;
 
     @PostMapping
     public ResponseEntity<MovimentoEstoqueResponseDTO> registrar(
@@ -27,6 +36,24 @@ public class MovimentoEstoqueController {
         return ResponseEntity.status(HttpStatus.CREATED).body(service.registrar(dto));
     }
 
+    /**
+     * Histórico paginado por cursor. Passe o "proximoCursor" recebido para
+     * obter a página seguinte. Filtros opcionais: produto, utilizador,
+     * tipo (entrada | saida | ajuste) e período.
+     */
+    @GetMapping("/pagina")
+    public ResponseEntity<MovimentoEstoquePaginaDTO> listarPagina(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) Integer idProduto,
+            @RequestParam(required = false) Integer idUsuario,
+            @RequestParam(required = false) String tipoMovimento,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim) {
+        log.info("GET /api/movimentos_estoque/pagina | produto={} usuario={} tipo={}", idProduto, idUsuario, tipoMovimento);
+        return ResponseEntity.ok(service.listarPagina(cursor, limite, idProduto, idUsuario, tipoMovimento, inicio, fim));
+    }
+
     @GetMapping("/produto/{idProduto}")
     public ResponseEntity<List<MovimentoEstoqueResponseDTO>> listarPorProduto(
             @PathVariable Integer idProduto) {
@@ -40,6 +67,43 @@ public class MovimentoEstoqueController {
         return ResponseEntity.ok(service.listarTodos());
     }
 
+    // ─── Estoque numa data (snapshots + movimentos) ─────────────────────────
+
+    @GetMapping("/produto/{idProduto}/estoque-em")
+    public ResponseEntity<EstoqueEmDataDTO> estoqueEm(
+            @PathVariable Integer idProduto,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime data) {
+        return ResponseEntity.ok(inventarioService.estoqueEm(idProduto, data));
+    }
+
+    @GetMapping("/produto/{idProduto}/historico-estoque")
+    public ResponseEntity<List<PontoHistoricoEstoqueDTO>> historicoEstoque(
+            @PathVariable Integer idProduto,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim) {
+        return ResponseEntity.ok(inventarioService.historico(idProduto, inicio, fim));
+    }
+
+    /** Valorização de todo o inventário numa data (preços actuais). */
+    @GetMapping("/valorizacao")
+    public ResponseEntity<ValorizacaoEstoqueDTO> valorizacao(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime data) {
+        log.info("GET /api/movimentos_estoque/valorizacao | {}", data);
+        return ResponseEntity.ok(inventarioService.valorizacao(data));
+    }
+
+    /** Snapshot imediato do estoque de todos os produtos (além do agendado). */
+    @PostMapping("/snapshots")
+    public ResponseEntity<Map<String, Integer>> gravarSnapshot() {
+        return ResponseEntity.ok(Map.of("produtos", inventarioService.gravarSnapshot()));
+    }
+
+    /** Estado do diário de movimentos gerados pelos pedidos (fila, lotes gravados). */
+    @GetMapping("/diario/estatisticas")
+    public ResponseEntity<Map<String, Object>> estatisticasDiario() {
+        return ResponseEntity.ok(diarioEstoque.estatisticas());
+    }
+
     @GetMapping("/periodo")
     public ResponseEntity<List<MovimentoEstoqueResponseDTO>> listarPorPeriodo(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
@@ -0,0 +1,371 @@
+package com.loja1.projectohibrido.movimentoestoque.diario;
+
+import com.loja1.projectohibrido.config.EsquemaBaseDados;
+import com.loja1.projectohibrido.movimentoestoque.repository.MovimentoEstoqueLoteRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Diário de movimentos de estoque: cada variação feita pelo EstoqueService
+ * (pedidos, checkout do carrinho) fica registada em movimento_estoque sem
+ * um INSERT por linha no caminho do pedido.
+ *
+ * Modos (estoque.diario.modo):
+ * <ul>
+ *   <li>assincrono — os movimentos de uma transacção reservam lugar na fila
+ *       antes do commit e entram nela após o commit; uma thread própria
+ *       grava-os em INSERTs multi-linha a cada intervalo-ms ou assim que
+ *       juntar tamanho-lote. Sem lugar na fila (base de dados lenta ou em
+ *       baixo) são desviados para movimento_estoque_pendente na própria
+ *       transacção, como no modo outbox: a thread do pedido nunca espera pela
+ *       escrita nem repete tentativas. Uma paragem abrupta perde o que estiver
+ *       na fila.</li>
+ *   <li>outbox — os movimentos são gravados em movimento_estoque_pendente na
+ *       transacção do pedido (um INSERT por transacção) e passados em lote
+ *       para movimento_estoque pela mesma thread. Nada se perde, à custa
+ *       desse INSERT na transacção.</li>
+ *   <li>desligado — não regista (comportamento anterior).</li>
+ * </ul>
+ *
+ * Os modos assincrono e outbox requerem db/diario_estoque.sql; sem as colunas
+ * id_pedido/origem ou a tabela movimento_estoque_pendente o diário arranca
+ * desligado, com um aviso no log.
+ */
+@Component
+@Slf4j
+public class DiarioEstoque {
+
+    private static final int TENTATIVAS_NA_PARAGEM = 3;
+    private static final long PAUSA_MAXIMA_MS = 10_000;
+
+    private final MovimentoEstoqueLoteRepository loteRepository;
+    private final EsquemaBaseDados esquema;
+    private volatile String modo;
+    private final long intervaloMs;
+    private final int tamanhoLote;
+    private final BlockingQueue<MovimentoDiario> fila = new LinkedBlockingQueue<>();
+    // Limita a fila: cada transacção reserva os seus lugares antes do commit
+    private final Semaphore lugares;
+
+    private volatile boolean aCorrer;
+    private Thread escritor;
+    private final AtomicBoolean pendentesPorMover = new AtomicBoolean(true);
+    private final AtomicBoolean emTransbordo = new AtomicBoolean();
+
+    private final LongAdder registados = new LongAdder();
+    private final LongAdder gravados = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder transbordados = new LongAdder();
+    private final LongAdder falhasEscrita = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+
+    public DiarioEstoque(MovimentoEstoqueLoteRepository loteRepository,
+                         EsquemaBaseDados esquema,
+                         @Value("${estoque.diario.modo:assincrono}") String modo,
+                         @Value("${estoque.diario.intervalo-ms:200}") long intervaloMs,
+                         @Value("${estoque.diario.tamanho-lote:500}") int tamanhoLote,
+                         @Value("${estoque.diario.capacidade-fila:20000}") int capacidadeFila) {
+        this.loteRepository = loteRepository;
+        this.esquema = esquema;
+        this.modo = modo.trim().toLowerCase(Locale.ROOT);
+        if (!List.of("assincrono", "outbox", "desligado").contains(this.modo)) {
+            throw new IllegalStateException("estoque.diario.modo inválido: " + modo
+                    + " (use assincrono, outbox ou desligado)");
+        }
+        this.intervaloMs = intervaloMs;
+        this.tamanhoLote = tamanhoLote;
+        this.lugares = new Semaphore(capacidadeFila);
+    }
+
+    // ===== ARRANQUE / PARAGEM =====
+
+    @PostConstruct
+    void iniciar() {
+        if (!"desligado".equals(modo) && !esquemaCriado()) {
+            log.warn("Diário de estoque: modo {} pedido mas falta correr db/diario_estoque.sql; fica desligado", modo);
+            modo = "desligado";
+        }
+        if ("desligado".equals(modo)) {
+            log.info("Diário de estoque desligado");
+            return;
+        }
+        aCorrer = true;
+        escritor = Thread.ofPlatform().name("diario-estoque").daemon(true)
+                .start("outbox".equals(modo) ? this::cicloOutbox : this::cicloFila);
+        log.info("Diário de estoque: modo {} | lote {} | intervalo {} ms", modo, tamanhoLote, intervaloMs);
+    }
+
+    private boolean esquemaCriado() {
+        return esquema.temColuna("movimento_estoque", "id_pedido")
+                && esquema.temColuna("movimento_estoque", "origem")
+                && esquema.temColuna("movimento_estoque_pendente", "id_pendente");
+    }
+
+    @PreDestroy
+    void parar() throws InterruptedException {
+        if (escritor == null) return;
+        aCorrer = false;
+        escritor.interrupt();
+        escritor.join(TimeUnit.SECONDS.toMillis(10));
+
+        // O que ficou na fila é gravado antes de a aplicação terminar
+        List<MovimentoDiario> restantes = new ArrayList<>();
+        fila.drainTo(restantes);
+        if (!restantes.isEmpty() && gravar(restantes)) {
+            log.info("Diário de estoque: {} movimento(s) gravados na paragem", restantes.size());
+        }
+    }
+
+    // ===== REGISTO =====
+
+    /**
+     * Regista os movimentos de uma operação. Numa transacção só contam se
+     * ela fizer commit: são juntos aos restantes movimentos da transacção e
+     * entregues uma única vez, antes do commit (outbox ou transbordo) ou
+     * depois dele (fila).
+     */
+    public void registar(List<MovimentoDiario> movimentos) {
+        if (movimentos.isEmpty() || "desligado".equals(modo)) return;
+        registados.add(movimentos.size());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            movimentosDaTransaccao().addAll(movimentos);
+            return;
+        }
+        // Sem transacção: cada statement faz commit sozinho
+        if (!"outbox".equals(modo) && lugares.tryAcquire(movimentos.size())) {
+            fila.addAll(movimentos);
+            fimDoTransbordo();
+        } else {
+            gravarPendentes(movimentos);
+            pendentesPorMover.set(true);
+        }
+    }
+
+    /**
+     * Preenche o pedido nos movimentos da transacção corrente que ainda não o
+     * têm (checkout do carrinho: o estoque é descontado antes de o pedido
+     * existir). Sem transacção não há nada por entregar e não faz nada.
+     */
+    public void associarPedido(Integer idPedido) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        @SuppressWarnings("unchecked")
+        List<MovimentoDiario> movimentos = (List<MovimentoDiario>) TransactionSynchronizationManager.getResource(this);
+        if (movimentos != null) {
+            movimentos.replaceAll(m -> m.idPedido() == null ? m.comPedido(idPedido) : m);
+        }
+    }
+
+    /** Movimentos já registados na transacção corrente, criados no primeiro registo. */
+    @SuppressWarnings("unchecked")
+    private List<MovimentoDiario> movimentosDaTransaccao() {
+        List<MovimentoDiario> movimentos = (List<MovimentoDiario>) TransactionSynchronizationManager.getResource(this);
+        if (movimentos == null) {
+            movimentos = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, movimentos);
+            TransactionSynchronizationManager.registerSynchronization(new EntregaNoCommit(movimentos));
+        }
+        return movimentos;
+    }
+
+    /** Entrega os movimentos de uma transacção: reserva lugar na fila ou grava-os como pendentes. */
+    private class EntregaNoCommit implements TransactionSynchronization {
+
+        private final List<MovimentoDiario> movimentos;
+        private boolean naFila;
+        private boolean pendentes;
+
+        EntregaNoCommit(List<MovimentoDiario> movimentos) {
+            this.movimentos = movimentos;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (movimentos.isEmpty()) return;
+            naFila = !"outbox".equals(modo) && lugares.tryAcquire(movimentos.size());
+            if (!naFila) {
+                // Ainda dentro da transacção: o INSERT faz commit (ou rollback) com o pedido
+                gravarPendentes(movimentos);
+                pendentes = true;
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            if (naFila) {
+                fila.addAll(movimentos);
+                fimDoTransbordo();
+            } else if (pendentes) {
+                pendentesPorMover.set(true);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(DiarioEstoque.this);
+            if (naFila && status != STATUS_COMMITTED) {
+                lugares.release(movimentos.size());
+            }
+        }
+    }
+
+    private void gravarPendentes(List<MovimentoDiario> movimentos) {
+        loteRepository.inserirPendentes(movimentos);
+        if ("outbox".equals(modo)) return;
+
+        transbordados.add(movimentos.size());
+        if (emTransbordo.compareAndSet(false, true)) {
+            log.warn("Diário de estoque: fila cheia, movimentos desviados para movimento_estoque_pendente "
+                    + "até a escrita recuperar ({} já desviados)", transbordados.sum());
+        }
+    }
+
+    private void fimDoTransbordo() {
+        if (emTransbordo.compareAndSet(true, false)) {
+            log.info("Diário de estoque: fila de novo com lugar ({} movimento(s) desviados no total)",
+                    transbordados.sum());
+        }
+    }
+
+    // ===== GRAVAÇÃO =====
+
+    /**
+     * Espera pelo primeiro movimento e junta mais até tamanho-lote ou
+     * intervalo-ms. Também move os pendentes deixados pelo transbordo.
+     */
+    private void cicloFila() {
+        List<MovimentoDiario> lote = new ArrayList<>(tamanhoLote);
+        while (aCorrer) {
+            try {
+                MovimentoDiario primeiro = fila.poll(1, TimeUnit.SECONDS);
+                if (primeiro != null) {
+                    lote.add(primeiro);
+
+                    long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+                    while (lote.size() < tamanhoLote) {
+                        fila.drainTo(lote, tamanhoLote - lote.size());
+                        if (lote.size() >= tamanhoLote) break;
+                        long resta = limite - System.nanoTime();
+                        if (resta <= 0) break;
+                        MovimentoDiario seguinte = fila.poll(resta, TimeUnit.NANOSECONDS);
+                        if (seguinte == null) break;
+                        lote.add(seguinte);
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (!aCorrer) {
+                    // Paragem: o lote em curso volta para a fila e é gravado por parar()
+                    fila.addAll(lote);
+                    return;
+                }
+            }
+            if (!lote.isEmpty()) {
+                if (!gravar(lote)) {
+                    fila.addAll(lote);   // só na paragem; parar() volta a tentar
+                    return;
+                }
+                lugares.release(lote.size());
+                lote.clear();
+            }
+            if (pendentesPorMover.getAndSet(false)) {
+                moverPendentes();
+            }
+        }
+    }
+
+    /** Passa os pendentes do outbox para movimento_estoque a cada intervalo-ms. */
+    private void cicloOutbox() {
+        while (aCorrer) {
+            moverPendentes();
+            try {
+                Thread.sleep(intervaloMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void moverPendentes() {
+        try {
+            int movidos;
+            do {
+                movidos = loteRepository.moverPendentes(tamanhoLote);
+                if (movidos > 0) {
+                    gravados.add(movidos);
+                    lotes.increment();
+                }
+            } while (movidos == tamanhoLote && aCorrer);
+        } catch (RuntimeException e) {
+            pendentesPorMover.set(true);
+            log.error("Diário de estoque: falha ao mover pendentes, nova tentativa no próximo ciclo", e);
+        }
+    }
+
+    /**
+     * Grava um lote na thread do diário. Com a base de dados em baixo repete
+     * até conseguir, com pausas crescentes: entretanto a fila enche e os
+     * pedidos seguintes passam a ser desviados para o outbox. Só desiste na
+     * paragem da aplicação, e então conta os movimentos como descartados.
+     *
+     * @return false se desistiu (paragem)
+     */
+    private boolean gravar(List<MovimentoDiario> lote) {
+        for (int tentativa = 1; ; tentativa++) {
+            try {
+                loteRepository.inserir(lote);
+                gravados.add(lote.size());
+                lotes.increment();
+                return true;
+            } catch (RuntimeException e) {
+                falhasEscrita.increment();
+                if (!aCorrer && tentativa >= TENTATIVAS_NA_PARAGEM) {
+                    descartados.add(lote.size());
+                    log.error("Diário de estoque: {} movimento(s) descartados na paragem após {} tentativas: {}",
+                            lote.size(), tentativa, lote, e);
+                    return false;
+                }
+                log.warn("Diário de estoque: falha ao gravar {} movimento(s) (tentativa {})",
+                        lote.size(), tentativa, e);
+                try {
+                    Thread.sleep(Math.min(tentativa * 1000L, PAUSA_MAXIMA_MS));
+                } catch (InterruptedException ie) {
+                    // Paragem pedida: as tentativas seguintes contam para o limite
+                }
+            }
+        }
+    }
+
+    // ===== ESTATÍSTICAS =====
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("modo", modo);
+        stats.put("naFila", fila.size());
+        stats.put("lugaresLivres", lugares.availablePermits());
+        stats.put("registados", registados.sum());
+        stats.put("gravados", gravados.sum());
+        stats.put("lotes", lotes.sum());
+        stats.put("transbordados", transbordados.sum());
+        stats.put("emTransbordo", emTransbordo.get());
+        stats.put("falhasEscrita", falhasEscrita.sum());
+        stats.put("descartados", descartados.sum());
+        return stats;
+    }
+}
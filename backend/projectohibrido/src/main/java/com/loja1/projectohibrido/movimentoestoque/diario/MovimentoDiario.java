@@ -0,0 +1,30 @@
+package com.loja1.projectohibrido.movimentoestoque.diario;
+
+import java.time.LocalDateTime;
+
+/**
+ * Movimento de estoque gerado automaticamente (pedidos, checkout do
+ * carrinho), à espera de ser gravado em movimento_estoque.
+ *
+ * @param idPedido no checkout do carrinho fica null até o pedido ser criado
+ *                 (DiarioEstoque.associarPedido, antes do commit)
+ * @param origem   quem gerou o movimento: "pedido" ou "carrinho"
+ *                 (movimentos registados pela API ficam com origem null)
+ */
+public record MovimentoDiario(
+        Integer idProduto,
+        Integer idUsuario,
+        Integer idPedido,
+        String origem,
+        String tipoMovimento,
+        int quantidade,
+        int quantidadeAnterior,
+        int quantidadeNova,
+        String motivo,
+        LocalDateTime dataMovimento) {
+
+    public MovimentoDiario comPedido(Integer idPedido) {
+        return new MovimentoDiario(idProduto, idUsuario, idPedido, origem, tipoMovimento, quantidade,
+                quantidadeAnterior, quantidadeNova, motivo, dataMovimento);
+    }
+}
@@ -0,0 +1,20 @@
+package com.loja1.projectohibrido.movimentoestoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstoqueEmDataDTO {
+    private Integer idProduto;
+    private String nomeProduto;
+    private LocalDateTime data;
+    private Integer quantidade;
+    // snapshot | movimento | movimento_posterior | snapshot_posterior | actual
+    private String fonte;
+    private LocalDateTime dataReferencia; // instante do snapshot/movimento usado (null se "actual")
+}
@@ -0,0 +1,16 @@
+package com.loja1.projectohibrido.movimentoestoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovimentoEstoquePaginaDTO {
+    private List<MovimentoEstoqueResponseDTO> itens;
+    private String proximoCursor; // null quando não há mais páginas
+    private boolean temMais;
+}
@@ -0,0 +1,20 @@
+package com.loja1.projectohibrido.movimentoestoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PontoHistoricoEstoqueDTO {
+    private LocalDateTime data;
+    private Integer quantidade;
+    private String fonte;          // inicio | movimento | snapshot
+    private String tipoMovimento;  // só em movimentos
+    // Variação que não passou por movimento_estoque (ex.: edição directa do produto),
+    // detectada entre o ponto anterior e este; null se não houver
+    private Integer diferencaNaoRegistada;
+}
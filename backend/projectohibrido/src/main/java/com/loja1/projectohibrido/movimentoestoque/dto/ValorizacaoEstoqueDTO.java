@@ -0,0 +1,33 @@
+package com.loja1.projectohibrido.movimentoestoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ValorizacaoEstoqueDTO {
+    private LocalDateTime data;
+    private long totalUnidades;
+    private BigDecimal valorVenda;     // quantidade × preço actual
+    private BigDecimal valorCusto;     // quantidade × preço de custo (só produtos com custo)
+    private int produtosSemCusto;
+    private List<Item> itens;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Integer idProduto;
+        private String nomeProduto;
+        private Integer quantidade;
+        private String fonte;
+        private BigDecimal valorVenda;
+        private BigDecimal valorCusto; // null sem preço de custo
+    }
+}
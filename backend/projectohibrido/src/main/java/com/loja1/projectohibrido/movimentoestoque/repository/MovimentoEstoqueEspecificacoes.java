@@ -0,0 +1,56 @@
+package com.loja1.projectohibrido.movimentoestoque.repository;
+
+import com.loja1.projectohibrido.movimentoestoque.entity.MovimentoEstoque;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filtros do histórico de movimentos de estoque, combinados conforme os
+ * parâmetros recebidos. Filtros não informados não entram no SQL gerado.
+ */
+public final class MovimentoEstoqueEspecificacoes {
+
+    private MovimentoEstoqueEspecificacoes() {}
+
+    public static Specification<MovimentoEstoque> doProduto(Integer idProduto) {
+        return (root, query, cb) -> idProduto == null ? null : cb.equal(root.get("idProduto"), idProduto);
+    }
+
+    public static Specification<MovimentoEstoque> doUsuario(Integer idUsuario) {
+        return (root, query, cb) -> idUsuario == null ? null : cb.equal(root.get("idUsuario"), idUsuario);
+    }
+
+    public static Specification<MovimentoEstoque> doTipo(String tipoMovimento) {
+        return (root, query, cb) -> tipoMovimento == null || tipoMovimento.isBlank() ? null
+                : cb.equal(root.get("tipoMovimento"), tipoMovimento);
+    }
+
+    public static Specification<MovimentoEstoque> desde(LocalDateTime inicio) {
+        return (root, query, cb) -> inicio == null ? null
+                : cb.greaterThanOrEqualTo(root.get("dataMovimento"), inicio);
+    }
+
+    public static Specification<MovimentoEstoque> ate(LocalDateTime fim) {
+        return (root, query, cb) -> fim == null ? null
+                : cb.lessThanOrEqualTo(root.get("dataMovimento"), fim);
+    }
+
+    /**
+     * Keyset: movimentos "depois" do cursor na ordem (dataMovimento DESC, idMovimento DESC).
+     * O termo redundante {@code dataMovimento <= :data} deixa o PostgreSQL
+     * começar a leitura do índice no cursor (ver ProdutoEspecificacoes.aposCursor).
+     */
+    public static Specification<MovimentoEstoque> aposCursor(LocalDateTime dataMovimento, Integer idMovimento) {
+        return (root, query, cb) -> {
+            if (dataMovimento == null || idMovimento == null) return null;
+            return cb.and(
+                cb.lessThanOrEqualTo(root.get("dataMovimento"), dataMovimento),
+                cb.or(
+                    cb.lessThan(root.get("dataMovimento"), dataMovimento),
+                    cb.lessThan(root.get("idMovimento"), idMovimento)
+                )
+            );
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.loja1.projectohibrido.movimentoestoque.repository;
+
+import com.loja1.projectohibrido.movimentoestoque.diario.MovimentoDiario;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Escrita em lote do diário de movimentos de estoque (ver DiarioEstoque):
+ * INSERT multi-linha em movimento_estoque ou, no modo outbox, em
+ * movimento_estoque_pendente, de onde os movimentos são depois movidos.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MovimentoEstoqueLoteRepository {
+
+    // O driver do PostgreSQL aceita no máximo 32767 parâmetros por statement
+    private static final int MAX_PARAMETROS = 30000;
+    private static final int COLUNAS = 10;
+    private static final String LISTA_COLUNAS = """
+            id_produto, id_usuario, id_pedido, origem, tipo_movimento, quantidade,
+            quantidade_anterior, quantidade_nova, motivo, data_movimento""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void inserir(List<MovimentoDiario> movimentos) {
+        inserirEm("movimento_estoque", movimentos);
+    }
+
+    /** Modo outbox: grava na transacção corrente, numa tabela só com PK. */
+    public void inserirPendentes(List<MovimentoDiario> movimentos) {
+        inserirEm("movimento_estoque_pendente", movimentos);
+    }
+
+    /**
+     * Passa até {@code limite} pendentes (os mais antigos) para
+     * movimento_estoque num só statement. SKIP LOCKED deixa correr mais do que
+     * uma instância sem moverem o mesmo pendente.
+     *
+     * @return nº de movimentos passados
+     */
+    public int moverPendentes(int limite) {
+        return jdbcTemplate.update("""
+                WITH lote AS (
+                    DELETE FROM movimento_estoque_pendente
+                     WHERE id_pendente IN (SELECT id_pendente FROM movimento_estoque_pendente
+                                            ORDER BY id_pendente
+                                            LIMIT ?
+                                            FOR UPDATE SKIP LOCKED)
+                    RETURNING id_pendente, %1$s
+                )
+                INSERT INTO movimento_estoque (%1$s)
+                SELECT %1$s FROM lote ORDER BY id_pendente
+                """.formatted(LISTA_COLUNAS), limite);
+    }
+
+    private void inserirEm(String tabela, List<MovimentoDiario> movimentos) {
+        int porStatement = MAX_PARAMETROS / COLUNAS;
+        for (int inicio = 0; inicio < movimentos.size(); inicio += porStatement) {
+            inserirBloco(tabela, movimentos.subList(inicio, Math.min(inicio + porStatement, movimentos.size())));
+        }
+    }
+
+    private void inserirBloco(String tabela, List<MovimentoDiario> bloco) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tabela)
+                .append(" (").append(LISTA_COLUNAS).append(") VALUES ");
+        for (int i = 0; i < bloco.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+
+        jdbcTemplate.update(sql.toString(), ps -> {
+            int p = 1;
+            for (MovimentoDiario m : bloco) {
+                ps.setInt(p++, m.idProduto());
+                ps.setInt(p++, m.idUsuario());
+                ps.setObject(p++, m.idPedido());
+                ps.setString(p++, m.origem());
+                ps.setString(p++, m.tipoMovimento());
+                ps.setInt(p++, m.quantidade());
+                ps.setInt(p++, m.quantidadeAnterior());
+                ps.setInt(p++, m.quantidadeNova());
+                ps.setString(p++, m.motivo());
+                ps.setTimestamp(p++, Timestamp.valueOf(m.dataMovimento()));
+            }
+        });
+    }
+}
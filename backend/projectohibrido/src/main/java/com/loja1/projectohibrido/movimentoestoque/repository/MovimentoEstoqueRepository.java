@@ -2,6 +2,7 @@ package com.loja1.projectohibrido.movimentoestoque.repository;
 
 import com.loja1.projectohibrido.movimentoestoque.entity.MovimentoEstoque;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import org.springframework.data.jpa.repository.Query;
@@ -10,7 +11,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface MovimentoEstoqueRepository extends JpaRepository<MovimentoEstoque, Integer> {
+public interface MovimentoEstoqueRepository extends JpaRepository<MovimentoEstoque, Integer>,
+        JpaSpecificationExecutor<MovimentoEstoque> {
     List<MovimentoEstoque> findByIdProdutoOrderByDataMovimentoDesc(Integer idProduto);
 
 List<MovimentoEstoque> findAllByOrderByDataMovimentoDesc();
@@ -0,0 +1,149 @@
+package com.loja1.projectohibrido.movimentoestoque.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshots de estoque (tabela estoque_snapshot, ver db/snapshot_estoque.sql)
+ * e leituras de movimento_estoque à volta de uma data.
+ *
+ * Todas as leituras são por (id_produto, data): cada uma é uma descida no
+ * índice da PK do snapshot ou em idx_movimento_estoque_produto_data, nunca
+ * uma passagem pelos movimentos.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SnapshotEstoqueRepository {
+
+    /** Valor conhecido do estoque num instante. */
+    public record Marca(LocalDateTime data, int quantidade) {}
+
+    /**
+     * O que se sabe do estoque de um produto à volta da data D. Cada marca é
+     * null se não existir.
+     *
+     * @param snapshotAntes   último snapshot até D
+     * @param movimentoAntes  último movimento até D (quantidade_nova)
+     * @param snapshotDepois  primeiro snapshot depois de D
+     * @param movimentoDepois primeiro movimento depois de D (quantidade_anterior)
+     */
+    public record Evidencia(Integer idProduto, String nomeProduto, int estoqueActual,
+                            BigDecimal preco, BigDecimal precoCusto,
+                            Marca snapshotAntes, Marca movimentoAntes,
+                            Marca snapshotDepois, Marca movimentoDepois) {}
+
+    /** Movimento de um produto, por ordem, para a reconstituição do histórico. */
+    public record Passo(LocalDateTime data, String tipoMovimento,
+                        int quantidadeAnterior, int quantidadeNova) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // ===== ESCRITA =====
+
+    /** Snapshot do estoque actual de todos os produtos; devolve o nº de linhas. */
+    public int gravarSnapshot(LocalDateTime instante) {
+        return jdbcTemplate.update("""
+                INSERT INTO estoque_snapshot (id_produto, data_snapshot, quantidade)
+                SELECT id_produto, ?, quantidade_estoque
+                  FROM produto
+                ON CONFLICT DO NOTHING
+                """, Timestamp.valueOf(instante));
+    }
+
+    /** Apaga snapshots anteriores a {@code limite}, mantendo o último de cada produto. */
+    public int apagarAnteriores(LocalDateTime limite) {
+        return jdbcTemplate.update("""
+                DELETE FROM estoque_snapshot s
+                 WHERE s.data_snapshot < ?
+                   AND EXISTS (SELECT 1 FROM estoque_snapshot r
+                                WHERE r.id_produto = s.id_produto
+                                  AND r.data_snapshot > s.data_snapshot)
+                """, Timestamp.valueOf(limite));
+    }
+
+    // ===== LEITURA =====
+
+    /**
+     * Evidência à volta de D para os produtos cadastrados até D (ou só para
+     * {@code idProduto}, se não for null): quatro descidas de índice por
+     * produto, seja qual for o nº de movimentos.
+     */
+    public List<Evidencia> evidencias(LocalDateTime data, Integer idProduto) {
+        Timestamp d = Timestamp.valueOf(data);
+        List<Object> params = new ArrayList<>(List.of(d, d, d, d, d));
+        String filtroProduto = "";
+        if (idProduto != null) {
+            filtroProduto = " AND p.id_produto = ?";
+            params.add(idProduto);
+        }
+
+        return jdbcTemplate.query("""
+                SELECT p.id_produto, p.nome_produto, p.quantidade_estoque, p.preco, p.preco_custo,
+                       sa.data_snapshot, sa.quantidade,
+                       ma.data_movimento, ma.quantidade_nova,
+                       sd.data_snapshot, sd.quantidade,
+                       md.data_movimento, md.quantidade_anterior
+                  FROM produto p
+                  LEFT JOIN LATERAL (SELECT s.data_snapshot, s.quantidade
+                                       FROM estoque_snapshot s
+                                      WHERE s.id_produto = p.id_produto AND s.data_snapshot <= ?
+                                      ORDER BY s.data_snapshot DESC LIMIT 1) sa ON true
+                  LEFT JOIN LATERAL (SELECT m.data_movimento, m.quantidade_nova
+                                       FROM movimento_estoque m
+                                      WHERE m.id_produto = p.id_produto AND m.data_movimento <= ?
+                                      ORDER BY m.data_movimento DESC, m.id_movimento DESC LIMIT 1) ma ON true
+                  LEFT JOIN LATERAL (SELECT s.data_snapshot, s.quantidade
+                                       FROM estoque_snapshot s
+                                      WHERE s.id_produto = p.id_produto AND s.data_snapshot > ?
+                                      ORDER BY s.data_snapshot LIMIT 1) sd ON true
+                  LEFT JOIN LATERAL (SELECT m.data_movimento, m.quantidade_anterior
+                                       FROM movimento_estoque m
+                                      WHERE m.id_produto = p.id_produto AND m.data_movimento > ?
+                                      ORDER BY m.data_movimento, m.id_movimento LIMIT 1) md ON true
+                 WHERE p.data_cadastro <= ?%s
+                 ORDER BY p.id_produto
+                """.formatted(filtroProduto),
+                (rs, i) -> new Evidencia(
+                        rs.getInt(1), rs.getString(2), rs.getInt(3),
+                        rs.getBigDecimal(4), rs.getBigDecimal(5),
+                        marca(rs, 6), marca(rs, 8), marca(rs, 10), marca(rs, 12)),
+                params.toArray());
+    }
+
+    /** Snapshots de um produto no intervalo ]de, ate], por ordem. */
+    public List<Marca> snapshotsEntre(Integer idProduto, LocalDateTime de, LocalDateTime ate) {
+        return jdbcTemplate.query("""
+                SELECT data_snapshot, quantidade
+                  FROM estoque_snapshot
+                 WHERE id_produto = ? AND data_snapshot > ? AND data_snapshot <= ?
+                 ORDER BY data_snapshot
+                """, (rs, i) -> marca(rs, 1), idProduto, Timestamp.valueOf(de), Timestamp.valueOf(ate));
+    }
+
+    /** Movimentos de um produto no intervalo ]de, ate], por ordem. */
+    public List<Passo> movimentosEntre(Integer idProduto, LocalDateTime de, LocalDateTime ate) {
+        return jdbcTemplate.query("""
+                SELECT data_movimento, tipo_movimento, quantidade_anterior, quantidade_nova
+                  FROM movimento_estoque
+                 WHERE id_produto = ? AND data_movimento > ? AND data_movimento <= ?
+                 ORDER BY data_movimento, id_movimento
+                """,
+                (rs, i) -> new Passo(rs.getTimestamp(1).toLocalDateTime(), rs.getString(2),
+                        rs.getInt(3), rs.getInt(4)),
+                idProduto, Timestamp.valueOf(de), Timestamp.valueOf(ate));
+    }
+
+    private static Marca marca(ResultSet rs, int coluna) throws SQLException {
+        Timestamp data = rs.getTimestamp(coluna);
+        return data == null ? null : new Marca(data.toLocalDateTime(), rs.getInt(coluna + 1));
+    }
+}
@@ -0,0 +1,188 @@
+package com.loja1.projectohibrido.movimentoestoque.service;
+
+import com.loja1.projectohibrido.movimentoestoque.dto.EstoqueEmDataDTO;
+import com.loja1.projectohibrido.movimentoestoque.dto.PontoHistoricoEstoqueDTO;
+import com.loja1.projectohibrido.movimentoestoque.dto.ValorizacaoEstoqueDTO;
+import com.loja1.projectohibrido.movimentoestoque.repository.SnapshotEstoqueRepository;
+import com.loja1.projectohibrido.movimentoestoque.repository.SnapshotEstoqueRepository.Evidencia;
+import com.loja1.projectohibrido.movimentoestoque.repository.SnapshotEstoqueRepository.Marca;
+import com.loja1.projectohibrido.movimentoestoque.repository.SnapshotEstoqueRepository.Passo;
+import com.loja1.projectohibrido.usuario.exception.BusinessException;
+import com.loja1.projectohibrido.usuario.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estoque numa data passada, a partir de snapshots periódicos e dos
+ * movimentos (quantidadeAnterior / quantidadeNova).
+ *
+ * O estoque em D é o do ponto conhecido mais recente até D: o último
+ * snapshot ou a quantidade_nova do último movimento, o que for posterior.
+ * Como cada movimento guarda o estoque resultante, não é preciso somar os
+ * movimentos desde o snapshot — basta uma descida de índice de cada lado.
+ * Sem nada antes de D usa-se o primeiro ponto depois (quantidade_anterior
+ * do movimento ou snapshot) e, em último caso, o estoque actual.
+ *
+ * O histórico de um intervalo reconstitui o estoque passo a passo desde o
+ * ponto inicial; snapshots pelo meio confirmam o valor e revelam variações
+ * que não passaram por movimento_estoque (ex.: edição directa do produto).
+ */
+@Service
+@Slf4j
+public class InventarioService {
+
+    private final SnapshotEstoqueRepository snapshotRepository;
+    private final int retencaoDias;
+
+    public InventarioService(SnapshotEstoqueRepository snapshotRepository,
+                             @Value("${estoque.snapshot.retencao-dias:0}") int retencaoDias) {
+        this.snapshotRepository = snapshotRepository;
+        this.retencaoDias = retencaoDias;
+    }
+
+    /** Valor escolhido para o estoque numa data e de onde veio. */
+    private record Estimativa(int quantidade, String fonte, LocalDateTime dataReferencia) {}
+
+    // ===== SNAPSHOTS =====
+
+    @Scheduled(cron = "${estoque.snapshot.cron:0 5 0 * * *}")
+    @Transactional
+    public int gravarSnapshot() {
+        LocalDateTime agora = LocalDateTime.now();
+        int produtos = snapshotRepository.gravarSnapshot(agora);
+        int apagados = retencaoDias > 0
+                ? snapshotRepository.apagarAnteriores(agora.minusDays(retencaoDias))
+                : 0;
+        log.info("📸 Snapshot de estoque: {} produto(s) | {} snapshot(s) antigos apagados", produtos, apagados);
+        return produtos;
+    }
+
+    // ===== CONSULTAS =====
+
+    @Transactional(readOnly = true)
+    public EstoqueEmDataDTO estoqueEm(Integer idProduto, LocalDateTime data) {
+        Evidencia evidencia = evidenciaDoProduto(idProduto, data);
+        Estimativa estimativa = estimar(evidencia);
+        return new EstoqueEmDataDTO(idProduto, evidencia.nomeProduto(), data,
+                estimativa.quantidade(), estimativa.fonte(), estimativa.dataReferencia());
+    }
+
+    /**
+     * Estoque do produto de {@code inicio} a {@code fim}: o valor em inicio e
+     * um ponto por cada movimento ou snapshot do intervalo.
+     */
+    @Transactional(readOnly = true)
+    public List<PontoHistoricoEstoqueDTO> historico(Integer idProduto, LocalDateTime inicio, LocalDateTime fim) {
+        if (fim.isBefore(inicio)) {
+            throw new BusinessException("fim não pode ser anterior a inicio");
+        }
+        Estimativa inicial = estimar(evidenciaDoProduto(idProduto, inicio));
+
+        List<PontoHistoricoEstoqueDTO> pontos = new ArrayList<>();
+        pontos.add(new PontoHistoricoEstoqueDTO(inicio, inicial.quantidade(), "inicio", null, null));
+
+        List<Passo> movimentos = snapshotRepository.movimentosEntre(idProduto, inicio, fim);
+        List<Marca> snapshots = snapshotRepository.snapshotsEntre(idProduto, inicio, fim);
+
+        // Junta as duas listas por data (em empate o movimento vem primeiro:
+        // o snapshot lê o estoque já com ele aplicado)
+        int actual = inicial.quantidade();
+        int m = 0, s = 0;
+        while (m < movimentos.size() || s < snapshots.size()) {
+            boolean usarMovimento = s == snapshots.size()
+                    || (m < movimentos.size() && !movimentos.get(m).data().isAfter(snapshots.get(s).data()));
+            if (usarMovimento) {
+                Passo passo = movimentos.get(m++);
+                pontos.add(new PontoHistoricoEstoqueDTO(passo.data(), passo.quantidadeNova(), "movimento",
+                        passo.tipoMovimento(), diferenca(actual, passo.quantidadeAnterior())));
+                actual = passo.quantidadeNova();
+            } else {
+                Marca snapshot = snapshots.get(s++);
+                pontos.add(new PontoHistoricoEstoqueDTO(snapshot.data(), snapshot.quantidade(), "snapshot",
+                        null, diferenca(actual, snapshot.quantidade())));
+                actual = snapshot.quantidade();
+            }
+        }
+        return pontos;
+    }
+
+    /**
+     * Valorização do inventário em D (preços actuais): uma linha por produto
+     * cadastrado até D. O custo é proporcional ao nº de produtos — quatro
+     * descidas de índice por produto — e não ao nº de movimentos.
+     */
+    @Transactional(readOnly = true)
+    public ValorizacaoEstoqueDTO valorizacao(LocalDateTime data) {
+        long inicio = System.currentTimeMillis();
+        List<ValorizacaoEstoqueDTO.Item> itens = new ArrayList<>();
+        long unidades = 0;
+        BigDecimal valorVenda = BigDecimal.ZERO;
+        BigDecimal valorCusto = BigDecimal.ZERO;
+        int semCusto = 0;
+
+        for (Evidencia evidencia : snapshotRepository.evidencias(data, null)) {
+            Estimativa estimativa = estimar(evidencia);
+            BigDecimal quantidade = BigDecimal.valueOf(estimativa.quantidade());
+            BigDecimal venda = evidencia.preco().multiply(quantidade);
+            BigDecimal custo = evidencia.precoCusto() != null ? evidencia.precoCusto().multiply(quantidade) : null;
+
+            unidades += estimativa.quantidade();
+            valorVenda = valorVenda.add(venda);
+            if (custo != null) {
+                valorCusto = valorCusto.add(custo);
+            } else {
+                semCusto++;
+            }
+            itens.add(new ValorizacaoEstoqueDTO.Item(evidencia.idProduto(), evidencia.nomeProduto(),
+                    estimativa.quantidade(), estimativa.fonte(), venda, custo));
+        }
+
+        log.info("📊 Valorização do estoque em {}: {} produto(s) em {} ms",
+                data, itens.size(), System.currentTimeMillis() - inicio);
+        return new ValorizacaoEstoqueDTO(data, unidades, valorVenda, valorCusto, semCusto, itens);
+    }
+
+    // ===== AUXILIARES =====
+
+    private Evidencia evidenciaDoProduto(Integer idProduto, LocalDateTime data) {
+        List<Evidencia> evidencias = snapshotRepository.evidencias(data, idProduto);
+        if (evidencias.isEmpty()) {
+            throw new ResourceNotFoundException("Produto " + idProduto + " não encontrado ou cadastrado depois de " + data);
+        }
+        return evidencias.get(0);
+    }
+
+    private static Estimativa estimar(Evidencia e) {
+        Marca snapshot = e.snapshotAntes();
+        Marca movimento = e.movimentoAntes();
+        if (movimento != null && (snapshot == null || movimento.data().isAfter(snapshot.data()))) {
+            return new Estimativa(movimento.quantidade(), "movimento", movimento.data());
+        }
+        if (snapshot != null) {
+            return new Estimativa(snapshot.quantidade(), "snapshot", snapshot.data());
+        }
+
+        // Nada até D: o estoque antes do primeiro ponto conhecido depois de D
+        snapshot = e.snapshotDepois();
+        movimento = e.movimentoDepois();
+        if (movimento != null && (snapshot == null || !movimento.data().isAfter(snapshot.data()))) {
+            return new Estimativa(movimento.quantidade(), "movimento_posterior", movimento.data());
+        }
+        if (snapshot != null) {
+            return new Estimativa(snapshot.quantidade(), "snapshot_posterior", snapshot.data());
+        }
+        return new Estimativa(e.estoqueActual(), "actual", null);
+    }
+
+    private static Integer diferenca(int esperado, int encontrado) {
+        return esperado == encontrado ? null : encontrado - esperado;
+    }
+}
@@ -1,19 +1,28 @@
 package com.loja1.projectohibrido.movimentoestoque.service;
 
+import com.loja1.projectohibrido.movimentoestoque.dto.MovimentoEstoquePaginaDTO;
 import com.loja1.projectohibrido.movimentoestoque.dto.MovimentoEstoqueRequestDTO;
 import com.loja1.projectohibrido.movimentoestoque.dto.MovimentoEstoqueResponseDTO;
 import com.loja1.projectohibrido.movimentoestoque.entity.MovimentoEstoque;
+import com.loja1.projectohibrido.movimentoestoque.repository.MovimentoEstoqueEspecificacoes;
 import com.loja1.projectohibrido.movimentoestoque.repository.MovimentoEstoqueRepository;
+import com.loja1.projectohibrido.produto.repository.CursorKeyset;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.loja1.projectohibrido.produto.repository.ProdutoRepository;
 import com.loja1.projectohibrido.usuario.repository.UsuarioRepository; // ajuste o package ao seu projeto
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +33,11 @@ public class MovimentoEstoqueService {
 private final ProdutoRepository produtoRepository;
 private final UsuarioRepository usuarioRepository;
 
+    private static final int LIMITE_PAGINA_PADRAO = 50;
+    private static final int LIMITE_PAGINA_MAXIMO = 200;
+    private static final Sort ORDEM_HISTORICO = Sort.by(
+            Sort.Order.desc("dataMovimento"), Sort.Order.desc("idMovimento"));
+
 
     @Transactional
     public MovimentoEstoqueResponseDTO registrar(MovimentoEstoqueRequestDTO dto) {
@@ -43,31 +57,102 @@ private final UsuarioRepository usuarioRepository;
         MovimentoEstoque salvo = repository.save(movimento);
         log.info("✅ Movimento registrado | id={}", salvo.getIdMovimento());
 
-        return mapToDTO(salvo);
+        return mapear(List.of(salvo)).get(0);
+    }
+
+    /**
+     * Histórico paginado por cursor, ordenado por (dataMovimento DESC,
+     * idMovimento DESC), com filtros opcionais. Cada página custa três
+     * consultas: os movimentos e os nomes de produtos e utilizadores em lote.
+     */
+    @Transactional(readOnly = true)
+    public MovimentoEstoquePaginaDTO listarPagina(String cursor, Integer limite,
+                                                 Integer idProduto, Integer idUsuario, String tipoMovimento,
+                                                 LocalDateTime inicio, LocalDateTime fim) {
+        int tamanho = (limite == null || limite <= 0)
+                ? LIMITE_PAGINA_PADRAO
+                : Math.min(limite, LIMITE_PAGINA_MAXIMO);
+
+        Specification<MovimentoEstoque> consulta = Specification.allOf(
+                MovimentoEstoqueEspecificacoes.doProduto(idProduto),
+                MovimentoEstoqueEspecificacoes.doUsuario(idUsuario),
+                MovimentoEstoqueEspecificacoes.doTipo(tipoMovimento),
+                MovimentoEstoqueEspecificacoes.desde(inicio),
+                MovimentoEstoqueEspecificacoes.ate(fim));
+        if (cursor != null && !cursor.isBlank()) {
+            CursorKeyset chave = CursorKeyset.decodificar(cursor);
+            consulta = consulta.and(MovimentoEstoqueEspecificacoes.aposCursor(chave.data(), chave.id()));
+        }
+
+        // Busca um movimento a mais só para saber se existe página seguinte
+        List<MovimentoEstoque> movimentos = repository.findBy(consulta,
+                q -> q.sortBy(ORDEM_HISTORICO).limit(tamanho + 1).all());
+
+        boolean temMais = movimentos.size() > tamanho;
+        if (temMais) {
+            movimentos = movimentos.subList(0, tamanho);
+        }
+        String proximoCursor = null;
+        if (temMais) {
+            MovimentoEstoque ultimo = movimentos.get(movimentos.size() - 1);
+            proximoCursor = new CursorKeyset(ultimo.getDataMovimento(), ultimo.getIdMovimento()).codificar();
+        }
+
+        log.info("🔍 Página de movimentos: {} movimento(s) | temMais={}", movimentos.size(), temMais);
+        return new MovimentoEstoquePaginaDTO(mapear(movimentos), proximoCursor, temMais);
     }
 
     @Transactional(readOnly = true)
     public List<MovimentoEstoqueResponseDTO> listarPorProduto(Integer idProduto) {
         log.info("🔍 Buscando movimentos do produto={}", idProduto);
-        return repository.findByIdProdutoOrderByDataMovimentoDesc(idProduto)
-                .stream().map(this::mapToDTO).collect(Collectors.toList());
+        return mapear(repository.findByIdProdutoOrderByDataMovimentoDesc(idProduto));
     }
 
-    @Transactional(readOnly = true)
+    /** Tabela inteira: para o ecrã de histórico use {@link #listarPagina}. */
+@Transactional(readOnly = true)
 public List<MovimentoEstoqueResponseDTO> listarTodos() {
     log.info("🔍 Listando todos os movimentos de estoque");
-    return repository.findAllByOrderByDataMovimentoDesc()
-            .stream().map(this::mapToDTO).collect(Collectors.toList());
+    return mapear(repository.findAllByOrderByDataMovimentoDesc());
 }
 
 @Transactional(readOnly = true)
 public List<MovimentoEstoqueResponseDTO> listarPorPeriodo(LocalDateTime inicio, LocalDateTime fim) {
     log.info("🔍 Listando movimentos entre {} e {}", inicio, fim);
-    return repository.findByPeriodo(inicio, fim)
-            .stream().map(this::mapToDTO).collect(Collectors.toList());
+    return mapear(repository.findByPeriodo(inicio, fim));
 }
 
- private MovimentoEstoqueResponseDTO mapToDTO(MovimentoEstoque m) {
+ /**
+  * Converte os movimentos resolvendo os nomes em lote: uma consulta para
+  * os produtos e outra para os utilizadores, seja qual for o nº de movimentos.
+  */
+ private List<MovimentoEstoqueResponseDTO> mapear(List<MovimentoEstoque> movimentos) {
+    if (movimentos.isEmpty()) return List.of();
+
+    Set<Integer> idsProdutos = new HashSet<>();
+    Set<Integer> idsUsuarios = new HashSet<>();
+    for (MovimentoEstoque m : movimentos) {
+        idsProdutos.add(m.getIdProduto());
+        idsUsuarios.add(m.getIdUsuario());
+    }
+
+    Map<Integer, String> nomesProdutos = new HashMap<>();
+    produtoRepository.findAllById(idsProdutos)
+            .forEach(p -> nomesProdutos.put(p.getIdProduto(), p.getNomeProduto()));
+
+    Map<Integer, String> nomesUsuarios = new HashMap<>();
+    usuarioRepository.findAllById(idsUsuarios)
+            .forEach(u -> nomesUsuarios.put(u.getIdUsuario(), u.getNome() + " " + u.getApelido()));
+
+    List<MovimentoEstoqueResponseDTO> dtos = new ArrayList<>(movimentos.size());
+    for (MovimentoEstoque m : movimentos) {
+        dtos.add(mapToDTO(m, nomesProdutos, nomesUsuarios));
+    }
+    return dtos;
+ }
+
+ private MovimentoEstoqueResponseDTO mapToDTO(MovimentoEstoque m,
+                                              Map<Integer, String> nomesProdutos,
+                                              Map<Integer, String> nomesUsuarios) {
     MovimentoEstoqueResponseDTO dto = new MovimentoEstoqueResponseDTO();
     dto.setIdMovimento(m.getIdMovimento());
     dto.setIdProduto(m.getIdProduto());
@@ -80,18 +165,10 @@ public List<MovimentoEstoqueResponseDTO> listarPorPeriodo(LocalDateTime inicio,
     dto.setDataMovimento(m.getDataMovimento());
 
     // ── Nome do produto ──
-    produtoRepository.findById(m.getIdProduto())
-            .ifPresentOrElse(
-                p -> dto.setNomeProduto(p.getNomeProduto()),
-                () -> dto.setNomeProduto("Produto #" + m.getIdProduto())
-            );
+    dto.setNomeProduto(nomesProdutos.getOrDefault(m.getIdProduto(), "Produto #" + m.getIdProduto()));
 
     // ── Nome do usuário (nome + apelido) ──
-    usuarioRepository.findById(m.getIdUsuario())
-            .ifPresentOrElse(
-                u -> dto.setNomeUsuario(u.getNome() + " " + u.getApelido()),
-                () -> dto.setNomeUsuario("Usuário #" + m.getIdUsuario())
-            );
+    dto.setNomeUsuario(nomesUsuarios.getOrDefault(m.getIdUsuario(), "Usuário #" + m.getIdUsuario()));
 
     return dto;
 }
@@ -6,8 +6,10 @@ import com.loja1.projectohibrido.pedido.service.PedidoService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.util.Map;
 import java.util.List;
 
@@ -198,6 +200,22 @@ public ResponseEntity<Map<String, Long>> contarNotificacoes(
     return ResponseEntity.ok(pedidoService.contarNotificacoes(idUsuario));
 }
 
+// GET /api/pedidos/usuario/{idUsuario}/notificacoes/stream
+// text/event-stream: evento "contadores" ao ligar e a cada mudança; evento
+// "pedido" quando um pedido do utilizador é criado, finalizado, cancelado ou
+// activado. Substitui o polling de /notificacoes.
+@GetMapping(value = "/usuario/{idUsuario}/notificacoes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+public SseEmitter notificacoesStream(
+        @PathVariable Integer idUsuario) {
+    return pedidoService.inscreverNotificacoes(idUsuario);
+}
+
+// GET /api/pedidos/notificacoes/estatisticas
+@GetMapping("/notificacoes/estatisticas")
+public ResponseEntity<Map<String, Object>> estatisticasNotificacoes() {
+    return ResponseEntity.ok(pedidoService.estatisticasNotificacoes());
+}
+
 // PATCH /api/pedidos/usuario/{idUsuario}/marcar-finalizados-vistos
 @PatchMapping("/usuario/{idUsuario}/marcar-finalizados-vistos")
 public ResponseEntity<Void> marcarFinalizadosComoVistos(
@@ -0,0 +1,23 @@
+package com.loja1.projectohibrido.pedido.dto;
+
+import java.time.LocalDateTime;
+
+/** Mudança de estado de um pedido, enviada no stream de notificações. */
+public class EventoPedidoDTO {
+    public Integer idPedido;
+    public String reference;
+    public String statusPedido;
+    public Boolean ativo;
+    public String accao;          // criado, finalizado, cancelado, ativado
+    public LocalDateTime data;
+
+    public EventoPedidoDTO(Integer idPedido, String reference, String statusPedido,
+                           Boolean ativo, String accao, LocalDateTime data) {
+        this.idPedido = idPedido;
+        this.reference = reference;
+        this.statusPedido = statusPedido;
+        this.ativo = ativo;
+        this.accao = accao;
+        this.data = data;
+    }
+}
@@ -0,0 +1,213 @@
+package com.loja1.projectohibrido.pedido.notificacao;
+
+import com.loja1.projectohibrido.pedido.repository.PedidoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Contadores de notificações por utilizador em memória: pedidos em andamento
+ * (status diferente de "finalizado") e finalizados ainda não vistos — a mesma
+ * definição de countPedidosAtivosDoUsuario e countFinalizadosNaoVistos.
+ *
+ * Cada utilizador é carregado na primeira leitura com essas duas contagens e
+ * depois mantido pelas transições do PedidoService, aplicadas após o commit
+ * (ver NotificacoesPedido). A leitura passa a ser um lookup no mapa.
+ *
+ * Acima de maximo-utilizadores sai o utilizador lido há mais tempo (LRU,
+ * como o CacheLimitado); se voltar, é carregado de novo. O mapa é protegido
+ * por um lock curto, só à volta das operações em memória; as contagens são
+ * feitas fora dele.
+ *
+ * Concorrência: um carregamento que se cruze com uma transição de um
+ * utilizador ainda sem contadores não é guardado (a leitura seguinte volta a
+ * carregar). A reconciliação periódica reconta em lote os utilizadores em
+ * memória e só substitui os que não mudaram entretanto (campo versao).
+ */
+@Component
+@Slf4j
+public class ContadoresNotificacao {
+
+    /** @param versao incrementada a cada transição aplicada */
+    record Contagem(long emAndamento, long finalizadosNaoVistos, long versao) {
+        Map<String, Long> comoMapa() {
+            return Map.of("emAndamento", emAndamento, "finalizadosNaoVistos", finalizadosNaoVistos);
+        }
+    }
+
+    private static final int UTILIZADORES_POR_CONSULTA = 1000;
+
+    private final PedidoRepository pedidoRepository;
+    private final int maximoUtilizadores;
+
+    // accessOrder = true → o utilizador lido há mais tempo fica no início
+    private final LinkedHashMap<Integer, Contagem> contagens;
+    // Transições de utilizadores sem contadores em memória; ver carregar()
+    private final AtomicLong transicoesSemContagem = new AtomicLong();
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder carregamentos = new LongAdder();
+    private final LongAdder transicoes = new LongAdder();
+    private final LongAdder correccoes = new LongAdder();
+    private final LongAdder despejos = new LongAdder();
+
+    public ContadoresNotificacao(PedidoRepository pedidoRepository,
+                                 @Value("${pedido.notificacoes.contadores.maximo-utilizadores:50000}") int maximoUtilizadores) {
+        this.pedidoRepository = pedidoRepository;
+        this.maximoUtilizadores = maximoUtilizadores;
+        this.contagens = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Contagem> maisAntiga) {
+                if (size() > ContadoresNotificacao.this.maximoUtilizadores) {
+                    despejos.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // ===== LEITURA =====
+
+    public Map<String, Long> obter(Integer idUsuario) {
+        Contagem contagem;
+        synchronized (contagens) {
+            contagem = contagens.get(idUsuario);
+        }
+        if (contagem != null) {
+            acertos.increment();
+            return contagem.comoMapa();
+        }
+        return carregar(idUsuario).comoMapa();
+    }
+
+    private Contagem carregar(Integer idUsuario) {
+        carregamentos.increment();
+        long transicoesLidas = transicoesSemContagem.get();
+        Contagem lida = new Contagem(
+                pedidoRepository.countPedidosAtivosDoUsuario(idUsuario),
+                pedidoRepository.countFinalizadosNaoVistos(idUsuario),
+                0);
+        synchronized (contagens) {
+            if (transicoesLidas == transicoesSemContagem.get()) {
+                Contagem existente = contagens.putIfAbsent(idUsuario, lida);
+                if (existente != null) return existente;
+            }
+        }
+        return lida;
+    }
+
+    // ===== TRANSIÇÕES (após o commit) =====
+
+    /**
+     * Pedido do utilizador passou de (statusAnterior, vistaAnterior) para
+     * (statusNovo, vistaNova); statusAnterior null = pedido novo.
+     */
+    public void transicao(Integer idUsuario, String statusAnterior, Short vistaAnterior,
+                          String statusNovo, Short vistaNova) {
+        long deltaAndamento = emAndamento(statusNovo) - emAndamento(statusAnterior);
+        long deltaNaoVistos = naoVisto(statusNovo, vistaNova) - naoVisto(statusAnterior, vistaAnterior);
+        if (deltaAndamento == 0 && deltaNaoVistos == 0) return;
+        aplicar(idUsuario, c -> new Contagem(c.emAndamento() + deltaAndamento,
+                c.finalizadosNaoVistos() + deltaNaoVistos, c.versao() + 1));
+    }
+
+    /** marcarFinalizadosComoVistos: já não há finalizados por ver. */
+    public void finalizadosVistos(Integer idUsuario) {
+        aplicar(idUsuario, c -> new Contagem(c.emAndamento(), 0, c.versao() + 1));
+    }
+
+    private void aplicar(Integer idUsuario, UnaryOperator<Contagem> alteracao) {
+        if (idUsuario == null) return;
+        transicoes.increment();
+        synchronized (contagens) {
+            if (contagens.computeIfPresent(idUsuario, (id, c) -> alteracao.apply(c)) == null) {
+                transicoesSemContagem.incrementAndGet();
+            }
+        }
+    }
+
+    private static long emAndamento(String status) {
+        return status != null && !"finalizado".equals(status) ? 1 : 0;
+    }
+
+    private static long naoVisto(String status, Short vista) {
+        return "finalizado".equals(status) && vista != null && vista == 0 ? 1 : 0;
+    }
+
+    // ===== RECONCILIAÇÃO =====
+
+    /**
+     * Reconta os utilizadores em memória, UTILIZADORES_POR_CONSULTA de cada
+     * vez, e corrige os que divergem (ex.: alteração feita directamente na
+     * base de dados ou transacção de outra instância).
+     */
+    @Scheduled(fixedDelayString = "${pedido.notificacoes.contadores.reconciliacao-ms:300000}",
+               initialDelayString = "${pedido.notificacoes.contadores.reconciliacao-ms:300000}")
+    public void reconciliar() {
+        List<Integer> ids;
+        synchronized (contagens) {
+            ids = new ArrayList<>(contagens.keySet());
+        }
+        int corrigidos = 0;
+        for (int inicio = 0; inicio < ids.size(); inicio += UTILIZADORES_POR_CONSULTA) {
+            List<Integer> bloco = ids.subList(inicio, Math.min(inicio + UTILIZADORES_POR_CONSULTA, ids.size()));
+            Map<Integer, Long> versoes = new HashMap<>();
+            synchronized (contagens) {
+                bloco.forEach(id -> {
+                    Contagem c = contagens.get(id);
+                    if (c != null) versoes.put(id, c.versao());
+                });
+            }
+
+            Map<Integer, long[]> reais = new HashMap<>();
+            for (Object[] linha : pedidoRepository.contarNotificacoesPorUsuario(bloco)) {
+                reais.put((Integer) linha[0], new long[]{
+                        ((Number) linha[1]).longValue(), ((Number) linha[2]).longValue()});
+            }
+
+            for (Integer id : bloco) {
+                long[] real = reais.getOrDefault(id, new long[]{0, 0});
+                Long versaoLida = versoes.get(id);
+                if (versaoLida == null) continue;
+                synchronized (contagens) {
+                    Contagem c = contagens.get(id);
+                    if (c == null || c.versao() != versaoLida
+                            || (c.emAndamento() == real[0] && c.finalizadosNaoVistos() == real[1])) {
+                        continue;
+                    }
+                    contagens.replace(id, new Contagem(real[0], real[1], c.versao() + 1));
+                }
+                corrigidos++;
+            }
+        }
+        correccoes.add(corrigidos);
+        if (corrigidos > 0) {
+            log.warn("Contadores de notificações: {} utilizador(es) corrigido(s) na reconciliação", corrigidos);
+        }
+    }
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (contagens) {
+            stats.put("utilizadores", contagens.size());
+        }
+        stats.put("maximoUtilizadores", maximoUtilizadores);
+        stats.put("acertos", acertos.sum());
+        stats.put("carregamentos", carregamentos.sum());
+        stats.put("transicoes", transicoes.sum());
+        stats.put("correccoes", correccoes.sum());
+        stats.put("despejos", despejos.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,195 @@
+package com.loja1.projectohibrido.pedido.notificacao;
+
+import com.loja1.projectohibrido.config.LigacaoSse;
+import com.loja1.projectohibrido.pedido.dto.EventoPedidoDTO;
+import com.loja1.projectohibrido.pedido.entity.Pedido;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Canal SSE de notificações de pedidos, por utilizador
+ * (GET /api/pedidos/usuario/{idUsuario}/notificacoes/stream).
+ *
+ * Substitui o polling de GET .../notificacoes: ao ligar o cliente recebe os
+ * contadores uma vez e depois só recebe eventos quando um pedido seu muda de
+ * estado. É também aqui que as transições chegam aos contadores em memória
+ * ({@link ContadoresNotificacao}), com ou sem ligações abertas.
+ *
+ * Os eventos saem após o commit. Cada ligação envia os seus por ordem, numa
+ * virtual thread própria ({@link LigacaoSse}), sem locks à volta de consultas
+ * ou envios. Os contadores são lidos no momento do envio, por isso os últimos
+ * que cada ligação recebe são sempre os mais recentes.
+ */
+@Component
+@Slf4j
+public class NotificacoesPedido {
+
+    private final ContadoresNotificacao contadoresNotificacao;
+    private final long timeoutSseMs;
+    private final int maxLigacoesPorUsuario;
+
+    private static final int FILA_POR_LIGACAO = 50;
+    private static final Supplier<SseEmitter.SseEventBuilder> PING = () -> SseEmitter.event().comment("ping");
+
+    private final Map<Integer, List<LigacaoSse>> ligacoes = new ConcurrentHashMap<>();
+
+    private final LongAdder eventos = new LongAdder();
+    private final LongAdder envios = new LongAdder();
+    private final LongAdder desligadas = new LongAdder();
+
+    public NotificacoesPedido(ContadoresNotificacao contadoresNotificacao,
+                              @Value("${pedido.notificacoes.sse-timeout-ms:1800000}") long timeoutSseMs,
+                              @Value("${pedido.notificacoes.max-ligacoes-por-usuario:5}") int maxLigacoesPorUsuario) {
+        this.contadoresNotificacao = contadoresNotificacao;
+        this.timeoutSseMs = timeoutSseMs;
+        this.maxLigacoesPorUsuario = maxLigacoesPorUsuario;
+    }
+
+    @PreDestroy
+    void parar() {
+        ligacoes.values().forEach(lista -> lista.forEach(LigacaoSse::fechar));
+    }
+
+    // ===== CONTADORES =====
+
+    /** Pedidos em andamento e finalizados ainda não vistos do utilizador. */
+    public Map<String, Long> contadores(Integer idUsuario) {
+        return contadoresNotificacao.obter(idUsuario);
+    }
+
+    public Map<String, Object> estatisticasContadores() {
+        return contadoresNotificacao.estatisticas();
+    }
+
+    // ===== INSCRIÇÃO =====
+
+    /**
+     * Abre o stream do utilizador e envia de imediato os contadores actuais.
+     * Acima de max-ligacoes-por-usuario fecha a ligação mais antiga.
+     */
+    public SseEmitter inscrever(Integer idUsuario) {
+        return inscrever(idUsuario, new SseEmitter(timeoutSseMs));
+    }
+
+    SseEmitter inscrever(Integer idUsuario, SseEmitter emitter) {
+        LigacaoSse ligacao = new LigacaoSse(emitter, FILA_POR_LIGACAO, envios::increment,
+                () -> remover(idUsuario, emitter));
+
+        // As listas só mudam dentro de compute: a chave fica bloqueada só
+        // durante a alteração em memória, nunca durante consultas ou envios
+        List<LigacaoSse> excedentes = new ArrayList<>();
+        ligacoes.compute(idUsuario, (id, actual) -> {
+            List<LigacaoSse> l = actual != null ? actual : new CopyOnWriteArrayList<>();
+            l.add(ligacao);
+            while (l.size() > maxLigacoesPorUsuario) {
+                excedentes.add(l.remove(0));
+            }
+            return l;
+        });
+        excedentes.forEach(LigacaoSse::fechar);
+
+        ligacao.enviar(contadoresSse(idUsuario));
+        return emitter;
+    }
+
+    // ===== EVENTOS =====
+
+    /**
+     * Estado do pedido mudou. Deve ser chamado dentro da transacção: os
+     * contadores só são actualizados, e o evento só sai, se ela fizer commit.
+     *
+     * @param statusAnterior null se o pedido acabou de ser criado
+     */
+    public void pedidoAlterado(Pedido pedido, String statusAnterior, String accao) {
+        Integer idUsuario = pedido.getIdUsuario();
+        String statusNovo = pedido.getStatusPedido();
+        Short vista = pedido.getNotificacaoVista();
+        EventoPedidoDTO evento = new EventoPedidoDTO(pedido.getIdPedido(), pedido.getReference(),
+                statusNovo, pedido.getAtivo(), accao, LocalDateTime.now());
+        aposCommit(() -> {
+            contadoresNotificacao.transicao(idUsuario, statusAnterior, vista, statusNovo, vista);
+            publicar(idUsuario, evento);
+        });
+    }
+
+    /** Finalizados do utilizador marcados como vistos: só os contadores mudam. */
+    public void finalizadosVistos(Integer idUsuario) {
+        aposCommit(() -> {
+            contadoresNotificacao.finalizadosVistos(idUsuario);
+            publicar(idUsuario, null);
+        });
+    }
+
+    private void publicar(Integer idUsuario, EventoPedidoDTO evento) {
+        if (idUsuario == null) return;
+        List<LigacaoSse> lista = ligacoes.get(idUsuario);
+        if (lista == null || lista.isEmpty()) return;
+        eventos.increment();
+        for (LigacaoSse ligacao : lista) {
+            if (evento != null) {
+                ligacao.enviar(() -> SseEmitter.event().name("pedido").data(evento));
+            }
+            ligacao.enviar(contadoresSse(idUsuario));
+        }
+    }
+
+    /** Comentário periódico: mantém as ligações abertas em proxies e deteta as que caíram. */
+    @Scheduled(fixedDelayString = "${pedido.notificacoes.heartbeat-ms:25000}")
+    void manterLigacoes() {
+        ligacoes.values().forEach(lista -> lista.forEach(l -> l.enviar(PING)));
+    }
+
+    // ===== AUXILIARES =====
+
+    /** Contadores lidos quando o evento é enviado, na thread da ligação. */
+    private Supplier<SseEmitter.SseEventBuilder> contadoresSse(Integer idUsuario) {
+        return () -> SseEmitter.event().name("contadores").data(contadores(idUsuario));
+    }
+
+    private void remover(Integer idUsuario, SseEmitter emitter) {
+        desligadas.increment();
+        ligacoes.computeIfPresent(idUsuario, (id, lista) -> {
+            lista.removeIf(l -> l.emitter() == emitter);
+            return lista.isEmpty() ? null : lista;
+        });
+    }
+
+    private static void aposCommit(Runnable accao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accao.run();
+                }
+            });
+        } else {
+            accao.run();
+        }
+    }
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("usuarios", ligacoes.size());
+        stats.put("ligacoes", ligacoes.values().stream().mapToInt(List::size).sum());
+        stats.put("eventos", eventos.sum());
+        stats.put("envios", envios.sum());
+        stats.put("desligadas", desligadas.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,73 @@
+package com.loja1.projectohibrido.pedido.repository;
+
+import com.loja1.projectohibrido.pedido.entity.ItemPedido;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserção dos itens de um pedido num único INSERT multi-linha, em vez de um
+ * save() por item. Usado na conversão carrinho → pedido.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ItemPedidoLoteRepository {
+
+    // O driver do PostgreSQL aceita no máximo 32767 parâmetros por statement
+    private static final int MAX_PARAMETROS = 30000;
+    private static final int COLUNAS_ITEM = 5;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insere os itens e preenche o ID gerado em cada um.
+     *
+     * Os IDs são associados pelo id_produto devolvido no RETURNING (o
+     * PostgreSQL não garante que o RETURNING siga a ordem do VALUES); para
+     * isso cada statement leva no máximo um item por produto.
+     *
+     * Os itens NÃO entram no contexto de persistência: não os adicione a
+     * uma colecção gerida (Pedido.itens tem cascade e voltaria a inseri-los).
+     */
+    public void inserir(Integer idPedido, List<ItemPedido> itens) {
+        int porStatement = MAX_PARAMETROS / COLUNAS_ITEM;
+        Map<Integer, ItemPedido> bloco = new LinkedHashMap<>();
+        for (ItemPedido item : itens) {
+            Integer idProduto = item.getProduto().getIdProduto();
+            if (bloco.size() == porStatement || bloco.containsKey(idProduto)) {
+                inserirBloco(idPedido, bloco);
+                bloco = new LinkedHashMap<>();
+            }
+            bloco.put(idProduto, item);
+        }
+        if (!bloco.isEmpty()) inserirBloco(idPedido, bloco);
+    }
+
+    /** @param bloco id_produto → item (um item por produto) */
+    private void inserirBloco(Integer idPedido, Map<Integer, ItemPedido> bloco) {
+        StringBuilder sql = new StringBuilder("""
+                INSERT INTO item_pedido (id_pedido, id_produto, quantidade, preco_unitario, subtotal)
+                VALUES\s""");
+        for (int i = 0; i < bloco.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?)");
+        }
+        sql.append(" RETURNING id_item_pedido, id_produto");
+
+        jdbcTemplate.query(sql.toString(), ps -> {
+            int p = 1;
+            for (ItemPedido item : bloco.values()) {
+                ps.setInt(p++, idPedido);
+                ps.setInt(p++, item.getProduto().getIdProduto());
+                ps.setInt(p++, item.getQuantidade());
+                ps.setBigDecimal(p++, item.getPrecoUnitario());
+                ps.setBigDecimal(p++, item.getSubtotal());
+            }
+        }, rs -> {
+            bloco.get(rs.getInt(2)).setIdItemPedido(rs.getInt(1));
+        });
+    }
+}
@@ -11,7 +11,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,31 +35,6 @@ Optional<Pedido> findByIdUsuarioAndAtivoTrue(Integer idUsuario);
 @Query("UPDATE Pedido p SET p.ativo = FALSE WHERE p.idUsuario = :idUsuario AND p.ativo = TRUE")
 int desativarPedidosDoUsuario(@Param("idUsuario") Integer idUsuario);
 
-// Evolução de vendas por dia
-@Query("""
-    SELECT CAST(p.dataPedido AS date) AS data, SUM(p.total) AS totalVendas
-    FROM Pedido p
-    WHERE p.dataPedido >= :dataInicio
-      AND p.statusPedido NOT IN ('cancelado', 'por finalizar')
-    GROUP BY CAST(p.dataPedido AS date)
-    ORDER BY CAST(p.dataPedido AS date)
-    """)
-List<Object[]> evolucaoVendasPorDia(@Param("dataInicio") LocalDateTime dataInicio);
-
-// Desempenho por usuário
-@Query("""
-    SELECT u.nome, u.apelido,
-           COUNT(p.idPedido), SUM(p.total),
-           COUNT(DISTINCT CAST(p.dataPedido AS date))
-    FROM Pedido p
-    JOIN Usuario u ON u.idUsuario = p.idUsuario
-    WHERE p.dataPedido >= :dataInicio
-      AND p.statusPedido NOT IN ('cancelado', 'por finalizar')
-    GROUP BY u.idUsuario, u.nome, u.apelido
-    ORDER BY SUM(p.total) DESC
-    """)
-List<Object[]> desempenhoUsuarios(@Param("dataInicio") LocalDateTime dataInicio);
-
 // Adicionar este método ao PedidoRepository
 List<Pedido> findByIdUsuarioAndStatusPedidoOrderByDataPedidoDesc(Integer idUsuario, String statusPedido);
 
@@ -74,6 +49,18 @@ long countPedidosAtivosDoUsuario(@Param("idUsuario") Integer idUsuario);
 @Query("SELECT COUNT(p) FROM Pedido p WHERE p.idUsuario = :idUsuario AND p.statusPedido = 'finalizado' AND p.notificacaoVista = 0")
 long countFinalizadosNaoVistos(@Param("idUsuario") Integer idUsuario);
 
+// Os dois contadores acima para vários utilizadores de uma vez:
+// [idUsuario, emAndamento, finalizadosNaoVistos] (reconciliação de ContadoresNotificacao)
+@Query("""
+       SELECT p.idUsuario,
+              SUM(CASE WHEN p.statusPedido <> 'finalizado' THEN 1 ELSE 0 END),
+              SUM(CASE WHEN p.statusPedido = 'finalizado' AND p.notificacaoVista = 0 THEN 1 ELSE 0 END)
+         FROM Pedido p
+        WHERE p.idUsuario IN :ids
+        GROUP BY p.idUsuario
+       """)
+List<Object[]> contarNotificacoesPorUsuario(@Param("ids") Collection<Integer> ids);
+
 // Marca todos os pedidos finalizados como vistos
 @Modifying
 @Query("UPDATE Pedido p SET p.notificacaoVista = 1 WHERE p.idUsuario = :idUsuario AND p.statusPedido = 'finalizado' AND p.notificacaoVista = 0")
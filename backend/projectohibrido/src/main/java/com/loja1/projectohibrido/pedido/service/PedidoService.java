@@ -2,19 +2,25 @@ package com.loja1.projectohibrido.pedido.service;
 
 
 import com.loja1.projectohibrido.carrinho.entity.Carrinho;
-import com.loja1.projectohibrido.carrinho.entity.ItemCarrinho;
+import com.loja1.projectohibrido.dashboard.cache.DashboardCache;
+import com.loja1.projectohibrido.dashboard.repository.VendaDiariaRepository;
 import com.loja1.projectohibrido.pedido.dto.*;
 import com.loja1.projectohibrido.pedido.entity.*;
 import com.loja1.projectohibrido.pedido.exception.*;
+import com.loja1.projectohibrido.pedido.notificacao.NotificacoesPedido;
 import com.loja1.projectohibrido.pedido.repository.*;
 import com.loja1.projectohibrido.produto.entity.Produto;
 import com.loja1.projectohibrido.produto.repository.ProdutoRepository;
+import com.loja1.projectohibrido.produto.service.EstoqueService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -29,10 +35,16 @@ public class PedidoService {
     // ─── Repositórios injectados ─────────────────────────────────────────────
     private final PedidoRepository             pedidoRepository;
     private final ItemPedidoRepository         itemPedidoRepository;
+    private final ItemPedidoLoteRepository     itemPedidoLoteRepository;
+    private final VendaDiariaRepository        vendaDiariaRepository;
+    private final DashboardCache               dashboardCache;
     private final PedidoCancelamentoRepository cancelamentoRepository;
     private final ProdutoRepository            produtoRepository;
+    private final EstoqueService               estoqueService;
     private final TipoEntregaRepository        tipoEntregaRepository;
     private final TipoPagamentoRepository      tipoPagamentoRepository;
+    private final NotificacoesPedido           notificacoesPedido;
+    private final EntityManager                entityManager;
 
     // ─── Status permitidos para edição ───────────────────────────────────────
     private static final List<String> STATUS_EDITAVEIS = List.of(
@@ -46,7 +58,7 @@ public class PedidoService {
     /**
      * Cria um pedido com os itens iniciais.
      *
-     * ESTOQUE: desconta imediatamente sem registar movimentação.
+     * ESTOQUE: desconta imediatamente (movimento registado no diário de estoque).
      * TRANSAÇÃO: tudo em bloco — se qualquer item falhar, reverte tudo.
      */
 @Transactional
@@ -82,15 +94,31 @@ public PedidoResponseDTO criarPedido(PedidoRequestDTO dto) {
         // 2. Persistir pedido para obter ID (necessário para os itens)
         pedido = pedidoRepository.save(pedido);
 
-        // 3. Processar cada item — validar estoque e descontar
+        // 3. Descontar o estoque de todos os itens num só UPDATE condicional
+        //    (tudo-ou-nada) e só depois criar os itens
+        Map<Integer, Integer> quantidades = new LinkedHashMap<>();
         for (ItemPedidoRequestDTO itemDto : dto.itens) {
-            adicionarItemInterno(pedido, itemDto.idProduto, itemDto.quantidade);
+            quantidades.merge(itemDto.idProduto, itemDto.quantidade, Integer::sum);
+        }
+        Map<Integer, Produto> produtos = produtoRepository.findAllById(quantidades.keySet()).stream()
+                .collect(Collectors.toMap(Produto::getIdProduto, p -> p));
+        for (Integer idProduto : quantidades.keySet()) {
+            if (!produtos.containsKey(idProduto)) {
+                throw new RuntimeException("Produto não encontrado: " + idProduto);
+            }
+        }
+        reservarEstoque(quantidades, produtos, origemPedido(pedido, "criação"));
+
+        for (ItemPedidoRequestDTO itemDto : dto.itens) {
+            criarItem(pedido, produtos.get(itemDto.idProduto), itemDto.quantidade);
         }
 
         // 4. Recalcular total com base nos itens
         pedido.recalcularTotal();
         pedido = pedidoRepository.save(pedido);
 
+        notificacoesPedido.pedidoAlterado(pedido, null, "criado");
+
         log.info("Pedido {} criado com {} itens | Total: {}",
                 pedido.getReference(), pedido.getItens().size(), pedido.getTotal());
 
@@ -146,7 +174,7 @@ public void desativarPedido(Integer idPedido) {
     /**
      * Adiciona um novo produto a um pedido existente.
      *
-     * ESTOQUE: desconta a quantidade solicitada sem registar movimentação.
+     * ESTOQUE: desconta a quantidade solicitada (registada no diário de estoque).
      * VALIDAÇÃO: pedido deve estar em status editável.
      */
 @Transactional
@@ -162,9 +190,11 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
         );
     }
 
+    retirarDosResumos(pedido);
     adicionarItemInterno(pedido, dto.idProduto, dto.quantidade);
     pedido.recalcularTotal();
     pedidoRepository.save(pedido);
+    somarAosResumos(pedido);
 
     log.info("Item produto {} adicionado ao pedido activo {}", dto.idProduto, idPedido);
     return toResponseDTO(pedido);
@@ -179,7 +209,7 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
      * ESTOQUE:
      *   - Se aumentar: desconta a diferença do estoque.
      *   - Se reduzir:  devolve a diferença ao estoque.
-     *   Nenhum dos casos regista movimentação.
+     *   Ambos os casos ficam no diário de estoque (movimento_estoque).
      *
      * TRANSAÇÃO: operação atómica — falha em qualquer ponto reverte tudo.
      */
@@ -195,6 +225,7 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
         ItemPedido item = itemPedidoRepository
                 .findByIdItemPedidoAndPedidoIdPedido(idItemPedido, idPedido)
                 .orElseThrow(() -> new ItemNaoPertenceAoPedidoException(idItemPedido, idPedido));
+        retirarDosResumos(pedido);
 
         Produto produto = item.getProduto();
         int quantidadeAnterior = item.getQuantidade();
@@ -202,15 +233,14 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
         int diferenca          = novaQuantidade - quantidadeAnterior;
 
         if (diferenca > 0) {
-            // Aumento: precisa de mais estoque
-            garantirEstoqueDisponivel(produto, diferenca);
-            ajustarEstoqueSemMovimento(produto, -diferenca);           // desconta
+            // Aumento: precisa de mais estoque (o desconto condicional valida)
+            ajustarEstoque(pedido, produto, -diferenca, "edição de item");   // desconta
             log.info("Estoque produto {} decrementado em {} (edição de pedido)", produto.getIdProduto(), diferenca);
 
         } else if (diferenca < 0) {
             // Redução: devolve estoque
             int devolucao = Math.abs(diferenca);
-            ajustarEstoqueSemMovimento(produto, devolucao);             // devolve
+            ajustarEstoque(pedido, produto, devolucao, "edição de item");    // devolve
             log.info("Estoque produto {} incrementado em {} (redução de item)", produto.getIdProduto(), devolucao);
         }
         // diferenca == 0 → nada a fazer no estoque
@@ -221,6 +251,7 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
 
         pedido.recalcularTotal();
         pedidoRepository.save(pedido);
+        somarAosResumos(pedido);
 
         log.info("Item {} do pedido {} alterado: {} → {} unidades",
                 idItemPedido, idPedido, quantidadeAnterior, novaQuantidade);
@@ -238,6 +269,9 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
             throw new StatusPedidoInvalidoException(pedido.getStatusPedido(), "finalização");
         }
 
+        // O total e o status mudam: o contributo para os resumos é refeito no fim
+        retirarDosResumos(pedido);
+
         // ── 1. Tipo de pagamento ─────────────────────────────────────────────
         pedido.setIdTipoPagamento(dto.idTipoPagamento);
 
@@ -314,11 +348,14 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
         }
 
         // ── 4. Finalizar ─────────────────────────────────────────────────────
+        String statusAnterior = pedido.getStatusPedido();
         pedido.setStatusPedido("finalizado");
         pedido.setAtivo(false);
         pedido.setDataFinalizacao(LocalDateTime.now());
         pedido.setDataFimPedido(LocalDateTime.now());
         pedidoRepository.save(pedido);
+        somarAosResumos(pedido);
+        notificacoesPedido.pedidoAlterado(pedido, statusAnterior, "finalizado");
 
         log.info("[FINALIZAR] Pedido {} finalizado | total: {}",
                 pedido.getReference(), pedido.getTotal());
@@ -333,7 +370,7 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
     /**
      * Remove um item do pedido e devolve a sua quantidade ao estoque.
      *
-     * ESTOQUE: devolução imediata sem movimentação.
+     * ESTOQUE: devolução imediata (registada no diário de estoque).
      */
     @Transactional
     public PedidoResponseDTO eliminarItem(Integer idPedido, Integer idItemPedido) {
@@ -343,18 +380,20 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
         ItemPedido item = itemPedidoRepository
                 .findByIdItemPedidoAndPedidoIdPedido(idItemPedido, idPedido)
                 .orElseThrow(() -> new ItemNaoPertenceAoPedidoException(idItemPedido, idPedido));
+        retirarDosResumos(pedido);
 
         Produto produto = item.getProduto();
         int quantidadeDevolver = item.getQuantidade();
 
-        // Devolve ao estoque sem registar movimento
-        ajustarEstoqueSemMovimento(produto, quantidadeDevolver);
+        // Devolve ao estoque
+        ajustarEstoque(pedido, produto, quantidadeDevolver, "eliminação de item");
 
         pedido.getItens().remove(item);
         itemPedidoRepository.delete(item);
 
         pedido.recalcularTotal();
         pedidoRepository.save(pedido);
+        somarAosResumos(pedido);
 
         log.info("Item {} eliminado do pedido {}. Estoque produto {} restaurado em {}",
                 idItemPedido, idPedido, produto.getIdProduto(), quantidadeDevolver);
@@ -372,7 +411,7 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
      * Cancela o pedido integralmente e restaura o estoque de todos os itens.
      *
      * ESTOQUE: restaurado ao valor original (antes da criação do pedido)
-     *          sem registar qualquer movimentação.
+     *          (movimentos registados no diário de estoque).
      *
      * TRANSAÇÃO: atómica — ou cancela tudo ou não cancela nada.
      */
@@ -384,15 +423,23 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
             throw new StatusPedidoInvalidoException(pedido.getStatusPedido(), "cancelamento");
         }
 
-        // 1. Restaurar estoque de cada item sem movimentação
+        // Deixa de contar como venda nos resumos do dashboard
+        retirarDosResumos(pedido);
+
+        // 1. Restaurar estoque de todos os itens num só UPDATE
+        Map<Integer, Integer> devolucao = new LinkedHashMap<>();
+        Map<Integer, Produto> produtos = new LinkedHashMap<>();
         for (ItemPedido item : pedido.getItens()) {
             Produto produto = item.getProduto();
-            ajustarEstoqueSemMovimento(produto, item.getQuantidade());
-            log.info("Cancelamento pedido {}: estoque produto {} restaurado em {}",
-                    idPedido, produto.getIdProduto(), item.getQuantidade());
+            devolucao.merge(produto.getIdProduto(), item.getQuantidade(), Integer::sum);
+            produtos.putIfAbsent(produto.getIdProduto(), produto);
         }
+        estoqueService.devolver(devolucao, origemPedido(pedido, "cancelamento"))
+                .forEach((id, qtd) -> estoqueService.actualizarEmMemoria(produtos.get(id), qtd));
+        log.info("Cancelamento pedido {}: estoque restaurado {}", idPedido, devolucao);
 
         // 2. Actualizar status do pedido
+        String statusAnterior = pedido.getStatusPedido();
         pedido.setStatusPedido("cancelado");
          pedido.setAtivo(false);   
         pedido.setDataFimPedido(LocalDateTime.now());
@@ -407,6 +454,7 @@ public PedidoResponseDTO adicionarItem(Integer idPedido, ItemPedidoRequestDTO dt
                 .build();
 
         cancelamentoRepository.save(cancelamento);
+        notificacoesPedido.pedidoAlterado(pedido, statusAnterior, "cancelado");
 
         log.info("Pedido {} cancelado por usuário {}", pedido.getReference(), dto.idUsuarioCancelou);
     }
@@ -453,6 +501,7 @@ public PedidoResponseDTO ativarPedido(Integer idPedido) {
     // Ativa o pedido solicitado
     pedido.setAtivo(true);
     pedidoRepository.save(pedido);
+    notificacoesPedido.pedidoAlterado(pedido, pedido.getStatusPedido(), "ativado");
 
     log.info("[ATIVAR] Pedido {} marcado como ativo com sucesso", pedido.getReference());
 
@@ -464,15 +513,23 @@ public PedidoResponseDTO ativarPedido(Integer idPedido) {
     // ════════════════════════════════════════════════════════════════════════
 
     /**
-     * Lógica interna reutilizada em criarPedido() e adicionarItem().
-     * Valida estoque, cria o ItemPedido e desconta o estoque.
+     * Lógica interna de adicionarItem().
+     * Desconta o estoque (falha se não houver) e só depois cria o ItemPedido.
      */
     private void adicionarItemInterno(Pedido pedido, Integer idProduto, Integer quantidade) {
         Produto produto = produtoRepository.findById(idProduto)
                 .orElseThrow(() -> new RuntimeException("Produto não encontrado: " + idProduto));
 
-        garantirEstoqueDisponivel(produto, quantidade);
+        // Desconta estoque
+        ajustarEstoque(pedido, produto, -quantidade, "adição de item");
 
+        criarItem(pedido, produto, quantidade);
+    }
+
+    /**
+     * Cria o ItemPedido com o preço efectivo. O estoque já foi descontado.
+     */
+    private void criarItem(Pedido pedido, Produto produto, Integer quantidade) {
         // Preço efectivo: promocional se existir, senão normal
         BigDecimal precoUnitario = produto.getPrecoPromocional() != null
                 ? produto.getPrecoPromocional()
@@ -489,54 +546,84 @@ public PedidoResponseDTO ativarPedido(Integer idPedido) {
         itemPedidoRepository.save(item);
         pedido.getItens().add(item);
 
-        // Desconta estoque sem registar movimentação
-        ajustarEstoqueSemMovimento(produto, -quantidade);
-
         log.info("Item criado — produto '{}' | qty: {} | preço: {}",
                 produto.getNomeProduto(), quantidade, precoUnitario);
     }
 
     /**
-     * Ajusta o estoque directamente na entidade e persiste.
-     * NÃO regista movimento na tabela movimento_estoque.
+     * Ajusta o estoque com um UPDATE atómico (o desconto só é aplicado se
+     * houver quantidade suficiente na própria linha — sem ler-validar-escrever).
+     * O movimento fica no diário de estoque (movimento_estoque, em lote).
      *
      * @param delta positivo = acrescenta | negativo = desconta
      */
- private void ajustarEstoqueSemMovimento(Produto produto, int delta) {
-    int estoqueActual = produto.getQuantidadeEstoque();
-    int novaQuantidade = estoqueActual + delta;
-
-    if (novaQuantidade < 0) {
-        throw new EstoqueInsuficienteException(
-            produto.getNomeProduto(),
-            estoqueActual,
-            Math.abs(delta)
-        );
-    }
-
-    // Update atómico directo — flushAutomatically garante que o pedido
-    // é persistido ANTES, clearAutomatically limpa o cache DEPOIS
-    produtoRepository.ajustarEstoque(produto.getIdProduto(), delta);
+    private void ajustarEstoque(Pedido pedido, Produto produto, int delta, String motivo) {
+        if (delta == 0) return;
+        Integer idProduto = produto.getIdProduto();
+        EstoqueService.Origem origem = origemPedido(pedido, motivo);
 
-    // Actualiza a instância em memória para validações na mesma transacção
-    produto.setQuantidadeEstoque(novaQuantidade);
+        if (delta < 0) {
+            reservarEstoque(Map.of(idProduto, -delta), Map.of(idProduto, produto), origem);
+        } else {
+            estoqueService.devolver(Map.of(idProduto, delta), origem)
+                    .forEach((id, qtd) -> estoqueService.actualizarEmMemoria(produto, qtd));
+        }
 
-    log.debug("Estoque produto {} ajustado: {} → {} (delta: {})",
-        produto.getIdProduto(), estoqueActual, novaQuantidade, delta);
-}
+        log.debug("Estoque produto {} ajustado em {} → {}",
+                idProduto, delta, produto.getQuantidadeEstoque());
+    }
 
     /**
-     * Verifica se há quantidade suficiente disponível no estoque
-     * antes de tentar qualquer operação.
+     * Desconta as quantidades (id do produto → quantidade) num só statement.
+     * Se algum produto não tiver estoque nada é descontado e é lançada
+     * EstoqueInsuficienteException com o estoque real nesse momento.
      */
-    private void garantirEstoqueDisponivel(Produto produto, int quantidadeSolicitada) {
-        if (produto.getQuantidadeEstoque() < quantidadeSolicitada) {
+    private void reservarEstoque(Map<Integer, Integer> quantidades, Map<Integer, Produto> produtos,
+                                 EstoqueService.Origem origem) {
+        EstoqueService.ResultadoReserva resultado = estoqueService.reservar(quantidades, origem);
+
+        if (!resultado.sucesso()) {
+            Map.Entry<Integer, Integer> falha = resultado.insuficientes().entrySet().iterator().next();
             throw new EstoqueInsuficienteException(
-                produto.getNomeProduto(),
-                produto.getQuantidadeEstoque(),
-                quantidadeSolicitada
+                produtos.get(falha.getKey()).getNomeProduto(),
+                falha.getValue(),
+                quantidades.get(falha.getKey())
             );
         }
+
+        // Actualiza as instâncias em memória para validações na mesma transacção
+        resultado.estoqueFinal()
+                .forEach((id, qtd) -> estoqueService.actualizarEmMemoria(produtos.get(id), qtd));
+    }
+
+    private static EstoqueService.Origem origemPedido(Pedido pedido, String motivo) {
+        return EstoqueService.Origem.doPedido(pedido.getIdPedido(), pedido.getIdUsuario(), motivo);
+    }
+
+    /**
+     * Retira dos resumos diários de vendas o contributo do pedido tal como está
+     * gravado. Chamar antes de alterar itens, total ou status.
+     */
+    private void retirarDosResumos(Pedido pedido) {
+        vendaDiariaRepository.aplicarPedido(pedido.getIdPedido(), -1);
+        invalidarDiaNoDashboard(pedido);
+    }
+
+    /**
+     * Soma aos resumos diários o contributo do pedido já alterado
+     * (as alterações pendentes são gravadas antes).
+     */
+    private void somarAosResumos(Pedido pedido) {
+        pedidoRepository.flush();
+        vendaDiariaRepository.aplicarPedido(pedido.getIdPedido(), 1);
+        invalidarDiaNoDashboard(pedido);
+    }
+
+    /** O dia do pedido deixa de estar certo na cache do dashboard. */
+    private void invalidarDiaNoDashboard(Pedido pedido) {
+        if (pedido.getDataPedido() != null) {
+            dashboardCache.invalidarDia(pedido.getDataPedido().toLocalDate());
+        }
     }
 
     /**
@@ -568,6 +655,10 @@ public PedidoResponseDTO ativarPedido(Integer idPedido) {
     // ════════════════════════════════════════════════════════════════════════
 
     private PedidoResponseDTO toResponseDTO(Pedido pedido) {
+        return toResponseDTO(pedido, pedido.getItens());
+    }
+
+    private PedidoResponseDTO toResponseDTO(Pedido pedido, List<ItemPedido> itens) {
         PedidoResponseDTO dto = new PedidoResponseDTO();
         dto.idPedido          = pedido.getIdPedido();
         dto.reference         = pedido.getReference();
@@ -588,7 +679,7 @@ public PedidoResponseDTO ativarPedido(Integer idPedido) {
         dto.valorPagoManual = pedido.getValorPagoManual();
         dto.nomeCliente     = pedido.getNomeCliente();
         dto.apelidoCliente  = pedido.getApelidoCliente();
-        dto.itens = pedido.getItens().stream()
+        dto.itens = itens.stream()
                 .map(this::toItemResponseDTO)
                 .collect(Collectors.toList());
 
@@ -645,43 +736,45 @@ Pedido pedido = Pedido.builder()
         .ocultoCliente((short) 0)
         .build();
 
-    pedido = pedidoRepository.save(pedido);
-
     // 3. Converte cada ItemCarrinho em ItemPedido
     //    O estoque JÁ foi descontado pelo CarrinhoService — não desconta novamente
-    for (ItemCarrinho itemCarrinho : carrinho.getItens()) {
-        Produto produto = itemCarrinho.getProduto();
-
-        BigDecimal precoUnitario = produto.getPrecoPromocional() != null
-                ? produto.getPrecoPromocional()
-                : produto.getPreco();
-
-        int quantidade = itemCarrinho.getQuantidade();
-
-        ItemPedido itemPedido = ItemPedido.builder()
-                .pedido(pedido)
-                .produto(produto)
-                .quantidade(quantidade)
-                .precoUnitario(precoUnitario)
-                .subtotal(precoUnitario.multiply(BigDecimal.valueOf(quantidade)))
-                .build();
+    List<ItemPedido> itens = carrinho.getItens().stream()
+            .map(itemCarrinho -> {
+                Produto produto = itemCarrinho.getProduto();
+                BigDecimal precoUnitario = produto.getPrecoPromocional() != null
+                        ? produto.getPrecoPromocional()
+                        : produto.getPreco();
+                int quantidade = itemCarrinho.getQuantidade();
+                return ItemPedido.builder()
+                        .pedido(pedido)
+                        .produto(produto)
+                        .quantidade(quantidade)
+                        .precoUnitario(precoUnitario)
+                        .subtotal(precoUnitario.multiply(BigDecimal.valueOf(quantidade)))
+                        .build();
+            })
+            .collect(Collectors.toList());
 
-        itemPedidoRepository.save(itemPedido);
-        pedido.getItens().add(itemPedido);
+    // 4. Total já conhecido: o pedido é inserido uma só vez
+    pedido.setTotal(itens.stream()
+            .map(ItemPedido::getSubtotal)
+            .reduce(BigDecimal.ZERO, BigDecimal::add));
+    Pedido salvo = pedidoRepository.save(pedido);
 
-        log.info("Item migrado — produto '{}' | qty: {} | preço: {}",
-                produto.getNomeProduto(), quantidade, precoUnitario);
-    }
+    // 5. Todos os itens num único INSERT (fora do contexto de persistência);
+    //    o refresh faz salvo.getItens() ler da base de dados os itens inseridos
+    itemPedidoLoteRepository.inserir(salvo.getIdPedido(), itens);
+    entityManager.refresh(salvo);
 
-    // 4. Recalcula e persiste total final
-    pedido.recalcularTotal();
-    pedido = pedidoRepository.save(pedido);
+    // 6. Resumos diários do dashboard (pedido online já conta como venda)
+    somarAosResumos(salvo);
+    notificacoesPedido.pedidoAlterado(salvo, null, "criado");
 
     log.info("Pedido {} criado a partir do carrinho {} | {} itens | Total: {}",
-             pedido.getReference(), carrinho.getIdCarrinho(),
-             pedido.getItens().size(), pedido.getTotal());
+             salvo.getReference(), carrinho.getIdCarrinho(),
+             itens.size(), salvo.getTotal());
 
-    return toResponseDTO(pedido);
+    return toResponseDTO(salvo, itens);
 }
 // Adicionar após listarPorStatus()
 @Transactional(readOnly = true)
@@ -704,19 +797,27 @@ public List<PedidoResponseDTO> listarPorUsuarioStatusEOrigem(
             .collect(Collectors.toList());
 }
 
-@Transactional(readOnly = true)
+// Sem @Transactional: com os contadores em memória não chega a abrir conexão
 public Map<String, Long> contarNotificacoes(Integer idUsuario) {
-    long emAndamento = pedidoRepository.countPedidosAtivosDoUsuario(idUsuario);
-    long finalizados = pedidoRepository.countFinalizadosNaoVistos(idUsuario);
-    return Map.of(
-        "emAndamento", emAndamento,
-        "finalizadosNaoVistos", finalizados
-    );
+    return notificacoesPedido.contadores(idUsuario);
+}
+
+/** Stream SSE com os contadores e as mudanças de estado dos pedidos do utilizador. */
+public SseEmitter inscreverNotificacoes(Integer idUsuario) {
+    return notificacoesPedido.inscrever(idUsuario);
+}
+
+public Map<String, Object> estatisticasNotificacoes() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("stream", notificacoesPedido.estatisticas());
+    stats.put("contadores", notificacoesPedido.estatisticasContadores());
+    return stats;
 }
 
 @Transactional
 public void marcarFinalizadosComoVistos(Integer idUsuario) {
     pedidoRepository.marcarFinalizadosComoVistos(idUsuario);
+    notificacoesPedido.finalizadosVistos(idUsuario);
     log.info("Pedidos finalizados do utilizador {} marcados como vistos", idUsuario);
 }
 
@@ -0,0 +1,178 @@
+package com.loja1.projectohibrido.produto.alerta;
+
+import com.loja1.projectohibrido.config.LigacaoSse;
+import com.loja1.projectohibrido.produto.dto.AlertaEstoqueDTO;
+import com.loja1.projectohibrido.produto.repository.EstoqueMinimoRepository;
+import com.loja1.projectohibrido.produto.repository.EstoqueMinimoRepository.Limiar;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Alertas de estoque baixo.
+ *
+ * Os limiares (produto.estoque_minimo) ficam num mapa em memória carregado no
+ * arranque, por isso a verificação feita a cada variação de estoque é um
+ * lookup por ID, sem consulta. Só há alerta quando o estoque atravessa o
+ * limiar (de cima para baixo, ou de volta para cima), não a cada venda de
+ * um produto que já está em falta.
+ *
+ * Só as variações reais de estoque (EstoqueService) passam por aqui; os
+ * movimentos registados pela API não alteram o estoque e não geram alertas.
+ *
+ * Os alertas são enviados após o commit, por SSE, à aplicação do vendedor
+ * (GET /api/produtos/estoque-baixo/alertas). Cada ligação tem a sua fila e a
+ * sua virtual thread ({@link LigacaoSse}): um cliente lento não atrasa o
+ * pedido nem os alertas dos outros.
+ */
+@Component
+@Slf4j
+public class AlertasEstoque {
+
+    private final EstoqueMinimoRepository estoqueMinimoRepository;
+    private final long timeoutSseMs;
+
+    private final Map<Integer, Limiar> limiares = new ConcurrentHashMap<>();
+    private static final int FILA_POR_LIGACAO = 100;
+    private static final Supplier<SseEmitter.SseEventBuilder> PING = () -> SseEmitter.event().comment("ping");
+
+    private final List<LigacaoSse> inscritos = new CopyOnWriteArrayList<>();
+
+    private final LongAdder verificacoes = new LongAdder();
+    private final LongAdder alertas = new LongAdder();
+    private final LongAdder envios = new LongAdder();
+
+    public AlertasEstoque(EstoqueMinimoRepository estoqueMinimoRepository,
+                          @Value("${estoque.alertas.sse-timeout-ms:1800000}") long timeoutSseMs) {
+        this.estoqueMinimoRepository = estoqueMinimoRepository;
+        this.timeoutSseMs = timeoutSseMs;
+    }
+
+    // ===== ARRANQUE / PARAGEM =====
+
+    @PostConstruct
+    void carregar() {
+        try {
+            estoqueMinimoRepository.carregarLimiares().forEach(l -> limiares.put(l.idProduto(), l));
+            log.info("Alertas de estoque: {} produto(s) com estoque mínimo", limiares.size());
+        } catch (DataAccessException e) {
+            // Coluna ainda não criada: sem limiares até db/estoque_baixo.sql ser executado
+            log.warn("Alertas de estoque inactivos (execute db/estoque_baixo.sql): {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void parar() {
+        inscritos.forEach(LigacaoSse::fechar);
+    }
+
+    // ===== LIMIARES =====
+
+    /** Limiar alterado (ou removido, com minimo null); aplicado após o commit. */
+    public void limiarDefinido(Integer idProduto, String nomeProduto, Integer minimo) {
+        aposCommit(() -> {
+            if (minimo == null) {
+                limiares.remove(idProduto);
+            } else {
+                limiares.put(idProduto, new Limiar(idProduto, nomeProduto, minimo));
+            }
+        });
+    }
+
+    /** Mantém o nome usado nos alertas quando o produto é renomeado. */
+    public void produtoRenomeado(Integer idProduto, String nomeProduto) {
+        aposCommit(() -> limiares.computeIfPresent(idProduto,
+                (id, l) -> new Limiar(id, nomeProduto, l.minimo())));
+    }
+
+    // ===== VERIFICAÇÃO =====
+
+    /**
+     * Compara a variação com o limiar do produto — O(1), sem consulta.
+     * Deve ser chamado dentro da transacção que altera o estoque; o alerta só
+     * sai se ela fizer commit.
+     */
+    public void verificar(Integer idProduto, Integer anterior, Integer nova) {
+        if (idProduto == null || anterior == null || nova == null) return;
+        verificacoes.increment();
+        Limiar limiar = limiares.get(idProduto);
+        if (limiar == null) return;
+
+        String tipo;
+        if (nova <= 0 && anterior > 0) {
+            tipo = "esgotado";
+        } else if (nova <= limiar.minimo() && anterior > limiar.minimo()) {
+            tipo = "baixo";
+        } else if (nova > limiar.minimo() && anterior <= limiar.minimo()) {
+            tipo = "reposto";
+        } else {
+            return;
+        }
+
+        AlertaEstoqueDTO alerta = new AlertaEstoqueDTO(tipo, idProduto, limiar.nomeProduto(),
+                anterior, nova, limiar.minimo(), LocalDateTime.now());
+        aposCommit(() -> {
+            alertas.increment();
+            log.info("Alerta de estoque {} | produto={} {} → {} (mínimo {})",
+                    tipo, idProduto, anterior, nova, limiar.minimo());
+            inscritos.forEach(l -> l.enviar(() -> SseEmitter.event().name("estoque").data(alerta)));
+        });
+    }
+
+    // ===== SSE =====
+
+    public SseEmitter inscrever() {
+        SseEmitter emitter = new SseEmitter(timeoutSseMs);
+        inscritos.add(new LigacaoSse(emitter, FILA_POR_LIGACAO, envios::increment,
+                () -> inscritos.removeIf(l -> l.emitter() == emitter)));
+        log.debug("Inscrito nos alertas de estoque ({} ligado(s))", inscritos.size());
+        return emitter;
+    }
+
+    /** Comentário periódico: mantém a ligação aberta em proxies e remove clientes que caíram. */
+    @Scheduled(fixedDelayString = "${estoque.alertas.heartbeat-ms:25000}")
+    void manterLigacoes() {
+        inscritos.forEach(l -> l.enviar(PING));
+    }
+
+    // ===== AUXILIARES =====
+
+    private static void aposCommit(Runnable accao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accao.run();
+                }
+            });
+        } else {
+            accao.run();
+        }
+    }
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("produtosComLimiar", limiares.size());
+        stats.put("inscritos", inscritos.size());
+        stats.put("verificacoes", verificacoes.sum());
+        stats.put("alertas", alertas.sum());
+        stats.put("envios", envios.sum());
+        return stats;
+    }
+}
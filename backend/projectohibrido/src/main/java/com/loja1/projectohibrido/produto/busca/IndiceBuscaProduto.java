@@ -0,0 +1,403 @@
+package com.loja1.projectohibrido.produto.busca;
+
+import com.loja1.projectohibrido.categoria.entity.Categoria;
+import com.loja1.projectohibrido.categoria.repository.CategoriaRepository;
+import com.loja1.projectohibrido.marca.entity.Marca;
+import com.loja1.projectohibrido.marca.repository.MarcaRepository;
+import com.loja1.projectohibrido.produto.dto.ProdutoBuscaResultadoDTO;
+import com.loja1.projectohibrido.produto.dto.ProdutoResponseDTO;
+import com.loja1.projectohibrido.produto.repository.ProdutoRepository;
+import com.loja1.projectohibrido.produto.service.ProdutoProjecaoService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido em memória para a busca do catálogo.
+ *
+ * Os termos (nome, descrição, nomes de marcas e de categorias) são guardados
+ * sem acentos e em minúsculas num TreeMap, o que permite responder a prefixos
+ * ("cam" → camisa, câmara) percorrendo só o intervalo de termos relevante.
+ *
+ * Todas as alterações ao índice correm numa única thread, pela ordem dos
+ * commits: cada tarefa relê o produto já gravado, pelo que o índice converge
+ * sempre para o estado da base de dados. As buscas só tomam o read lock.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IndiceBuscaProduto {
+
+    private static final int PESO_NOME = 8;
+    private static final int PESO_MARCA = 4;
+    private static final int PESO_CATEGORIA = 3;
+    private static final int PESO_DESCRICAO = 1;
+
+    private static final int TAMANHO_MINIMO_PREFIXO = 2;
+    private static final int LIMITE_PADRAO = 10;
+    private static final int LIMITE_MAXIMO = 50;
+
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+    private static final Set<String> PALAVRAS_VAZIAS = Set.of(
+            "a", "o", "as", "os", "um", "uma", "de", "da", "do", "das", "dos",
+            "e", "em", "na", "no", "nas", "nos", "ao", "aos", "para", "por", "com", "sem");
+
+    private final ProdutoRepository produtoRepository;
+    private final ProdutoProjecaoService produtoProjecaoService;
+    private final MarcaRepository marcaRepository;
+    private final CategoriaRepository categoriaRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Map<Integer, Integer>> termos = new TreeMap<>();
+    private final Map<Integer, Documento> documentos = new HashMap<>();
+
+    // Só acedidos pela thread de actualização — não precisam de lock
+    private final Map<Integer, String> nomesMarcas = new HashMap<>();
+    private final Map<Integer, String> nomesCategorias = new HashMap<>();
+
+    private final ExecutorService actualizador = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "indice-busca-produto");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Documento(ProdutoResponseDTO produto, Map<String, Integer> pesos) {}
+
+    private record Candidato(Documento documento, int pontuacao) {}
+
+    // ===== CARGA INICIAL =====
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarAoIniciar() {
+        executar(this::reconstruir);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        actualizador.shutdownNow();
+    }
+
+    private void reconstruir() {
+        long inicio = System.currentTimeMillis();
+
+        nomesMarcas.clear();
+        marcaRepository.findAll().forEach(m -> nomesMarcas.put(m.getIdMarca(), m.getNomeMarca()));
+        nomesCategorias.clear();
+        categoriaRepository.findAll().forEach(c -> nomesCategorias.put(c.getIdCategoria(), c.getNomeCategoria()));
+
+        List<ProdutoResponseDTO> produtos = produtoProjecaoService.projectar(produtoRepository.findAll());
+        List<Documento> novos = new ArrayList<>(produtos.size());
+        for (ProdutoResponseDTO produto : produtos) {
+            novos.add(new Documento(produto, calcularPesos(produto)));
+        }
+
+        lock.writeLock().lock();
+        try {
+            termos.clear();
+            documentos.clear();
+            novos.forEach(this::inserir);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice de busca carregado: {} produto(s), {} termo(s) em {} ms",
+                novos.size(), termos.size(), System.currentTimeMillis() - inicio);
+    }
+
+    // ===== ACTUALIZAÇÃO INCREMENTAL =====
+
+    /** Reindexa o produto depois do commit da transacção corrente. */
+    public void reindexarAposCommit(Integer idProduto) {
+        aposCommit(() -> reindexar(idProduto));
+    }
+
+    /** Reindexa vários produtos (ex.: importação em massa) com uma leitura em lote. */
+    public void reindexarAposCommit(Collection<Integer> idsProdutos) {
+        List<Integer> ids = List.copyOf(idsProdutos);
+        aposCommit(() -> reindexarLote(ids));
+    }
+
+    /** Marca criada, renomeada ou apagada: actualiza os produtos que a referem. */
+    public void actualizarMarcaAposCommit(Integer idMarca) {
+        aposCommit(() -> {
+            String nome = marcaRepository.findById(idMarca).map(Marca::getNomeMarca).orElse(null);
+            actualizarNome(nomesMarcas, idMarca, nome);
+            reindexarEmMemoria(p -> p.getMarcas() != null && p.getMarcas().contains(idMarca));
+        });
+    }
+
+    /** Categoria criada, renomeada ou apagada: actualiza os produtos que a referem. */
+    public void actualizarCategoriaAposCommit(Integer idCategoria) {
+        aposCommit(() -> {
+            String nome = categoriaRepository.findById(idCategoria).map(Categoria::getNomeCategoria).orElse(null);
+            actualizarNome(nomesCategorias, idCategoria, nome);
+            reindexarEmMemoria(p -> p.getCategorias() != null && p.getCategorias().contains(idCategoria));
+        });
+    }
+
+    private void reindexar(Integer idProduto) {
+        var produto = produtoRepository.findById(idProduto);
+        if (produto.isEmpty()) {
+            lock.writeLock().lock();
+            try {
+                remover(idProduto);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        ProdutoResponseDTO dto = produtoProjecaoService.projectar(produto.get());
+        Documento documento = new Documento(dto, calcularPesos(dto));
+
+        lock.writeLock().lock();
+        try {
+            remover(idProduto);
+            inserir(documento);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reindexarLote(List<Integer> ids) {
+        List<Documento> novos = produtoProjecaoService.projectar(produtoRepository.findAllById(ids))
+                .stream().map(p -> new Documento(p, calcularPesos(p))).toList();
+
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::remover);
+            novos.forEach(this::inserir);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reindexarEmMemoria(Predicate<ProdutoResponseDTO> afectado) {
+        List<ProdutoResponseDTO> produtos = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            documentos.values().forEach(d -> {
+                if (afectado.test(d.produto())) produtos.add(d.produto());
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Documento> novos = produtos.stream().map(p -> new Documento(p, calcularPesos(p))).toList();
+        lock.writeLock().lock();
+        try {
+            for (Documento documento : novos) {
+                remover(documento.produto().getIdProduto());
+                inserir(documento);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Índice de busca: {} produto(s) reindexado(s) em memória", novos.size());
+    }
+
+    private void actualizarNome(Map<Integer, String> nomes, Integer id, String nome) {
+        if (nome == null) nomes.remove(id);
+        else nomes.put(id, nome);
+    }
+
+    private void aposCommit(Runnable tarefa) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    executar(tarefa);
+                }
+            });
+        } else {
+            executar(tarefa);
+        }
+    }
+
+    private void executar(Runnable tarefa) {
+        actualizador.execute(() -> {
+            try {
+                tarefa.run();
+            } catch (RuntimeException e) {
+                log.error("Falha ao actualizar o índice de busca", e);
+            }
+        });
+    }
+
+    // Chamados com o write lock
+    private void inserir(Documento documento) {
+        Integer id = documento.produto().getIdProduto();
+        documentos.put(id, documento);
+        documento.pesos().forEach((termo, peso) ->
+                termos.computeIfAbsent(termo, t -> new HashMap<>()).put(id, peso));
+    }
+
+    private void remover(Integer idProduto) {
+        Documento antigo = documentos.remove(idProduto);
+        if (antigo == null) return;
+        for (String termo : antigo.pesos().keySet()) {
+            Map<Integer, Integer> ocorrencias = termos.get(termo);
+            if (ocorrencias != null) {
+                ocorrencias.remove(idProduto);
+                if (ocorrencias.isEmpty()) termos.remove(termo);
+            }
+        }
+    }
+
+    private Map<String, Integer> calcularPesos(ProdutoResponseDTO produto) {
+        Map<String, Integer> pesos = new HashMap<>();
+        adicionarTermos(pesos, produto.getNomeProduto(), PESO_NOME);
+        adicionarTermos(pesos, produto.getDescricao(), PESO_DESCRICAO);
+        if (produto.getMarcas() != null) {
+            produto.getMarcas().forEach(id -> adicionarTermos(pesos, nomesMarcas.get(id), PESO_MARCA));
+        }
+        if (produto.getCategorias() != null) {
+            produto.getCategorias().forEach(id -> adicionarTermos(pesos, nomesCategorias.get(id), PESO_CATEGORIA));
+        }
+        return pesos;
+    }
+
+    private void adicionarTermos(Map<String, Integer> pesos, String texto, int peso) {
+        // Um termo conta uma vez por campo; campos diferentes somam
+        for (String termo : Set.copyOf(tokenizar(texto))) {
+            if (!PALAVRAS_VAZIAS.contains(termo)) {
+                pesos.merge(termo, peso, Integer::sum);
+            }
+        }
+    }
+
+    // ===== BUSCA =====
+
+    /**
+     * Todos os termos da consulta têm de ocorrer no produto (E lógico); cada
+     * termo casa por igualdade ou como prefixo. Igualdade vale o dobro do
+     * prefixo, pelo que "cama" ordena camas antes de camarões.
+     */
+    public List<ProdutoBuscaResultadoDTO> buscar(String consulta, Integer limite, boolean incluirInativos) {
+        int tamanho = (limite == null || limite <= 0) ? LIMITE_PADRAO : Math.min(limite, LIMITE_MAXIMO);
+
+        List<String> tokens = termosDaConsulta(consulta);
+        if (tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> pontuacoes = null;
+            for (String token : tokens) {
+                Map<Integer, Integer> doToken = pontuarToken(token);
+                if (pontuacoes == null) {
+                    pontuacoes = doToken;
+                } else {
+                    Map<Integer, Integer> doTokenFinal = doToken;
+                    pontuacoes.keySet().retainAll(doTokenFinal.keySet());
+                    pontuacoes.replaceAll((id, pontos) -> pontos + doTokenFinal.get(id));
+                }
+                if (pontuacoes.isEmpty()) break;
+            }
+
+            // Top-K com heap limitado: O(n log k) em vez de ordenar todos os candidatos
+            Comparator<Candidato> ordem = Comparator.comparingInt(Candidato::pontuacao)
+                    .thenComparing(c -> c.documento().produto().getIdProduto());
+            PriorityQueue<Candidato> melhores = new PriorityQueue<>(tamanho + 1, ordem);
+            for (Map.Entry<Integer, Integer> e : pontuacoes.entrySet()) {
+                Documento documento = documentos.get(e.getKey());
+                if (documento == null) continue;
+                Short ativo = documento.produto().getAtivo();
+                if (!incluirInativos && (ativo == null || ativo != 1)) continue;
+                melhores.offer(new Candidato(documento, e.getValue()));
+                if (melhores.size() > tamanho) melhores.poll();
+            }
+
+            List<ProdutoBuscaResultadoDTO> resultado = new ArrayList<>(melhores.size());
+            while (!melhores.isEmpty()) {
+                Candidato c = melhores.poll();
+                ProdutoResponseDTO p = c.documento().produto();
+                resultado.add(new ProdutoBuscaResultadoDTO(p.getIdProduto(), p.getNomeProduto(),
+                        p.getPreco(), p.getPrecoPromocional(), p.getImagemPrincipalUrl(),
+                        p.getImagemPrincipalThumbUrl(), c.pontuacao()));
+            }
+            Collections.reverse(resultado);
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Integer, Integer> pontuarToken(String token) {
+        Map<Integer, Integer> pontos = new HashMap<>();
+
+        Map<Integer, Integer> exactos = termos.get(token);
+        if (exactos != null) {
+            exactos.forEach((id, peso) -> pontos.put(id, peso * 2));
+        }
+
+        if (token.length() >= TAMANHO_MINIMO_PREFIXO) {
+            for (Map<Integer, Integer> ocorrencias
+                    : termos.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                ocorrencias.forEach((id, peso) -> pontos.merge(id, peso, Math::max));
+            }
+        }
+        return pontos;
+    }
+
+    public int totalIndexado() {
+        lock.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Termos a procurar. Palavras vazias não estão no índice e saem, excepto
+     * a última enquanto está a ser escrita (a consulta acaba nela, sem espaço
+     * ou pontuação a seguir): pode ser o início de outra palavra ("de" → desconto).
+     */
+    static List<String> termosDaConsulta(String consulta) {
+        List<String> tokens = new ArrayList<>(tokenizar(consulta));
+        boolean ultimaIncompleta = consulta != null && !consulta.isEmpty()
+                && Character.isLetterOrDigit(consulta.charAt(consulta.length() - 1));
+        for (int i = tokens.size() - (ultimaIncompleta ? 2 : 1); i >= 0; i--) {
+            if (PALAVRAS_VAZIAS.contains(tokens.get(i))) tokens.remove(i);
+        }
+        return tokens;
+    }
+
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return List.of();
+        }
+        String normalizado = ACENTOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String t : SEPARADORES.split(normalizado)) {
+            if (!t.isEmpty()) tokens.add(t);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,162 @@
+package com.loja1.projectohibrido.produto.cache;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache em memória limitado por tamanho (LRU) e por tempo de vida (TTL).
+ *
+ * Leitura "read-through": em caso de falha o valor é carregado pelo
+ * {@link Supplier} fora do lock. Um contador de geração impede que um valor
+ * carregado antes de uma invalidação seja gravado depois dela (o que deixaria
+ * dados antigos em cache até expirar o TTL).
+ */
+public class CacheLimitado<K, V> {
+
+    private final String nome;
+    private final int tamanhoMaximo;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+    private long geracao = 0;
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final LongAdder despejosPorTamanho = new LongAdder();
+    private final LongAdder despejosPorExpiracao = new LongAdder();
+    private final LongAdder invalidacoes = new LongAdder();
+
+    private record Entrada<V>(V valor, long expiraEm) {}
+
+    public CacheLimitado(String nome, int tamanhoMaximo, long ttlSegundos) {
+        this.nome = nome;
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.ttlNanos = ttlSegundos * 1_000_000_000L;
+        // accessOrder = true → a entrada menos usada recentemente fica no início
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> maisAntiga) {
+                if (size() > CacheLimitado.this.tamanhoMaximo) {
+                    despejosPorTamanho.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public V obter(K chave, Supplier<V> carregador) {
+        long geracaoLida;
+        synchronized (this) {
+            Entrada<V> entrada = entradas.get(chave);
+            if (entrada != null) {
+                if (entrada.expiraEm() - System.nanoTime() > 0) {
+                    acertos.increment();
+                    return entrada.valor();
+                }
+                entradas.remove(chave);
+                despejosPorExpiracao.increment();
+            }
+            falhas.increment();
+            geracaoLida = geracao;
+        }
+
+        V valor = carregador.get();
+
+        synchronized (this) {
+            if (valor != null && geracaoLida == geracao) {
+                entradas.put(chave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+            }
+        }
+        return valor;
+    }
+
+    /**
+     * Várias chaves de uma vez: as que faltam são carregadas numa só chamada
+     * ao carregador (ex.: um IN), que recebe apenas essas chaves. Chaves
+     * sem valor no resultado do carregador não entram em cache.
+     */
+    public Map<K, V> obterVarios(Collection<K> chaves, Function<Set<K>, Map<K, V>> carregador) {
+        Map<K, V> resultado = new LinkedHashMap<>();
+        Set<K> emFalta = new LinkedHashSet<>();
+        long geracaoLida;
+        synchronized (this) {
+            long agora = System.nanoTime();
+            for (K chave : chaves) {
+                Entrada<V> entrada = entradas.get(chave);
+                if (entrada != null && entrada.expiraEm() - agora > 0) {
+                    acertos.increment();
+                    resultado.put(chave, entrada.valor());
+                    continue;
+                }
+                if (entrada != null) {
+                    entradas.remove(chave);
+                    despejosPorExpiracao.increment();
+                }
+                if (emFalta.add(chave)) falhas.increment();
+            }
+            geracaoLida = geracao;
+        }
+        if (emFalta.isEmpty()) return resultado;
+
+        Map<K, V> carregados = carregador.apply(emFalta);
+
+        synchronized (this) {
+            long expiraEm = System.nanoTime() + ttlNanos;
+            carregados.forEach((chave, valor) -> {
+                if (valor == null) return;
+                resultado.put(chave, valor);
+                if (geracaoLida == geracao) entradas.put(chave, new Entrada<>(valor, expiraEm));
+            });
+        }
+        return resultado;
+    }
+
+    public synchronized void invalidar(K chave) {
+        geracao++;
+        if (entradas.remove(chave) != null) {
+            invalidacoes.increment();
+        }
+    }
+
+    public synchronized void invalidarTudo() {
+        geracao++;
+        invalidacoes.add(entradas.size());
+        entradas.clear();
+    }
+
+    /** Remove as entradas já expiradas (chamado periodicamente ou sob demanda). */
+    public synchronized void limparExpiradas() {
+        long agora = System.nanoTime();
+        Iterator<Entrada<V>> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiraEm() - agora <= 0) {
+                it.remove();
+                despejosPorExpiracao.increment();
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> estatisticas() {
+        long hits = acertos.sum();
+        long misses = falhas.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nome", nome);
+        stats.put("tamanho", entradas.size());
+        stats.put("tamanhoMaximo", tamanhoMaximo);
+        stats.put("acertos", hits);
+        stats.put("falhas", misses);
+        stats.put("taxaAcerto", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("despejosPorTamanho", despejosPorTamanho.sum());
+        stats.put("despejosPorExpiracao", despejosPorExpiracao.sum());
+        stats.put("invalidacoes", invalidacoes.sum());
+        return stats;
+    }
+}
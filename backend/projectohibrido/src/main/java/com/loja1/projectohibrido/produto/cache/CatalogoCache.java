@@ -0,0 +1,148 @@
+package com.loja1.projectohibrido.produto.cache;
+
+import com.loja1.projectohibrido.marca.dto.MarcaComCategoriasDTO;
+import com.loja1.projectohibrido.produto.dto.ProdutoResponseDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache das leituras do catálogo (produto por ID, lista de activos, marcas
+ * com categorias e imagem principal por produto).
+ *
+ * As invalidações são feitas na hora e repetidas após o commit da transação
+ * que alterou os dados: uma leitura concorrente que tenha carregado o estado
+ * anterior ao commit não fica em cache.
+ */
+@Component
+@Slf4j
+public class CatalogoCache {
+
+    private static final String CHAVE_ATIVOS = "ativos";
+    private static final String CHAVE_MARCAS_COM_CATEGORIAS = "marcasComCategorias";
+
+    private final CacheLimitado<Integer, ProdutoResponseDTO> produtos;
+    private final CacheLimitado<String, List<ProdutoResponseDTO>> listas;
+    private final CacheLimitado<String, List<MarcaComCategoriasDTO>> marcas;
+    // Optional.empty() = produto sem imagem principal (também fica em cache)
+    private final CacheLimitado<Integer, Optional<String>> imagensPrincipais;
+
+    public CatalogoCache(@Value("${catalogo.cache.tamanho-maximo:5000}") int tamanhoMaximo,
+                         @Value("${catalogo.cache.ttl-segundos:300}") long ttlSegundos) {
+        this.produtos = new CacheLimitado<>("produtos", tamanhoMaximo, ttlSegundos);
+        this.listas = new CacheLimitado<>("listasProdutos", 16, ttlSegundos);
+        this.marcas = new CacheLimitado<>("marcasComCategorias", 1, ttlSegundos);
+        this.imagensPrincipais = new CacheLimitado<>("imagensPrincipais", tamanhoMaximo, ttlSegundos);
+        log.info("Cache do catálogo: até {} produtos, TTL {}s", tamanhoMaximo, ttlSegundos);
+    }
+
+    // ===== LEITURA =====
+
+    public ProdutoResponseDTO obterProduto(Integer idProduto, Supplier<ProdutoResponseDTO> carregador) {
+        return produtos.obter(idProduto, carregador);
+    }
+
+    public List<ProdutoResponseDTO> obterAtivos(Supplier<List<ProdutoResponseDTO>> carregador) {
+        return listas.obter(CHAVE_ATIVOS, carregador);
+    }
+
+    public List<MarcaComCategoriasDTO> obterMarcasComCategorias(Supplier<List<MarcaComCategoriasDTO>> carregador) {
+        return marcas.obter(CHAVE_MARCAS_COM_CATEGORIAS, carregador);
+    }
+
+    /**
+     * Caminho da imagem principal de cada produto (ausente se não tiver);
+     * os que não estão em cache são lidos numa só chamada ao carregador.
+     */
+    public Map<Integer, String> obterImagensPrincipais(Collection<Integer> idsProdutos,
+                                                        Function<Set<Integer>, Map<Integer, String>> carregador) {
+        Map<Integer, Optional<String>> imagens = imagensPrincipais.obterVarios(idsProdutos, emFalta -> {
+            Map<Integer, String> lidas = carregador.apply(emFalta);
+            Map<Integer, Optional<String>> resultado = new LinkedHashMap<>();
+            emFalta.forEach(id -> resultado.put(id, Optional.ofNullable(lidas.get(id))));
+            return resultado;
+        });
+        Map<Integer, String> resultado = new LinkedHashMap<>();
+        imagens.forEach((id, caminho) -> caminho.ifPresent(c -> resultado.put(id, c)));
+        return resultado;
+    }
+
+    // ===== INVALIDAÇÃO =====
+
+    /** Produto alterado (dados, imagens, associações ou estoque). */
+    public void invalidarProduto(Integer idProduto) {
+        executarAgoraEAposCommit(() -> {
+            produtos.invalidar(idProduto);
+            imagensPrincipais.invalidar(idProduto);
+            listas.invalidarTudo();
+        });
+    }
+
+    /** Vários produtos alterados de uma vez (ex.: reassociação em lote). */
+    public void invalidarProdutos(Collection<Integer> idsProdutos) {
+        List<Integer> ids = List.copyOf(idsProdutos);
+        executarAgoraEAposCommit(() -> {
+            ids.forEach(produtos::invalidar);
+            ids.forEach(imagensPrincipais::invalidar);
+            listas.invalidarTudo();
+        });
+    }
+
+    /** Produtos novos: as entradas por ID continuam válidas, só as listas mudam. */
+    public void invalidarListas() {
+        executarAgoraEAposCommit(listas::invalidarTudo);
+    }
+
+    /** Alteração que pode afectar vários produtos (ex.: categoria apagada). */
+    public void invalidarProdutos() {
+        executarAgoraEAposCommit(() -> {
+            produtos.invalidarTudo();
+            imagensPrincipais.invalidarTudo();
+            listas.invalidarTudo();
+        });
+    }
+
+    /** Marcas, categorias ou associações categoria↔marca alteradas. */
+    public void invalidarMarcas() {
+        executarAgoraEAposCommit(marcas::invalidarTudo);
+    }
+
+    private void executarAgoraEAposCommit(Runnable invalidacao) {
+        invalidacao.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidacao.run();
+                }
+            });
+        }
+    }
+
+    // ===== ESTATÍSTICAS =====
+
+    public Map<String, Object> estatisticas() {
+        produtos.limparExpiradas();
+        listas.limparExpiradas();
+        marcas.limparExpiradas();
+        imagensPrincipais.limparExpiradas();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("produtos", produtos.estatisticas());
+        stats.put("listas", listas.estatisticas());
+        stats.put("marcas", marcas.estatisticas());
+        stats.put("imagensPrincipais", imagensPrincipais.estatisticas());
+        return stats;
+    }
+}
@@ -0,0 +1,45 @@
+package com.loja1.projectohibrido.produto.controller;
+
+import com.loja1.projectohibrido.produto.imagem.ArmazenamentoImagens;
+import com.loja1.projectohibrido.produto.imagem.EntregaImagens;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ficheiros de imagem dos produtos, nos URLs guardados em
+ * produto_imagem.caminho_imagem ({@link ArmazenamentoImagens#PREFIXO_URL}).
+ */
+@RestController
+@RequiredArgsConstructor
+public class ImagemProdutoController {
+
+    private final EntregaImagens entregaImagens;
+    private final ArmazenamentoImagens armazenamentoImagens;
+
+    @RequestMapping(value = "/uploads/produtos/{nome}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void servir(@PathVariable String nome,
+                       HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        entregaImagens.servir(nome, request, response);
+    }
+
+    /** Uploads e variantes (armazenamento) e respostas, 304, Range e sendfile (entrega). */
+    @GetMapping("/api/produtos/imagens/estatisticas")
+    public ResponseEntity<Map<String, Object>> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("armazenamento", armazenamentoImagens.estatisticas());
+        stats.put("entrega", entregaImagens.estatisticas());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -1,24 +1,37 @@
 package com.loja1.projectohibrido.produto.controller;
 
+import com.loja1.projectohibrido.produto.alerta.AlertasEstoque;
+import com.loja1.projectohibrido.produto.dto.ImportacaoResultadoDTO;
+import com.loja1.projectohibrido.produto.dto.ProdutoBuscaResultadoDTO;
+import com.loja1.projectohibrido.produto.dto.ProdutoEstoqueBaixoDTO;
 import com.loja1.projectohibrido.produto.dto.ProdutoImagemRequestDTO;
+import com.loja1.projectohibrido.produto.dto.ProdutoPaginaDTO;
 import com.loja1.projectohibrido.produto.dto.ProdutoRequestDTO;
 import com.loja1.projectohibrido.produto.dto.ProdutoResponseDTO;
+import com.loja1.projectohibrido.produto.dto.ReassociacaoRequestDTO;
+import com.loja1.projectohibrido.produto.dto.ReassociacaoResultadoDTO;
 import com.loja1.projectohibrido.produto.entity.ProdutoImagem;
+import com.loja1.projectohibrido.produto.imagem.ArmazenamentoImagens;
+import com.loja1.projectohibrido.produto.service.EstoqueService;
+import com.loja1.projectohibrido.produto.service.ProdutoImportacaoService;
 import com.loja1.projectohibrido.produto.service.ProdutoService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j; // ✅ ADICIONE este import
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path; // ✅ ADICIONE este import
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/produtos")
@@ -27,6 +40,10 @@ import java.util.List;
 public class ProdutoController {
     
     private final ProdutoService produtoService;
+    private final ProdutoImportacaoService produtoImportacaoService;
+    private final EstoqueService estoqueService;
+    private final AlertasEstoque alertasEstoque;
+    private final ArmazenamentoImagens armazenamentoImagens;
     private static final Logger log = LoggerFactory.getLogger(ProdutoController.class);
     
     @PostMapping
@@ -35,6 +52,19 @@ public class ProdutoController {
         log.info("🚨 DTO recebido: {}", dto);
         return ResponseEntity.status(HttpStatus.CREATED).body(produtoService.criar(dto));
     }
+
+    /**
+     * Importação em massa. Corpo em CSV (text/csv, com cabeçalho) ou NDJSON
+     * (application/x-ndjson, um objecto JSON por linha), lido em streaming.
+     * Linhas inválidas são reportadas sem interromper a carga.
+     */
+    @PostMapping(value = "/importacao", consumes = {"text/csv", "application/x-ndjson", "text/plain"})
+    public ResponseEntity<ImportacaoResultadoDTO> importar(
+            InputStream corpo,
+            @RequestHeader(value = "Content-Type", required = false) String contentType) throws IOException {
+        boolean ndjson = contentType != null && contentType.toLowerCase(Locale.ROOT).contains("ndjson");
+        return ResponseEntity.ok(produtoImportacaoService.importar(corpo, ndjson));
+    }
     
    @PutMapping("/{id}")
 public ResponseEntity<ProdutoResponseDTO> atualizar(
@@ -69,11 +99,105 @@ public ResponseEntity<ProdutoResponseDTO> atualizar(
         return ResponseEntity.ok(produtoService.listarAtivos());
     }
     
+    /**
+     * Catálogo paginado por cursor. Passe o "proximoCursor" recebido para obter
+     * a página seguinte; X-Total-Count só é enviado na primeira página.
+     */
+    @GetMapping("/pagina")
+    public ResponseEntity<ProdutoPaginaDTO> listarPagina(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) Integer idCategoria,
+            @RequestParam(required = false) Integer idMarca,
+            @RequestParam(required = false) Short ativo,
+            @RequestParam(required = false) BigDecimal precoMin,
+            @RequestParam(required = false) BigDecimal precoMax) {
+
+        ProdutoPaginaDTO pagina = produtoService.listarPagina(
+                cursor, limite, idCategoria, idMarca, ativo, precoMin, precoMax);
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (pagina.getTotalEstimado() != null) {
+            builder.header("X-Total-Count", String.valueOf(pagina.getTotalEstimado()));
+        }
+        return builder.body(pagina);
+    }
+    
+    /**
+     * Busca por texto (nome, descrição, marca, categoria), sem acentos e por
+     * prefixo — pensada para typeahead. Ex.: /api/produtos/busca?q=cam%20alg
+     */
+    @GetMapping("/busca")
+    public ResponseEntity<List<ProdutoBuscaResultadoDTO>> buscar(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(defaultValue = "false") boolean incluirInativos) {
+        return ResponseEntity.ok(produtoService.buscar(q, limite, incluirInativos));
+    }
+    
+    /**
+     * Acertos, falhas e despejos do cache do catálogo — para dimensionar
+     * catalogo.cache.tamanho-maximo e catalogo.cache.ttl-segundos.
+     */
+    @GetMapping("/cache/estatisticas")
+    public ResponseEntity<Map<String, Object>> estatisticasCache() {
+        return ResponseEntity.ok(produtoService.estatisticasCache());
+    }
+    
+    /**
+     * Reservas, recusas e produtos por gravar do livro de estoque em memória
+     * (estoque.livro.activo).
+     */
+    @GetMapping("/estoque/livro/estatisticas")
+    public ResponseEntity<Map<String, Object>> estatisticasLivroEstoque() {
+        return ResponseEntity.ok(estoqueService.estatisticasLivro());
+    }
+    
+    /** Produtos activos no estoque mínimo ou abaixo dele, os mais em falta primeiro. */
+    @GetMapping("/estoque-baixo")
+    public ResponseEntity<List<ProdutoEstoqueBaixoDTO>> listarEstoqueBaixo(
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(produtoService.listarEstoqueBaixo(limite));
+    }
+    
+    /**
+     * Stream SSE (text/event-stream) para a aplicação do vendedor: um evento
+     * "estoque" sempre que um produto desce ao estoque mínimo, esgota ou é
+     * reposto acima dele. O cliente volta a ligar-se quando a ligação expira
+     * (estoque.alertas.sse-timeout-ms).
+     */
+    @GetMapping(value = "/estoque-baixo/alertas", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter alertasEstoqueBaixo() {
+        return alertasEstoque.inscrever();
+    }
+    
+    @GetMapping("/estoque-baixo/alertas/estatisticas")
+    public ResponseEntity<Map<String, Object>> estatisticasAlertas() {
+        return ResponseEntity.ok(produtoService.estatisticasAlertas());
+    }
+    
+    /** {"estoqueMinimo": 5}; {"estoqueMinimo": null} remove o alerta do produto. */
+    @PutMapping("/{id}/estoque-minimo")
+    public ResponseEntity<ProdutoEstoqueBaixoDTO> definirEstoqueMinimo(
+            @PathVariable Integer id,
+            @RequestBody Map<String, Integer> body) {
+        return ResponseEntity.ok(produtoService.definirEstoqueMinimo(id, body.get("estoqueMinimo")));
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<ProdutoResponseDTO> buscarPorId(@PathVariable Integer id) {
         return ResponseEntity.ok(produtoService.buscarPorId(id));
     }
     
+    /**
+     * Reassociação em lote: {"produtos": [..], "adicionarCategorias": [..],
+     * "removerCategorias": [..], "adicionarMarcas": [..], "removerMarcas": [..]}
+     */
+    @PostMapping("/reassociacao")
+    public ResponseEntity<ReassociacaoResultadoDTO> reassociar(@RequestBody ReassociacaoRequestDTO dto) {
+        return ResponseEntity.ok(produtoService.reassociar(dto));
+    }
+    
     // ===== CATEGORIAS =====
     
     @PostMapping("/{idProduto}/categorias/{idCategoria}")
@@ -138,8 +262,8 @@ public ResponseEntity<ProdutoResponseDTO> atualizar(
         log.info("POST /api/produtos/{}/imagens - Adicionar imagem", idProduto);
         
         try {
-            // Salvar arquivo no servidor
-            String caminhoImagem = salvarArquivo(imagem);
+            // Gravado em streaming, com o hash do conteúdo como nome
+            String caminhoImagem = armazenamentoImagens.guardar(imagem);
             
             ProdutoImagemRequestDTO dto = new ProdutoImagemRequestDTO();
             dto.setCaminhoImagem(caminhoImagem);
@@ -148,7 +272,7 @@ public ResponseEntity<ProdutoResponseDTO> atualizar(
             
             produtoService.adicionarImagem(idProduto, dto);
             return ResponseEntity.status(HttpStatus.CREATED).build();
-        } catch (Exception e) {
+        } catch (IOException e) {
             log.error("Erro ao adicionar imagem", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -177,16 +301,4 @@ public ResponseEntity<ProdutoResponseDTO> atualizar(
         return ResponseEntity.noContent().build();
     }
 
-    // Método auxiliar para salvar arquivo
-    private String salvarArquivo(MultipartFile arquivo) throws IOException {
-        String nomeArquivo = System.currentTimeMillis() + "_" + arquivo.getOriginalFilename();
-        String caminho = "uploads/produtos/" + nomeArquivo;
-        
-        Path path = Paths.get(caminho);
-        Files.createDirectories(path.getParent());
-        Files.write(path, arquivo.getBytes());
-        
-        return "/uploads/produtos/" + nomeArquivo;
-    }
-    
 }
\ No newline at end of file
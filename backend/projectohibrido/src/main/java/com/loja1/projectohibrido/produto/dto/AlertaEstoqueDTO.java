@@ -0,0 +1,21 @@
+package com.loja1.projectohibrido.produto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/** Evento enviado em GET /api/produtos/estoque-baixo/alertas. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertaEstoqueDTO {
+    private String tipo; // "baixo", "esgotado" ou "reposto"
+    private Integer idProduto;
+    private String nomeProduto;
+    private Integer quantidadeAnterior;
+    private Integer quantidadeEstoque;
+    private Integer estoqueMinimo;
+    private LocalDateTime data;
+}
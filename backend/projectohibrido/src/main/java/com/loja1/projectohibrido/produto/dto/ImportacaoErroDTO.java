@@ -0,0 +1,13 @@
+package com.loja1.projectohibrido.produto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacaoErroDTO {
+    private int linha; // linha do ficheiro (1 = cabeçalho no CSV)
+    private String mensagem;
+}
@@ -0,0 +1,15 @@
+package com.loja1.projectohibrido.produto.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ImportacaoResultadoDTO {
+    private int totalLinhas;
+    private int importados;
+    private int rejeitados;
+    private List<ImportacaoErroDTO> erros = new ArrayList<>(); // limitado; "rejeitados" tem o total
+    private long duracaoMs;
+}
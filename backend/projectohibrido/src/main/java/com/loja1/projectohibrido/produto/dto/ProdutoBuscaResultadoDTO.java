@@ -0,0 +1,20 @@
+package com.loja1.projectohibrido.produto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProdutoBuscaResultadoDTO {
+    private Integer idProduto;
+    private String nomeProduto;
+    private BigDecimal preco;
+    private BigDecimal precoPromocional;
+    private String imagemPrincipalUrl;
+    private String imagemPrincipalThumbUrl;
+    private int pontuacao; // relevância — maior primeiro
+}
@@ -0,0 +1,15 @@
+package com.loja1.projectohibrido.produto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProdutoEstoqueBaixoDTO {
+    private Integer idProduto;
+    private String nomeProduto;
+    private Integer quantidadeEstoque;
+    private Integer estoqueMinimo;
+}
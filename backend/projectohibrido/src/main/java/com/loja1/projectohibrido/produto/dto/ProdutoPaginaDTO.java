@@ -0,0 +1,17 @@
+package com.loja1.projectohibrido.produto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProdutoPaginaDTO {
+    private List<ProdutoResponseDTO> itens;
+    private String proximoCursor; // null quando não há mais páginas
+    private boolean temMais;
+    private Long totalEstimado; // só calculado na primeira página (também enviado em X-Total-Count)
+}
@@ -20,5 +20,7 @@ public class ProdutoResponseDTO {
     
     private LocalDateTime dataCadastro;
     private List<Integer> categorias;
-    private String imagemPrincipalUrl;
+    private String imagemPrincipalUrl;       // original
+    private String imagemPrincipalThumbUrl;  // listagens (imagens.thumb-px)
+    private String imagemPrincipalMediaUrl;  // detalhe (imagens.media-px)
 }
\ No newline at end of file
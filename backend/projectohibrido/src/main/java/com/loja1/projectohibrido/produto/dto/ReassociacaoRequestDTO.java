@@ -0,0 +1,15 @@
+package com.loja1.projectohibrido.produto.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ReassociacaoRequestDTO {
+    private List<Integer> produtos = new ArrayList<>();
+    private List<Integer> adicionarCategorias = new ArrayList<>();
+    private List<Integer> removerCategorias = new ArrayList<>();
+    private List<Integer> adicionarMarcas = new ArrayList<>();
+    private List<Integer> removerMarcas = new ArrayList<>();
+}
@@ -0,0 +1,16 @@
+package com.loja1.projectohibrido.produto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReassociacaoResultadoDTO {
+    private int produtos;
+    private int categoriasAdicionadas;
+    private int categoriasRemovidas;
+    private int marcasAdicionadas;
+    private int marcasRemovidas;
+}
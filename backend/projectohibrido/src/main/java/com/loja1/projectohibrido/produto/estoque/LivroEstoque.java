@@ -0,0 +1,395 @@
+package com.loja1.projectohibrido.produto.estoque;
+
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
+import com.loja1.projectohibrido.produto.repository.CheckpointEstoqueRepository;
+import com.loja1.projectohibrido.produto.repository.CheckpointEstoqueRepository.Divergencia;
+import com.loja1.projectohibrido.produto.repository.CheckpointEstoqueRepository.Situacao;
+import com.loja1.projectohibrido.produto.repository.ProdutoLoteRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Livro de estoque em memória (opcional: estoque.livro.activo=true).
+ *
+ * Em promoções, muitos checkouts disputam as mesmas linhas de produto e cada
+ * UPDATE condicional fica à espera do lock da linha. Com o livro activo, as
+ * reservas são servidas por contadores atómicos por produto (sem locks) e só
+ * a variação líquida confirmada é gravada em produto.quantidade_estoque, em
+ * lote, a cada estoque.livro.intervalo-gravacao-ms.
+ *
+ * Transacções: o desconto é feito na hora (ninguém mais consegue essa
+ * unidade); se a transacção falhar a unidade volta ao saldo. Devoluções só
+ * entram no saldo após o commit.
+ *
+ * Recuperação: ao carregar um produto é gravado um checkpoint (estoque e total
+ * vendido). Se a aplicação parar sem gravar as variações pendentes, o arranque
+ * seguinte recalcula o estoque a partir de item_pedido — ver
+ * {@link CheckpointEstoqueRepository}.
+ *
+ * Pressupõe uma única instância da aplicação a escrever estoque.
+ */
+@Component
+@Slf4j
+public class LivroEstoque {
+
+    /**
+     * Saldo de um produto.
+     * disponivel: o que ainda pode ser reservado;
+     * pendente:   variação confirmada ainda não gravada na base de dados;
+     * emCurso:    reservado por transacções ainda não terminadas.
+     *
+     * Quando o estoque é redefinido fora do livro o saldo é retirado e
+     * substituído por um sucessor; reservas e fins de transacção que ainda o
+     * tenham seguem para o sucessor (ver {@link #noSaldoActual}).
+     */
+    private static final class Saldo {
+        final AtomicInteger disponivel;
+        final AtomicInteger pendente = new AtomicInteger();
+        final AtomicInteger emCurso = new AtomicInteger();
+        // Leitura: reservas e fins de transacção (concorrentes entre si); escrita: retirar
+        final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+        Saldo sucessor;   // protegido pela trava; não-null = retirado
+
+        Saldo(int inicial) {
+            this.disponivel = new AtomicInteger(inicial);
+        }
+
+        /** Desconta se houver saldo; devolve o novo saldo ou -1. */
+        int tentarDescontar(int quantidade) {
+            while (true) {
+                int actual = disponivel.get();
+                if (actual < quantidade) return -1;
+                if (disponivel.compareAndSet(actual, actual - quantidade)) return actual - quantidade;
+            }
+        }
+    }
+
+    /**
+     * @param estoqueFinal  id → saldo após a reserva (vazio se falhou)
+     * @param insuficientes id → saldo disponível do primeiro produto que falhou
+     */
+    public record Reserva(Map<Integer, Integer> estoqueFinal, Map<Integer, Integer> insuficientes) {}
+
+    private final ProdutoLoteRepository produtoLoteRepository;
+    private final CheckpointEstoqueRepository checkpointRepository;
+    private final CatalogoCache catalogoCache;
+    private final TransactionTemplate transacaoPropria;
+    private final boolean activo;
+
+    private final ConcurrentHashMap<Integer, Saldo> saldos = new ConcurrentHashMap<>();
+    // Serializa carregamento, gravação e substituição de saldos (operações raras); reservas não o usam
+    private final Object trinco = new Object();
+
+    private final LongAdder reservas = new LongAdder();
+    private final LongAdder recusadas = new LongAdder();
+    private final LongAdder gravacoes = new LongAdder();
+
+    public LivroEstoque(ProdutoLoteRepository produtoLoteRepository,
+                        CheckpointEstoqueRepository checkpointRepository,
+                        CatalogoCache catalogoCache,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${estoque.livro.activo:false}") boolean activo) {
+        this.produtoLoteRepository = produtoLoteRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.catalogoCache = catalogoCache;
+        this.transacaoPropria = new TransactionTemplate(transactionManager);
+        this.transacaoPropria.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.activo = activo;
+    }
+
+    public boolean activo() {
+        return activo;
+    }
+
+    // ===== ARRANQUE / PARAGEM =====
+
+    /** Antes de aceitar pedidos: corrige o que ficou por gravar numa paragem abrupta. */
+    @PostConstruct
+    void reconciliarNoArranque() {
+        if (!activo) return;
+        List<Divergencia> divergencias = transacaoPropria.execute(status -> {
+            List<Divergencia> corrigidas = checkpointRepository.reconciliar();
+            checkpointRepository.apagarTodos();
+            return corrigidas;
+        });
+        divergencias.forEach(d -> log.warn("Livro de estoque: produto {} reconciliado {} → {}",
+                d.idProduto(), d.anterior(), d.corrigido()));
+        log.info("Livro de estoque activo ({} produtos reconciliados)", divergencias.size());
+    }
+
+    @PreDestroy
+    void gravarNaParagem() {
+        if (!activo) return;
+        gravarPendentes();
+        transacaoPropria.executeWithoutResult(status -> checkpointRepository.apagarTodos());
+        log.info("Livro de estoque gravado na paragem");
+    }
+
+    // ===== RESERVA / DEVOLUÇÃO =====
+
+    /**
+     * Desconta todas as quantidades ou nenhuma. Espera um mapa ordenado por ID
+     * com quantidades positivas (ver EstoqueService).
+     */
+    public Reserva reservar(Map<Integer, Integer> quantidades) {
+        Map<Integer, Saldo> alvo = carregar(quantidades.keySet());
+        Map<Integer, Integer> estoqueFinal = new LinkedHashMap<>();
+
+        for (Map.Entry<Integer, Integer> entrada : quantidades.entrySet()) {
+            Integer idProduto = entrada.getKey();
+            int qtd = entrada.getValue();
+            Saldo saldo = alvo.get(idProduto);
+            int restante = saldo == null ? -1 : noSaldoActual(saldo, s -> {
+                int r = s.tentarDescontar(qtd);
+                if (r >= 0) s.emCurso.addAndGet(qtd);
+                return r;
+            });
+            if (restante < 0) {
+                // Tudo-ou-nada: repõe o que já tinha sido descontado
+                estoqueFinal.keySet().forEach(id -> terminarReserva(alvo.get(id), quantidades.get(id), false));
+                recusadas.increment();
+                int disponivel = saldo == null ? 0 : noSaldoActual(saldo, s -> Math.max(s.disponivel.get(), 0));
+                return new Reserva(Map.of(), Map.of(idProduto, disponivel));
+            }
+            estoqueFinal.put(idProduto, restante);
+        }
+
+        reservas.increment();
+        aoTerminar(confirmada -> quantidades.forEach((id, qtd) -> terminarReserva(alvo.get(id), qtd, confirmada)));
+        return new Reserva(estoqueFinal, Map.of());
+    }
+
+    /** Fim da transacção de uma reserva: confirmada passa a pendente, revertida volta ao saldo. */
+    private void terminarReserva(Saldo saldo, int qtd, boolean confirmada) {
+        noSaldoActual(saldo, s -> {
+            s.emCurso.addAndGet(-qtd);
+            if (confirmada) {
+                s.pendente.addAndGet(-qtd);
+            } else {
+                s.disponivel.addAndGet(qtd);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Devolve quantidades ao saldo após o commit.
+     *
+     * @return id → saldo estimado depois da devolução
+     */
+    public Map<Integer, Integer> devolver(Map<Integer, Integer> quantidades) {
+        Map<Integer, Saldo> alvo = carregar(quantidades.keySet());
+        Map<Integer, Integer> estimado = new LinkedHashMap<>();
+        alvo.forEach((id, saldo) -> estimado.put(id, saldo.disponivel.get() + quantidades.get(id)));
+
+        aoTerminar(confirmada -> {
+            if (!confirmada) return;
+            alvo.forEach((id, saldo) -> {
+                int qtd = quantidades.get(id);
+                noSaldoActual(saldo, s -> {
+                    s.disponivel.addAndGet(qtd);
+                    s.pendente.addAndGet(qtd);
+                    return null;
+                });
+            });
+        });
+        return estimado;
+    }
+
+    /**
+     * Executa {@code operacao} no saldo em vigor do produto: se {@code saldo}
+     * já foi retirado, segue para o sucessor. A trava de leitura impede que
+     * o saldo seja retirado a meio da operação.
+     */
+    private static <T> T noSaldoActual(Saldo saldo, Function<Saldo, T> operacao) {
+        Saldo actual = saldo;
+        while (true) {
+            Saldo seguinte;
+            actual.trava.readLock().lock();
+            try {
+                if (actual.sucessor == null) return operacao.apply(actual);
+                seguinte = actual.sucessor;
+            } finally {
+                actual.trava.readLock().unlock();
+            }
+            actual = seguinte;
+        }
+    }
+
+    /**
+     * O estoque do produto foi redefinido fora do livro (edição do produto).
+     * Após o commit o saldo é substituído pelo valor gravado; as vendas já
+     * confirmadas que o livro ainda não tinha gravado (o administrador não as
+     * via na coluna) são aplicadas sobre esse valor.
+     */
+    public void redefinirAposCommit(Integer idProduto) {
+        if (!activo) return;
+        aoTerminar(confirmada -> {
+            if (confirmada) retirar(idProduto);
+        });
+    }
+
+    /**
+     * Substitui o saldo do produto por um sucessor lido do valor gravado.
+     *
+     * Nada se perde: a variação ainda não gravada é gravada antes de ler o
+     * novo valor (e do novo checkpoint), e as reservas em curso passam para o
+     * sucessor — descontadas do disponível, e terminadas nele quando as suas
+     * transacções acabarem.
+     */
+    private void retirar(Integer idProduto) {
+        synchronized (trinco) {
+            Saldo antigo = saldos.get(idProduto);
+            if (antigo == null) return;   // não carregado: o valor gravado já é o que vale
+
+            antigo.trava.writeLock().lock();
+            try {
+                int porGravar = antigo.pendente.get();
+                Situacao situacao = transacaoPropria.execute(status -> {
+                    if (porGravar != 0) {
+                        produtoLoteRepository.acrescentarEstoque(new Integer[]{idProduto}, new Integer[]{porGravar});
+                    }
+                    checkpointRepository.apagar(idProduto);
+                    Map<Integer, Situacao> lida = checkpointRepository.lerSituacao(List.of(idProduto));
+                    checkpointRepository.gravar(lida);
+                    return lida.get(idProduto);
+                });
+                antigo.pendente.addAndGet(-porGravar);
+
+                if (situacao == null) {
+                    // Produto apagado entretanto: o saldo deixa de ser servido
+                    saldos.remove(idProduto);
+                    log.info("Livro de estoque: produto {} já não existe, saldo descartado", idProduto);
+                    return;
+                }
+                int emCurso = antigo.emCurso.get();
+                Saldo sucessor = new Saldo(situacao.quantidade() - emCurso);
+                sucessor.emCurso.set(emCurso);
+                antigo.sucessor = sucessor;
+                saldos.put(idProduto, sucessor);
+                log.info("Livro de estoque: produto {} redefinido para {} ({} em reservas abertas)",
+                        idProduto, situacao.quantidade(), emCurso);
+            } catch (RuntimeException e) {
+                // O saldo antigo continua em uso; a edição já está gravada
+                log.error("Livro de estoque: falha ao redefinir o produto {}", idProduto, e);
+            } finally {
+                antigo.trava.writeLock().unlock();
+            }
+        }
+    }
+
+    private void aoTerminar(Consumer<Boolean> accao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    accao.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            accao.accept(true);
+        }
+    }
+
+    /** Saldos dos produtos pedidos, carregando da base de dados os que faltam. */
+    private Map<Integer, Saldo> carregar(Collection<Integer> ids) {
+        Map<Integer, Saldo> alvo = new LinkedHashMap<>();
+        List<Integer> emFalta = new ArrayList<>();
+        for (Integer id : ids) {
+            Saldo saldo = saldos.get(id);
+            if (saldo != null) alvo.put(id, saldo); else emFalta.add(id);
+        }
+        if (emFalta.isEmpty()) return alvo;
+
+        synchronized (trinco) {
+            emFalta.removeIf(id -> {
+                Saldo saldo = saldos.get(id);
+                if (saldo != null) alvo.put(id, saldo);
+                return saldo != null;
+            });
+            if (emFalta.isEmpty()) return alvo;
+
+            // Leitura e checkpoint fora da transacção do chamador: o checkpoint
+            // tem de existir mesmo que esta transacção seja revertida
+            Map<Integer, Situacao> situacao = transacaoPropria.execute(status -> {
+                Map<Integer, Situacao> lida = checkpointRepository.lerSituacao(emFalta);
+                checkpointRepository.gravar(lida);
+                return lida;
+            });
+            situacao.forEach((id, s) -> {
+                Saldo saldo = new Saldo(s.quantidade());
+                saldos.put(id, saldo);
+                alvo.put(id, saldo);
+            });
+        }
+        return alvo;
+    }
+
+    // ===== GRAVAÇÃO =====
+
+    /** Grava a variação líquida confirmada de todos os produtos num só UPDATE. */
+    @Scheduled(fixedDelayString = "${estoque.livro.intervalo-gravacao-ms:500}")
+    public void gravarPendentes() {
+        if (!activo) return;
+        synchronized (trinco) {
+            Map<Integer, Integer> variacoes = new TreeMap<>();
+            saldos.forEach((id, saldo) -> {
+                int delta = saldo.pendente.getAndSet(0);
+                if (delta != 0) variacoes.put(id, delta);
+            });
+            if (variacoes.isEmpty()) return;
+
+            try {
+                transacaoPropria.executeWithoutResult(status -> produtoLoteRepository.acrescentarEstoque(
+                        variacoes.keySet().toArray(Integer[]::new), variacoes.values().toArray(Integer[]::new)));
+                gravacoes.increment();
+                catalogoCache.invalidarProdutos(variacoes.keySet());
+                log.debug("Livro de estoque: {} produtos gravados", variacoes.size());
+            } catch (RuntimeException e) {
+                // Fica para a próxima gravação
+                variacoes.forEach((id, delta) -> {
+                    Saldo saldo = saldos.get(id);
+                    if (saldo != null) saldo.pendente.addAndGet(delta);
+                });
+                log.error("Livro de estoque: falha ao gravar {} produtos, nova tentativa no próximo ciclo",
+                        variacoes.size(), e);
+            }
+        }
+    }
+
+    // ===== ESTATÍSTICAS =====
+
+    public Map<String, Object> estatisticas() {
+        long pendentes = saldos.values().stream().filter(s -> s.pendente.get() != 0).count();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activo", activo);
+        stats.put("produtos", saldos.size());
+        stats.put("produtosPorGravar", pendentes);
+        stats.put("reservas", reservas.sum());
+        stats.put("recusadas", recusadas.sum());
+        stats.put("gravacoes", gravacoes.sum());
+        return stats;
+    }
+}
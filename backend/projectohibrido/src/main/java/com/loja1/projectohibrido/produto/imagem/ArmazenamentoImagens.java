@@ -0,0 +1,425 @@
+package com.loja1.projectohibrido.produto.imagem;
+
+import com.loja1.projectohibrido.usuario.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Armazenamento das imagens de produto em imagens.diretorio.
+ *
+ * O upload é copiado para disco por canais NIO com um buffer fixo, sem
+ * carregar o ficheiro em memória, e o SHA-256 é calculado na mesma passagem.
+ * O ficheiro fica com o nome do hash ({hash}.{ext}): a mesma imagem enviada
+ * duas vezes ocupa um só ficheiro e o conteúdo de um URL nunca muda.
+ *
+ * As variantes redimensionadas ({hash}_thumb.jpg e {hash}_media.jpg) são
+ * geradas depois, numa pool própria, fora da thread do pedido. Imagens sem
+ * variantes (nome antigo sem hash, formato que o ImageIO não lê, acima de
+ * imagens.pixeis-maximo ou falha a descodificar) são anunciadas pelo URL do
+ * original.
+ */
+@Component
+@Slf4j
+public class ArmazenamentoImagens {
+
+    public static final String PREFIXO_URL = "/uploads/produtos/";
+
+    public enum Tamanho {
+        THUMB("thumb"), MEDIA("media");
+
+        final String sufixo;
+
+        Tamanho(String sufixo) {
+            this.sufixo = sufixo;
+        }
+    }
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+    private static final Pattern NOME_COM_HASH = Pattern.compile("^([0-9a-f]{64})\\.(jpg|png|gif|webp)$");
+    private static final Pattern NOME_VARIANTE = Pattern.compile("^([0-9a-f]{64})_(thumb|media)\\.jpg$");
+    // Inclui nomes antigos ({millis}_{nome original}); nunca começam por "." (exclui .tmp)
+    private static final Pattern NOME_VALIDO = Pattern.compile("^[^./\\\\\\p{Cntrl}][^/\\\\\\p{Cntrl}]{0,254}$");
+    private static final List<String> EXTENSOES = List.of("jpg", "png", "gif", "webp");
+
+    /**
+     * Ficheiro a servir para um nome pedido.
+     *
+     * @param imutavel   o conteúdo deste URL nunca muda (nome com hash)
+     * @param provisorio original servido no lugar de uma variante ainda por gerar
+     * @param etag       já com aspas (forte para nomes com hash, fraca nos restantes)
+     */
+    public record Ficheiro(Path caminho, long tamanho, long modificado, String etag,
+                           boolean imutavel, boolean provisorio, String tipo) {}
+
+    private final Path diretorio;
+    private final Path temporarios;
+    private final long tamanhoMaximo;
+    private final int larguraThumb;
+    private final int larguraMedia;
+    private final long pixeisMaximo;
+    private final ExecutorService variantes;
+    private final Set<String> emCurso = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder guardadas = new LongAdder();
+    private final LongAdder duplicadas = new LongAdder();
+    private final LongAdder variantesGeradas = new LongAdder();
+    private final LongAdder variantesFalhadas = new LongAdder();
+
+    public ArmazenamentoImagens(@Value("${imagens.diretorio:uploads/produtos}") String diretorio,
+                                @Value("${imagens.tamanho-maximo-bytes:10485760}") long tamanhoMaximo,
+                                @Value("${imagens.thumb-px:200}") int larguraThumb,
+                                @Value("${imagens.media-px:600}") int larguraMedia,
+                                @Value("${imagens.pixeis-maximo:40000000}") long pixeisMaximo,
+                                @Value("${imagens.threads-variantes:2}") int threads) throws IOException {
+        this.diretorio = Paths.get(diretorio).toAbsolutePath().normalize();
+        this.temporarios = this.diretorio.resolve(".tmp");
+        Files.createDirectories(temporarios);
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.larguraThumb = larguraThumb;
+        this.larguraMedia = larguraMedia;
+        this.pixeisMaximo = pixeisMaximo;
+        AtomicInteger n = new AtomicInteger();
+        this.variantes = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "imagens-variantes-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("Imagens de produto em {}", this.diretorio);
+    }
+
+    @PreDestroy
+    void parar() {
+        variantes.shutdown();
+    }
+
+    public Path diretorio() {
+        return diretorio;
+    }
+
+    // ===== UPLOAD =====
+
+    /**
+     * Grava o upload e agenda as variantes; devolve o URL do original
+     * (o valor guardado em produto_imagem.caminho_imagem).
+     */
+    public String guardar(MultipartFile arquivo) throws IOException {
+        if (arquivo.isEmpty()) {
+            throw new BusinessException("Ficheiro de imagem vazio");
+        }
+        if (arquivo.getSize() > tamanhoMaximo) {
+            throw new BusinessException("Imagem maior que o máximo de " + tamanhoMaximo + " bytes");
+        }
+
+        MessageDigest sha256 = novoSha256();
+        Path temporario = Files.createTempFile(temporarios, "upload-", ".part");
+        String extensao;
+        try (InputStream in = arquivo.getInputStream();
+             ReadableByteChannel origem = Channels.newChannel(in);
+             FileChannel destino = FileChannel.open(temporario, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+            extensao = null;
+            long total = 0;
+            boolean fim = false;
+            while (!fim) {
+                fim = origem.read(buffer) == -1;
+                // A assinatura precisa dos primeiros 12 bytes
+                if (extensao == null && !fim && buffer.position() < 12) continue;
+                buffer.flip();
+                if (extensao == null) {
+                    // Tipo pelo conteúdo (assinatura), não pelo nome nem pelo Content-Type do cliente
+                    extensao = detectarExtensao(buffer);
+                    if (extensao == null) {
+                        throw new BusinessException("Formato de imagem não suportado (use JPEG, PNG, GIF ou WebP)");
+                    }
+                }
+                total += buffer.remaining();
+                if (total > tamanhoMaximo) {
+                    throw new BusinessException("Imagem maior que o máximo de " + tamanhoMaximo + " bytes");
+                }
+                sha256.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    destino.write(buffer);
+                }
+                buffer.clear();
+            }
+            destino.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporario);
+            throw e;
+        }
+
+        String hash = HexFormat.of().formatHex(sha256.digest());
+        String nome = hash + "." + extensao;
+        Path finalPath = diretorio.resolve(nome);
+        if (Files.exists(finalPath)) {
+            Files.deleteIfExists(temporario);
+            duplicadas.increment();
+            log.info("Imagem {} já existia, upload descartado", nome);
+        } else {
+            try {
+                Files.move(temporario, finalPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Outro upload igual ganhou a corrida: o ficheiro existente é idêntico
+                Files.deleteIfExists(temporario);
+                if (!Files.exists(finalPath)) throw e;
+            }
+            guardadas.increment();
+            log.info("Imagem guardada: {} ({} bytes)", nome, Files.size(finalPath));
+        }
+        agendarVariantes(hash, finalPath);
+        return PREFIXO_URL + nome;
+    }
+
+    // ===== URLS =====
+
+    /**
+     * URL da variante de uma imagem guardada por {@link #guardar}, se a
+     * variante já existe ou está a ser gerada; nos restantes casos (imagens
+     * antigas, WebP, grandes demais ou que falharam) devolve o próprio caminho.
+     */
+    public String urlVariante(String caminhoImagem, Tamanho tamanho) {
+        if (caminhoImagem == null || !caminhoImagem.startsWith(PREFIXO_URL)) return caminhoImagem;
+        Matcher m = NOME_COM_HASH.matcher(caminhoImagem.substring(PREFIXO_URL.length()));
+        if (!m.matches() || !legivel(m.group(2))) return caminhoImagem;
+        String nome = m.group(1) + "_" + tamanho.sufixo + ".jpg";
+        return emCurso.contains(m.group(1)) || Files.isRegularFile(diretorio.resolve(nome))
+                ? PREFIXO_URL + nome
+                : caminhoImagem;
+    }
+
+    // ===== LEITURA =====
+
+    /**
+     * Resolve o nome de um URL de {@link #PREFIXO_URL}. Uma variante ainda
+     * não gerada é servida pelo original, marcado como provisório (o URL
+     * passará a ter outro conteúdo quando a variante existir).
+     */
+    public Optional<Ficheiro> resolver(String nome) throws IOException {
+        if (nome == null || !NOME_VALIDO.matcher(nome).matches() || nome.contains("..")) {
+            return Optional.empty();
+        }
+        Path caminho = diretorio.resolve(nome).normalize();
+        if (!caminho.getParent().equals(diretorio)) return Optional.empty();
+
+        Matcher variante = NOME_VARIANTE.matcher(nome);
+        if (variante.matches()) {
+            if (Files.isRegularFile(caminho)) {
+                return Optional.of(ficheiro(caminho, "\"" + variante.group(1) + "-" + variante.group(2) + "\"", true, false));
+            }
+            for (String extensao : EXTENSOES) {
+                Path original = diretorio.resolve(variante.group(1) + "." + extensao);
+                if (Files.isRegularFile(original)) {
+                    return Optional.of(ficheiro(original, null, false, true));
+                }
+            }
+            return Optional.empty();
+        }
+        if (!Files.isRegularFile(caminho)) return Optional.empty();
+        Matcher original = NOME_COM_HASH.matcher(nome);
+        return Optional.of(original.matches()
+                ? ficheiro(caminho, "\"" + original.group(1) + "\"", true, false)
+                : ficheiro(caminho, null, false, false));
+    }
+
+    private static Ficheiro ficheiro(Path caminho, String etag, boolean imutavel, boolean provisorio)
+            throws IOException {
+        long tamanho = Files.size(caminho);
+        long modificado = Files.getLastModifiedTime(caminho).toMillis();
+        if (etag == null) {
+            etag = "W/\"" + Long.toHexString(tamanho) + "-" + Long.toHexString(modificado) + "\"";
+        }
+        return new Ficheiro(caminho, tamanho, modificado, etag, imutavel, provisorio,
+                tipo(caminho.getFileName().toString()));
+    }
+
+    private static String tipo(String nome) {
+        String n = nome.toLowerCase(Locale.ROOT);
+        if (n.endsWith(".jpg") || n.endsWith(".jpeg")) return "image/jpeg";
+        if (n.endsWith(".png")) return "image/png";
+        if (n.endsWith(".gif")) return "image/gif";
+        if (n.endsWith(".webp")) return "image/webp";
+        return "application/octet-stream";
+    }
+
+    // ===== VARIANTES =====
+
+    private void agendarVariantes(String hash, Path original) {
+        Path thumb = diretorio.resolve(hash + "_" + Tamanho.THUMB.sufixo + ".jpg");
+        Path media = diretorio.resolve(hash + "_" + Tamanho.MEDIA.sufixo + ".jpg");
+        if (Files.exists(thumb) && Files.exists(media)) return;
+        if (!legivel(original.getFileName().toString().substring(hash.length() + 1))) {
+            log.info("Sem variantes para {}: formato não legível pelo ImageIO", original.getFileName());
+            return;
+        }
+        // Uploads repetidos enquanto as variantes ainda estão a ser geradas
+        if (!emCurso.add(hash)) return;
+        variantes.execute(() -> {
+            try {
+                BufferedImage imagem = ler(original);
+                if (imagem == null) {
+                    log.info("Sem variantes para {}: acima de {} píxeis", original.getFileName(), pixeisMaximo);
+                    return;
+                }
+                gravarJpeg(redimensionar(imagem, larguraMedia), media);
+                gravarJpeg(redimensionar(imagem, larguraThumb), thumb);
+                variantesGeradas.increment();
+            } catch (IOException | RuntimeException e) {
+                variantesFalhadas.increment();
+                log.error("Falha ao gerar variantes de {}", original.getFileName(), e);
+            } finally {
+                emCurso.remove(hash);
+            }
+        });
+    }
+
+    /** Lê a imagem, ou null se o formato não for suportado ou for grande demais para descodificar. */
+    private BufferedImage ler(Path original) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> leitores = ImageIO.getImageReaders(entrada);
+            if (!leitores.hasNext()) return null;
+            ImageReader leitor = leitores.next();
+            try {
+                leitor.setInput(entrada, true, true);
+                // Dimensões lidas do cabeçalho, antes de descodificar
+                if ((long) leitor.getWidth(0) * leitor.getHeight(0) > pixeisMaximo) return null;
+                return leitor.read(0);
+            } finally {
+                leitor.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reduz até lado maior = {@code limite}, em passos de metade (uma
+     * redução directa grande com interpolação bilinear perde detalhe e
+     * produz serrilhado). Fundo branco para imagens com transparência.
+     */
+    private static BufferedImage redimensionar(BufferedImage origem, int limite) {
+        int largura = origem.getWidth();
+        int altura = origem.getHeight();
+        double escala = Math.min(1.0, (double) limite / Math.max(largura, altura));
+        int larguraFinal = Math.max(1, (int) Math.round(largura * escala));
+        int alturaFinal = Math.max(1, (int) Math.round(altura * escala));
+
+        BufferedImage atual = origem;
+        int w = largura;
+        int h = altura;
+        do {
+            w = Math.max(larguraFinal, w / 2);
+            h = Math.max(alturaFinal, h / 2);
+            BufferedImage passo = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = passo.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+                g.drawImage(atual, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            atual = passo;
+        } while (w != larguraFinal || h != alturaFinal);
+        return atual;
+    }
+
+    private void gravarJpeg(BufferedImage imagem, Path destino) throws IOException {
+        if (Files.exists(destino)) return;
+        Path temporario = Files.createTempFile(temporarios, "variante-", ".part");
+        try {
+            ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(0.8f);
+            try (ImageOutputStream saida = ImageIO.createImageOutputStream(temporario.toFile())) {
+                escritor.setOutput(saida);
+                escritor.write(null, new IIOImage(imagem, null, null), parametros);
+            } finally {
+                escritor.dispose();
+            }
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    // ===== AUXILIARES =====
+
+    /** Extensão pela assinatura no início do ficheiro, ou null se não for imagem suportada. */
+    private static String detectarExtensao(ByteBuffer inicio) {
+        byte[] b = new byte[Math.min(12, inicio.remaining())];
+        inicio.duplicate().get(b);
+        if (b.length >= 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF) return "jpg";
+        if (b.length >= 8 && (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G') return "png";
+        if (b.length >= 6 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8') return "gif";
+        if (b.length >= 12 && b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') return "webp";
+        return null;
+    }
+
+    /** O ImageIO tem leitor para a extensão (o JDK não lê WebP). */
+    private static boolean legivel(String extensao) {
+        return ImageIO.getImageReadersBySuffix(extensao).hasNext();
+    }
+
+    private static MessageDigest novoSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("guardadas", guardadas.sum());
+        stats.put("duplicadas", duplicadas.sum());
+        stats.put("variantesGeradas", variantesGeradas.sum());
+        stats.put("variantesFalhadas", variantesFalhadas.sum());
+        stats.put("variantesEmCurso", emCurso.size());
+        return stats;
+    }
+}
@@ -0,0 +1,234 @@
+package com.loja1.projectohibrido.produto.imagem;
+
+import com.loja1.projectohibrido.produto.imagem.ArmazenamentoImagens.Ficheiro;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Entrega das imagens de produto (GET /uploads/produtos/{nome}) com
+ * ETag, Last-Modified, 304 e pedidos Range de um só intervalo.
+ *
+ * Nomes com hash são servidos com {@code Cache-Control: immutable} e um ano
+ * de validade: o conteúdo de um URL nunca muda. Os restantes revalidam.
+ *
+ * O corpo é enviado por sendfile do Tomcat quando o conector o suporta: a
+ * thread do pedido só escreve os cabeçalhos e o poller do Tomcat copia o
+ * ficheiro do page cache para o socket, sem passar pela JVM. Ficheiros
+ * pequenos, ou sem sendfile, são copiados com FileChannel.transferTo.
+ */
+@Component
+@Slf4j
+public class EntregaImagens {
+
+    private static final String SENDFILE_SUPORTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FICHEIRO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIM = "org.apache.tomcat.sendfile.end";
+    // Abaixo disto copiar é mais barato que passar o ficheiro ao poller (o mesmo limiar do DefaultServlet)
+    private static final long SENDFILE_MINIMO = 48 * 1024;
+
+    private static final String CACHE_IMUTAVEL = "public, max-age=31536000, immutable";
+
+    private final ArmazenamentoImagens armazenamentoImagens;
+    private final long maxAgeSegundos;
+
+    private final LongAdder respostas = new LongAdder();
+    private final LongAdder naoModificadas = new LongAdder();
+    private final LongAdder parciais = new LongAdder();
+    private final LongAdder sendfile = new LongAdder();
+    private final LongAdder bytesEnviados = new LongAdder();
+
+    public EntregaImagens(ArmazenamentoImagens armazenamentoImagens,
+                          @Value("${imagens.max-age-segundos:3600}") long maxAgeSegundos) {
+        this.armazenamentoImagens = armazenamentoImagens;
+        this.maxAgeSegundos = maxAgeSegundos;
+    }
+
+    /** Intervalo [inicio, fim] inclusivo. */
+    record Intervalo(long inicio, long fim) {
+        long tamanho() {
+            return fim - inicio + 1;
+        }
+    }
+
+    public void servir(String nome, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Ficheiro> encontrado = armazenamentoImagens.resolver(nome);
+        if (encontrado.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Ficheiro ficheiro = encontrado.get();
+        long modificadoSegundos = ficheiro.modificado() / 1000 * 1000;
+
+        response.setHeader(HttpHeaders.ETAG, ficheiro.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, modificadoSegundos);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, ficheiro.imutavel() ? CACHE_IMUTAVEL
+                : ficheiro.provisorio() ? "no-cache"
+                : "public, max-age=" + maxAgeSegundos);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (naoModificado(request, ficheiro, modificadoSegundos)) {
+            naoModificadas.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(ficheiro.tipo());
+        Intervalo intervalo = new Intervalo(0, ficheiro.tamanho() - 1);
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangeAplicavel(request, ficheiro, modificadoSegundos)) {
+            Intervalo pedido = interpretarRange(range, ficheiro.tamanho());
+            if (pedido == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + ficheiro.tamanho());
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (pedido.tamanho() < ficheiro.tamanho()) {
+                intervalo = pedido;
+                parciais.increment();
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + intervalo.inicio() + "-" + intervalo.fim() + "/" + ficheiro.tamanho());
+            }
+        }
+        response.setContentLengthLong(intervalo.tamanho());
+        respostas.increment();
+
+        if ("HEAD".equals(request.getMethod()) || intervalo.tamanho() == 0) return;
+
+        if (intervalo.tamanho() >= SENDFILE_MINIMO && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPORTE))) {
+            request.setAttribute(SENDFILE_FICHEIRO, ficheiro.caminho().toString());
+            request.setAttribute(SENDFILE_INICIO, intervalo.inicio());
+            request.setAttribute(SENDFILE_FIM, intervalo.fim() + 1); // exclusivo
+            sendfile.increment();
+            bytesEnviados.add(intervalo.tamanho());
+            return;
+        }
+
+        try (FileChannel origem = FileChannel.open(ficheiro.caminho(), StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(response.getOutputStream());
+            long posicao = intervalo.inicio();
+            long restante = intervalo.tamanho();
+            while (restante > 0) {
+                long enviados = origem.transferTo(posicao, restante, destino);
+                if (enviados <= 0) break;
+                posicao += enviados;
+                restante -= enviados;
+            }
+            bytesEnviados.add(intervalo.tamanho() - restante);
+        }
+    }
+
+    // ===== PEDIDOS CONDICIONAIS =====
+
+    /** If-None-Match tem precedência; If-Modified-Since só conta sem ele. */
+    private static boolean naoModificado(HttpServletRequest request, Ficheiro ficheiro, long modificado) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etagCorresponde(ifNoneMatch, ficheiro.etag(), true);
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince != -1 && modificado <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false; // data inválida: ignora o cabeçalho
+        }
+    }
+
+    /** Sem If-Range, ou If-Range igual à versão actual (ETag forte ou data). */
+    private static boolean rangeAplicavel(HttpServletRequest request, Ficheiro ficheiro, long modificado) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return etagCorresponde(ifRange, ficheiro.etag(), false);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == modificado;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** @param fraca comparação fraca (If-None-Match) ou forte (If-Range) */
+    private static boolean etagCorresponde(String cabecalho, String etag, boolean fraca) {
+        if (fraca && cabecalho.trim().equals("*")) return true;
+        if (!fraca && etag.startsWith("W/")) return false;
+        String alvo = fraca ? semPrefixoFraco(etag) : etag;
+        for (String candidato : cabecalho.split(",")) {
+            String c = candidato.trim();
+            if ((fraca ? semPrefixoFraco(c) : c).equals(alvo)) return true;
+        }
+        return false;
+    }
+
+    private static String semPrefixoFraco(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    // ===== RANGE =====
+
+    /**
+     * Um só intervalo ("bytes=a-b", "bytes=a-" ou "bytes=-n"), limitado ao
+     * tamanho do ficheiro. Vários intervalos, ou um Range mal formado (ex.:
+     * fim antes do início), são servidos como o ficheiro inteiro (permitido
+     * pela RFC 9110). null = não satisfazível.
+     */
+    static Intervalo interpretarRange(String range, long tamanho) {
+        Intervalo inteiro = new Intervalo(0, tamanho - 1);
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) return inteiro;
+        String especificacao = range.substring("bytes=".length()).trim();
+        int traco = especificacao.indexOf('-');
+        if (traco < 0) return inteiro;
+        String a = especificacao.substring(0, traco).trim();
+        String b = especificacao.substring(traco + 1).trim();
+        if (a.isEmpty()) {
+            long sufixo = numero(b);
+            if (sufixo < 0) return inteiro;
+            if (sufixo == 0 || tamanho == 0) return null;
+            return new Intervalo(Math.max(0, tamanho - sufixo), tamanho - 1);
+        }
+        long inicio = numero(a);
+        long fim = b.isEmpty() ? Long.MAX_VALUE : numero(b);
+        if (inicio < 0 || fim < inicio) return inteiro;
+        if (inicio >= tamanho) return null;
+        return new Intervalo(inicio, Math.min(fim, tamanho - 1));
+    }
+
+    /** Só dígitos (sem sinal); -1 se mal formado ou fora de long. */
+    private static long numero(String texto) {
+        if (texto.isEmpty()) return -1;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') return -1;
+        }
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public Map<String, Object> estatisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("respostas", respostas.sum());
+        stats.put("naoModificadas", naoModificadas.sum());
+        stats.put("parciais", parciais.sum());
+        stats.put("sendfile", sendfile.sum());
+        stats.put("bytesEnviados", bytesEnviados.sum());
+        return stats;
+    }
+}
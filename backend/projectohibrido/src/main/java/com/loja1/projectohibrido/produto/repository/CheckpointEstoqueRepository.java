@@ -0,0 +1,119 @@
+package com.loja1.projectohibrido.produto.repository;
+
+import com.loja1.projectohibrido.config.EsquemaBaseDados;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checkpoints do livro de estoque em memória (tabela estoque_livro_checkpoint,
+ * ver db/livro_estoque.sql).
+ *
+ * Cada checkpoint guarda, lidos no mesmo statement, o estoque gravado e o total
+ * vendido (itens de pedidos não cancelados) do produto. Como toda a reserva ou
+ * devolução do livro corresponde a uma alteração desse total na mesma
+ * transacção, o estoque real é sempre {@code estoque - (vendidoAgora - vendido)}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CheckpointEstoqueRepository {
+
+    /** @param quantidade estoque gravado  @param vendido unidades em pedidos não cancelados */
+    public record Situacao(int quantidade, long vendido) {}
+
+    /** @param anterior estoque gravado antes da correcção  @param corrigido estoque reconciliado */
+    public record Divergencia(Integer idProduto, int anterior, int corrigido) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EsquemaBaseDados esquema;
+
+    /** Estoque e total vendido de cada produto, no mesmo snapshot. */
+    public Map<Integer, Situacao> lerSituacao(Collection<Integer> ids) {
+        Map<Integer, Situacao> situacao = new LinkedHashMap<>();
+        if (ids.isEmpty()) return situacao;
+        String sql = """
+                SELECT p.id_produto, p.quantidade_estoque,
+                       COALESCE((SELECT SUM(ip.quantidade)
+                                   FROM item_pedido ip
+                                   JOIN pedido pe ON pe.id_pedido = ip.id_pedido
+                                  WHERE ip.id_produto = p.id_produto
+                                    AND pe.status_pedido IS DISTINCT FROM 'cancelado'), 0)
+                  FROM produto p
+                 WHERE p.id_produto = ANY(?)
+                """;
+        jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", ids.toArray())),
+                rs -> {
+                    situacao.put(rs.getInt(1), new Situacao(rs.getInt(2), rs.getLong(3)));
+                });
+        return situacao;
+    }
+
+    /** Regista o ponto de partida; um checkpoint existente não é substituído. */
+    public void gravar(Map<Integer, Situacao> situacao) {
+        if (situacao.isEmpty()) return;
+        List<Object[]> linhas = new ArrayList<>(situacao.size());
+        situacao.forEach((id, s) -> linhas.add(new Object[]{id, s.quantidade(), s.vendido()}));
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO estoque_livro_checkpoint (id_produto, quantidade_estoque, vendido, data_checkpoint)
+                VALUES (?, ?, ?, now())
+                ON CONFLICT (id_produto) DO NOTHING
+                """, linhas);
+    }
+
+    public void apagar(Integer idProduto) {
+        jdbcTemplate.update("DELETE FROM estoque_livro_checkpoint WHERE id_produto = ?", idProduto);
+    }
+
+    public void apagarTodos() {
+        jdbcTemplate.update("DELETE FROM estoque_livro_checkpoint");
+    }
+
+    /**
+     * Repõe o estoque dos produtos com checkpoint a partir de item_pedido e
+     * devolve os que estavam errados. Produtos com movimento_estoque manual
+     * (origem null) posterior ao checkpoint são deixados como estão; os
+     * movimentos do diário de pedidos já estão contados em item_pedido.
+     * Sem a coluna origem (db/diario_estoque.sql por correr) não há diário e
+     * qualquer movimento posterior deixa o produto como está.
+     */
+    public List<Divergencia> reconciliar() {
+        String soManuais = esquema.temColuna("movimento_estoque", "origem") ? "AND me.origem IS NULL" : "";
+        String sql = """
+                WITH vendido AS (
+                    SELECT ip.id_produto, SUM(ip.quantidade) AS total
+                      FROM item_pedido ip
+                      JOIN pedido pe ON pe.id_pedido = ip.id_pedido
+                     WHERE pe.status_pedido IS DISTINCT FROM 'cancelado'
+                       AND ip.id_produto IN (SELECT id_produto FROM estoque_livro_checkpoint)
+                     GROUP BY ip.id_produto
+                ), esperado AS (
+                    SELECT c.id_produto,
+                           (c.quantidade_estoque - (COALESCE(v.total, 0) - c.vendido))::int AS quantidade
+                      FROM estoque_livro_checkpoint c
+                      LEFT JOIN vendido v ON v.id_produto = c.id_produto
+                     WHERE NOT EXISTS (SELECT 1 FROM movimento_estoque me
+                                        WHERE me.id_produto = c.id_produto
+                                          AND me.data_movimento > c.data_checkpoint
+                                          %s)
+                ), divergente AS (
+                    SELECT p.id_produto, p.quantidade_estoque AS anterior, e.quantidade
+                      FROM produto p
+                      JOIN esperado e ON e.id_produto = p.id_produto
+                     WHERE p.quantidade_estoque <> e.quantidade
+                )
+                UPDATE produto p
+                   SET quantidade_estoque = d.quantidade
+                  FROM divergente d
+                 WHERE p.id_produto = d.id_produto
+                RETURNING p.id_produto, d.anterior, p.quantidade_estoque
+                """.formatted(soManuais);
+        return jdbcTemplate.query(sql, (rs, i) -> new Divergencia(rs.getInt(1), rs.getInt(2), rs.getInt(3)));
+    }
+}
@@ -0,0 +1,34 @@
+package com.loja1.projectohibrido.produto.repository;
+
+import com.loja1.projectohibrido.usuario.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Cursor de paginação keyset para listas ordenadas por (data DESC, id DESC):
+ * a chave do último elemento devolvido, em Base64 URL-safe sem padding.
+ * Usado no catálogo (/api/produtos/pagina) e no histórico de movimentos.
+ */
+public record CursorKeyset(LocalDateTime data, Integer id) {
+
+    public String codificar() {
+        String chave = data + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(chave.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws BusinessException se o cursor não tiver sido gerado por {@link #codificar()} */
+    public static CursorKeyset decodificar(String cursor) {
+        try {
+            String chave = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = chave.lastIndexOf('|');
+            return new CursorKeyset(
+                    LocalDateTime.parse(chave.substring(0, separador)),
+                    Integer.valueOf(chave.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw new BusinessException("Cursor de paginação inválido: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.loja1.projectohibrido.produto.repository;
+
+import com.loja1.projectohibrido.produto.dto.ProdutoEstoqueBaixoDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Limiar de reposição por produto (coluna produto.estoque_minimo, ver
+ * db/estoque_baixo.sql). A coluna não está mapeada na entidade Produto.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EstoqueMinimoRepository {
+
+    /** @param minimo estoque_minimo do produto (nunca null aqui) */
+    public record Limiar(Integer idProduto, String nomeProduto, int minimo) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Todos os produtos com limiar definido, para o arranque do AlertasEstoque. */
+    public List<Limiar> carregarLimiares() {
+        return jdbcTemplate.query("""
+                SELECT id_produto, nome_produto, estoque_minimo
+                  FROM produto
+                 WHERE estoque_minimo IS NOT NULL
+                """,
+                (rs, i) -> new Limiar(rs.getInt(1), rs.getString(2), rs.getInt(3)));
+    }
+
+    /**
+     * Define (ou remove, com null) o limiar; devolve o nome e o estoque
+     * actual do produto, ou null se não existir.
+     */
+    public ProdutoEstoqueBaixoDTO definir(Integer idProduto, Integer minimo) {
+        List<ProdutoEstoqueBaixoDTO> linhas = jdbcTemplate.query("""
+                UPDATE produto SET estoque_minimo = ?
+                 WHERE id_produto = ?
+                RETURNING id_produto, nome_produto, quantidade_estoque, estoque_minimo
+                """,
+                (rs, i) -> new ProdutoEstoqueBaixoDTO(rs.getInt(1), rs.getString(2), rs.getInt(3),
+                        (Integer) rs.getObject(4)),
+                minimo, idProduto);
+        return linhas.isEmpty() ? null : linhas.get(0);
+    }
+
+    /**
+     * Produtos activos no limiar ou abaixo dele, os mais em falta primeiro.
+     * O WHERE repete o predicado de idx_produto_estoque_baixo para que o
+     * PostgreSQL use o índice parcial em vez de percorrer o catálogo.
+     */
+    public List<ProdutoEstoqueBaixoDTO> listarEstoqueBaixo(int limite) {
+        return jdbcTemplate.query("""
+                SELECT id_produto, nome_produto, quantidade_estoque, estoque_minimo
+                  FROM produto
+                 WHERE estoque_minimo IS NOT NULL
+                   AND quantidade_estoque <= estoque_minimo
+                   AND ativo = 1
+                 ORDER BY quantidade_estoque, id_produto
+                 LIMIT ?
+                """,
+                (rs, i) -> new ProdutoEstoqueBaixoDTO(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4)),
+                limite);
+    }
+}
@@ -0,0 +1,77 @@
+package com.loja1.projectohibrido.produto.repository;
+
+import com.loja1.projectohibrido.categoria.entity.ProdutoCategoria;
+import com.loja1.projectohibrido.produto.entity.Produto;
+import com.loja1.projectohibrido.produto.entity.ProdutoMarca;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Filtros dinâmicos do catálogo, combinados conforme os parâmetros recebidos.
+ * Filtros não informados não entram no SQL gerado.
+ */
+public final class ProdutoEspecificacoes {
+
+    private ProdutoEspecificacoes() {}
+
+    public static Specification<Produto> ativo(Short ativo) {
+        return (root, query, cb) -> ativo == null ? null : cb.equal(root.get("ativo"), ativo);
+    }
+
+    public static Specification<Produto> precoMinimo(BigDecimal precoMin) {
+        return (root, query, cb) -> precoMin == null ? null
+                : cb.greaterThanOrEqualTo(root.get("preco"), precoMin);
+    }
+
+    public static Specification<Produto> precoMaximo(BigDecimal precoMax) {
+        return (root, query, cb) -> precoMax == null ? null
+                : cb.lessThanOrEqualTo(root.get("preco"), precoMax);
+    }
+
+    public static Specification<Produto> daCategoria(Integer idCategoria) {
+        return (root, query, cb) -> {
+            if (idCategoria == null) return null;
+            Subquery<Integer> sub = query.subquery(Integer.class);
+            var pc = sub.from(ProdutoCategoria.class);
+            sub.select(pc.get("idProduto"))
+               .where(cb.equal(pc.get("idProduto"), root.get("idProduto")),
+                      cb.equal(pc.get("idCategoria"), idCategoria));
+            return cb.exists(sub);
+        };
+    }
+
+    public static Specification<Produto> daMarca(Integer idMarca) {
+        return (root, query, cb) -> {
+            if (idMarca == null) return null;
+            Subquery<Integer> sub = query.subquery(Integer.class);
+            var pm = sub.from(ProdutoMarca.class);
+            sub.select(pm.get("idProduto"))
+               .where(cb.equal(pm.get("idProduto"), root.get("idProduto")),
+                      cb.equal(pm.get("idMarca"), idMarca));
+            return cb.exists(sub);
+        };
+    }
+
+    /**
+     * Keyset: produtos "depois" do cursor na ordem (dataCadastro DESC, idProduto DESC).
+     *
+     * O termo redundante {@code dataCadastro <= :data} permite ao PostgreSQL
+     * percorrer o índice (data_cadastro, id_produto) a partir do cursor, em vez
+     * de avaliar o OR linha a linha — o custo não cresce com a profundidade da página.
+     */
+    public static Specification<Produto> aposCursor(LocalDateTime dataCadastro, Integer idProduto) {
+        return (root, query, cb) -> {
+            if (dataCadastro == null || idProduto == null) return null;
+            return cb.and(
+                cb.lessThanOrEqualTo(root.get("dataCadastro"), dataCadastro),
+                cb.or(
+                    cb.lessThan(root.get("dataCadastro"), dataCadastro),
+                    cb.lessThan(root.get("idProduto"), idProduto)
+                )
+            );
+        };
+    }
+}
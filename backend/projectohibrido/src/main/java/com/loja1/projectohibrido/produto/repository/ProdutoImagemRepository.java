@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +19,12 @@ public interface ProdutoImagemRepository extends JpaRepository<ProdutoImagem, In
     // ✅ MUDANÇA: Integer → Short
     Optional<ProdutoImagem> findByIdProdutoAndImagemPrincipal(Integer idProduto, Short imagemPrincipal);
     
+    // Imagens principais de vários produtos numa única query
+    List<ProdutoImagem> findByIdProdutoInAndImagemPrincipal(Collection<Integer> idsProduto, Short imagemPrincipal);
+    
+    // Todas as imagens principais do catálogo (usado em listagens completas)
+    List<ProdutoImagem> findByImagemPrincipal(Short imagemPrincipal);
+    
     @Modifying
     @Query("UPDATE ProdutoImagem pi SET pi.imagemPrincipal = 0 WHERE pi.idProduto = :idProduto")
     void desmarcarTodasImagensPrincipais(@Param("idProduto") Integer idProduto);
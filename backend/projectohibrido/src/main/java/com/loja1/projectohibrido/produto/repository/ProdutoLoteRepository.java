@@ -0,0 +1,295 @@
+package com.loja1.projectohibrido.produto.repository;
+
+import com.loja1.projectohibrido.categoria.entity.ProdutoCategoria;
+import com.loja1.projectohibrido.produto.entity.Produto;
+import com.loja1.projectohibrido.produto.entity.ProdutoMarca;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Escritas em lote via JDBC: um único statement multi-linha em vez de um
+ * statement por produto/associação. Usado pela importação em massa e pela
+ * sincronização de categorias/marcas.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProdutoLoteRepository {
+
+    // O driver do PostgreSQL aceita no máximo 32767 parâmetros por statement
+    private static final int MAX_PARAMETROS = 30000;
+
+    private static final int COLUNAS_PRODUTO = 8;
+    private static final int COLUNAS_ASSOCIACAO = 2;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // ===== PRODUTOS =====
+
+    /**
+     * Insere os produtos e devolve os IDs gerados, pela mesma ordem da lista.
+     *
+     * Os IDs são reservados primeiro na sequência de produto.id_produto e
+     * gravados explicitamente: a correspondência produto → ID é feita aqui,
+     * sem depender da ordem das linhas devolvidas pelo PostgreSQL.
+     */
+    public List<Integer> inserirProdutos(List<Produto> produtos) {
+        List<Integer> ids = new ArrayList<>(produtos.size());
+        int porStatement = MAX_PARAMETROS / COLUNAS_PRODUTO;
+        for (int inicio = 0; inicio < produtos.size(); inicio += porStatement) {
+            List<Produto> bloco = produtos.subList(inicio, Math.min(inicio + porStatement, produtos.size()));
+            ids.addAll(inserirBlocoProdutos(bloco));
+        }
+        return ids;
+    }
+
+    private List<Integer> inserirBlocoProdutos(List<Produto> bloco) {
+        List<Integer> ids = reservarIds(bloco.size());
+
+        // OVERRIDING SYSTEM VALUE: aceita o ID explícito também se a coluna
+        // for GENERATED ALWAYS AS IDENTITY (numa coluna serial não tem efeito)
+        StringBuilder sql = new StringBuilder("""
+                INSERT INTO produto (id_produto, nome_produto, descricao, preco, quantidade_estoque,
+                                     preco_promocional, ativo, data_cadastro)
+                OVERRIDING SYSTEM VALUE
+                VALUES\s""");
+        for (int i = 0; i < bloco.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(sql.toString(), ps -> {
+            int p = 1;
+            for (int i = 0; i < bloco.size(); i++) {
+                Produto produto = bloco.get(i);
+                ps.setInt(p++, ids.get(i));
+                ps.setString(p++, produto.getNomeProduto());
+                definirTexto(ps, p++, produto.getDescricao());
+                ps.setBigDecimal(p++, produto.getPreco());
+                ps.setInt(p++, produto.getQuantidadeEstoque() != null ? produto.getQuantidadeEstoque() : 0);
+                definirDecimal(ps, p++, produto.getPrecoPromocional());
+                ps.setShort(p++, produto.getAtivo() != null ? produto.getAtivo() : (short) 1);
+                ps.setTimestamp(p++, produto.getDataCadastro() != null
+                        ? Timestamp.valueOf(produto.getDataCadastro()) : agora);
+            }
+        });
+        return ids;
+    }
+
+    /** {@code quantidade} valores novos da sequência de id_produto (a ordem não importa). */
+    private List<Integer> reservarIds(int quantidade) {
+        return jdbcTemplate.queryForList("""
+                SELECT CAST(nextval(pg_get_serial_sequence('produto', 'id_produto')) AS INTEGER)
+                  FROM generate_series(1, ?)
+                """, Integer.class, quantidade);
+    }
+
+    private static void definirTexto(PreparedStatement ps, int indice, String valor) throws SQLException {
+        if (valor == null) ps.setNull(indice, Types.VARCHAR);
+        else ps.setString(indice, valor);
+    }
+
+    private static void definirDecimal(PreparedStatement ps, int indice, BigDecimal valor) throws SQLException {
+        if (valor == null) ps.setNull(indice, Types.NUMERIC);
+        else ps.setBigDecimal(indice, valor);
+    }
+
+    // ===== ASSOCIAÇÕES =====
+
+    /** Insere as associações produto↔categoria; as já existentes são ignoradas. */
+    public int inserirCategorias(List<ProdutoCategoria> associacoes) {
+        return inserirAssociacoes("produto_categoria", "id_categoria", associacoes.size(),
+                i -> associacoes.get(i).getIdProduto(), i -> associacoes.get(i).getIdCategoria());
+    }
+
+    /** Insere as associações produto↔marca; as já existentes são ignoradas. */
+    public int inserirMarcas(List<ProdutoMarca> associacoes) {
+        return inserirAssociacoes("produto_marca", "id_marca", associacoes.size(),
+                i -> associacoes.get(i).getIdProduto(), i -> associacoes.get(i).getIdMarca());
+    }
+
+    private int inserirAssociacoes(String tabela, String coluna, int total,
+                                   IntFunction<Integer> idProduto,
+                                   IntFunction<Integer> idOutro) {
+        int inseridas = 0;
+        int porStatement = MAX_PARAMETROS / COLUNAS_ASSOCIACAO;
+        for (int inicio = 0; inicio < total; inicio += porStatement) {
+            int fim = Math.min(inicio + porStatement, total);
+            StringBuilder sql = new StringBuilder("INSERT INTO ")
+                    .append(tabela).append(" (id_produto, ").append(coluna).append(") VALUES ");
+            for (int i = inicio; i < fim; i++) {
+                sql.append(i == inicio ? "" : ", ").append("(?, ?)");
+            }
+            sql.append(" ON CONFLICT DO NOTHING");
+
+            int de = inicio;
+            inseridas += jdbcTemplate.update(sql.toString(), ps -> {
+                int p = 1;
+                for (int i = de; i < fim; i++) {
+                    ps.setInt(p++, idProduto.apply(i));
+                    ps.setInt(p++, idOutro.apply(i));
+                }
+            });
+        }
+        return inseridas;
+    }
+
+    // ===== SINCRONIZAÇÃO DE ASSOCIAÇÕES (diferença de conjuntos no SQL) =====
+
+    /** Associa todos os produtos a todas as categorias; devolve as associações novas. */
+    public int adicionarCategorias(Collection<Integer> idsProdutos, Collection<Integer> idsCategorias) {
+        return adicionarAssociacoes("produto_categoria", "id_categoria", idsProdutos, idsCategorias);
+    }
+
+    /** Associa todos os produtos a todas as marcas; devolve as associações novas. */
+    public int adicionarMarcas(Collection<Integer> idsProdutos, Collection<Integer> idsMarcas) {
+        return adicionarAssociacoes("produto_marca", "id_marca", idsProdutos, idsMarcas);
+    }
+
+    public int removerCategorias(Collection<Integer> idsProdutos, Collection<Integer> idsCategorias) {
+        return removerAssociacoes("produto_categoria", "id_categoria", idsProdutos, idsCategorias);
+    }
+
+    public int removerMarcas(Collection<Integer> idsProdutos, Collection<Integer> idsMarcas) {
+        return removerAssociacoes("produto_marca", "id_marca", idsProdutos, idsMarcas);
+    }
+
+    /** Remove as categorias do produto que não estão em {@code manter}. */
+    public int removerCategoriasExceto(Integer idProduto, Collection<Integer> manter) {
+        return removerAssociacoesExceto("produto_categoria", "id_categoria", idProduto, manter);
+    }
+
+    /** Remove as marcas do produto que não estão em {@code manter}. */
+    public int removerMarcasExceto(Integer idProduto, Collection<Integer> manter) {
+        return removerAssociacoesExceto("produto_marca", "id_marca", idProduto, manter);
+    }
+
+    // Produto cartesiano dos dois arrays num único INSERT; as existentes ficam como estão
+    private int adicionarAssociacoes(String tabela, String coluna,
+                                     Collection<Integer> idsProdutos, Collection<Integer> outros) {
+        if (idsProdutos.isEmpty() || outros.isEmpty()) return 0;
+        String sql = "INSERT INTO " + tabela + " (id_produto, " + coluna + ") "
+                + "SELECT p, o FROM unnest(?::int[]) AS p CROSS JOIN unnest(?::int[]) AS o "
+                + "ON CONFLICT DO NOTHING";
+        return jdbcTemplate.update(sql, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("integer", idsProdutos.toArray()));
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", outros.toArray()));
+        });
+    }
+
+    private int removerAssociacoes(String tabela, String coluna,
+                                   Collection<Integer> idsProdutos, Collection<Integer> outros) {
+        if (idsProdutos.isEmpty() || outros.isEmpty()) return 0;
+        String sql = "DELETE FROM " + tabela + " WHERE id_produto = ANY(?) AND " + coluna + " = ANY(?)";
+        return jdbcTemplate.update(sql, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("integer", idsProdutos.toArray()));
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", outros.toArray()));
+        });
+    }
+
+    private int removerAssociacoesExceto(String tabela, String coluna, Integer idProduto, Collection<Integer> manter) {
+        String sql = "DELETE FROM " + tabela + " WHERE id_produto = ? AND " + coluna + " <> ALL(?)";
+        return jdbcTemplate.update(sql, ps -> {
+            ps.setInt(1, idProduto);
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", manter.toArray()));
+        });
+    }
+
+    // ===== ESTOQUE =====
+
+    /**
+     * Desconta {@code quantidades[i]} de {@code ids[i]} apenas onde há estoque
+     * suficiente, num único statement. A condição é reavaliada pelo PostgreSQL
+     * sobre a versão mais recente da linha, pelo que dois descontos concorrentes
+     * nunca deixam o estoque negativo.
+     *
+     * As linhas são bloqueadas primeiro por ordem de ID, na CTE {@code alvo}:
+     * num UPDATE ... FROM unnest a ordem de bloqueio seria a do plano de
+     * execução, e duas operações com vários produtos em comum podiam entrar em
+     * deadlock. MATERIALIZED garante que o FOR UPDATE corre como está escrito.
+     *
+     * @return id → nova quantidade, só para os produtos efectivamente descontados
+     */
+    public Map<Integer, Integer> descontarEstoqueSeDisponivel(Integer[] ids, Integer[] quantidades) {
+        String sql = """
+                WITH pd AS (
+                    SELECT * FROM unnest(?::int[], ?::int[]) AS t(id, qtd)
+                ), alvo AS MATERIALIZED (
+                    SELECT p.id_produto FROM produto p
+                      JOIN pd ON pd.id = p.id_produto
+                     ORDER BY p.id_produto
+                       FOR UPDATE OF p
+                )
+                UPDATE produto p
+                   SET quantidade_estoque = p.quantidade_estoque - pd.qtd
+                  FROM pd JOIN alvo a ON a.id_produto = pd.id
+                 WHERE p.id_produto = pd.id
+                   AND p.quantidade_estoque >= pd.qtd
+                RETURNING p.id_produto, p.quantidade_estoque
+                """;
+        return executarAjusteEstoque(sql, ids, quantidades);
+    }
+
+    /**
+     * Como {@link #descontarEstoqueSeDisponivel}, para quem já tem as linhas
+     * bloqueadas por ordem de ID na transacção: o UPDATE não as volta a bloquear.
+     */
+    public Map<Integer, Integer> descontarEstoqueJaBloqueado(Integer[] ids, Integer[] quantidades) {
+        String sql = """
+                UPDATE produto p
+                   SET quantidade_estoque = p.quantidade_estoque - pd.qtd
+                  FROM unnest(?::int[], ?::int[]) AS pd(id, qtd)
+                 WHERE p.id_produto = pd.id
+                   AND p.quantidade_estoque >= pd.qtd
+                RETURNING p.id_produto, p.quantidade_estoque
+                """;
+        return executarAjusteEstoque(sql, ids, quantidades);
+    }
+
+    /** Acrescenta {@code quantidades[i]} a {@code ids[i]}; devolve id → nova quantidade. */
+    public Map<Integer, Integer> acrescentarEstoque(Integer[] ids, Integer[] quantidades) {
+        String sql = """
+                UPDATE produto p
+                   SET quantidade_estoque = p.quantidade_estoque + pd.qtd
+                  FROM unnest(?::int[], ?::int[]) AS pd(id, qtd)
+                 WHERE p.id_produto = pd.id
+                RETURNING p.id_produto, p.quantidade_estoque
+                """;
+        return executarAjusteEstoque(sql, ids, quantidades);
+    }
+
+    public Map<Integer, Integer> consultarEstoque(Collection<Integer> ids) {
+        Map<Integer, Integer> estoque = new LinkedHashMap<>();
+        if (ids.isEmpty()) return estoque;
+        jdbcTemplate.query("SELECT id_produto, quantidade_estoque FROM produto WHERE id_produto = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", ids.toArray())),
+                rs -> {
+                    estoque.put(rs.getInt(1), rs.getInt(2));
+                });
+        return estoque;
+    }
+
+    private Map<Integer, Integer> executarAjusteEstoque(String sql, Integer[] ids, Integer[] quantidades) {
+        Map<Integer, Integer> resultado = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("integer", ids));
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", quantidades));
+        }, rs -> {
+            resultado.put(rs.getInt(1), rs.getInt(2));
+        });
+        return resultado;
+    }
+}
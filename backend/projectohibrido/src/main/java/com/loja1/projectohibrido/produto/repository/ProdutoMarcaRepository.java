@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,6 +18,9 @@ public interface ProdutoMarcaRepository extends JpaRepository<ProdutoMarca, Prod
     
     List<ProdutoMarca> findByIdProduto(Integer idProduto);
     
+    // Carga em lote das associações de vários produtos (uma única query com IN)
+    List<ProdutoMarca> findByIdProdutoIn(Collection<Integer> idsProduto);
+    
     @Modifying
     @Query("DELETE FROM ProdutoMarca pm WHERE pm.idMarca = :idMarca AND pm.idProduto = :idProduto")
     void deleteByIdMarcaAndIdProduto(@Param("idMarca") Integer idMarca, @Param("idProduto") Integer idProduto);
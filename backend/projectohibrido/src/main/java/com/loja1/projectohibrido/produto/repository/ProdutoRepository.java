@@ -2,34 +2,31 @@ package com.loja1.projectohibrido.produto.repository;
 
 import com.loja1.projectohibrido.produto.entity.Produto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ProdutoRepository extends JpaRepository<Produto, Integer> {
+public interface ProdutoRepository extends JpaRepository<Produto, Integer>, JpaSpecificationExecutor<Produto> {
     
     // ✅ MUDANÇA: Integer → Short
     List<Produto> findByAtivo(Short ativo);
+
+    long countByIdProdutoIn(Collection<Integer> ids);
+
+    // Estimativa do nº de linhas mantida pelo PostgreSQL (ANALYZE/autovacuum) — O(1).
+    // 'produto'::regclass resolve a tabela pelo search_path (não apanha homónimas
+    // noutro schema). Tabela nunca analisada: reltuples = -1 → ver ProdutoService.
+    @Query(value = "SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE oid = 'produto'::regclass", nativeQuery = true)
+    Long estimarTotalProdutos();
+
   @Modifying(clearAutomatically = true, flushAutomatically = true)
 @Query("UPDATE Produto p SET p.quantidadeEstoque = p.quantidadeEstoque + :delta WHERE p.idProduto = :idProduto")
 void ajustarEstoque(@Param("idProduto") Integer idProduto, @Param("delta") int delta);
 
-// Produtos sem vendas no período
-@Query("""
-    SELECT p.idProduto, p.nomeProduto, p.quantidadeEstoque, p.preco
-    FROM Produto p
-    WHERE p.ativo = 1
-      AND p.idProduto NOT IN (
-          SELECT DISTINCT i.produto.idProduto
-          FROM ItemPedido i
-          WHERE i.pedido.dataPedido >= :dataInicio
-            AND i.pedido.statusPedido NOT IN ('cancelado', 'por finalizar')
-      )
-    """)
-List<Object[]> produtosSemVendas(@Param("dataInicio") LocalDateTime dataInicio);
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+package com.loja1.projectohibrido.produto.service;
+
+import com.loja1.projectohibrido.movimentoestoque.diario.DiarioEstoque;
+import com.loja1.projectohibrido.movimentoestoque.diario.MovimentoDiario;
+import com.loja1.projectohibrido.produto.alerta.AlertasEstoque;
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
+import com.loja1.projectohibrido.produto.entity.Produto;
+import com.loja1.projectohibrido.produto.estoque.LivroEstoque;
+import com.loja1.projectohibrido.produto.repository.ProdutoLoteRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Ponto único de alteração do estoque.
+ *
+ * Em vez de ler quantidade_estoque, validar em Java e depois escrever (o que
+ * vende a mais sob concorrência), o desconto é um UPDATE condicional
+ * ({@code quantidade_estoque >= qtd}) para todos os produtos da operação num
+ * só statement. O mesmo statement bloqueia antes as linhas por ordem de ID
+ * (CTE com FOR UPDATE): a ordem em que o UPDATE ... FROM unnest as bloqueia
+ * depende do plano, e não serviria para evitar deadlocks.
+ *
+ * Com estoque.livro.activo=true as operações são servidas pelo
+ * {@link LivroEstoque} em memória e gravadas em lote.
+ *
+ * Cada variação aplicada é registada no {@link DiarioEstoque}
+ * (movimento_estoque), em lote e fora do caminho do pedido, e comparada com o
+ * estoque mínimo do produto ({@link AlertasEstoque}).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EstoqueService {
+
+    private final ProdutoLoteRepository produtoLoteRepository;
+    private final CatalogoCache catalogoCache;
+    private final EntityManager entityManager;
+    private final LivroEstoque livroEstoque;
+    private final DiarioEstoque diarioEstoque;
+    private final AlertasEstoque alertasEstoque;
+
+    /**
+     * Quem provocou a variação, para o diário de movimentos.
+     *
+     * @param idPedido null no checkout do carrinho: o pedido ainda não existe e
+     *                 é associado depois com {@link #associarAoPedido}
+     */
+    public record Origem(Integer idUsuario, Integer idPedido, String tipo, String motivo) {
+
+        public static Origem doPedido(Integer idPedido, Integer idUsuario, String motivo) {
+            return new Origem(idUsuario, idPedido, "pedido", "Pedido #" + idPedido + " — " + motivo);
+        }
+
+        public static Origem doCarrinho(Integer idCarrinho, Integer idUsuario) {
+            return new Origem(idUsuario, null, "carrinho", "Checkout do carrinho #" + idCarrinho);
+        }
+    }
+
+    /**
+     * @param estoqueFinal  id → estoque após o desconto (vazio se falhou)
+     * @param insuficientes id → estoque disponível dos produtos que falharam
+     */
+    public record ResultadoReserva(Map<Integer, Integer> estoqueFinal, Map<Integer, Integer> insuficientes) {
+        public boolean sucesso() {
+            return insuficientes.isEmpty();
+        }
+    }
+
+    // ===== DESCONTO (RESERVA) =====
+
+    /**
+     * Desconta todas as quantidades ou nenhuma (id do produto → quantidade).
+     *
+     * Caminho normal: 1 statement, com o bloqueio por ordem incluído.
+     * Se algum produto não tiver estoque, o resultado indica o que faltou e a
+     * transacção fica marcada para rollback — os descontos parciais nunca são
+     * gravados. Os chamadores lançam EstoqueInsuficienteException nesse caso.
+     */
+    @Transactional
+    public ResultadoReserva reservar(Map<Integer, Integer> quantidades, Origem origem) {
+        return reservar(quantidades, origem, false);
+    }
+
+    /**
+     * Como {@link #reservar(Map, Origem)}; com {@code linhasBloqueadas} o
+     * chamador já bloqueou os produtos por ordem de ID nesta transacção (o
+     * checkout do carrinho) e o UPDATE não os volta a bloquear.
+     */
+    @Transactional
+    public ResultadoReserva reservar(Map<Integer, Integer> quantidades, Origem origem, boolean linhasBloqueadas) {
+        Map<Integer, Integer> pedido = agregar(quantidades);
+        if (pedido.isEmpty()) {
+            return new ResultadoReserva(Map.of(), Map.of());
+        }
+
+        if (livroEstoque.activo()) {
+            LivroEstoque.Reserva reserva = livroEstoque.reservar(pedido);
+            if (!reserva.insuficientes().isEmpty()) {
+                log.warn("Estoque insuficiente (livro): {} | pedido: {}", reserva.insuficientes(), pedido);
+            } else {
+                registarVariacao("saida", pedido, reserva.estoqueFinal(), origem);
+            }
+            return new ResultadoReserva(reserva.estoqueFinal(), reserva.insuficientes());
+        }
+
+        // Escritas pendentes do Hibernate vão antes do UPDATE (como o flushAutomatically de ajustarEstoque)
+        entityManager.flush();
+
+        Integer[] ids = pedido.keySet().toArray(Integer[]::new);
+        Integer[] qtds = pedido.values().toArray(Integer[]::new);
+        Map<Integer, Integer> descontados = linhasBloqueadas
+                ? produtoLoteRepository.descontarEstoqueJaBloqueado(ids, qtds)
+                : produtoLoteRepository.descontarEstoqueSeDisponivel(ids, qtds);
+
+        if (descontados.size() == pedido.size()) {
+            catalogoCache.invalidarProdutos(pedido.keySet());
+            registarVariacao("saida", pedido, descontados, origem);
+            log.debug("Estoque reservado: {}", pedido);
+            return new ResultadoReserva(descontados, Map.of());
+        }
+
+        // Tudo-ou-nada: o que já foi descontado desaparece com o rollback
+        TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+
+        Set<Integer> falhados = new TreeSet<>(pedido.keySet());
+        falhados.removeAll(descontados.keySet());
+        Map<Integer, Integer> disponiveis = produtoLoteRepository.consultarEstoque(falhados);
+        Map<Integer, Integer> insuficientes = new LinkedHashMap<>();
+        falhados.forEach(id -> insuficientes.put(id, disponiveis.getOrDefault(id, 0)));
+
+        log.warn("Estoque insuficiente (disponível por produto): {} | pedido: {}", insuficientes, pedido);
+        return new ResultadoReserva(Map.of(), insuficientes);
+    }
+
+    // ===== DEVOLUÇÃO =====
+
+    /** Devolve as quantidades ao estoque num só statement; devolve id → novo estoque. */
+    @Transactional
+    public Map<Integer, Integer> devolver(Map<Integer, Integer> quantidades, Origem origem) {
+        Map<Integer, Integer> devolucao = agregar(quantidades);
+        if (devolucao.isEmpty()) {
+            return Map.of();
+        }
+        if (livroEstoque.activo()) {
+            Map<Integer, Integer> estimado = livroEstoque.devolver(devolucao);
+            registarVariacao("entrada", devolucao, estimado, origem);
+            return estimado;
+        }
+        entityManager.flush();
+
+        Map<Integer, Integer> estoqueFinal = produtoLoteRepository.acrescentarEstoque(
+                devolucao.keySet().toArray(Integer[]::new), devolucao.values().toArray(Integer[]::new));
+        catalogoCache.invalidarProdutos(devolucao.keySet());
+        registarVariacao("entrada", devolucao, estoqueFinal, origem);
+        log.debug("Estoque devolvido: {}", devolucao);
+        return estoqueFinal;
+    }
+
+    /**
+     * Associa ao pedido criado os movimentos de estoque desta transacção que
+     * foram registados sem pedido (checkout do carrinho). Chamar na mesma
+     * transacção, antes do commit.
+     */
+    public void associarAoPedido(Integer idPedido) {
+        diarioEstoque.associarPedido(idPedido);
+    }
+
+    /** true se as reservas são servidas pelo livro em memória (sem locks de linha). */
+    public boolean livroActivo() {
+        return livroEstoque.activo();
+    }
+
+    /** Estoque do produto redefinido por edição directa (ProdutoService.atualizar). */
+    public void estoqueRedefinido(Integer idProduto) {
+        livroEstoque.redefinirAposCommit(idProduto);
+    }
+
+    public Map<String, Object> estatisticasLivro() {
+        return livroEstoque.estatisticas();
+    }
+
+    // ===== AUXILIARES =====
+
+    /**
+     * Reflecte o novo estoque numa entidade já carregada, para validações na
+     * mesma transacção. A entidade passa a read-only: o valor já está gravado
+     * e um UPDATE do Hibernate reescreveria as restantes colunas com o estado
+     * lido no início da transacção.
+     */
+    public void actualizarEmMemoria(Produto produto, Integer novaQuantidade) {
+        if (novaQuantidade == null) return;
+        if (entityManager.contains(produto)) {
+            entityManager.unwrap(Session.class).setReadOnly(produto, true);
+        }
+        produto.setQuantidadeEstoque(novaQuantidade);
+    }
+
+    /**
+     * Um movimento por produto, com o estoque antes e depois calculado a
+     * partir do estoque final devolvido pelo UPDATE (ou pelo livro). A mesma
+     * variação é comparada com o estoque mínimo do produto (AlertasEstoque).
+     */
+    private void registarVariacao(String tipo, Map<Integer, Integer> quantidades,
+                                  Map<Integer, Integer> estoqueFinal, Origem origem) {
+        boolean noDiario = origem != null && origem.idUsuario() != null;
+        if (!noDiario) {
+            log.debug("Variação de estoque sem utilizador, não registada no diário: {}", quantidades);
+        }
+        LocalDateTime agora = LocalDateTime.now();
+        List<MovimentoDiario> movimentos = new ArrayList<>(quantidades.size());
+        quantidades.forEach((id, qtd) -> {
+            Integer depois = estoqueFinal.get(id);
+            if (depois == null) return;
+            int antes = "saida".equals(tipo) ? depois + qtd : depois - qtd;
+            alertasEstoque.verificar(id, antes, depois);
+            if (noDiario) {
+                movimentos.add(new MovimentoDiario(id, origem.idUsuario(), origem.idPedido(), origem.tipo(),
+                        tipo, qtd, antes, depois, origem.motivo(), agora));
+            }
+        });
+        if (!movimentos.isEmpty()) {
+            diarioEstoque.registar(movimentos);
+        }
+    }
+
+    /**
+     * Junta as quantidades por produto, ordenadas por ID, e rejeita
+     * quantidades não positivas.
+     */
+    private static Map<Integer, Integer> agregar(Map<Integer, Integer> quantidades) {
+        Map<Integer, Integer> ordenado = new TreeMap<>();
+        quantidades.forEach((id, qtd) -> {
+            if (id == null || qtd == null || qtd <= 0) {
+                throw new IllegalArgumentException("Quantidade inválida para o produto " + id + ": " + qtd);
+            }
+            ordenado.merge(id, qtd, Integer::sum);
+        });
+        return ordenado;
+    }
+}
@@ -0,0 +1,96 @@
+package com.loja1.projectohibrido.produto.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leitor de CSV em streaming (RFC 4180): campos entre aspas podem conter o
+ * separador, aspas duplicadas ("") e quebras de linha.
+ *
+ * O separador (',' ou ';' — Excel em português usa ';') é detectado a partir
+ * do cabeçalho.
+ */
+class LeitorCsv {
+
+    private final BufferedReader entrada;
+    private final char separador;
+    private int linhaActual = 1;
+    private int linhaDoRegisto = 1;
+
+    LeitorCsv(BufferedReader entrada) throws IOException {
+        this.entrada = entrada;
+        this.separador = detectarSeparador(entrada);
+    }
+
+    private static char detectarSeparador(BufferedReader entrada) throws IOException {
+        entrada.mark(64 * 1024);
+        String cabecalho = entrada.readLine();
+        entrada.reset();
+        if (cabecalho == null) return ',';
+        long virgulas = cabecalho.chars().filter(c -> c == ',').count();
+        long pontosEVirgula = cabecalho.chars().filter(c -> c == ';').count();
+        return pontosEVirgula > virgulas ? ';' : ',';
+    }
+
+    char separador() {
+        return separador;
+    }
+
+    /** Linha do ficheiro onde começa o último registo lido. */
+    int linhaDoRegisto() {
+        return linhaDoRegisto;
+    }
+
+    /** Próximo registo não vazio, ou null no fim do ficheiro. */
+    List<String> proximo() throws IOException {
+        while (true) {
+            List<String> campos = lerRegisto();
+            if (campos == null) return null;
+            if (campos.size() > 1 || !campos.get(0).isBlank()) return campos;
+        }
+    }
+
+    private List<String> lerRegisto() throws IOException {
+        linhaDoRegisto = linhaActual;
+        int c = entrada.read();
+        if (c == -1) return null;
+
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreAspas = false;
+
+        while (c != -1) {
+            char ch = (char) c;
+            if (entreAspas) {
+                if (ch == '"') {
+                    entrada.mark(1);
+                    int seguinte = entrada.read();
+                    if (seguinte == '"') {
+                        campo.append('"');
+                    } else {
+                        entreAspas = false;
+                        if (seguinte != -1) entrada.reset();
+                    }
+                } else {
+                    if (ch == '\n') linhaActual++;
+                    campo.append(ch);
+                }
+            } else if (ch == '"') {
+                entreAspas = true;
+            } else if (ch == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (ch == '\n') {
+                linhaActual++;
+                break;
+            } else if (ch != '\r') {
+                campo.append(ch);
+            }
+            c = entrada.read();
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+}
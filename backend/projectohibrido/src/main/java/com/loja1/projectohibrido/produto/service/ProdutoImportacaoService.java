@@ -0,0 +1,358 @@
+package com.loja1.projectohibrido.produto.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loja1.projectohibrido.categoria.entity.Categoria;
+import com.loja1.projectohibrido.categoria.entity.ProdutoCategoria;
+import com.loja1.projectohibrido.categoria.repository.CategoriaRepository;
+import com.loja1.projectohibrido.marca.entity.Marca;
+import com.loja1.projectohibrido.marca.repository.MarcaRepository;
+import com.loja1.projectohibrido.produto.busca.IndiceBuscaProduto;
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
+import com.loja1.projectohibrido.produto.dto.ImportacaoErroDTO;
+import com.loja1.projectohibrido.produto.dto.ImportacaoResultadoDTO;
+import com.loja1.projectohibrido.produto.entity.Produto;
+import com.loja1.projectohibrido.produto.entity.ProdutoMarca;
+import com.loja1.projectohibrido.produto.repository.ProdutoLoteRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Importação em massa de produtos (CSV ou NDJSON), em streaming.
+ *
+ * As linhas são validadas uma a uma e gravadas em lotes: cada lote é um
+ * INSERT multi-linha em produto, produto_categoria e produto_marca, na sua
+ * própria transacção. Se um lote falhar na base de dados, as suas linhas são
+ * regravadas individualmente para isolar a(s) culpada(s) — uma linha má
+ * nunca aborta o resto da carga.
+ *
+ * Colunas (CSV: cabeçalho; NDJSON: chaves), em snake_case ou camelCase:
+ * nome_produto, descricao, preco, quantidade_estoque, preco_promocional,
+ * ativo, categorias, marcas. Categorias e marcas aceitam IDs ou nomes,
+ * separados por '|' (no NDJSON também como array).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProdutoImportacaoService {
+
+    private static final int MAX_ERROS_LISTADOS = 1000;
+    private static final int TAMANHO_MAXIMO_NOME = 200;
+
+    private final ProdutoLoteRepository produtoLoteRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final MarcaRepository marcaRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final CatalogoCache catalogoCache;
+    private final IndiceBuscaProduto indiceBuscaProduto;
+
+    @Value("${catalogo.importacao.tamanho-lote:500}")
+    private int tamanhoLote;
+
+    private record LinhaBruta(int numero, Map<String, String> campos, String erro) {}
+
+    private record LinhaValida(int numero, Produto produto, Set<Integer> categorias, Set<Integer> marcas) {}
+
+    private interface FonteLinhas {
+        LinhaBruta proxima() throws IOException;
+    }
+
+    // ===== IMPORTAÇÃO =====
+
+    public ImportacaoResultadoDTO importar(InputStream corpo, boolean ndjson) throws IOException {
+        long inicio = System.currentTimeMillis();
+        log.info("📥 Importação de produtos iniciada (formato={})", ndjson ? "NDJSON" : "CSV");
+
+        ImportacaoResultadoDTO resultado = new ImportacaoResultadoDTO();
+        TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+
+        // Categorias e marcas resolvidas em memória — 2 queries para o ficheiro inteiro
+        Dicionario categorias = new Dicionario("Categoria");
+        categoriaRepository.findAll().forEach((Categoria c) -> categorias.registar(c.getIdCategoria(), c.getNomeCategoria()));
+        Dicionario marcas = new Dicionario("Marca");
+        marcaRepository.findAll().forEach((Marca m) -> marcas.registar(m.getIdMarca(), m.getNomeMarca()));
+
+        BufferedReader leitor = new BufferedReader(new InputStreamReader(corpo, StandardCharsets.UTF_8));
+        FonteLinhas fonte = ndjson ? fonteNdjson(leitor) : fonteCsv(leitor);
+
+        List<LinhaValida> lote = new ArrayList<>(tamanhoLote);
+        LinhaBruta bruta;
+        while ((bruta = fonte.proxima()) != null) {
+            resultado.setTotalLinhas(resultado.getTotalLinhas() + 1);
+            if (bruta.erro() != null) {
+                registarErro(resultado, bruta.numero(), bruta.erro());
+                continue;
+            }
+            try {
+                lote.add(validar(bruta, categorias, marcas));
+            } catch (IllegalArgumentException e) {
+                registarErro(resultado, bruta.numero(), e.getMessage());
+                continue;
+            }
+            if (lote.size() >= tamanhoLote) {
+                gravarLote(lote, resultado, transacao);
+            }
+        }
+        gravarLote(lote, resultado, transacao);
+
+        if (resultado.getImportados() > 0) {
+            catalogoCache.invalidarListas();
+        }
+        resultado.setDuracaoMs(System.currentTimeMillis() - inicio);
+        log.info("✅ Importação concluída: {} linha(s) | {} importado(s) | {} rejeitado(s) | {} ms",
+                resultado.getTotalLinhas(), resultado.getImportados(),
+                resultado.getRejeitados(), resultado.getDuracaoMs());
+        return resultado;
+    }
+
+    // ===== GRAVAÇÃO EM LOTE =====
+
+    private void gravarLote(List<LinhaValida> lote, ImportacaoResultadoDTO resultado, TransactionTemplate transacao) {
+        if (lote.isEmpty()) return;
+        try {
+            concluir(transacao.execute(status -> gravar(lote)), resultado);
+        } catch (DataAccessException e) {
+            log.warn("Lote de {} linha(s) rejeitado pela base de dados ({}) — a gravar linha a linha",
+                    lote.size(), e.getMostSpecificCause().getMessage());
+            for (LinhaValida linha : lote) {
+                try {
+                    concluir(transacao.execute(status -> gravar(List.of(linha))), resultado);
+                } catch (DataAccessException ex) {
+                    registarErro(resultado, linha.numero(),
+                            "Erro ao gravar: " + ex.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        lote.clear();
+    }
+
+    private List<Integer> gravar(List<LinhaValida> lote) {
+        List<Integer> ids = produtoLoteRepository.inserirProdutos(
+                lote.stream().map(LinhaValida::produto).toList());
+
+        List<ProdutoCategoria> produtoCategorias = new ArrayList<>();
+        List<ProdutoMarca> produtoMarcas = new ArrayList<>();
+        for (int i = 0; i < lote.size(); i++) {
+            Integer idProduto = ids.get(i);
+            lote.get(i).categorias().forEach(id -> produtoCategorias.add(new ProdutoCategoria(idProduto, id)));
+            lote.get(i).marcas().forEach(id -> produtoMarcas.add(new ProdutoMarca(idProduto, id)));
+        }
+        if (!produtoCategorias.isEmpty()) produtoLoteRepository.inserirCategorias(produtoCategorias);
+        if (!produtoMarcas.isEmpty()) produtoLoteRepository.inserirMarcas(produtoMarcas);
+        return ids;
+    }
+
+    private void concluir(List<Integer> ids, ImportacaoResultadoDTO resultado) {
+        resultado.setImportados(resultado.getImportados() + ids.size());
+        indiceBuscaProduto.reindexarAposCommit(ids);
+        log.debug("Lote gravado: {} produto(s)", ids.size());
+    }
+
+    private void registarErro(ImportacaoResultadoDTO resultado, int linha, String mensagem) {
+        resultado.setRejeitados(resultado.getRejeitados() + 1);
+        if (resultado.getErros().size() < MAX_ERROS_LISTADOS) {
+            resultado.getErros().add(new ImportacaoErroDTO(linha, mensagem));
+        }
+    }
+
+    // ===== VALIDAÇÃO =====
+
+    private LinhaValida validar(LinhaBruta bruta, Dicionario categorias, Dicionario marcas) {
+        Map<String, String> campos = bruta.campos();
+
+        String nome = texto(campos, "nomeproduto");
+        if (nome == null) {
+            throw new IllegalArgumentException("nome_produto é obrigatório");
+        }
+        if (nome.length() > TAMANHO_MAXIMO_NOME) {
+            throw new IllegalArgumentException("nome_produto excede " + TAMANHO_MAXIMO_NOME + " caracteres");
+        }
+
+        BigDecimal preco = decimal(campos, "preco");
+        if (preco == null) {
+            throw new IllegalArgumentException("preco é obrigatório");
+        }
+        BigDecimal precoPromocional = decimal(campos, "precopromocional");
+        String quantidadeTexto = texto(campos, "quantidadeestoque");
+        int quantidade;
+        try {
+            quantidade = quantidadeTexto == null ? 0 : Integer.parseInt(quantidadeTexto);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("quantidade_estoque inválida: " + quantidadeTexto);
+        }
+        if (quantidade < 0) {
+            throw new IllegalArgumentException("quantidade_estoque não pode ser negativa");
+        }
+
+        Produto produto = new Produto();
+        produto.setNomeProduto(nome);
+        produto.setDescricao(texto(campos, "descricao"));
+        produto.setPreco(preco);
+        produto.setPrecoPromocional(precoPromocional);
+        produto.setQuantidadeEstoque(quantidade);
+        produto.setAtivo(ativo(texto(campos, "ativo")));
+
+        return new LinhaValida(bruta.numero(), produto,
+                categorias.resolver(texto(campos, "categorias")),
+                marcas.resolver(texto(campos, "marcas")));
+    }
+
+    private static String texto(Map<String, String> campos, String chave) {
+        String valor = campos.get(chave);
+        return (valor == null || valor.isBlank()) ? null : valor.trim();
+    }
+
+    private static BigDecimal decimal(Map<String, String> campos, String chave) {
+        String valor = texto(campos, chave);
+        if (valor == null) return null;
+        // Aceita vírgula decimal ("12,50") quando não há ponto
+        String normalizado = valor.contains(".") ? valor : valor.replace(',', '.');
+        try {
+            BigDecimal numero = new BigDecimal(normalizado);
+            if (numero.signum() < 0) {
+                throw new IllegalArgumentException(chave + " não pode ser negativo");
+            }
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(chave + " inválido: " + valor);
+        }
+    }
+
+    private static short ativo(String valor) {
+        if (valor == null) return 1;
+        return switch (valor.toLowerCase(Locale.ROOT)) {
+            case "1", "true", "sim", "s" -> (short) 1;
+            case "0", "false", "nao", "não", "n" -> (short) 0;
+            default -> throw new IllegalArgumentException("ativo inválido: " + valor);
+        };
+    }
+
+    private static String chave(String coluna) {
+        return coluna.replace("\uFEFF", "").trim().replace("_", "").replace(" ", "").toLowerCase(Locale.ROOT);
+    }
+
+    // ===== FONTES =====
+
+    private FonteLinhas fonteCsv(BufferedReader leitor) throws IOException {
+        LeitorCsv csv = new LeitorCsv(leitor);
+        List<String> cabecalho = csv.proximo();
+        if (cabecalho == null) {
+            return () -> null;
+        }
+        List<String> colunas = cabecalho.stream().map(ProdutoImportacaoService::chave).toList();
+        log.debug("CSV: separador '{}' | colunas {}", csv.separador(), colunas);
+
+        return () -> {
+            List<String> valores = csv.proximo();
+            if (valores == null) return null;
+            Map<String, String> campos = new HashMap<>();
+            for (int i = 0; i < colunas.size() && i < valores.size(); i++) {
+                campos.put(colunas.get(i), valores.get(i));
+            }
+            return new LinhaBruta(csv.linhaDoRegisto(), campos, null);
+        };
+    }
+
+    private FonteLinhas fonteNdjson(BufferedReader leitor) {
+        int[] numero = {0};
+        return () -> {
+            String linha;
+            do {
+                linha = leitor.readLine();
+                numero[0]++;
+            } while (linha != null && linha.isBlank());
+            if (linha == null) return null;
+
+            try {
+                JsonNode json = objectMapper.readTree(linha);
+                if (!json.isObject()) {
+                    return new LinhaBruta(numero[0], Map.of(), "Linha não é um objecto JSON");
+                }
+                Map<String, String> campos = new HashMap<>();
+                for (Map.Entry<String, JsonNode> campo : json.properties()) {
+                    campos.put(chave(campo.getKey()), valorJson(campo.getValue()));
+                }
+                return new LinhaBruta(numero[0], campos, null);
+            } catch (JsonProcessingException e) {
+                return new LinhaBruta(numero[0], Map.of(), "JSON inválido: " + e.getOriginalMessage());
+            }
+        };
+    }
+
+    private static String valorJson(JsonNode valor) {
+        if (valor == null || valor.isNull()) return null;
+        if (valor.isArray()) {
+            List<String> partes = new ArrayList<>();
+            valor.forEach(v -> partes.add(v.asText()));
+            return String.join("|", partes);
+        }
+        return valor.asText();
+    }
+
+    // ===== RESOLUÇÃO DE CATEGORIAS / MARCAS =====
+
+    /** Resolve IDs ou nomes (sem distinguir maiúsculas nem acentos) para IDs. */
+    private static class Dicionario {
+        private final String tipo;
+        private final Set<Integer> ids = new HashSet<>();
+        private final Map<String, Integer> porNome = new HashMap<>();
+
+        Dicionario(String tipo) {
+            this.tipo = tipo;
+        }
+
+        void registar(Integer id, String nome) {
+            ids.add(id);
+            if (nome != null) porNome.put(normalizar(nome), id);
+        }
+
+        Set<Integer> resolver(String valor) {
+            Set<Integer> resolvidos = new LinkedHashSet<>();
+            if (valor == null) return resolvidos;
+            for (String parte : valor.split("\\|")) {
+                String item = parte.trim();
+                if (item.isEmpty()) continue;
+                Integer id = porNome.get(normalizar(item));
+                if (id == null && item.chars().allMatch(Character::isDigit)) {
+                    Integer numero = Integer.valueOf(item);
+                    if (ids.contains(numero)) id = numero;
+                }
+                if (id == null) {
+                    throw new IllegalArgumentException(tipo + " desconhecida: " + item);
+                }
+                resolvidos.add(id);
+            }
+            return resolvidos;
+        }
+
+        private static String normalizar(String texto) {
+            return Normalizer.normalize(texto, Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}+", "")
+                    .trim()
+                    .toLowerCase(Locale.ROOT);
+        }
+    }
+}
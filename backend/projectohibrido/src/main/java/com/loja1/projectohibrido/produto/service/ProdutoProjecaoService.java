@@ -0,0 +1,128 @@
+package com.loja1.projectohibrido.produto.service;
+
+import com.loja1.projectohibrido.categoria.entity.ProdutoCategoria;
+import com.loja1.projectohibrido.categoria.repository.ProdutoCategoriaRepository;
+import com.loja1.projectohibrido.produto.dto.ProdutoResponseDTO;
+import com.loja1.projectohibrido.produto.entity.Produto;
+import com.loja1.projectohibrido.produto.entity.ProdutoImagem;
+import com.loja1.projectohibrido.produto.entity.ProdutoMarca;
+import com.loja1.projectohibrido.produto.imagem.ArmazenamentoImagens;
+import com.loja1.projectohibrido.produto.imagem.ArmazenamentoImagens.Tamanho;
+import com.loja1.projectohibrido.produto.repository.ProdutoImagemRepository;
+import com.loja1.projectohibrido.produto.repository.ProdutoMarcaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Monta ProdutoResponseDTO em lote.
+ *
+ * Em vez de 3 queries por produto (categorias, marcas e imagem principal),
+ * carrega as associações de todos os produtos de uma vez: o número de queries
+ * é fixo (3), independentemente do tamanho do catálogo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProdutoProjecaoService {
+
+    private static final short IMAGEM_PRINCIPAL = 1;
+
+    /**
+     * Acima deste número de produtos as associações são lidas da tabela inteira
+     * e filtradas em memória — evita um IN gigante (o driver do PostgreSQL
+     * aceita no máximo 32767 parâmetros por statement).
+     */
+    private static final int LIMITE_CLAUSULA_IN = 1000;
+
+    private final ProdutoCategoriaRepository produtoCategoriaRepository;
+    private final ProdutoMarcaRepository produtoMarcaRepository;
+    private final ProdutoImagemRepository produtoImagemRepository;
+    private final ArmazenamentoImagens armazenamentoImagens;
+
+    @Transactional(readOnly = true)
+    public ProdutoResponseDTO projectar(Produto produto) {
+        return projectar(List.of(produto)).get(0);
+    }
+
+    /**
+     * Converte a lista de produtos em DTOs, preservando a ordem recebida.
+     */
+    @Transactional(readOnly = true)
+    public List<ProdutoResponseDTO> projectar(List<Produto> produtos) {
+        if (produtos.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        produtos.forEach(p -> ids.add(p.getIdProduto()));
+        boolean tabelaInteira = ids.size() > LIMITE_CLAUSULA_IN;
+
+        // ── 1. Categorias ──
+        List<ProdutoCategoria> categorias = tabelaInteira
+                ? produtoCategoriaRepository.findAll()
+                : produtoCategoriaRepository.findByIdProdutoIn(ids);
+        Map<Integer, List<Integer>> categoriasPorProduto = new HashMap<>();
+        for (ProdutoCategoria pc : categorias) {
+            if (ids.contains(pc.getIdProduto())) {
+                categoriasPorProduto.computeIfAbsent(pc.getIdProduto(), k -> new ArrayList<>())
+                        .add(pc.getIdCategoria());
+            }
+        }
+
+        // ── 2. Marcas ──
+        List<ProdutoMarca> marcas = tabelaInteira
+                ? produtoMarcaRepository.findAll()
+                : produtoMarcaRepository.findByIdProdutoIn(ids);
+        Map<Integer, List<Integer>> marcasPorProduto = new HashMap<>();
+        for (ProdutoMarca pm : marcas) {
+            if (ids.contains(pm.getIdProduto())) {
+                marcasPorProduto.computeIfAbsent(pm.getIdProduto(), k -> new ArrayList<>())
+                        .add(pm.getIdMarca());
+            }
+        }
+
+        // ── 3. Imagem principal ──
+        List<ProdutoImagem> imagens = tabelaInteira
+                ? produtoImagemRepository.findByImagemPrincipal(IMAGEM_PRINCIPAL)
+                : produtoImagemRepository.findByIdProdutoInAndImagemPrincipal(ids, IMAGEM_PRINCIPAL);
+        Map<Integer, String> imagemPorProduto = new HashMap<>();
+        for (ProdutoImagem img : imagens) {
+            if (ids.contains(img.getIdProduto())) {
+                imagemPorProduto.putIfAbsent(img.getIdProduto(), img.getCaminhoImagem());
+            }
+        }
+
+        log.debug("Projecção de {} produto(s) concluída (tabelaInteira={})", produtos.size(), tabelaInteira);
+
+        List<ProdutoResponseDTO> resultado = new ArrayList<>(produtos.size());
+        for (Produto produto : produtos) {
+            Integer id = produto.getIdProduto();
+            ProdutoResponseDTO dto = new ProdutoResponseDTO();
+            dto.setIdProduto(id);
+            dto.setNomeProduto(produto.getNomeProduto());
+            dto.setDescricao(produto.getDescricao());
+            dto.setPreco(produto.getPreco());
+            dto.setQuantidadeEstoque(produto.getQuantidadeEstoque());
+            dto.setPrecoPromocional(produto.getPrecoPromocional());
+            dto.setAtivo(produto.getAtivo());
+            dto.setDataCadastro(produto.getDataCadastro());
+            dto.setCategorias(categoriasPorProduto.getOrDefault(id, new ArrayList<>()));
+            dto.setMarcas(marcasPorProduto.getOrDefault(id, new ArrayList<>()));
+            String imagem = imagemPorProduto.get(id);
+            dto.setImagemPrincipalUrl(imagem);
+            dto.setImagemPrincipalThumbUrl(armazenamentoImagens.urlVariante(imagem, Tamanho.THUMB));
+            dto.setImagemPrincipalMediaUrl(armazenamentoImagens.urlVariante(imagem, Tamanho.MEDIA));
+            resultado.add(dto);
+        }
+        return resultado;
+    }
+}
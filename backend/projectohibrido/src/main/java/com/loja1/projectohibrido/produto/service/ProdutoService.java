@@ -2,28 +2,49 @@ package com.loja1.projectohibrido.produto.service;
 
 import com.loja1.projectohibrido.categoria.repository.ProdutoCategoriaRepository;
 import com.loja1.projectohibrido.categoria.entity.ProdutoCategoria;
+import com.loja1.projectohibrido.dashboard.cache.DashboardCache;
+import com.loja1.projectohibrido.produto.alerta.AlertasEstoque;
+import com.loja1.projectohibrido.produto.busca.IndiceBuscaProduto;
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
+import com.loja1.projectohibrido.produto.dto.ProdutoBuscaResultadoDTO;
+import com.loja1.projectohibrido.produto.dto.ProdutoEstoqueBaixoDTO;
 import com.loja1.projectohibrido.produto.dto.ProdutoImagemRequestDTO;
+import com.loja1.projectohibrido.produto.dto.ProdutoPaginaDTO;
 import com.loja1.projectohibrido.produto.dto.ProdutoRequestDTO;
 import com.loja1.projectohibrido.produto.dto.ProdutoResponseDTO;
+import com.loja1.projectohibrido.produto.dto.ReassociacaoRequestDTO;
+import com.loja1.projectohibrido.produto.dto.ReassociacaoResultadoDTO;
 import com.loja1.projectohibrido.produto.entity.Produto;
 import com.loja1.projectohibrido.produto.entity.ProdutoImagem;
 import com.loja1.projectohibrido.produto.entity.ProdutoMarca;
+import com.loja1.projectohibrido.produto.repository.CursorKeyset;
+import com.loja1.projectohibrido.produto.repository.EstoqueMinimoRepository;
+import com.loja1.projectohibrido.produto.repository.ProdutoEspecificacoes;
 import com.loja1.projectohibrido.produto.repository.ProdutoImagemRepository;
+import com.loja1.projectohibrido.produto.repository.ProdutoLoteRepository;
 import com.loja1.projectohibrido.produto.repository.ProdutoRepository;
+import com.loja1.projectohibrido.usuario.exception.BusinessException;
+import com.loja1.projectohibrido.usuario.exception.ResourceNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
-import jakarta.persistence.EntityManager;
-
 import com.loja1.projectohibrido.produto.repository.ProdutoMarcaRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,9 +56,23 @@ public class ProdutoService {
     private final ProdutoCategoriaRepository produtoCategoriaRepository;
     private final ProdutoImagemRepository produtoImagemRepository;
     private final ProdutoMarcaRepository produtoMarcaRepository; 
-    private final EntityManager entityManager;
+    private final ProdutoProjecaoService produtoProjecaoService;
+    private final ProdutoLoteRepository produtoLoteRepository;
+    private final CatalogoCache catalogoCache;
+    private final IndiceBuscaProduto indiceBuscaProduto;
+    private final EstoqueService estoqueService;
+    private final EstoqueMinimoRepository estoqueMinimoRepository;
+    private final AlertasEstoque alertasEstoque;
+    private final DashboardCache dashboardCache;
     private static final Logger log = LoggerFactory.getLogger(ProdutoService.class);
 
+    private static final int LIMITE_PAGINA_PADRAO = 20;
+    private static final int LIMITE_PAGINA_MAXIMO = 100;
+    private static final int LIMITE_ESTOQUE_BAIXO_PADRAO = 100;
+    private static final int LIMITE_ESTOQUE_BAIXO_MAXIMO = 1000;
+    private static final Sort ORDEM_CATALOGO = Sort.by(
+            Sort.Order.desc("dataCadastro"), Sort.Order.desc("idProduto"));
+
 
     // ===== CRUD BÁSICO =====
     
@@ -54,15 +89,15 @@ public ProdutoResponseDTO criar(ProdutoRequestDTO dto) {
     
     Produto produtoSalvo = produtoRepository.save(produto);
     log.info("Produto criado com ID: {}", produtoSalvo.getIdProduto());
+    catalogoCache.invalidarProduto(produtoSalvo.getIdProduto());
+    indiceBuscaProduto.reindexarAposCommit(produtoSalvo.getIdProduto());
     
-    // Associar categorias se fornecidas
+    // Associar categorias e marcas se fornecidas (um INSERT para cada lado)
     if (dto.getCategorias() != null && !dto.getCategorias().isEmpty()) {
-        associarCategorias(produtoSalvo.getIdProduto(), dto.getCategorias());
+        produtoLoteRepository.adicionarCategorias(List.of(produtoSalvo.getIdProduto()), dto.getCategorias());
     }
-    
-    // ✅ ADICIONE: Associar marcas se fornecidas
     if (dto.getMarcas() != null && !dto.getMarcas().isEmpty()) {
-        associarMarcas(produtoSalvo.getIdProduto(), dto.getMarcas());
+        produtoLoteRepository.adicionarMarcas(List.of(produtoSalvo.getIdProduto()), dto.getMarcas());
     }
     
     return mapToResponseDTO(produtoSalvo);
@@ -81,6 +116,8 @@ public ProdutoResponseDTO atualizar(Integer id, ProdutoRequestDTO dto) {
     Produto produto = produtoRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Produto não encontrado com ID: " + id));
     
+    Integer estoqueAnterior = produto.getQuantidadeEstoque();
+    boolean catalogoAlterado = !Objects.equals(produto.getNomeProduto(), dto.getNomeProduto());
     produto.setNomeProduto(dto.getNomeProduto());
     produto.setDescricao(dto.getDescricao());
     produto.setPreco(dto.getPreco());
@@ -88,43 +125,35 @@ public ProdutoResponseDTO atualizar(Integer id, ProdutoRequestDTO dto) {
     produto.setPrecoPromocional(dto.getPrecoPromocional());
     
     Produto produtoAtualizado = produtoRepository.save(produto);
+    catalogoCache.invalidarProduto(id);
+    indiceBuscaProduto.reindexarAposCommit(id);
+    estoqueService.estoqueRedefinido(id);
+    alertasEstoque.produtoRenomeado(id, dto.getNomeProduto());
+    alertasEstoque.verificar(id, estoqueAnterior, dto.getQuantidadeEstoque());
     log.info("✅ Produto básico atualizado");
     
-    // Atualizar categorias
+    // Atualizar categorias e marcas: só a diferença, um DELETE e um INSERT por lado.
+    // As associações são escritas via JDBC e relidas em SQL pela projecção,
+    // por isso já não é preciso flush/clear nem recarregar o produto.
     if (dto.getCategorias() != null && !dto.getCategorias().isEmpty()) {
-        log.info("🔄 Atualizando categorias...");
-        removerTodasCategorias(id);
-        entityManager.flush(); // ✅ FLUSH após deletar
-        entityManager.clear(); // ✅ LIMPAR cache
-        
-        log.info("   ❌ Categorias antigas removidas");
-        associarCategorias(id, dto.getCategorias());
-        entityManager.flush(); // ✅ FLUSH após inserir
-        entityManager.clear(); // ✅ LIMPAR cache
-        
-        log.info("   ✅ Novas categorias associadas: {}", dto.getCategorias());
+        int removidas = produtoLoteRepository.removerCategoriasExceto(id, dto.getCategorias());
+        int inseridas = produtoLoteRepository.adicionarCategorias(List.of(id), dto.getCategorias());
+        log.info("🔄 Categorias sincronizadas: -{} / +{}", removidas, inseridas);
+        catalogoAlterado |= removidas + inseridas > 0;
     }
     
-    // Atualizar marcas
     if (dto.getMarcas() != null && !dto.getMarcas().isEmpty()) {
-        log.info("🔄 Atualizando marcas...");
-        removerTodasMarcas(id);
-        entityManager.flush(); // ✅ FLUSH após deletar
-        entityManager.clear(); // ✅ LIMPAR cache
-        
-        log.info("   ❌ Marcas antigas removidas");
-        associarMarcas(id, dto.getMarcas());
-        entityManager.flush(); // ✅ FLUSH após inserir
-        entityManager.clear(); // ✅ LIMPAR cache
-        
-        log.info("   ✅ Novas marcas associadas: {}", dto.getMarcas());
+        int removidas = produtoLoteRepository.removerMarcasExceto(id, dto.getMarcas());
+        int inseridas = produtoLoteRepository.adicionarMarcas(List.of(id), dto.getMarcas());
+        log.info("🔄 Marcas sincronizadas: -{} / +{}", removidas, inseridas);
+        catalogoAlterado |= removidas + inseridas > 0;
+    }
+    if (catalogoAlterado) {
+        // Nome e associações ficam guardados nos dias fechados do dashboard
+        dashboardCache.invalidarProdutos(List.of(id));
     }
     
-    // ✅ BUSCAR O PRODUTO NOVAMENTE DO BANCO
-    Produto produtoFinal = produtoRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Produto não encontrado"));
-    
-    ProdutoResponseDTO response = mapToResponseDTO(produtoFinal);
+    ProdutoResponseDTO response = mapToResponseDTO(produtoAtualizado);
     log.info("📤 Resposta final:");
     log.info("   - Categorias: {}", response.getCategorias());
     log.info("   - Marcas: {}", response.getMarcas());
@@ -133,21 +162,6 @@ public ProdutoResponseDTO atualizar(Integer id, ProdutoRequestDTO dto) {
     return response;
 }
 
-private void associarMarcas(Integer idProduto, List<Integer> marcas) {
-    log.info("   📝 Associando {} marca(s) ao produto {}", marcas.size(), idProduto);
-    marcas.forEach(idMarca -> {
-        log.info("      - Associando marca ID: {}", idMarca);
-        associarMarca(idProduto, idMarca);
-    });
-}
-
-private void removerTodasMarcas(Integer idProduto) {
-    List<ProdutoMarca> associacoes = produtoMarcaRepository.findByIdProduto(idProduto);
-    associacoes.forEach(assoc -> 
-        produtoMarcaRepository.deleteByIdMarcaAndIdProduto(assoc.getIdMarca(), idProduto)
-    );
-}
-    
 @Transactional
 public void toggleAtivo(Integer id) {
     log.info("Alternando status de ativação do produto ID: {}", id);
@@ -158,6 +172,8 @@ public void toggleAtivo(Integer id) {
     // ✅ MUDANÇA: Comparação com Short
     produto.setAtivo(produto.getAtivo() == 1 ? (short) 0 : (short) 1);
     produtoRepository.save(produto);
+    catalogoCache.invalidarProduto(id);
+    indiceBuscaProduto.reindexarAposCommit(id);
     
     log.info("Produto ID {} agora está: {}", id, produto.getAtivo() == 1 ? "ATIVO" : "INATIVO");
 }
@@ -165,28 +181,183 @@ public void toggleAtivo(Integer id) {
     @Transactional(readOnly = true)
     public List<ProdutoResponseDTO> listar() {
         log.info("Listando todos os produtos");
-        return produtoRepository.findAll().stream()
-                .map(this::mapToResponseDTO)
-                .collect(Collectors.toList());
+        // Associações carregadas em lote — nº de queries fixo, qualquer que seja o catálogo
+        return produtoProjecaoService.projectar(produtoRepository.findAll());
     }
     
-@Transactional(readOnly = true)
+// Sem @Transactional: um acerto no cache não chega a abrir transacção nem conexão
 public List<ProdutoResponseDTO> listarAtivos() {
     log.info("Listando produtos ativos");
     // ✅ MUDANÇA: passar (short) 1
-    return produtoRepository.findByAtivo((short) 1).stream()
-            .map(this::mapToResponseDTO)
-            .collect(Collectors.toList());
+    return catalogoCache.obterAtivos(() ->
+            produtoProjecaoService.projectar(produtoRepository.findByAtivo((short) 1)));
 }
     
+    // ===== PAGINAÇÃO POR CURSOR (KEYSET) =====
+
+    /**
+     * Página do catálogo ordenada por (dataCadastro DESC, idProduto DESC).
+     *
+     * O cursor codifica a chave do último produto devolvido; a página seguinte
+     * começa imediatamente a seguir a essa chave, pelo que o custo é o mesmo
+     * na primeira página e na milésima (ao contrário de OFFSET).
+     */
     @Transactional(readOnly = true)
+    public ProdutoPaginaDTO listarPagina(String cursor, Integer limite,
+                                         Integer idCategoria, Integer idMarca, Short ativo,
+                                         BigDecimal precoMin, BigDecimal precoMax) {
+        int tamanho = (limite == null || limite <= 0)
+                ? LIMITE_PAGINA_PADRAO
+                : Math.min(limite, LIMITE_PAGINA_MAXIMO);
+
+        Specification<Produto> filtros = Specification.allOf(
+                ProdutoEspecificacoes.ativo(ativo),
+                ProdutoEspecificacoes.precoMinimo(precoMin),
+                ProdutoEspecificacoes.precoMaximo(precoMax),
+                ProdutoEspecificacoes.daCategoria(idCategoria),
+                ProdutoEspecificacoes.daMarca(idMarca));
+
+        Specification<Produto> consulta = filtros;
+        if (cursor != null && !cursor.isBlank()) {
+            CursorKeyset chave = CursorKeyset.decodificar(cursor);
+            consulta = filtros.and(ProdutoEspecificacoes.aposCursor(chave.data(), chave.id()));
+        }
+
+        // Busca um produto a mais só para saber se existe página seguinte
+        List<Produto> produtos = produtoRepository.findBy(consulta,
+                q -> q.sortBy(ORDEM_CATALOGO).limit(tamanho + 1).all());
+
+        boolean temMais = produtos.size() > tamanho;
+        if (temMais) {
+            produtos = produtos.subList(0, tamanho);
+        }
+
+        String proximoCursor = null;
+        if (temMais) {
+            Produto ultimo = produtos.get(produtos.size() - 1);
+            proximoCursor = new CursorKeyset(ultimo.getDataCadastro(), ultimo.getIdProduto()).codificar();
+        }
+
+        // Total só na primeira página: sem filtros usa a estimativa do PostgreSQL,
+        // com filtros faz COUNT uma única vez — as páginas seguintes não o pagam.
+        Long totalEstimado = null;
+        if (cursor == null || cursor.isBlank()) {
+            boolean semFiltros = idCategoria == null && idMarca == null && ativo == null
+                    && precoMin == null && precoMax == null;
+            if (semFiltros) {
+                totalEstimado = produtoRepository.estimarTotalProdutos();
+                // Sem estatísticas ainda (tabela nunca analisada): conta de verdade
+                if (totalEstimado == null || totalEstimado < 0) {
+                    totalEstimado = produtoRepository.count();
+                }
+            } else {
+                totalEstimado = produtoRepository.count(filtros);
+            }
+        }
+
+        log.info("Página do catálogo: {} produto(s) | temMais={}", produtos.size(), temMais);
+        return new ProdutoPaginaDTO(produtoProjecaoService.projectar(produtos),
+                proximoCursor, temMais, totalEstimado);
+    }
+
+    // Sem @Transactional: um acerto no cache não chega a abrir transacção nem conexão
     public ProdutoResponseDTO buscarPorId(Integer id) {
         log.info("Buscando produto por ID: {}", id);
-        Produto produto = produtoRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Produto não encontrado com ID: " + id));
-        return mapToResponseDTO(produto);
+        return catalogoCache.obterProduto(id, () -> {
+            Produto produto = produtoRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Produto não encontrado com ID: " + id));
+            return mapToResponseDTO(produto);
+        });
+    }
+    
+    // ===== BUSCA =====
+
+    /** Typeahead: responde do índice em memória, sem tocar na base de dados. */
+    public List<ProdutoBuscaResultadoDTO> buscar(String q, Integer limite, boolean incluirInativos) {
+        return indiceBuscaProduto.buscar(q, limite, incluirInativos);
+    }
+
+    public Map<String, Object> estatisticasCache() {
+        return catalogoCache.estatisticas();
     }
     
+    // ===== ESTOQUE BAIXO =====
+
+    /** Define o estoque mínimo do produto; null remove o alerta. */
+    @Transactional
+    public ProdutoEstoqueBaixoDTO definirEstoqueMinimo(Integer id, Integer estoqueMinimo) {
+        if (estoqueMinimo != null && estoqueMinimo < 0) {
+            throw new BusinessException("O estoque mínimo não pode ser negativo");
+        }
+        ProdutoEstoqueBaixoDTO produto = estoqueMinimoRepository.definir(id, estoqueMinimo);
+        if (produto == null) {
+            throw new ResourceNotFoundException("Produto não encontrado com ID: " + id);
+        }
+        alertasEstoque.limiarDefinido(id, produto.getNomeProduto(), estoqueMinimo);
+        log.info("Estoque mínimo do produto {} definido para {}", id, estoqueMinimo);
+        return produto;
+    }
+
+    /** Produtos activos no estoque mínimo ou abaixo dele, lidos do índice parcial. */
+    @Transactional(readOnly = true)
+    public List<ProdutoEstoqueBaixoDTO> listarEstoqueBaixo(Integer limite) {
+        int tamanho = (limite == null || limite <= 0)
+                ? LIMITE_ESTOQUE_BAIXO_PADRAO
+                : Math.min(limite, LIMITE_ESTOQUE_BAIXO_MAXIMO);
+        return estoqueMinimoRepository.listarEstoqueBaixo(tamanho);
+    }
+
+    public Map<String, Object> estatisticasAlertas() {
+        return alertasEstoque.estatisticas();
+    }
+    
+    // ===== REASSOCIAÇÃO EM LOTE =====
+
+    /**
+     * Acrescenta/retira categorias e marcas a N produtos de uma vez (ex.:
+     * reorganização de categorias). Cada lado é um único statement, qualquer
+     * que seja o nº de produtos.
+     */
+    @Transactional
+    public ReassociacaoResultadoDTO reassociar(ReassociacaoRequestDTO dto) {
+        Set<Integer> produtos = paraConjunto(dto.getProdutos());
+        Set<Integer> adicionarCategorias = paraConjunto(dto.getAdicionarCategorias());
+        Set<Integer> removerCategorias = paraConjunto(dto.getRemoverCategorias());
+        Set<Integer> adicionarMarcas = paraConjunto(dto.getAdicionarMarcas());
+        Set<Integer> removerMarcas = paraConjunto(dto.getRemoverMarcas());
+
+        if (produtos.isEmpty()) {
+            throw new BusinessException("Informe pelo menos um produto");
+        }
+        if (!Collections.disjoint(adicionarCategorias, removerCategorias)
+                || !Collections.disjoint(adicionarMarcas, removerMarcas)) {
+            throw new BusinessException("A mesma categoria/marca não pode ser adicionada e removida no mesmo pedido");
+        }
+        long encontrados = produtoRepository.countByIdProdutoIn(produtos);
+        if (encontrados != produtos.size()) {
+            throw new BusinessException((produtos.size() - encontrados) + " produto(s) não encontrado(s)");
+        }
+
+        log.info("Reassociando {} produto(s): categorias +{} -{} | marcas +{} -{}",
+                produtos.size(), adicionarCategorias, removerCategorias, adicionarMarcas, removerMarcas);
+
+        ReassociacaoResultadoDTO resultado = new ReassociacaoResultadoDTO(
+                produtos.size(),
+                produtoLoteRepository.adicionarCategorias(produtos, adicionarCategorias),
+                produtoLoteRepository.removerCategorias(produtos, removerCategorias),
+                produtoLoteRepository.adicionarMarcas(produtos, adicionarMarcas),
+                produtoLoteRepository.removerMarcas(produtos, removerMarcas));
+
+        catalogoCache.invalidarProdutos(produtos);
+        dashboardCache.invalidarProdutos(produtos);
+        indiceBuscaProduto.reindexarAposCommit(produtos);
+        return resultado;
+    }
+
+    private static Set<Integer> paraConjunto(List<Integer> ids) {
+        return ids == null ? new LinkedHashSet<>() : new LinkedHashSet<>(ids);
+    }
+
     // ===== ASSOCIAÇÕES COM CATEGORIAS =====
     
     @Transactional
@@ -208,6 +379,9 @@ public void associarCategoria(Integer idProduto, Integer idCategoria) {
     
     // ✅ MUDANÇA: saveAndFlush() em vez de save()
     produtoCategoriaRepository.saveAndFlush(pc);
+    catalogoCache.invalidarProduto(idProduto);
+    dashboardCache.invalidarProdutos(List.of(idProduto));
+    indiceBuscaProduto.reindexarAposCommit(idProduto);
     
     log.info("Categoria {} associada ao produto {} com sucesso", idCategoria, idProduto);
     log.info("🔍 DEBUG: Verificando se foi salvo...");
@@ -221,24 +395,12 @@ public void associarCategoria(Integer idProduto, Integer idCategoria) {
     public void desassociarCategoria(Integer idProduto, Integer idCategoria) {
         log.info("Desassociando categoria {} do produto {}", idCategoria, idProduto);
         produtoCategoriaRepository.deleteByIdCategoriaAndIdProduto(idCategoria, idProduto);
+        catalogoCache.invalidarProduto(idProduto);
+        dashboardCache.invalidarProdutos(List.of(idProduto));
+        indiceBuscaProduto.reindexarAposCommit(idProduto);
         log.info("Categoria {} desassociada do produto {} com sucesso", idCategoria, idProduto);
     }
     
- private void associarCategorias(Integer idProduto, List<Integer> categorias) {
-    log.info("   📝 Associando {} categoria(s) ao produto {}", categorias.size(), idProduto);
-    categorias.forEach(idCategoria -> {
-        log.info("      - Associando categoria ID: {}", idCategoria);
-        associarCategoria(idProduto, idCategoria);
-    });
-}
-
-    private void removerTodasCategorias(Integer idProduto) {
-        List<ProdutoCategoria> associacoes = produtoCategoriaRepository.findByIdProduto(idProduto);
-        associacoes.forEach(assoc -> 
-            produtoCategoriaRepository.deleteByIdCategoriaAndIdProduto(assoc.getIdCategoria(), idProduto)
-        );
-    }
-    
     @Transactional(readOnly = true)
     public List<Integer> listarCategoriasDoProduto(Integer idProduto) {
         log.info("Listando categorias do produto: {}", idProduto);
@@ -272,6 +434,8 @@ public void adicionarImagem(Integer idProduto, ProdutoImagemRequestDTO dto) {
     imagem.setImagemPrincipal(dto.getImagemPrincipal() != null ? dto.getImagemPrincipal() : (short) 0);
     
     produtoImagemRepository.save(imagem);
+    catalogoCache.invalidarProduto(idProduto);
+    indiceBuscaProduto.reindexarAposCommit(idProduto);
     log.info("Imagem adicionada ao produto {} com sucesso", idProduto);
 }
 
@@ -291,6 +455,8 @@ public void alterarImagemPrincipal(Integer idProduto, Integer idImagem) {
     // ✅ MUDANÇA: cast para Short
     imagem.setImagemPrincipal((short) 1);
     produtoImagemRepository.save(imagem);
+    catalogoCache.invalidarProduto(idProduto);
+    indiceBuscaProduto.reindexarAposCommit(idProduto);
     
     log.info("Imagem principal do produto {} alterada com sucesso", idProduto);
 }
@@ -298,6 +464,11 @@ public void alterarImagemPrincipal(Integer idProduto, Integer idImagem) {
 @Transactional
 public void removerImagem(Integer idImagem) {
     log.info("Removendo imagem ID: {}", idImagem);
+    produtoImagemRepository.findById(idImagem)
+            .ifPresent(imagem -> {
+                catalogoCache.invalidarProduto(imagem.getIdProduto());
+                indiceBuscaProduto.reindexarAposCommit(imagem.getIdProduto());
+            });
     produtoImagemRepository.deleteById(idImagem);
     log.info("Imagem {} removida com sucesso", idImagem);
 }
@@ -308,31 +479,9 @@ public List<ProdutoImagem> listarImagensDoProduto(Integer idProduto) {
     return produtoImagemRepository.findByIdProduto(idProduto);
 }
 
-// No mapToResponseDTO:
+// Mapeamento delegado ao ProdutoProjecaoService (mesma lógica das listagens)
 private ProdutoResponseDTO mapToResponseDTO(Produto produto) {
-    ProdutoResponseDTO dto = new ProdutoResponseDTO();
-    dto.setIdProduto(produto.getIdProduto());
-    dto.setNomeProduto(produto.getNomeProduto());
-    dto.setDescricao(produto.getDescricao());
-    dto.setPreco(produto.getPreco());
-    dto.setQuantidadeEstoque(produto.getQuantidadeEstoque());
-    dto.setPrecoPromocional(produto.getPrecoPromocional());
-    dto.setAtivo(produto.getAtivo());
-    dto.setDataCadastro(produto.getDataCadastro());
-    
-    // Buscar categorias associadas
-    List<Integer> categorias = listarCategoriasDoProduto(produto.getIdProduto());
-    dto.setCategorias(categorias);
-    
-    // ✅ ADICIONE ESTAS LINHAS: Buscar marcas associadas
-    List<Integer> marcas = listarMarcasDoProduto(produto.getIdProduto());
-    dto.setMarcas(marcas);
-    
-    // Buscar imagem principal
-    produtoImagemRepository.findByIdProdutoAndImagemPrincipal(produto.getIdProduto(), (short) 1)
-            .ifPresent(img -> dto.setImagemPrincipalUrl(img.getCaminhoImagem()));
-    
-    return dto;
+    return produtoProjecaoService.projectar(produto);
 }
 
 // ===== ASSOCIAÇÕES COM MARCAS =====
@@ -356,6 +505,9 @@ public void associarMarca(Integer idProduto, Integer idMarca) {
     
     // ✅ MUDANÇA: saveAndFlush() em vez de save()
     produtoMarcaRepository.saveAndFlush(pm);
+    catalogoCache.invalidarProduto(idProduto);
+    dashboardCache.invalidarProdutos(List.of(idProduto));
+    indiceBuscaProduto.reindexarAposCommit(idProduto);
     
     log.info("Marca {} associada ao produto {} com sucesso", idMarca, idProduto);
     log.info("🔍 DEBUG: Verificando se foi salvo...");
@@ -369,6 +521,9 @@ public void associarMarca(Integer idProduto, Integer idMarca) {
 public void desassociarMarca(Integer idProduto, Integer idMarca) {
     log.info("Desassociando marca {} do produto {}", idMarca, idProduto);
     produtoMarcaRepository.deleteByIdMarcaAndIdProduto(idMarca, idProduto);
+    catalogoCache.invalidarProduto(idProduto);
+    dashboardCache.invalidarProdutos(List.of(idProduto));
+    indiceBuscaProduto.reindexarAposCommit(idProduto);
     log.info("Marca {} desassociada do produto {} com sucesso", idMarca, idProduto);
 }
 
@@ -0,0 +1,33 @@
+-- ===================================
+-- DIÁRIO DE MOVIMENTOS DE ESTOQUE
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL e reiniciar a aplicação. Enquanto não
+-- for executado o diário arranca desligado (aviso no log) e a reconciliação
+-- do livro de estoque trata qualquer movimento como acerto manual.
+
+-- Movimentos gerados pelos pedidos e pelo checkout do carrinho.
+-- origem NULL = movimento registado pela API (acerto manual).
+ALTER TABLE movimento_estoque ADD COLUMN IF NOT EXISTS id_pedido INTEGER;
+ALTER TABLE movimento_estoque ADD COLUMN IF NOT EXISTS origem VARCHAR(20);
+
+CREATE INDEX IF NOT EXISTS idx_movimento_estoque_pedido
+    ON movimento_estoque (id_pedido)
+    WHERE id_pedido IS NOT NULL;
+
+-- Modo outbox (estoque.diario.modo=outbox): os movimentos são gravados aqui
+-- na transacção do pedido e passados em lote para movimento_estoque.
+-- Sem índices além da PK, para a escrita na transacção ser barata.
+CREATE TABLE IF NOT EXISTS movimento_estoque_pendente (
+    id_pendente         BIGSERIAL   PRIMARY KEY,
+    id_produto          INTEGER     NOT NULL,
+    id_usuario          INTEGER     NOT NULL,
+    id_pedido           INTEGER,
+    origem              VARCHAR(20),
+    tipo_movimento      VARCHAR(20) NOT NULL,
+    quantidade          INTEGER     NOT NULL,
+    quantidade_anterior INTEGER     NOT NULL,
+    quantidade_nova     INTEGER     NOT NULL,
+    motivo              TEXT,
+    data_movimento      TIMESTAMP   NOT NULL
+);
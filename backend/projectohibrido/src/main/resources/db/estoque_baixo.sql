@@ -0,0 +1,20 @@
+-- ===================================
+-- ESTOQUE BAIXO
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de subir esta versão.
+
+-- Limiar de reposição por produto (PUT /api/produtos/{id}/estoque-minimo).
+-- NULL = produto sem alerta. Não está mapeado na entidade Produto: é lido e
+-- escrito via JDBC (EstoqueMinimoRepository).
+ALTER TABLE produto ADD COLUMN IF NOT EXISTS estoque_minimo INTEGER
+    CHECK (estoque_minimo IS NULL OR estoque_minimo >= 0);
+
+-- GET /api/produtos/estoque-baixo: índice parcial que só contém os produtos
+-- activos no limiar ou abaixo dele. Fica pequeno (só os que precisam de
+-- reposição) e a listagem não percorre o catálogo.
+CREATE INDEX IF NOT EXISTS idx_produto_estoque_baixo
+    ON produto (quantidade_estoque, id_produto)
+    WHERE estoque_minimo IS NOT NULL
+      AND quantidade_estoque <= estoque_minimo
+      AND ativo = 1;
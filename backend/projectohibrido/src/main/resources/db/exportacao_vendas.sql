@@ -0,0 +1,11 @@
+-- ===================================
+-- EXPORTAÇÃO DE VENDAS
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de subir esta versão.
+
+-- GET /api/v1/dashboard/exportacao/vendas percorre o período por
+-- data_pedido, id_pedido: com este índice o cursor começa a devolver
+-- linhas de imediato, sem ordenar o período inteiro antes
+CREATE INDEX IF NOT EXISTS idx_pedido_data_id
+    ON pedido (data_pedido, id_pedido);
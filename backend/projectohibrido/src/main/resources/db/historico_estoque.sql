@@ -0,0 +1,17 @@
+-- ===================================
+-- HISTÓRICO DE MOVIMENTOS DE ESTOQUE
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de subir esta versão.
+
+-- Consultas por período (GET /api/movimentos_estoque/periodo e /pagina com
+-- inicio/fim): range scan em data_movimento, com o filtro de produto
+-- resolvido no próprio índice.
+CREATE INDEX IF NOT EXISTS idx_movimento_estoque_data_produto
+    ON movimento_estoque (data_movimento, id_produto);
+
+-- Histórico de um só produto e último movimento de cada produto até uma data
+-- (LATERAL do SnapshotEstoqueRepository). Também criado por
+-- db/livro_estoque.sql; IF NOT EXISTS deixa correr os dois em qualquer ordem.
+CREATE INDEX IF NOT EXISTS idx_movimento_estoque_produto_data
+    ON movimento_estoque (id_produto, data_movimento);
@@ -0,0 +1,17 @@
+-- ===================================
+-- ÍNDICES DO CATÁLOGO DE PRODUTOS
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de subir esta versão.
+
+-- Paginação por cursor (GET /api/produtos/pagina):
+-- ORDER BY data_cadastro DESC, id_produto DESC + "data_cadastro <= :cursor"
+CREATE INDEX IF NOT EXISTS idx_produto_data_cadastro_id
+    ON produto (data_cadastro DESC, id_produto DESC);
+
+-- Filtros por categoria / marca (EXISTS por produto)
+CREATE INDEX IF NOT EXISTS idx_produto_categoria_categoria
+    ON produto_categoria (id_categoria, id_produto);
+
+CREATE INDEX IF NOT EXISTS idx_produto_marca_marca
+    ON produto_marca (id_marca, id_produto);
@@ -0,0 +1,24 @@
+-- ===================================
+-- LIVRO DE ESTOQUE EM MEMÓRIA
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de activar estoque.livro.activo=true.
+
+-- Ponto de partida de cada produto servido pelo livro: estoque gravado e
+-- total vendido (itens de pedidos não cancelados) lidos no mesmo instante.
+-- As linhas existem só enquanto o livro está em uso; se sobrarem no arranque
+-- a aplicação terminou sem gravar tudo e o estoque é reconciliado.
+CREATE TABLE IF NOT EXISTS estoque_livro_checkpoint (
+    id_produto         INTEGER   PRIMARY KEY REFERENCES produto (id_produto) ON DELETE CASCADE,
+    quantidade_estoque INTEGER   NOT NULL,
+    vendido            BIGINT    NOT NULL,
+    data_checkpoint    TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- Total vendido por produto (checkpoint e reconciliação)
+CREATE INDEX IF NOT EXISTS idx_item_pedido_produto
+    ON item_pedido (id_produto);
+
+-- Acertos manuais posteriores ao checkpoint
+CREATE INDEX IF NOT EXISTS idx_movimento_estoque_produto_data
+    ON movimento_estoque (id_produto, data_movimento);
@@ -0,0 +1,14 @@
+-- ===================================
+-- RANKING DE PRODUTOS (DASHBOARD)
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de subir esta versão.
+-- Requer db/resumos_vendas.sql.
+
+-- Ranking filtrado por origem do pedido (lido de pedido/item_pedido, porque
+-- os resumos diários não guardam a origem)
+CREATE INDEX IF NOT EXISTS idx_pedido_origem_data
+    ON pedido (idtipo_origem_pedido, data_pedido);
+
+CREATE INDEX IF NOT EXISTS idx_item_pedido_pedido
+    ON item_pedido (id_pedido);
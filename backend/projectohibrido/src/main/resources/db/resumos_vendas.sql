@@ -0,0 +1,50 @@
+-- ===================================
+-- RESUMOS DIÁRIOS DE VENDAS (DASHBOARD)
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de subir esta versão.
+--
+-- Contam os pedidos com status fora de ('cancelado', 'por finalizar'), pelo dia
+-- de data_pedido. A aplicação mantém-nos ao criar a partir do carrinho, editar,
+-- finalizar e cancelar pedidos. Para recalcular tudo:
+-- POST /api/v1/dashboard/resumos/reconstruir (ou o preenchimento inicial abaixo).
+
+-- Dia × produto: top produtos, produtos não vendidos e, juntando às
+-- associações, vendas por categoria e por marca
+CREATE TABLE IF NOT EXISTS venda_diaria_produto (
+    dia        DATE           NOT NULL,
+    id_produto INTEGER        NOT NULL REFERENCES produto (id_produto) ON DELETE CASCADE,
+    quantidade BIGINT         NOT NULL DEFAULT 0,
+    receita    NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    pedidos    INTEGER        NOT NULL DEFAULT 0,
+    PRIMARY KEY (dia, id_produto)
+);
+
+CREATE INDEX IF NOT EXISTS idx_venda_diaria_produto_produto
+    ON venda_diaria_produto (id_produto, dia);
+
+-- Dia × utilizador: evolução de vendas (soma por dia) e desempenho por utilizador
+CREATE TABLE IF NOT EXISTS venda_diaria_usuario (
+    dia        DATE           NOT NULL,
+    id_usuario INTEGER        NOT NULL,
+    pedidos    INTEGER        NOT NULL DEFAULT 0,
+    receita    NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (dia, id_usuario)
+);
+
+-- Preenchimento inicial a partir do histórico
+INSERT INTO venda_diaria_produto (dia, id_produto, quantidade, receita, pedidos)
+SELECT pe.data_pedido::date, ip.id_produto,
+       SUM(ip.quantidade), SUM(ip.subtotal), COUNT(DISTINCT pe.id_pedido)
+  FROM pedido pe
+  JOIN item_pedido ip ON ip.id_pedido = pe.id_pedido
+ WHERE pe.status_pedido NOT IN ('cancelado', 'por finalizar')
+ GROUP BY pe.data_pedido::date, ip.id_produto
+ON CONFLICT (dia, id_produto) DO NOTHING;
+
+INSERT INTO venda_diaria_usuario (dia, id_usuario, pedidos, receita)
+SELECT pe.data_pedido::date, pe.id_usuario, COUNT(*), SUM(pe.total)
+  FROM pedido pe
+ WHERE pe.status_pedido NOT IN ('cancelado', 'por finalizar')
+ GROUP BY pe.data_pedido::date, pe.id_usuario
+ON CONFLICT (dia, id_usuario) DO NOTHING;
@@ -0,0 +1,24 @@
+-- ===================================
+-- SNAPSHOTS DE ESTOQUE (ESTOQUE NUMA DATA)
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de subir esta versão.
+
+-- Preço de custo actual, para a valorização do inventário (null = sem custo)
+ALTER TABLE produto ADD COLUMN IF NOT EXISTS preco_custo NUMERIC(10, 2);
+
+-- Estoque de cada produto num instante (estoque.snapshot.cron, por omissão
+-- uma vez por dia). O estoque numa data D é o do snapshot ou movimento mais
+-- recente até D: ver InventarioService.
+CREATE TABLE IF NOT EXISTS estoque_snapshot (
+    id_produto    INTEGER   NOT NULL REFERENCES produto (id_produto) ON DELETE CASCADE,
+    data_snapshot TIMESTAMP NOT NULL,
+    quantidade    INTEGER   NOT NULL,
+    PRIMARY KEY (id_produto, data_snapshot)
+);
+
+-- Primeiro snapshot: estoque actual
+INSERT INTO estoque_snapshot (id_produto, data_snapshot, quantidade)
+SELECT id_produto, now(), quantidade_estoque
+  FROM produto
+ON CONFLICT DO NOTHING;
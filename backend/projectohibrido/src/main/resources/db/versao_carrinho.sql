@@ -0,0 +1,12 @@
+-- ===================================
+-- VERSÃO DO CARRINHO
+-- ===================================
+-- O schema é gerido fora da aplicação (spring.jpa.hibernate.ddl-auto=validate).
+-- Executar manualmente no PostgreSQL antes de subir esta versão.
+
+-- Avança a cada alteração do carrinho (itens, mesclagem, associação,
+-- conversão). O cliente envia a versão que conhece (header X-Cart-Version)
+-- e recebe só as linhas alteradas; se a versão já mudou responde 409.
+-- Não está mapeada na entidade Carrinho: é lida e escrita via JDBC
+-- (CarrinhoVersaoRepository). Carrinhos existentes começam em 0.
+ALTER TABLE carrinho ADD COLUMN IF NOT EXISTS versao BIGINT NOT NULL DEFAULT 0;
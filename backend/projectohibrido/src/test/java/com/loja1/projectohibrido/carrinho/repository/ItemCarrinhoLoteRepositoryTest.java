@@ -0,0 +1,122 @@
+package com.loja1.projectohibrido.carrinho.repository;
+
+import com.loja1.projectohibrido.carrinho.entity.ItemCarrinho;
+import com.loja1.projectohibrido.produto.entity.Produto;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class ItemCarrinhoLoteRepositoryTest {
+
+    private static final int CARRINHO = 7;
+
+    /** Produtos de cada INSERT executado, pela ordem dos parâmetros. */
+    private final List<List<Integer>> statements = new ArrayList<>();
+    private final ItemCarrinhoLoteRepository repositorio = new ItemCarrinhoLoteRepository(postgresSimulado());
+
+    @Test
+    void idsSaoAssociadosPeloProdutoEmQualquerOrdemDoReturning() {
+        List<ItemCarrinho> itens = List.of(item(5), item(6), item(7));
+
+        repositorio.inserir(CARRINHO, itens);
+
+        assertEquals(1, statements.size());
+        for (ItemCarrinho item : itens) {
+            assertEquals(idGerado(item.getProduto().getIdProduto()), item.getIdItemCarrinho());
+        }
+    }
+
+    @Test
+    void produtoRepetidoVaiParaOutroStatement() {
+        List<ItemCarrinho> itens = List.of(item(5), item(6), item(5));
+
+        repositorio.inserir(CARRINHO, itens);
+
+        assertEquals(List.of(List.of(5, 6), List.of(5)), statements);
+        assertEquals(idGerado(5), itens.get(0).getIdItemCarrinho());
+        assertEquals(idGerado(5), itens.get(2).getIdItemCarrinho());
+    }
+
+    @Test
+    void acimaDoLimiteDeParametrosDivideEmVariosStatements() {
+        List<ItemCarrinho> itens = new ArrayList<>();
+        for (int id = 1; id <= 7_501; id++) itens.add(item(id));
+
+        repositorio.inserir(CARRINHO, itens);
+
+        assertEquals(List.of(7_500, 1), statements.stream().map(List::size).toList());
+        assertTrue(itens.stream().allMatch(i -> i.getIdItemCarrinho() == idGerado(i.getProduto().getIdProduto())));
+    }
+
+    @Test
+    void semItensNaoExecutaNada() {
+        repositorio.inserir(CARRINHO, List.of());
+
+        assertTrue(statements.isEmpty());
+    }
+
+    // ───────────────────────── Auxiliares ─────────────────────────
+
+    private static int idGerado(int idProduto) {
+        return 1000 + idProduto;
+    }
+
+    private static ItemCarrinho item(int idProduto) {
+        Produto produto = new Produto();
+        produto.setIdProduto(idProduto);
+        return new ItemCarrinho(null, null, produto, 1, BigDecimal.ONE);
+    }
+
+    /**
+     * INSERT ... RETURNING simulado: lê os parâmetros (4 por linha, o
+     * id_produto é o 2.º) e devolve as linhas pela ordem inversa.
+     */
+    private JdbcTemplate postgresSimulado() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(chamada -> {
+            String sql = chamada.getArgument(0);
+            assertTrue(sql.endsWith("RETURNING id_item_carrinho, id_produto"), sql);
+            Map<Integer, Integer> produtoPorParametro = new TreeMap<>();
+            PreparedStatement ps = mock(PreparedStatement.class, withSettings().stubOnly());
+            doAnswer(c -> {
+                int indice = c.getArgument(0);
+                if (indice % 4 == 2) produtoPorParametro.put(indice, c.getArgument(1));
+                return null;
+            }).when(ps).setInt(anyInt(), anyInt());
+            chamada.<PreparedStatementSetter>getArgument(1).setValues(ps);
+            List<Integer> produtos = List.copyOf(produtoPorParametro.values());
+            statements.add(produtos);
+
+            ResultSet linha = mock(ResultSet.class, withSettings().stubOnly());
+            int[] colunas = new int[2];
+            when(linha.getInt(anyInt())).thenAnswer(c -> colunas[c.<Integer>getArgument(0) - 1]);
+            RowCallbackHandler linhas = chamada.getArgument(2);
+            for (Integer idProduto : produtos.reversed()) {
+                colunas[0] = idGerado(idProduto);
+                colunas[1] = idProduto;
+                linhas.processRow(linha);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+        return jdbcTemplate;
+    }
+}
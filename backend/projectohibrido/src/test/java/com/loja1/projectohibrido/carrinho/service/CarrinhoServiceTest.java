@@ -0,0 +1,331 @@
+package com.loja1.projectohibrido.carrinho.service;
+
+import com.loja1.projectohibrido.carrinho.dto.AdicionarItemRequest;
+import com.loja1.projectohibrido.carrinho.dto.AtualizarQuantidadeRequest;
+import com.loja1.projectohibrido.carrinho.dto.CarrinhoDTO;
+import com.loja1.projectohibrido.carrinho.dto.CarrinhoDeltaDTO;
+import com.loja1.projectohibrido.carrinho.dto.LoteItensRequest;
+import com.loja1.projectohibrido.carrinho.dto.OperacaoItemRequest;
+import com.loja1.projectohibrido.carrinho.entity.Carrinho;
+import com.loja1.projectohibrido.carrinho.entity.ItemCarrinho;
+import com.loja1.projectohibrido.carrinho.exception.CarrinhoVersaoConflitoException;
+import com.loja1.projectohibrido.carrinho.exception.EstoqueInsuficienteException;
+import com.loja1.projectohibrido.carrinho.exception.ItemCarrinhoNotFoundException;
+import com.loja1.projectohibrido.carrinho.repository.CarrinhoRepository;
+import com.loja1.projectohibrido.carrinho.repository.CarrinhoVersaoRepository;
+import com.loja1.projectohibrido.carrinho.repository.ItemCarrinhoLoteRepository;
+import com.loja1.projectohibrido.carrinho.repository.ItemCarrinhoRepository;
+import com.loja1.projectohibrido.config.EsquemaBaseDados;
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
+import com.loja1.projectohibrido.produto.entity.Produto;
+import com.loja1.projectohibrido.produto.repository.ProdutoImagemRepository;
+import com.loja1.projectohibrido.produto.repository.ProdutoRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CarrinhoServiceTest {
+
+    private static final int CARRINHO = 7;
+
+    /** Estado da "base de dados". */
+    private boolean colunaVersao = true;
+    private long versao = 3;
+    private final List<String> sqlVersao = new ArrayList<>();
+    private final Map<Integer, Produto> produtos = new HashMap<>();
+    private final Carrinho carrinho = new Carrinho();
+    private boolean carrinhoEliminado;
+
+    /** Escritas em lote pedidas pelo serviço. */
+    private final List<Integer> removidos = new ArrayList<>();
+    private final List<ItemCarrinho> actualizados = new ArrayList<>();
+    private final List<ItemCarrinho> inseridos = new ArrayList<>();
+
+    private final CarrinhoService servico;
+
+    CarrinhoServiceTest() {
+        produto(1, "10.00", 50);
+        produto(2, "5.00", 50);
+        produto(3, "2.50", 4);
+        carrinho.setIdCarrinho(CARRINHO);
+        carrinho.setStatus("activo");
+        carrinho.getItens().add(item(100, 1, 2));
+        carrinho.getItens().add(item(101, 2, 1));
+
+        EsquemaBaseDados esquema = new EsquemaBaseDados(null) {
+            @Override
+            public boolean temColuna(String tabela, String coluna) {
+                return colunaVersao && tabela.equals("carrinho") && coluna.equals("versao");
+            }
+        };
+        servico = new CarrinhoService(carrinhoRepositorio(), new CarrinhoVersaoRepository(versoes(), esquema),
+                itemRepositorio(), loteRepositorio(), produtoRepositorio(),
+                mock(ProdutoImagemRepository.class), new CatalogoCache(100, 60), null, null,
+                mock(EntityManager.class));
+    }
+
+    // ───────────────────────── Versão do carrinho ─────────────────────────
+
+    @Test
+    void semAColunaVersaoAsAlteracoesFuncionamSemVersao() {
+        colunaVersao = false;
+
+        CarrinhoDTO dto = servico.adicionarOuAtualizarItem(CARRINHO, adicionar(1, 1));
+
+        assertFalse(servico.versoesActivas());
+        assertNull(dto.getVersao());
+        assertEquals(3, dto.getItens().get(0).getQuantidade());
+        assertTrue(sqlVersao.isEmpty(), "nenhum SQL sobre carrinho.versao: " + sqlVersao);
+    }
+
+    @Test
+    void alteracaoSemVersaoDoClienteAvancaAVersao() {
+        CarrinhoDTO dto = servico.adicionarOuAtualizarItem(CARRINHO, adicionar(1, 1));
+
+        assertTrue(servico.versoesActivas());
+        assertEquals(4L, dto.getVersao());
+    }
+
+    @Test
+    void versaoDesactualizadaDa409SemAlterarOCarrinho() {
+        CarrinhoVersaoConflitoException conflito = assertThrows(CarrinhoVersaoConflitoException.class,
+                () -> servico.atualizarQuantidade(CARRINHO, 2, quantidade(4), 2));
+
+        assertEquals(3L, conflito.getVersaoActual());
+        assertEquals(3, versao);
+        assertEquals(1, carrinho.getItens().get(1).getQuantidade());
+    }
+
+    // ───────────────────────── Modo delta ─────────────────────────
+
+    @Test
+    void deltaTrazSoALinhaAlteradaEOTotalDeTodas() {
+        CarrinhoDeltaDTO delta = servico.atualizarQuantidade(CARRINHO, 2, quantidade(4), 3);
+
+        assertEquals(4L, delta.getVersao());
+        assertEquals(List.of(2), delta.getItensAlterados().stream().map(i -> i.getIdProduto()).toList());
+        assertEquals(2, delta.getQuantidadeItens());
+        assertEquals(new BigDecimal("40.00"), delta.getTotalCarrinho());   // 20 + 20
+    }
+
+    @Test
+    void deltaDaRemocaoTrazOProdutoRemovido() {
+        CarrinhoDeltaDTO delta = servico.removerItem(CARRINHO, 2, 3);
+
+        assertEquals(4L, delta.getVersao());
+        assertEquals(List.of(), delta.getItensAlterados());
+        assertEquals(List.of(2), delta.getProdutosRemovidos());
+        assertEquals(1, delta.getQuantidadeItens());
+        assertFalse(delta.isCarrinhoEliminado());
+    }
+
+    @Test
+    void removerOUltimoItemEliminaOCarrinho() {
+        servico.removerItem(CARRINHO, 2, 3);
+        CarrinhoDeltaDTO delta = servico.removerItem(CARRINHO, 1, 4);
+
+        assertTrue(delta.isCarrinhoEliminado());
+        assertNull(delta.getVersao());
+        assertTrue(carrinhoEliminado);
+    }
+
+    // ───────────────────────── Operações em lote ─────────────────────────
+
+    @Test
+    void semAColunaVersaoOLoteFuncionaSemVersao() {
+        colunaVersao = false;
+
+        CarrinhoDTO dto = servico.aplicarLote(CARRINHO, lote(new OperacaoItemRequest("atualizar", 2, 4)));
+
+        assertNull(dto.getVersao());
+        assertEquals(List.of(101), actualizados.stream().map(ItemCarrinho::getIdItemCarrinho).toList());
+        assertTrue(sqlVersao.isEmpty());
+    }
+
+    @Test
+    void loteComVersaoDesactualizadaNaoGravaNada() {
+        assertThrows(CarrinhoVersaoConflitoException.class, () -> servico.aplicarLote(CARRINHO,
+                lote(new OperacaoItemRequest("atualizar", 2, 4)), 2));
+
+        assertTrue(actualizados.isEmpty() && inseridos.isEmpty() && removidos.isEmpty());
+    }
+
+    @Test
+    void loteEmDeltaTrazSoAsLinhasAlteradasEOTotalDeTodas() {
+        CarrinhoDeltaDTO delta = servico.aplicarLote(CARRINHO,
+                lote(new OperacaoItemRequest("adicionar", 3, 2)), 3);
+
+        assertEquals(4L, delta.getVersao());
+        assertEquals(List.of(3), delta.getItensAlterados().stream().map(i -> i.getIdProduto()).toList());
+        assertEquals(List.of(), delta.getProdutosRemovidos());
+        assertEquals(3, delta.getQuantidadeItens());
+        assertEquals(new BigDecimal("30.00"), delta.getTotalCarrinho());   // 20 + 5 + 5
+    }
+
+    @Test
+    void loteAplicaAsOperacoesPorOrdemComUmaEscritaPorTipo() {
+        CarrinhoDeltaDTO delta = servico.aplicarLote(CARRINHO, lote(
+                new OperacaoItemRequest("adicionar", 1, 3),     // 2 + 3
+                new OperacaoItemRequest("remover", 2, null),
+                new OperacaoItemRequest("adicionar", 3, 1),
+                new OperacaoItemRequest("atualizar", 3, 4),
+                new OperacaoItemRequest("remover", 1, null),
+                new OperacaoItemRequest("adicionar", 1, 1)),    // removido e voltou: mesma linha
+                3);
+
+        assertEquals(List.of(2), removidos);
+        assertEquals(List.of(100), actualizados.stream().map(ItemCarrinho::getIdItemCarrinho).toList());
+        assertEquals(1, actualizados.get(0).getQuantidade());
+        assertEquals(List.of(3), inseridos.stream().map(i -> i.getProduto().getIdProduto()).toList());
+        assertEquals(4, inseridos.get(0).getQuantidade());
+        assertEquals(new BigDecimal("10.00"), inseridos.get(0).getSubtotal());
+        assertEquals(List.of(2), delta.getProdutosRemovidos());
+        assertEquals(2, delta.getQuantidadeItens());
+    }
+
+    @Test
+    void loteQueEsvaziaOCarrinhoEliminaO() {
+        CarrinhoDeltaDTO delta = servico.aplicarLote(CARRINHO, lote(
+                new OperacaoItemRequest("remover", 1, null),
+                new OperacaoItemRequest("remover", 2, null)), 3);
+
+        assertTrue(delta.isCarrinhoEliminado());
+        assertNull(delta.getVersao());
+        assertTrue(carrinhoEliminado);
+        assertEquals(List.of(1, 2), removidos);
+    }
+
+    @Test
+    void estoqueValidadoSobreAQuantidadeFinalSemGravarNada() {
+        // 3 + 2 = 5 > 4 em estoque, mesmo com cada operação abaixo do limite
+        assertThrows(EstoqueInsuficienteException.class, () -> servico.aplicarLote(CARRINHO, lote(
+                new OperacaoItemRequest("adicionar", 3, 3),
+                new OperacaoItemRequest("adicionar", 3, 2))));
+
+        assertTrue(actualizados.isEmpty() && inseridos.isEmpty() && removidos.isEmpty());
+    }
+
+    @Test
+    void atualizarProdutoForaDoCarrinhoFalha() {
+        assertThrows(ItemCarrinhoNotFoundException.class, () -> servico.aplicarLote(CARRINHO,
+                lote(new OperacaoItemRequest("atualizar", 3, 1))));
+        assertTrue(inseridos.isEmpty());
+    }
+
+    // ───────────────────────── Auxiliares ─────────────────────────
+
+    private void produto(int id, String preco, int estoque) {
+        Produto produto = new Produto();
+        produto.setIdProduto(id);
+        produto.setNomeProduto("Produto " + id);
+        produto.setPreco(new BigDecimal(preco));
+        produto.setQuantidadeEstoque(estoque);
+        produtos.put(id, produto);
+    }
+
+    private ItemCarrinho item(int idItem, int idProduto, int quantidade) {
+        Produto produto = produtos.get(idProduto);
+        return new ItemCarrinho(idItem, carrinho, produto, quantidade,
+                produto.getPreco().multiply(BigDecimal.valueOf(quantidade)));
+    }
+
+    private static AdicionarItemRequest adicionar(int idProduto, int quantidade) {
+        AdicionarItemRequest req = new AdicionarItemRequest();
+        req.setIdProduto(idProduto);
+        req.setQuantidade(quantidade);
+        return req;
+    }
+
+    private static LoteItensRequest lote(OperacaoItemRequest... operacoes) {
+        return new LoteItensRequest(List.of(operacoes));
+    }
+
+    private static AtualizarQuantidadeRequest quantidade(int quantidade) {
+        AtualizarQuantidadeRequest req = new AtualizarQuantidadeRequest();
+        req.setQuantidade(quantidade);
+        return req;
+    }
+
+    /** carrinho.versao em memória, pelos mesmos statements do repositório. */
+    private JdbcTemplate versoes() {
+        return new JdbcTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> List<T> queryForList(String sql, Class<T> tipo, Object... args) {
+                sqlVersao.add(sql);
+                if (sql.contains("AND versao = ?") && (Long) args[1] != versao) return List.of();
+                if (sql.startsWith("UPDATE")) versao++;
+                return (List<T>) List.of(versao);
+            }
+        };
+    }
+
+    /** Só o que o serviço usa nestes fluxos; os itens ficam no carrinho em memória. */
+    private CarrinhoRepository carrinhoRepositorio() {
+        CarrinhoRepository repositorio = mock(CarrinhoRepository.class);
+        when(repositorio.findByIdWithItens(CARRINHO)).thenReturn(Optional.of(carrinho));
+        when(repositorio.save(any(Carrinho.class))).thenAnswer(chamada -> chamada.getArgument(0));
+        doAnswer(chamada -> carrinhoEliminado = true).when(repositorio).delete(any(Carrinho.class));
+        doAnswer(chamada -> carrinhoEliminado = true).when(repositorio).deleteById(anyInt());
+        return repositorio;
+    }
+
+    private ProdutoRepository produtoRepositorio() {
+        ProdutoRepository repositorio = mock(ProdutoRepository.class);
+        when(repositorio.findById(anyInt()))
+                .thenAnswer(chamada -> Optional.ofNullable(produtos.get(chamada.<Integer>getArgument(0))));
+        when(repositorio.findAllById(any())).thenAnswer(chamada ->
+                StreamSupport.stream(chamada.<Iterable<Integer>>getArgument(0).spliterator(), false)
+                        .map(produtos::get).filter(p -> p != null).toList());
+        return repositorio;
+    }
+
+    /** A remoção de um produto apaga sempre uma linha. */
+    private static ItemCarrinhoRepository itemRepositorio() {
+        ItemCarrinhoRepository repositorio = mock(ItemCarrinhoRepository.class);
+        when(repositorio.deleteByCarrinhoAndProduto(anyInt(), anyInt())).thenReturn(1);
+        return repositorio;
+    }
+
+    /** Regista as escritas; os inseridos recebem IDs a partir de 200. */
+    private ItemCarrinhoLoteRepository loteRepositorio() {
+        return new ItemCarrinhoLoteRepository(null) {
+            @Override
+            public void inserir(Integer idCarrinho, List<ItemCarrinho> itens) {
+                itens.forEach(i -> i.setIdItemCarrinho(200 + inseridos.size()));
+                inseridos.addAll(itens);
+            }
+
+            @Override
+            public void atualizar(List<ItemCarrinho> itens) {
+                actualizados.addAll(itens);
+            }
+
+            @Override
+            public int remover(Integer idCarrinho, Collection<Integer> idsProdutos) {
+                removidos.addAll(idsProdutos);
+                return idsProdutos.size();
+            }
+        };
+    }
+}
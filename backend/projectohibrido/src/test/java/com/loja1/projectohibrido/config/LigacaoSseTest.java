@@ -0,0 +1,119 @@
+package com.loja1.projectohibrido.config;
+
+import com.loja1.projectohibrido.suporte.EmitterDeTeste;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.loja1.projectohibrido.suporte.Esperas.esperarAte;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LigacaoSseTest {
+
+    private final AtomicInteger envios = new AtomicInteger();
+    private final AtomicInteger fechos = new AtomicInteger();
+
+    @Test
+    void eventosChegamPelaOrdemDePublicacao() {
+        EmitterDeTeste emitter = new EmitterDeTeste();
+        LigacaoSse ligacao = ligacao(emitter, 100);
+
+        for (int i = 0; i < 50; i++) {
+            String dados = String.valueOf(i);
+            ligacao.enviar(() -> SseEmitter.event().data(dados));
+        }
+
+        esperarAte(() -> emitter.total() == 50);
+        List<Object> esperado = new ArrayList<>();
+        for (int i = 0; i < 50; i++) esperado.add(String.valueOf(i));
+        assertEquals(esperado, emitter.dados());
+        assertEquals(50, envios.get());
+    }
+
+    @Test
+    void clienteLentoNaoAtrasaQuemPublicaNemOsOutros() {
+        EmitterDeTeste lento = new EmitterDeTeste();
+        lento.bloquear();
+        EmitterDeTeste rapido = new EmitterDeTeste();
+        List<LigacaoSse> ligacoes = List.of(ligacao(lento, 100), ligacao(rapido, 100));
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            String dados = String.valueOf(i);
+            ligacoes.forEach(l -> l.enviar(() -> SseEmitter.event().data(dados)));
+        }
+        long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+
+        assertTrue(duracaoMs < 200, "a publicação esperou " + duracaoMs + " ms");
+        esperarAte(() -> rapido.total() == 3);
+        assertEquals(0, lento.total());
+
+        lento.libertar();
+        esperarAte(() -> lento.total() == 3);
+    }
+
+    @Test
+    void filaCheiaFechaSoALigacaoLenta() throws InterruptedException {
+        EmitterDeTeste lento = new EmitterDeTeste();
+        lento.bloquear();
+        LigacaoSse ligacao = ligacao(lento, 2);
+
+        assertTrue(ligacao.enviar(() -> SseEmitter.event().data("0")));
+        assertTrue(lento.aEnviar().await(5, TimeUnit.SECONDS));   // o primeiro já saiu da fila
+        assertTrue(ligacao.enviar(() -> SseEmitter.event().data("1")));
+        assertTrue(ligacao.enviar(() -> SseEmitter.event().data("2")));
+
+        assertFalse(ligacao.enviar(() -> SseEmitter.event().data("3")));
+        assertFalse(ligacao.aberta());
+        assertEquals(1, fechos.get());
+        assertTrue(lento.erro() instanceof IOException);
+
+        lento.libertar();
+        assertFalse(ligacao.enviar(() -> SseEmitter.event().data("4")));
+        assertEquals(1, fechos.get());
+    }
+
+    @Test
+    void eventoEConstruidoNoMomentoDoEnvio() throws InterruptedException {
+        EmitterDeTeste emitter = new EmitterDeTeste();
+        emitter.bloquear();
+        LigacaoSse ligacao = ligacao(emitter, 10);
+        AtomicInteger contador = new AtomicInteger(1);
+
+        ligacao.enviar(() -> SseEmitter.event().data("primeiro"));
+        assertTrue(emitter.aEnviar().await(5, TimeUnit.SECONDS));
+        ligacao.enviar(() -> SseEmitter.event().data(String.valueOf(contador.get())));
+        contador.set(7);   // mudou depois de publicado, antes de enviado
+        emitter.libertar();
+
+        esperarAte(() -> emitter.total() == 2);
+        assertEquals("7", emitter.dados().get(1));
+    }
+
+    @Test
+    void erroNoEnvioFechaUmaSoVez() {
+        EmitterDeTeste emitter = new EmitterDeTeste();
+        emitter.falharEnvios();
+        LigacaoSse ligacao = ligacao(emitter, 10);
+
+        ligacao.enviar(() -> SseEmitter.event().data("a"));
+        esperarAte(() -> !ligacao.aberta());
+        ligacao.fechar();
+
+        assertEquals(1, fechos.get());
+        assertFalse(ligacao.enviar(() -> SseEmitter.event().data("b")));
+    }
+
+    // ───────────────────────── Auxiliares ─────────────────────────
+
+    private LigacaoSse ligacao(SseEmitter emitter, int capacidade) {
+        return new LigacaoSse(emitter, capacidade, envios::incrementAndGet, fechos::incrementAndGet);
+    }
+}
@@ -0,0 +1,118 @@
+package com.loja1.projectohibrido.dashboard.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DashboardCacheTest {
+
+    private static final LocalDate HOJE = LocalDate.now();
+
+    /** Carregador que regista os intervalos pedidos; cada dia vende o produto 1 (categoria 10, marca 20). */
+    private final List<LocalDate[]> carregamentos = new ArrayList<>();
+    private final BiFunction<LocalDate, LocalDate, Map<LocalDate, ResumoDia>> carregador = (de, ate) -> {
+        carregamentos.add(new LocalDate[]{de, ate});
+        Map<LocalDate, ResumoDia> dias = new TreeMap<>();
+        de.datesUntil(ate.plusDays(1)).forEach(d -> dias.put(d, diaComVendas(d, 1, 10, 20)));
+        return dias;
+    };
+
+    @Test
+    void diasFechadosSoSaoCarregadosUmaVez() {
+        DashboardCache cache = new DashboardCache(100);
+        LocalDate de = HOJE.minusDays(7);
+
+        List<ResumoDia> primeira = cache.obterDiasFechados(de, HOJE.minusDays(1), carregador);
+        List<ResumoDia> segunda = cache.obterDiasFechados(de, HOJE.minusDays(1), carregador);
+
+        assertEquals(7, primeira.size());
+        assertEquals(primeira, segunda);
+        assertEquals(1, carregamentos.size());
+        assertEquals(7L, cache.estatisticas().get("acertos"));
+    }
+
+    @Test
+    void invalidarDiaRecarregaSoEsseDia() {
+        DashboardCache cache = new DashboardCache(100);
+        LocalDate de = HOJE.minusDays(7);
+        cache.obterDiasFechados(de, HOJE.minusDays(1), carregador);
+
+        cache.invalidarDia(HOJE.minusDays(3));
+        cache.obterDiasFechados(de, HOJE.minusDays(1), carregador);
+
+        assertEquals(2, carregamentos.size());
+        assertEquals(HOJE.minusDays(3), carregamentos.get(1)[0]);
+        assertEquals(HOJE.minusDays(3), carregamentos.get(1)[1]);
+    }
+
+    @Test
+    void diasForaDaJanelaSaoServidosSemEntrarNaCache() {
+        DashboardCache cache = new DashboardCache(5);
+
+        List<ResumoDia> ano = cache.obterDiasFechados(HOJE.minusDays(365), HOJE.minusDays(1), carregador);
+
+        assertEquals(365, ano.size());
+        assertEquals(5, cache.estatisticas().get("dias"));
+        assertEquals(HOJE.minusDays(5), cache.estatisticas().get("primeiroDia"));
+
+        // Os últimos 5 dias continuam em cache; pedi-los não volta à base de dados
+        cache.obterDiasFechados(HOJE.minusDays(5), HOJE.minusDays(1), carregador);
+        assertEquals(1, carregamentos.size());
+    }
+
+    @Test
+    void alteracoesDoCatalogoInvalidamSoOsDiasAfectados() {
+        DashboardCache cache = new DashboardCache(100);
+        LocalDate d1 = HOJE.minusDays(2);
+        LocalDate d2 = HOJE.minusDays(1);
+        cache.obterDiasFechados(d1, d2, (de, ate) -> Map.of(
+                d1, diaComVendas(d1, 1, 10, 20),
+                d2, diaComVendas(d2, 2, 11, 21)));
+
+        cache.invalidarProdutos(List.of(1));
+        assertEquals(1, cache.estatisticas().get("dias"));
+        cache.invalidarCategoria(99);
+        cache.invalidarMarca(99);
+        assertEquals(1, cache.estatisticas().get("dias"));
+        cache.invalidarCategoria(11);
+        assertEquals(0, cache.estatisticas().get("dias"));
+
+        cache.obterDiasFechados(d1, d2, carregador);
+        cache.invalidarMarca(20);
+        assertEquals(0, cache.estatisticas().get("dias"));
+    }
+
+    @Test
+    void carregamentoQueAtravessaUmaInvalidacaoNaoEGuardado() {
+        DashboardCache cache = new DashboardCache(100);
+        LocalDate dia = HOJE.minusDays(1);
+
+        List<ResumoDia> lidos = cache.obterDiasFechados(dia, dia, (de, ate) -> {
+            cache.invalidarDia(dia);   // pedido do dia alterado durante a leitura
+            return carregador.apply(de, ate);
+        });
+
+        assertEquals(1, lidos.size());
+        assertEquals(0, cache.estatisticas().get("dias"));
+        assertTrue(cache.obterDiasFechados(dia, dia, carregador).get(0).produtos().containsKey(1));
+        assertEquals(2, carregamentos.size());
+    }
+
+    private static ResumoDia diaComVendas(LocalDate dia, int idProduto, int idCategoria, int idMarca) {
+        BigDecimal receita = BigDecimal.TEN;
+        return new ResumoDia(dia,
+                Map.of(idProduto, new ResumoDia.VendaProduto("Produto " + idProduto, 1, receita, 1)),
+                Map.of(idCategoria, new ResumoDia.VendaGrupo("Categoria " + idCategoria, receita, 1)),
+                Map.of(idMarca, new ResumoDia.VendaGrupo("Marca " + idMarca, receita, 1)),
+                Map.of(1, new ResumoDia.VendaUsuario("Ana Silva", 1, receita)));
+    }
+}
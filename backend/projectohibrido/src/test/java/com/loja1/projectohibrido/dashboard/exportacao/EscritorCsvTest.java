@@ -0,0 +1,57 @@
+package com.loja1.projectohibrido.dashboard.exportacao;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EscritorCsvTest {
+
+    @Test
+    void escreveBomCabecalhoELinhas() throws IOException {
+        ByteArrayOutputStream destino = new ByteArrayOutputStream();
+        EscritorCsv escritor = new EscritorCsv(destino, List.of("pedido", "total", "data", "nota"));
+        escritor.linha(7, new BigDecimal("1E+1"), LocalDateTime.of(2026, 1, 2, 3, 4, 5), null);
+        escritor.terminar();
+
+        assertEquals("\uFEFFpedido;total;data;nota\r\n7;10;2026-01-02 03:04:05;\r\n",
+                destino.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void camposComSeparadorAspasOuQuebraVaoEntreAspas() throws IOException {
+        assertEquals("\"a;b\";\"diz \"\"ola\"\"\";\"x\ny\"", linha("a;b", "diz \"ola\"", "x\ny"));
+    }
+
+    @Test
+    void textoQueComecaComoFormulaLevaApostrofo() throws IOException {
+        assertEquals("\"'=HYPERLINK(\"\"x\"\")\"", linha("=HYPERLINK(\"x\")"));
+        assertEquals("'+351;'-2;'@SUM(A1);'\tx;ok", linha("+351", "-2", "@SUM(A1)", "\tx", "ok"));
+        assertEquals("-2;3.5", linha(-2, new BigDecimal("3.5")));   // números não são texto
+    }
+
+    @Test
+    void semTerminarNadaFicaEscrito() throws IOException {
+        ByteArrayOutputStream destino = new ByteArrayOutputStream();
+        EscritorCsv escritor = new EscritorCsv(destino, List.of("pedido"));
+        escritor.linha(1);
+
+        assertEquals(0, destino.size());
+    }
+
+    /** Uma linha de dados, sem BOM, cabeçalho nem terminador. */
+    private static String linha(Object... valores) throws IOException {
+        ByteArrayOutputStream destino = new ByteArrayOutputStream();
+        EscritorCsv escritor = new EscritorCsv(destino, List.of());
+        escritor.linha(valores);
+        escritor.terminar();
+        String texto = destino.toString(StandardCharsets.UTF_8);
+        return texto.substring("\uFEFF\r\n".length(), texto.length() - 2);
+    }
+}
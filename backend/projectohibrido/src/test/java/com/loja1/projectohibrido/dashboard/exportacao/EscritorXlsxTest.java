@@ -0,0 +1,108 @@
+package com.loja1.projectohibrido.dashboard.exportacao;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EscritorXlsxTest {
+
+    private static final List<String> CABECALHO = List.of("pedido", "cliente", "total", "data");
+
+    @Test
+    void escreveUmPacoteXlsxCompleto() throws IOException {
+        ByteArrayOutputStream destino = new ByteArrayOutputStream();
+        EscritorXlsx escritor = new EscritorXlsx(destino, CABECALHO);
+        escritor.linha(1, "Ana & <Filhos>", new BigDecimal("12.50"), LocalDateTime.of(2026, 3, 1, 9, 30));
+        escritor.linha(2, null, -3L, null);
+        escritor.terminar();
+
+        Map<String, String> entradas = ler(destino.toByteArray());
+        assertEquals(List.of("xl/worksheets/sheet1.xml", "[Content_Types].xml", "_rels/.rels",
+                "xl/workbook.xml", "xl/_rels/workbook.xml.rels"), List.copyOf(entradas.keySet()));
+
+        String folha = entradas.get("xl/worksheets/sheet1.xml");
+        assertEquals(3, contar(folha, "<row>"));
+        assertTrue(folha.contains("<t xml:space=\"preserve\">Ana &amp; &lt;Filhos&gt;</t>"));
+        assertTrue(folha.contains("<c><v>12.50</v></c>"));
+        assertTrue(folha.contains("<c><v>-3</v></c>"));
+        assertTrue(folha.contains("2026-03-01 09:30:00"));
+        assertTrue(folha.contains("<c/>"));
+        assertTrue(folha.endsWith("</sheetData></worksheet>"));
+    }
+
+    @Test
+    void caracteresDeControloSaoOmitidos() throws IOException {
+        ByteArrayOutputStream destino = new ByteArrayOutputStream();
+        EscritorXlsx escritor = new EscritorXlsx(destino, CABECALHO);
+        escritor.linha(1, "a\u0001b\tc", null, null);
+        escritor.terminar();
+
+        assertTrue(ler(destino.toByteArray()).get("xl/worksheets/sheet1.xml").contains(">ab\tc<"));
+    }
+
+    @Test
+    void abreNovaFolhaComCabecalhoQuandoAFolhaEnche() throws IOException {
+        ByteArrayOutputStream destino = new ByteArrayOutputStream();
+        EscritorXlsx escritor = new EscritorXlsx(destino, CABECALHO, 3);   // cabeçalho + 2 linhas
+        for (int i = 1; i <= 5; i++) {
+            escritor.linha(i, "c" + i, BigDecimal.ONE, null);
+        }
+        escritor.terminar();
+
+        Map<String, String> entradas = ler(destino.toByteArray());
+        assertEquals(3, contar(entradas.get("xl/worksheets/sheet1.xml"), "<row>"));
+        assertEquals(3, contar(entradas.get("xl/worksheets/sheet2.xml"), "<row>"));
+        assertEquals(2, contar(entradas.get("xl/worksheets/sheet3.xml"), "<row>"));
+        assertTrue(entradas.get("xl/worksheets/sheet3.xml").contains(">pedido<"));
+
+        String workbook = entradas.get("xl/workbook.xml");
+        assertTrue(workbook.contains("<sheet name=\"Vendas\" sheetId=\"1\" r:id=\"rId1\"/>"));
+        assertTrue(workbook.contains("<sheet name=\"Vendas 3\" sheetId=\"3\" r:id=\"rId3\"/>"));
+        assertEquals(3, contar(entradas.get("[Content_Types].xml"), "worksheet+xml"));
+        assertEquals(3, contar(entradas.get("xl/_rels/workbook.xml.rels"), "<Relationship "));
+    }
+
+    @Test
+    void semTerminarNaoHaWorkbook() throws IOException {
+        ByteArrayOutputStream destino = new ByteArrayOutputStream();
+        EscritorXlsx escritor = new EscritorXlsx(destino, CABECALHO);
+        escritor.linha(1, "a", BigDecimal.ONE, null);
+        // exportação interrompida: terminar() não é chamado
+
+        assertFalse(ler(destino.toByteArray()).containsKey("xl/workbook.xml"));
+    }
+
+    /** Entradas do ZIP, pela ordem em que foram escritas; para no primeiro erro. */
+    private static Map<String, String> ler(byte[] xlsx) {
+        Map<String, String> entradas = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx), StandardCharsets.UTF_8)) {
+            ZipEntry entrada;
+            while ((entrada = zip.getNextEntry()) != null) {
+                entradas.put(entrada.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            // ZIP truncado: devolve o que foi lido
+        }
+        return entradas;
+    }
+
+    private static int contar(String texto, String padrao) {
+        int n = 0;
+        for (int i = texto.indexOf(padrao); i >= 0; i = texto.indexOf(padrao, i + 1)) n++;
+        return n;
+    }
+}
@@ -0,0 +1,217 @@
+package com.loja1.projectohibrido.movimentoestoque.diario;
+
+import com.loja1.projectohibrido.config.EsquemaBaseDados;
+import com.loja1.projectohibrido.movimentoestoque.repository.MovimentoEstoqueLoteRepository;
+import com.loja1.projectohibrido.suporte.TransaccoesDeTeste;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.loja1.projectohibrido.suporte.Esperas.esperarAte;
+import static com.loja1.projectohibrido.suporte.TransaccoesDeTeste.commit;
+import static com.loja1.projectohibrido.suporte.TransaccoesDeTeste.emTransaccao;
+import static com.loja1.projectohibrido.suporte.TransaccoesDeTeste.rollback;
+import static com.loja1.projectohibrido.suporte.TransaccoesDeTeste.terminarCommit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiarioEstoqueTest {
+
+    private final List<List<MovimentoDiario>> insercoes = Collections.synchronizedList(new ArrayList<>());
+    private final List<MovimentoDiario> pendentes = Collections.synchronizedList(new ArrayList<>());
+    private final List<MovimentoDiario> gravados = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean baseDeDadosEmBaixo;
+    private boolean esquemaCriado = true;
+
+    private DiarioEstoque diario;
+
+    @AfterEach
+    void limpar() throws InterruptedException {
+        if (diario != null) {
+            baseDeDadosEmBaixo = false;
+            diario.parar();
+            TransactionSynchronizationManager.unbindResourceIfPossible(diario);
+        }
+        TransaccoesDeTeste.limpar();
+    }
+
+    // ───────────────────────── Modo assíncrono ─────────────────────────
+
+    @Test
+    void movimentosDaTransaccaoSaoGravadosNumSoLote() {
+        diario = novoDiario("assincrono", 10);
+        diario.iniciar();
+
+        commit(emTransaccao(() -> {
+            diario.registar(List.of(movimento(1), movimento(2)));
+            diario.registar(List.of(movimento(3)));
+        }));
+
+        esperarAte(() -> gravados.size() == 3);
+        assertEquals(1, insercoes.size());
+        assertEquals(10, diario.estatisticas().get("lugaresLivres"));
+    }
+
+    @Test
+    void rollbackNaoGravaNemOcupaLugar() {
+        diario = novoDiario("assincrono", 2);
+
+        List<TransactionSynchronization> tx = emTransaccao(() -> diario.registar(List.of(movimento(1), movimento(2))));
+        tx.forEach(s -> s.beforeCommit(false));   // o commit falha depois de reservar lugar
+        rollback(tx);
+
+        assertEquals(0, diario.estatisticas().get("naFila"));
+        assertEquals(2, diario.estatisticas().get("lugaresLivres"));
+        assertTrue(pendentes.isEmpty());
+    }
+
+    @Test
+    void filaCheiaDesviaParaPendentesNaTransaccao() {
+        diario = novoDiario("assincrono", 2);   // sem escritor: a fila não esvazia
+
+        commit(emTransaccao(() -> diario.registar(List.of(movimento(1), movimento(2)))));
+        List<TransactionSynchronization> segunda = emTransaccao(() -> diario.registar(List.of(movimento(3))));
+        segunda.forEach(s -> s.beforeCommit(false));
+
+        assertEquals(List.of(movimento(3)), pendentes, "gravado antes do commit, na transacção do pedido");
+        terminarCommit(segunda);
+        assertEquals(2, diario.estatisticas().get("naFila"));
+        assertEquals(1L, diario.estatisticas().get("transbordados"));
+        assertEquals(true, diario.estatisticas().get("emTransbordo"));
+    }
+
+    @Test
+    void baseDeDadosEmBaixoNaoBloqueiaNemPerdeMovimentos() {
+        baseDeDadosEmBaixo = true;
+        diario = novoDiario("assincrono", 2);
+        diario.iniciar();
+
+        commit(emTransaccao(() -> diario.registar(List.of(movimento(1), movimento(2)))));
+        esperarAte(() -> (Long) diario.estatisticas().get("falhasEscrita") > 0);
+
+        long inicio = System.nanoTime();
+        commit(emTransaccao(() -> diario.registar(List.of(movimento(3), movimento(4)))));
+        long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+        assertTrue(duracaoMs < 500, "o commit esperou " + duracaoMs + " ms pela base de dados");
+        assertEquals(2, pendentes.size());
+
+        baseDeDadosEmBaixo = false;
+        esperarAte(() -> gravados.size() == 4);
+        assertEquals(0L, diario.estatisticas().get("descartados"));
+        assertEquals(2, diario.estatisticas().get("lugaresLivres"));
+    }
+
+    @Test
+    void paragemGravaOQueFicouNaFila() throws InterruptedException {
+        diario = novoDiario("assincrono", 10);
+        commit(emTransaccao(() -> diario.registar(List.of(movimento(1), movimento(2)))));
+        diario.iniciar();
+
+        diario.parar();
+
+        assertEquals(2, gravados.size());
+        assertEquals(0, diario.estatisticas().get("naFila"));
+    }
+
+    @Test
+    void checkoutFicaAssociadoAoPedidoCriadoNaTransaccao() {
+        diario = novoDiario("assincrono", 10);
+        MovimentoDiario doOutroPedido = movimento(2).comPedido(5);
+
+        commit(emTransaccao(() -> {
+            diario.registar(List.of(movimento(1), doOutroPedido));   // desconto do checkout
+            diario.associarPedido(42);                              // pedido criado depois
+        }));
+        diario.associarPedido(43);   // fora da transacção: nada a fazer
+
+        diario.iniciar();
+        esperarAte(() -> gravados.size() == 2);
+        assertEquals(List.of(movimento(1).comPedido(42), doOutroPedido), List.copyOf(gravados));
+    }
+
+    // ───────────────────────── Modo outbox ─────────────────────────
+
+    @Test
+    void outboxGravaUmaVezAntesDoCommit() {
+        diario = novoDiario("outbox", 10);
+
+        List<TransactionSynchronization> tx = emTransaccao(() -> {
+            diario.registar(List.of(movimento(1)));
+            diario.registar(List.of(movimento(2)));
+        });
+        assertTrue(pendentes.isEmpty());
+        tx.forEach(s -> s.beforeCommit(false));
+
+        assertEquals(List.of(movimento(1), movimento(2)), pendentes);
+        terminarCommit(tx);
+        assertEquals(0, diario.estatisticas().get("naFila"));
+        assertEquals(0L, diario.estatisticas().get("transbordados"));
+    }
+
+    // ───────────────────────── Migração ─────────────────────────
+
+    @Test
+    void semAsColunasDoDiarioArrancaDesligado() {
+        esquemaCriado = false;
+        diario = novoDiario("outbox", 10);
+        diario.iniciar();
+
+        commit(emTransaccao(() -> diario.registar(List.of(movimento(1)))));
+
+        assertEquals("desligado", diario.estatisticas().get("modo"));
+        assertEquals(0L, diario.estatisticas().get("registados"));
+        assertTrue(pendentes.isEmpty());
+    }
+
+    // ───────────────────────── Auxiliares ─────────────────────────
+
+    private DiarioEstoque novoDiario(String modo, int capacidadeFila) {
+        EsquemaBaseDados esquema = new EsquemaBaseDados(null) {
+            @Override
+            public boolean temColuna(String tabela, String coluna) {
+                return esquemaCriado;
+            }
+        };
+        return new DiarioEstoque(new LoteEmMemoria(), esquema, modo, 50, 100, capacidadeFila);
+    }
+
+    private static MovimentoDiario movimento(int idProduto) {
+        return new MovimentoDiario(idProduto, 7, null, "pedido", "saida", 1, 5, 4, "teste",
+                LocalDateTime.of(2026, 1, 1, 12, 0));
+    }
+
+    private class LoteEmMemoria extends MovimentoEstoqueLoteRepository {
+        LoteEmMemoria() {
+            super(null);
+        }
+
+        @Override
+        public void inserir(List<MovimentoDiario> movimentos) {
+            if (baseDeDadosEmBaixo) throw new IllegalStateException("ligação recusada");
+            insercoes.add(List.copyOf(movimentos));
+            gravados.addAll(movimentos);
+        }
+
+        @Override
+        public void inserirPendentes(List<MovimentoDiario> movimentos) {
+            pendentes.addAll(movimentos);
+        }
+
+        @Override
+        public int moverPendentes(int limite) {
+            if (baseDeDadosEmBaixo) throw new IllegalStateException("ligação recusada");
+            synchronized (pendentes) {
+                List<MovimentoDiario> lote = new ArrayList<>(pendentes.subList(0, Math.min(limite, pendentes.size())));
+                pendentes.removeAll(lote);
+                gravados.addAll(lote);
+                return lote.size();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.loja1.projectohibrido.pedido.notificacao;
+
+import com.loja1.projectohibrido.pedido.repository.PedidoRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContadoresNotificacaoTest {
+
+    /** Pedidos em andamento por utilizador, como estão na "base de dados". */
+    private final Map<Integer, Long> emAndamento = new HashMap<>();
+    private final List<Integer> consultados = new ArrayList<>();
+    private Runnable duranteConsulta = () -> { };
+
+    @Test
+    void segundaLeituraNaoConsulta() {
+        emAndamento.put(1, 3L);
+        ContadoresNotificacao contadores = new ContadoresNotificacao(repositorio(), 10);
+
+        contadores.obter(1);
+        Map<String, Long> lido = contadores.obter(1);
+
+        assertEquals(3L, lido.get("emAndamento"));
+        assertEquals(List.of(1), consultados);
+    }
+
+    @Test
+    void acimaDoMaximoSaiOUtilizadorLidoHaMaisTempo() {
+        ContadoresNotificacao contadores = new ContadoresNotificacao(repositorio(), 2);
+        contadores.obter(1);
+        contadores.obter(2);
+        contadores.obter(1);   // o 2 passa a ser o lido há mais tempo
+
+        contadores.obter(3);
+        contadores.obter(1);
+        contadores.obter(3);
+        assertEquals(List.of(1, 2, 3), consultados, "o 1 e o 3 estão em memória");
+
+        contadores.obter(2);
+        assertEquals(List.of(1, 2, 3, 2), consultados);
+        assertEquals(2L, contadores.estatisticas().get("despejos"));
+        assertEquals(2, contadores.estatisticas().get("utilizadores"));
+    }
+
+    @Test
+    void novosUtilizadoresContinuamAEntrarDepoisDeEncher() {
+        ContadoresNotificacao contadores = new ContadoresNotificacao(repositorio(), 2);
+        for (int id = 1; id <= 5; id++) {
+            contadores.obter(id);
+            contadores.obter(id);
+        }
+
+        assertEquals(List.of(1, 2, 3, 4, 5), consultados);
+    }
+
+    @Test
+    void transicoesSaoAplicadasEmMemoria() {
+        ContadoresNotificacao contadores = new ContadoresNotificacao(repositorio(), 10);
+        contadores.obter(1);
+
+        contadores.transicao(1, null, null, "pendente", (short) 0);
+        contadores.transicao(1, "pendente", (short) 0, "finalizado", (short) 0);
+
+        Map<String, Long> lido = contadores.obter(1);
+        assertEquals(0L, lido.get("emAndamento"));
+        assertEquals(1L, lido.get("finalizadosNaoVistos"));
+        assertEquals(List.of(1), consultados);
+    }
+
+    @Test
+    void carregamentoCruzadoComTransicaoNaoEGuardado() {
+        ContadoresNotificacao contadores = new ContadoresNotificacao(repositorio(), 10);
+        duranteConsulta = () -> {
+            duranteConsulta = () -> { };
+            contadores.transicao(1, null, null, "pendente", (short) 0);   // commit durante a leitura
+        };
+
+        contadores.obter(1);
+        emAndamento.put(1, 1L);
+
+        assertEquals(1L, contadores.obter(1).get("emAndamento"));
+        assertEquals(List.of(1, 1), consultados);
+    }
+
+    @Test
+    void reconciliacaoCorrigeOsQueDivergem() {
+        ContadoresNotificacao contadores = new ContadoresNotificacao(repositorio(), 10);
+        contadores.obter(1);
+        contadores.obter(2);
+        emAndamento.put(2, 4L);   // alterado directamente na base de dados
+
+        contadores.reconciliar();
+
+        assertEquals(4L, contadores.obter(2).get("emAndamento"));
+        assertEquals(0L, contadores.obter(1).get("emAndamento"));
+        assertEquals(1L, contadores.estatisticas().get("correccoes"));
+    }
+
+    /** Mock do repositório: só as três contagens usadas pelos contadores. */
+    private PedidoRepository repositorio() {
+        PedidoRepository repositorio = mock(PedidoRepository.class);
+        when(repositorio.countPedidosAtivosDoUsuario(anyInt())).thenAnswer(chamada -> {
+            Integer idUsuario = chamada.getArgument(0);
+            consultados.add(idUsuario);
+            duranteConsulta.run();
+            return emAndamento.getOrDefault(idUsuario, 0L);
+        });
+        when(repositorio.countFinalizadosNaoVistos(anyInt())).thenReturn(0L);
+        when(repositorio.contarNotificacoesPorUsuario(anyCollection())).thenAnswer(chamada -> {
+            List<Object[]> linhas = new ArrayList<>();
+            for (Integer id : chamada.<Collection<Integer>>getArgument(0)) {
+                linhas.add(new Object[]{id, emAndamento.getOrDefault(id, 0L), 0L});
+            }
+            return linhas;
+        });
+        return repositorio;
+    }
+}
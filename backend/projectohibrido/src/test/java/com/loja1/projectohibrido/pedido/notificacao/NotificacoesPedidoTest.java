@@ -0,0 +1,96 @@
+package com.loja1.projectohibrido.pedido.notificacao;
+
+import com.loja1.projectohibrido.pedido.entity.Pedido;
+import com.loja1.projectohibrido.pedido.repository.PedidoRepository;
+import com.loja1.projectohibrido.suporte.EmitterDeTeste;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.loja1.projectohibrido.suporte.Esperas.esperarAte;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NotificacoesPedidoTest {
+
+    private static final int USUARIO = 1;
+
+    private final NotificacoesPedido notificacoes = new NotificacoesPedido(
+            new ContadoresNotificacao(repositorioSemPedidos(), 100), 60_000, 2);
+
+    @Test
+    void ligacaoLentaNaoAtrasaOPedidoNemAsOutrasLigacoes() {
+        EmitterDeTeste lenta = new EmitterDeTeste();
+        EmitterDeTeste rapida = new EmitterDeTeste();
+        notificacoes.inscrever(USUARIO, lenta);
+        esperarAte(() -> lenta.total() == 1);
+        lenta.bloquear();
+        notificacoes.inscrever(USUARIO, rapida);
+
+        long inicio = System.nanoTime();
+        notificacoes.pedidoAlterado(pedido(10, "pendente"), null, "criado");
+        long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+
+        assertTrue(duracaoMs < 200, "a transição esperou " + duracaoMs + " ms");
+        esperarAte(() -> rapida.total() == 3);
+        assertEquals(List.of("contadores", "pedido", "contadores"), rapida.nomes());
+        assertEquals(1L, ultimosContadores(rapida).get("emAndamento"));
+
+        lenta.libertar();
+        esperarAte(() -> lenta.total() == 3);
+    }
+
+    @Test
+    void ultimosContadoresEnviadosSaoOsMaisRecentes() {
+        EmitterDeTeste emitter = new EmitterDeTeste();
+        notificacoes.inscrever(USUARIO, emitter);
+        esperarAte(() -> emitter.total() == 1);
+        emitter.bloquear();
+
+        notificacoes.pedidoAlterado(pedido(10, "pendente"), null, "criado");
+        notificacoes.pedidoAlterado(pedido(11, "pendente"), null, "criado");
+        notificacoes.pedidoAlterado(pedido(10, "finalizado"), "pendente", "finalizado");
+        emitter.libertar();
+
+        esperarAte(() -> emitter.total() == 7);
+        assertEquals(1L, ultimosContadores(emitter).get("emAndamento"));
+    }
+
+    @Test
+    void acimaDoMaximoFechaALigacaoMaisAntiga() {
+        EmitterDeTeste primeira = new EmitterDeTeste();
+        notificacoes.inscrever(USUARIO, primeira);
+        notificacoes.inscrever(USUARIO, new EmitterDeTeste());
+        notificacoes.inscrever(USUARIO, new EmitterDeTeste());
+
+        assertTrue(primeira.fechado());
+        assertEquals(2, notificacoes.estatisticas().get("ligacoes"));
+        assertEquals(1L, notificacoes.estatisticas().get("desligadas"));
+    }
+
+    // ───────────────────────── Auxiliares ─────────────────────────
+
+    private static Pedido pedido(int idPedido, String status) {
+        Pedido pedido = Pedido.builder().idUsuario(USUARIO).statusPedido(status)
+                .reference("P" + idPedido).notificacaoVista((short) 1).ativo(true).build();
+        pedido.setIdPedido(idPedido);
+        return pedido;
+    }
+
+    /** O utilizador começa sem pedidos; as transições mantêm os contadores. */
+    private static PedidoRepository repositorioSemPedidos() {
+        PedidoRepository repositorio = mock(PedidoRepository.class);
+        when(repositorio.countPedidosAtivosDoUsuario(anyInt())).thenReturn(0L);
+        when(repositorio.countFinalizadosNaoVistos(anyInt())).thenReturn(0L);
+        return repositorio;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> ultimosContadores(EmitterDeTeste emitter) {
+        return (Map<String, Long>) emitter.ultimosDados();
+    }
+}
@@ -0,0 +1,37 @@
+package com.loja1.projectohibrido.produto.busca;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.loja1.projectohibrido.produto.busca.IndiceBuscaProduto.termosDaConsulta;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndiceBuscaProdutoTest {
+
+    @Test
+    void palavraVaziaNoFimAindaAEscreverFicaComoPrefixo() {
+        assertEquals(List.of("camisa", "de"), termosDaConsulta("camisa de"));
+        assertEquals(List.of("de"), termosDaConsulta("de"));
+    }
+
+    @Test
+    void palavraVaziaNoFimJaTerminadaSai() {
+        assertEquals(List.of("camisa"), termosDaConsulta("camisa de "));
+        assertEquals(List.of("camisa"), termosDaConsulta("camisa de\t"));
+        assertEquals(List.of("camisa"), termosDaConsulta("camisa de,"));
+        assertEquals(List.of(), termosDaConsulta("de "));
+    }
+
+    @Test
+    void palavrasVaziasNoMeioSaemSempre() {
+        assertEquals(List.of("camisa", "algodao"), termosDaConsulta("Camisa de Algodão"));
+        assertEquals(List.of("camisa", "algodao"), termosDaConsulta("camisa de algodão "));
+    }
+
+    @Test
+    void consultaVaziaNaoTemTermos() {
+        assertEquals(List.of(), termosDaConsulta(null));
+        assertEquals(List.of(), termosDaConsulta("   "));
+    }
+}
@@ -0,0 +1,249 @@
+package com.loja1.projectohibrido.produto.estoque;
+
+import com.loja1.projectohibrido.produto.cache.CatalogoCache;
+import com.loja1.projectohibrido.produto.repository.CheckpointEstoqueRepository;
+import com.loja1.projectohibrido.produto.repository.ProdutoLoteRepository;
+import com.loja1.projectohibrido.suporte.TransaccoesDeTeste;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.loja1.projectohibrido.suporte.TransaccoesDeTeste.commit;
+import static com.loja1.projectohibrido.suporte.TransaccoesDeTeste.emTransaccao;
+import static com.loja1.projectohibrido.suporte.TransaccoesDeTeste.rollback;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LivroEstoqueTest {
+
+    private static final int PRODUTO = 1;
+
+    private final Map<Integer, Integer> tabela = new ConcurrentHashMap<>();
+    private final Map<Integer, CheckpointEstoqueRepository.Situacao> checkpoints = new ConcurrentHashMap<>();
+    private final LivroEstoque livro = new LivroEstoque(
+            new ProdutoLoteEmMemoria(), new CheckpointEmMemoria(),
+            new CatalogoCache(100, 60), new TransaccoesSimuladas(), true);
+
+    @AfterEach
+    void limpar() {
+        TransaccoesDeTeste.limpar();
+    }
+
+    // ───────────────────────── Reservas ─────────────────────────
+
+    @Test
+    void reservaSemSaldoNaoDescontaNenhumProduto() {
+        tabela.put(1, 5);
+        tabela.put(2, 1);
+
+        LivroEstoque.Reserva reserva = livro.reservar(Map.of(1, 2, 2, 3));
+
+        assertTrue(reserva.estoqueFinal().isEmpty());
+        assertEquals(Map.of(2, 1), reserva.insuficientes());
+        assertTrue(livro.reservar(Map.of(1, 5)).insuficientes().isEmpty());
+    }
+
+    @Test
+    void reservaRevertidaVoltaAoSaldo() {
+        tabela.put(PRODUTO, 3);
+
+        List<TransactionSynchronization> checkout = emTransaccao(() -> livro.reservar(Map.of(PRODUTO, 3)));
+        assertFalse(livro.reservar(Map.of(PRODUTO, 1)).insuficientes().isEmpty());
+
+        rollback(checkout);
+
+        assertTrue(livro.reservar(Map.of(PRODUTO, 3)).insuficientes().isEmpty());
+    }
+
+    // ───────────────────────── Edição com checkout aberto ─────────────────────────
+
+    @Test
+    void commitTardioDeCheckoutChegaAoSaldoRecarregado() {
+        tabela.put(PRODUTO, 10);
+        List<TransactionSynchronization> checkout = emTransaccao(() -> livro.reservar(Map.of(PRODUTO, 3)));
+
+        // Administrador grava 20 enquanto o checkout ainda não terminou
+        tabela.put(PRODUTO, 20);
+        livro.redefinirAposCommit(PRODUTO);
+
+        commit(checkout);
+        livro.gravarPendentes();
+
+        assertEquals(17, tabela.get(PRODUTO), "a venda do checkout aberto é gravada sobre o novo valor");
+        assertTrue(livro.reservar(Map.of(PRODUTO, 17)).insuficientes().isEmpty());
+        assertEquals(Map.of(PRODUTO, 0), livro.reservar(Map.of(PRODUTO, 1)).insuficientes(),
+                "as unidades do checkout aberto não voltam a ser vendidas");
+    }
+
+    @Test
+    void rollbackTardioDeCheckoutDevolveAoSaldoRecarregado() {
+        tabela.put(PRODUTO, 10);
+        List<TransactionSynchronization> checkout = emTransaccao(() -> livro.reservar(Map.of(PRODUTO, 3)));
+
+        tabela.put(PRODUTO, 5);
+        livro.redefinirAposCommit(PRODUTO);
+        assertEquals(Map.of(PRODUTO, 2), livro.reservar(Map.of(PRODUTO, 3)).insuficientes());
+
+        rollback(checkout);
+        livro.gravarPendentes();
+
+        assertEquals(5, tabela.get(PRODUTO));
+        assertTrue(livro.reservar(Map.of(PRODUTO, 5)).insuficientes().isEmpty());
+    }
+
+    @Test
+    void vendasPorGravarSaoAplicadasAntesDeRecarregar() {
+        tabela.put(PRODUTO, 10);
+        livro.reservar(Map.of(PRODUTO, 4));   // sem transacção: confirmada de imediato
+
+        tabela.put(PRODUTO, 8);
+        livro.redefinirAposCommit(PRODUTO);
+
+        assertEquals(4, tabela.get(PRODUTO));
+        assertEquals(new CheckpointEstoqueRepository.Situacao(4, 0), checkpoints.get(PRODUTO),
+                "o checkpoint é refeito com o valor já gravado");
+        livro.gravarPendentes();
+        assertEquals(4, tabela.get(PRODUTO), "nada fica pendente no saldo retirado");
+    }
+
+    @Test
+    void devolucaoConfirmadaAposEdicaoEntraNoSaldoRecarregado() {
+        tabela.put(PRODUTO, 10);
+        livro.reservar(Map.of(PRODUTO, 1));   // carrega o produto
+        livro.gravarPendentes();
+        List<TransactionSynchronization> cancelamento = emTransaccao(() -> livro.devolver(Map.of(PRODUTO, 2)));
+
+        tabela.put(PRODUTO, 0);
+        livro.redefinirAposCommit(PRODUTO);
+        commit(cancelamento);
+        livro.gravarPendentes();
+
+        assertEquals(2, tabela.get(PRODUTO));
+        assertTrue(livro.reservar(Map.of(PRODUTO, 2)).insuficientes().isEmpty());
+    }
+
+    @Test
+    void edicoesConcorrentesComCheckoutsNaoPerdemNemSobrevendem() throws Exception {
+        int inicial = 1_000;
+        int threads = 8;
+        int porThread = 150;   // 1200 pedidos para 1000 unidades
+        tabela.put(PRODUTO, inicial);
+        livro.reservar(Map.of(PRODUTO, 0));   // carrega o produto
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch partida = new CountDownLatch(1);
+        AtomicInteger vendidas = new AtomicInteger();
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tarefas.add(executor.submit(() -> {
+                    partida.await();
+                    for (int i = 0; i < porThread; i++) {
+                        List<TransactionSynchronization> checkout =
+                                emTransaccao(() -> livro.reservar(Map.of(PRODUTO, 1)));
+                        boolean vendeu = !checkout.isEmpty();
+                        commit(checkout);
+                        if (vendeu) vendidas.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            partida.countDown();
+            // O administrador grava o mesmo valor várias vezes durante a promoção
+            for (int i = 0; i < 20; i++) {
+                livro.redefinirAposCommit(PRODUTO);
+                Thread.yield();
+            }
+            for (Future<?> tarefa : tarefas) tarefa.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        livro.gravarPendentes();
+
+        assertEquals(inicial, vendidas.get(), "todas as unidades vendidas, nenhuma a mais");
+        assertEquals(0, tabela.get(PRODUTO));
+    }
+
+    // ───────────────────────── Auxiliares ─────────────────────────
+
+    private class ProdutoLoteEmMemoria extends ProdutoLoteRepository {
+        ProdutoLoteEmMemoria() {
+            super(null);
+        }
+
+        @Override
+        public Map<Integer, Integer> acrescentarEstoque(Integer[] ids, Integer[] quantidades) {
+            Map<Integer, Integer> resultado = new LinkedHashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                resultado.put(ids[i], tabela.merge(ids[i], quantidades[i], Integer::sum));
+            }
+            return resultado;
+        }
+    }
+
+    private class CheckpointEmMemoria extends CheckpointEstoqueRepository {
+        CheckpointEmMemoria() {
+            super(null, null);
+        }
+
+        @Override
+        public Map<Integer, Situacao> lerSituacao(Collection<Integer> ids) {
+            Map<Integer, Situacao> situacao = new LinkedHashMap<>();
+            ids.forEach(id -> {
+                Integer quantidade = tabela.get(id);
+                if (quantidade != null) situacao.put(id, new Situacao(quantidade, 0));
+            });
+            return situacao;
+        }
+
+        @Override
+        public void gravar(Map<Integer, Situacao> situacao) {
+            situacao.forEach(checkpoints::putIfAbsent);
+        }
+
+        @Override
+        public void apagar(Integer idProduto) {
+            checkpoints.remove(idProduto);
+        }
+    }
+
+    /** Gestor de transacções sem recurso: o TransactionTemplate do livro só precisa de begin/commit. */
+    private static class TransaccoesSimuladas extends AbstractPlatformTransactionManager {
+        TransaccoesSimuladas() {
+            setTransactionSynchronization(SYNCHRONIZATION_NEVER);
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
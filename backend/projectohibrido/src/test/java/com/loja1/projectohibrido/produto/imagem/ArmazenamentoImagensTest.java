@@ -0,0 +1,106 @@
+package com.loja1.projectohibrido.produto.imagem;
+
+import com.loja1.projectohibrido.produto.imagem.ArmazenamentoImagens.Tamanho;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static com.loja1.projectohibrido.suporte.Esperas.esperarAte;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArmazenamentoImagensTest {
+
+    private final Path diretorio = Files.createTempDirectory("imagens-teste");
+    private final ArmazenamentoImagens armazenamento =
+            new ArmazenamentoImagens(diretorio.toString(), 1_000_000, 20, 60, 10_000, 1);
+
+    ArmazenamentoImagensTest() throws IOException {
+    }
+
+    @AfterEach
+    void apagar() throws IOException {
+        armazenamento.parar();
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    void imagemLegivelAnunciaAsVariantesGeradas() throws IOException {
+        String url = armazenamento.guardar(upload(png(80, 40)));
+        esperarVariantes();
+
+        String thumb = armazenamento.urlVariante(url, Tamanho.THUMB);
+        assertEquals(url.replace(".png", "_thumb.jpg"), thumb);
+        assertEquals(url.replace(".png", "_media.jpg"), armazenamento.urlVariante(url, Tamanho.MEDIA));
+        assertTrue(armazenamento.resolver(nome(thumb)).orElseThrow().imutavel());
+    }
+
+    @Test
+    void webpFicaComOOriginal() throws IOException {
+        byte[] webp = Arrays.copyOf("RIFF\0\0\0\0WEBPVP8 ".getBytes(), 64);
+        String url = armazenamento.guardar(upload(webp));
+
+        assertEquals(url, armazenamento.urlVariante(url, Tamanho.THUMB));
+        assertEquals(0, armazenamento.estatisticas().get("variantesEmCurso"));
+    }
+
+    @Test
+    void acimaDoMaximoDePixeisFicaComOOriginal() throws IOException {
+        String url = armazenamento.guardar(upload(png(200, 100)));   // 20 000 > 10 000
+        esperarVariantes();
+
+        assertEquals(url, armazenamento.urlVariante(url, Tamanho.THUMB));
+        assertEquals(url, armazenamento.urlVariante(url, Tamanho.MEDIA));
+    }
+
+    @Test
+    void falhaADescodificarFicaComOOriginal() throws IOException {
+        byte[] corrompido = Arrays.copyOf(png(80, 40), 40);
+        String url = armazenamento.guardar(upload(corrompido));
+        esperarVariantes();
+
+        assertEquals(url, armazenamento.urlVariante(url, Tamanho.MEDIA));
+        assertEquals(1L, armazenamento.estatisticas().get("variantesFalhadas"));
+    }
+
+    @Test
+    void caminhosAntigosOuExternosNaoMudam() {
+        assertEquals(null, armazenamento.urlVariante(null, Tamanho.THUMB));
+        String antigo = ArmazenamentoImagens.PREFIXO_URL + "1700000000000_foto.jpg";
+        assertEquals(antigo, armazenamento.urlVariante(antigo, Tamanho.THUMB));
+        assertEquals("https://cdn/x.jpg", armazenamento.urlVariante("https://cdn/x.jpg", Tamanho.THUMB));
+    }
+
+    // ───────────────────────── Auxiliares ─────────────────────────
+
+    private void esperarVariantes() {
+        esperarAte(() -> (Integer) armazenamento.estatisticas().get("variantesEmCurso") == 0);
+    }
+
+    private static String nome(String url) {
+        return url.substring(ArmazenamentoImagens.PREFIXO_URL.length());
+    }
+
+    private static byte[] png(int largura, int altura) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(largura, altura, BufferedImage.TYPE_INT_RGB), "png", saida);
+        return saida.toByteArray();
+    }
+
+    private static MultipartFile upload(byte[] conteudo) {
+        return new MockMultipartFile("imagem", conteudo);
+    }
+}
@@ -0,0 +1,137 @@
+package com.loja1.projectohibrido.produto.imagem;
+
+import com.loja1.projectohibrido.produto.imagem.EntregaImagens.Intervalo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.loja1.projectohibrido.produto.imagem.EntregaImagens.interpretarRange;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EntregaImagensTest {
+
+    private static final String NOME = "a".repeat(64) + ".png";
+    private static final String ETAG = "\"" + "a".repeat(64) + "\"";
+
+    private final Path diretorio = Files.createTempDirectory("entrega-teste");
+    private final ArmazenamentoImagens armazenamento =
+            new ArmazenamentoImagens(diretorio.toString(), 1_000_000, 20, 60, 10_000, 1);
+    private final EntregaImagens entrega = new EntregaImagens(armazenamento, 3600);
+
+    EntregaImagensTest() throws IOException {
+        Files.writeString(diretorio.resolve(NOME), "0123456789");
+    }
+
+    @AfterEach
+    void apagar() throws IOException {
+        armazenamento.parar();
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // ───────────────────────── Interpretação do Range ─────────────────────────
+
+    @Test
+    void intervaloFechadoAbertoESufixo() {
+        assertEquals(new Intervalo(0, 9), interpretarRange("bytes=0-9", 100));
+        assertEquals(new Intervalo(90, 99), interpretarRange("bytes=90-", 100));
+        assertEquals(new Intervalo(80, 99), interpretarRange("bytes=-20", 100));
+        assertEquals(new Intervalo(5, 5), interpretarRange("bytes= 5 - 5 ", 100));
+    }
+
+    @Test
+    void limitesAcimaDoTamanhoSaoCortados() {
+        assertEquals(new Intervalo(50, 99), interpretarRange("bytes=50-1000", 100));
+        assertEquals(new Intervalo(0, 99), interpretarRange("bytes=-1000", 100));
+        assertEquals(new Intervalo(0, 99), interpretarRange("bytes=0-99999999999999999999", 100));
+    }
+
+    @Test
+    void naoSatisfazivelDevolveNull() {
+        assertNull(interpretarRange("bytes=100-", 100));
+        assertNull(interpretarRange("bytes=100-200", 100));
+        assertNull(interpretarRange("bytes=-0", 100));
+        assertNull(interpretarRange("bytes=0-", 0));
+        assertNull(interpretarRange("bytes=-5", 0));
+    }
+
+    @Test
+    void malFormadoOuVariosIntervalosServemOFicheiroInteiro() {
+        Intervalo inteiro = new Intervalo(0, 99);
+        assertEquals(inteiro, interpretarRange("bytes=5-3", 100));
+        assertEquals(inteiro, interpretarRange("bytes=0-1,5-6", 100));
+        assertEquals(inteiro, interpretarRange("items=0-9", 100));
+        assertEquals(inteiro, interpretarRange("bytes=5", 100));
+        assertEquals(inteiro, interpretarRange("bytes=-", 100));
+        assertEquals(inteiro, interpretarRange("bytes=x-9", 100));
+        assertEquals(inteiro, interpretarRange("bytes=+1-9", 100));
+        assertEquals(inteiro, interpretarRange("bytes=--5", 100));
+    }
+
+    // ───────────────────────── Resposta ─────────────────────────
+
+    @Test
+    void rangeDevolve206SoComOsBytesPedidos() throws IOException {
+        MockHttpServletResponse resposta = servir(Map.of("Range", "bytes=2-5"));
+
+        assertEquals(206, resposta.getStatus());
+        assertEquals("bytes 2-5/10", resposta.getHeader("Content-Range"));
+        assertEquals(4L, resposta.getContentLengthLong());
+        assertEquals("2345", resposta.getContentAsString());
+        assertEquals(1L, entrega.estatisticas().get("parciais"));
+    }
+
+    @Test
+    void rangeForaDoFicheiroDevolve416() throws IOException {
+        MockHttpServletResponse resposta = servir(Map.of("Range", "bytes=10-"));
+
+        assertEquals(416, resposta.getStatus());
+        assertEquals("bytes */10", resposta.getHeader("Content-Range"));
+        assertEquals("", resposta.getContentAsString());
+    }
+
+    @Test
+    void ifRangeDeOutraVersaoDevolveOFicheiroInteiro() throws IOException {
+        MockHttpServletResponse resposta = servir(Map.of("Range", "bytes=2-5", "If-Range", "\"outra\""));
+
+        assertEquals(200, resposta.getStatus());
+        assertEquals("0123456789", resposta.getContentAsString());
+    }
+
+    @Test
+    void ifRangeDaVersaoActualAplicaORange() throws IOException {
+        MockHttpServletResponse resposta = servir(Map.of("Range", "bytes=-3", "If-Range", ETAG));
+
+        assertEquals(206, resposta.getStatus());
+        assertEquals("789", resposta.getContentAsString());
+    }
+
+    @Test
+    void rangeMalFormadoDevolveOFicheiroInteiro() throws IOException {
+        MockHttpServletResponse resposta = servir(Map.of("Range", "bytes=7-2"));
+
+        assertEquals(200, resposta.getStatus());
+        assertEquals(10L, resposta.getContentLengthLong());
+        assertEquals("0123456789", resposta.getContentAsString());
+    }
+
+    // ───────────────────────── Auxiliares ─────────────────────────
+
+    private MockHttpServletResponse servir(Map<String, String> cabecalhos) throws IOException {
+        MockHttpServletRequest pedido = new MockHttpServletRequest("GET", ArmazenamentoImagens.PREFIXO_URL + NOME);
+        cabecalhos.forEach(pedido::addHeader);
+        MockHttpServletResponse resposta = new MockHttpServletResponse();
+        entrega.servir(NOME, pedido, resposta);
+        return resposta;
+    }
+}
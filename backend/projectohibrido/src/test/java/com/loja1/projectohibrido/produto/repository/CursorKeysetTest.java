@@ -0,0 +1,46 @@
+package com.loja1.projectohibrido.produto.repository;
+
+import com.loja1.projectohibrido.usuario.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CursorKeysetTest {
+
+    @Test
+    void voltaAChaveOriginal() {
+        // Segundos a zero (toString omite-os) e microssegundos do PostgreSQL
+        for (LocalDateTime data : new LocalDateTime[]{
+                LocalDateTime.of(2026, 5, 1, 10, 0),
+                LocalDateTime.of(2026, 5, 1, 10, 0, 7, 123_456_000)}) {
+            CursorKeyset chave = new CursorKeyset(data, 42);
+            assertEquals(chave, CursorKeyset.decodificar(chave.codificar()));
+        }
+    }
+
+    @Test
+    void cursorSeguroEmUrl() {
+        String cursor = new CursorKeyset(LocalDateTime.of(2026, 12, 31, 23, 59, 59), Integer.MAX_VALUE).codificar();
+
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+        assertFalse(cursor.endsWith("="));
+    }
+
+    @Test
+    void cursorInvalidoDaErroDeNegocio() {
+        String semSeparador = Base64.getUrlEncoder().encodeToString("2026-05-01T10:00".getBytes(StandardCharsets.UTF_8));
+        String idInvalido = Base64.getUrlEncoder().encodeToString("2026-05-01T10:00|x".getBytes(StandardCharsets.UTF_8));
+
+        for (String cursor : new String[]{"%%%", semSeparador, idInvalido, ""}) {
+            BusinessException erro = assertThrows(BusinessException.class, () -> CursorKeyset.decodificar(cursor));
+            assertTrue(erro.getMessage().startsWith("Cursor de paginação inválido"));
+        }
+    }
+}
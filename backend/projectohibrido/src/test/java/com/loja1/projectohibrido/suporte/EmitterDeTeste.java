@@ -0,0 +1,106 @@
+package com.loja1.projectohibrido.suporte;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Emitter sem pedido HTTP: regista (nome, dados) de cada evento enviado e
+ * pode ficar preso no envio ({@link #bloquear}) ou falhar ({@link #falharEnvios}).
+ */
+public class EmitterDeTeste extends SseEmitter {
+
+    /** @param nome null nos eventos sem {@code event:} */
+    public record Evento(String nome, Object dados) {
+    }
+
+    private final List<Evento> recebidos = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch aEnviar = new CountDownLatch(1);
+    private volatile CountDownLatch travao;
+    private volatile boolean falhar;
+    private volatile Throwable erro;
+    private volatile boolean fechado;
+
+    public void bloquear() {
+        travao = new CountDownLatch(1);
+    }
+
+    public void libertar() {
+        travao.countDown();
+    }
+
+    public void falharEnvios() {
+        falhar = true;
+    }
+
+    /** Libertado quando o primeiro envio começa, mesmo que fique preso. */
+    public CountDownLatch aEnviar() {
+        return aEnviar;
+    }
+
+    public int total() {
+        return recebidos.size();
+    }
+
+    public List<String> nomes() {
+        synchronized (recebidos) {
+            return recebidos.stream().map(Evento::nome).toList();
+        }
+    }
+
+    public List<Object> dados() {
+        synchronized (recebidos) {
+            return recebidos.stream().map(Evento::dados).toList();
+        }
+    }
+
+    public Object ultimosDados() {
+        synchronized (recebidos) {
+            return recebidos.get(recebidos.size() - 1).dados();
+        }
+    }
+
+    /** O erro com que a ligação foi fechada, ou null. */
+    public Throwable erro() {
+        return erro;
+    }
+
+    public boolean fechado() {
+        return fechado;
+    }
+
+    @Override
+    public void send(SseEventBuilder evento) throws IOException {
+        aEnviar.countDown();
+        if (falhar) throw new IOException("ligação quebrada");
+        CountDownLatch t = travao;
+        if (t != null) {
+            try {
+                t.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        // [("event:nome\n")"data:", dados, "\n\n"]
+        List<Object> partes = evento.build().stream().map(ResponseBodyEmitter.DataWithMediaType::getData).toList();
+        String cabecalho = partes.get(0).toString();
+        String nome = cabecalho.startsWith("event:")
+                ? cabecalho.substring("event:".length(), cabecalho.indexOf('\n')) : null;
+        recebidos.add(new Evento(nome, partes.get(1)));
+    }
+
+    @Override
+    public void complete() {
+        fechado = true;
+    }
+
+    @Override
+    public void completeWithError(Throwable ex) {
+        erro = ex;
+    }
+}
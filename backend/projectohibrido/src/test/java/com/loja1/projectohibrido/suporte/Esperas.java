@@ -0,0 +1,21 @@
+package com.loja1.projectohibrido.suporte;
+
+import java.util.function.BooleanSupplier;
+
+/** Espera por trabalho feito noutras threads (escritores, envios SSE, variantes de imagem). */
+public final class Esperas {
+
+    private static final long LIMITE_NANOS = 10_000_000_000L;
+
+    private Esperas() {
+    }
+
+    /** Falha o teste se a condição não ficar verdadeira em 10 s. */
+    public static void esperarAte(BooleanSupplier condicao) {
+        long limite = System.nanoTime() + LIMITE_NANOS;
+        while (!condicao.getAsBoolean()) {
+            if (System.nanoTime() > limite) throw new AssertionError("condição não satisfeita em 10 s");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.loja1.projectohibrido.suporte;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * "Transacções" sem gestor nem base de dados: activa a sincronização do
+ * Spring, corre o código e devolve as {@link TransactionSynchronization}
+ * registadas, para o teste decidir quando e como a transacção termina.
+ */
+public final class TransaccoesDeTeste {
+
+    private TransaccoesDeTeste() {
+    }
+
+    /** Executa numa "transacção" e devolve as sincronizações registadas (vazia se nada ficou pendente). */
+    public static List<TransactionSynchronization> emTransaccao(Runnable corpo) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            corpo.run();
+            return List.copyOf(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    public static void commit(List<TransactionSynchronization> sincronizacoes) {
+        sincronizacoes.forEach(s -> s.beforeCommit(false));
+        terminarCommit(sincronizacoes);
+    }
+
+    /** Segunda metade do commit, para testes que chamam beforeCommit à parte. */
+    public static void terminarCommit(List<TransactionSynchronization> sincronizacoes) {
+        sincronizacoes.forEach(TransactionSynchronization::afterCommit);
+        sincronizacoes.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    public static void rollback(List<TransactionSynchronization> sincronizacoes) {
+        sincronizacoes.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    }
+
+    /** Para o @AfterEach: não deixa a sincronização activa na thread se um teste falhar a meio. */
+    public static void limpar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}